@@ -0,0 +1,77 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import net.clementlevallois.nocodeapp.testingsuite.utils.DownloadWatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The scans of a download folder done for each test: the listing taken when
+ * a download starts, and the walk looking for stale files before a test.
+ *
+ * @author LEVALLOIS
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DownloadFolderBenchmark {
+
+    @Param({"2", "1000", "16000"})
+    public int files;
+
+    private Path downloadFolder;
+
+    @Setup
+    public void setUp() throws IOException {
+        downloadFolder = Fixtures.folder().resolve("downloads-" + files);
+        Files.createDirectories(downloadFolder);
+        for (int i = 0; i < files; i++) {
+            Path file = downloadFolder.resolve("file-" + i + (i % 2 == 0 ? ".txt" : ".png"));
+            if (Files.notExists(file)) {
+                Files.writeString(file, "x");
+            }
+        }
+    }
+
+    @Benchmark
+    public DownloadWatcher openDownloadWatcher() throws IOException {
+        DownloadWatcher watcher = new DownloadWatcher(downloadFolder);
+        watcher.close();
+        return watcher;
+    }
+
+    /**
+     * The walk of TestingSuite.deleteFilesInDownloadFolder, without deleting.
+     */
+    @Benchmark
+    public long findStaleDownloads() throws IOException {
+        try (Stream<Path> paths = Files.walk(downloadFolder)) {
+            return paths.filter(Files::isRegularFile)
+                    .filter(path -> {
+                        String fileName = path.toFile().getName();
+                        return fileName.endsWith(".gexf") || fileName.endsWith(".xlsx") || fileName.endsWith(".crdownload");
+                    })
+                    .count();
+        }
+    }
+
+}
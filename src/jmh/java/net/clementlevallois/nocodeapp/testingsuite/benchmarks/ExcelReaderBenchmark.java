@@ -0,0 +1,103 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import net.clementlevallois.importers.model.SheetModel;
+import net.clementlevallois.nocodeapp.testingsuite.golden.GoldenDiff;
+import net.clementlevallois.nocodeapp.testingsuite.golden.GoldenFile;
+import net.clementlevallois.nocodeapp.testingsuite.utils.ColumnarSheet;
+import net.clementlevallois.nocodeapp.testingsuite.utils.ExcelReader;
+import net.clementlevallois.nocodeapp.testingsuite.utils.ExcelVerification;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reading a downloaded result file: the whole model, with an object per cell
+ * or columnar, a verification stopping early, a verification needing every
+ * row, and the comparison to a golden fingerprint.
+ *
+ * @author LEVALLOIS
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ExcelReaderBenchmark {
+
+    @Param({"2", "16000", "1000000"})
+    public int rows;
+
+    private Path excelFile;
+    private Path orderedGolden;
+    private Path unorderedGolden;
+
+    @Setup
+    public void setUp() throws IOException {
+        excelFile = Fixtures.excelFile(rows);
+        orderedGolden = Fixtures.folder().resolve("results-" + rows + "-ordered" + GoldenFile.EXTENSION);
+        unorderedGolden = Fixtures.folder().resolve("results-" + rows + "-unordered" + GoldenFile.EXTENSION);
+        if (Files.notExists(orderedGolden)) {
+            GoldenFile.record(excelFile, 0, GoldenFile.Order.ORDERED, orderedGolden);
+        }
+        if (Files.notExists(unorderedGolden)) {
+            GoldenFile.record(excelFile, 0, GoldenFile.Order.UNORDERED, unorderedGolden);
+        }
+    }
+
+    @Benchmark
+    public List<SheetModel> readExcelFile() throws IOException {
+        return ExcelReader.readExcelFile(excelFile);
+    }
+
+    @Benchmark
+    public List<ColumnarSheet> readColumnar() throws IOException {
+        return ExcelReader.readColumnar(excelFile);
+    }
+
+    /**
+     * The check of the scenarios: a few cells at the top of the sheet.
+     */
+    @Benchmark
+    public ExcelVerification.Result verifyFirstRows() throws IOException {
+        ExcelVerification verification = new ExcelVerification()
+                .expectCell(0, 0, 0, "id")
+                .expectCell(0, 0, 2, "sentiment");
+        return ExcelReader.verify(excelFile, verification);
+    }
+
+    @Benchmark
+    public ExcelVerification.Result verifyWholeSheet() throws IOException {
+        ExcelVerification verification = new ExcelVerification()
+                .expectRowCount(0, rows, rows)
+                .expectColumnNonEmpty(0, 2, 1);
+        return ExcelReader.verify(excelFile, verification);
+    }
+
+    @Benchmark
+    public GoldenDiff compareOrderedGolden() throws IOException {
+        return GoldenFile.compare(excelFile, 0, orderedGolden);
+    }
+
+    @Benchmark
+    public GoldenDiff compareUnorderedGolden() throws IOException {
+        return GoldenFile.compare(excelFile, 0, unorderedGolden);
+    }
+
+}
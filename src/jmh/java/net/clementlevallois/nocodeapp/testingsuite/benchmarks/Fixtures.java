@@ -0,0 +1,120 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Random;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+/**
+ * Result files shaped like those of the app, generated once and kept in
+ * target/jmh-fixtures (or the folder of the "jmh.fixtures" system property).
+ * The same seed gives the same files, so that runs of the benchmarks compare.
+ *
+ * @author LEVALLOIS
+ */
+public class Fixtures {
+
+    private static final long SEED = 20231101L;
+    private static final String[] SENTIMENTS = {"positive", "negative", "neutral"};
+    private static final String[] WORDS = {"the", "service", "was", "really", "great", "not", "bad", "awful", "today", "love", "this", "new", "phone", "never", "again", "#happy", "@support", "http://t.co/x1"};
+
+    public static Path folder() throws IOException {
+        Path folder = Path.of(System.getProperty("jmh.fixtures", "target/jmh-fixtures"));
+        Files.createDirectories(folder);
+        return folder;
+    }
+
+    /**
+     * A sheet like the results of umigon: a header, then one row per text
+     * with its id, the text, the sentiment, a decimal score and an int count.
+     */
+    public static synchronized Path excelFile(int rows) throws IOException {
+        Path file = folder().resolve("results-" + rows + ".xlsx");
+        if (Files.exists(file)) {
+            return file;
+        }
+        Random random = new Random(SEED);
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        SXSSFWorkbook workbook = new SXSSFWorkbook(1000);
+        try (OutputStream out = Files.newOutputStream(temporary)) {
+            Sheet sheet = workbook.createSheet("results");
+            Row header = sheet.createRow(0);
+            header.createCell(0).setCellValue("id");
+            header.createCell(1).setCellValue("text");
+            header.createCell(2).setCellValue("sentiment");
+            header.createCell(3).setCellValue("score");
+            header.createCell(4).setCellValue("count");
+            // the header counts as one of the rows
+            for (int r = 1; r < rows; r++) {
+                Row row = sheet.createRow(r);
+                row.createCell(0).setCellValue(r);
+                row.createCell(1).setCellValue(sentence(random));
+                row.createCell(2).setCellValue(SENTIMENTS[random.nextInt(SENTIMENTS.length)]);
+                row.createCell(3).setCellValue(Math.round(random.nextDouble() * 1000) / 1000d);
+                row.createCell(4).setCellValue(random.nextInt(100));
+            }
+            workbook.write(out);
+        } finally {
+            workbook.dispose();
+            workbook.close();
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+        return file;
+    }
+
+    /**
+     * An undirected network like the ones of cowo: labelled nodes with a
+     * count attribute, about three weighted edges per node.
+     */
+    public static synchronized Path gexfFile(int nodes) throws IOException {
+        Path file = folder().resolve("network-" + nodes + ".gexf");
+        if (Files.exists(file)) {
+            return file;
+        }
+        Random random = new Random(SEED);
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            writer.write("<gexf xmlns=\"http://gexf.net/1.3\" version=\"1.3\">\n");
+            writer.write("<graph mode=\"static\" defaultedgetype=\"undirected\">\n");
+            writer.write("<attributes class=\"node\"><attribute id=\"0\" title=\"count\" type=\"integer\"/></attributes>\n");
+            writer.write("<nodes>\n");
+            for (int n = 0; n < nodes; n++) {
+                writer.write("<node id=\"" + n + "\" label=\"term" + n + "\"><attvalues><attvalue for=\"0\" value=\"" + (1 + random.nextInt(50)) + "\"/></attvalues></node>\n");
+            }
+            writer.write("</nodes>\n<edges>\n");
+            int edges = nodes < 2 ? 0 : nodes * 3;
+            for (int e = 0; e < edges; e++) {
+                int source = e % nodes;
+                int target = (source + 1 + random.nextInt(nodes - 1)) % nodes;
+                writer.write("<edge id=\"" + e + "\" source=\"" + source + "\" target=\"" + target + "\" weight=\"" + (1 + random.nextInt(10)) + "\"/>\n");
+            }
+            writer.write("</edges>\n</graph>\n</gexf>\n");
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+        return file;
+    }
+
+    private static String sentence(Random random) {
+        StringBuilder sb = new StringBuilder();
+        int words = 5 + random.nextInt(20);
+        for (int w = 0; w < words; w++) {
+            if (w > 0) {
+                sb.append(' ');
+            }
+            sb.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return sb.toString();
+    }
+
+}
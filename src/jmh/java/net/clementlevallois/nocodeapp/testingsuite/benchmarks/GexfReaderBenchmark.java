@@ -0,0 +1,57 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import net.clementlevallois.nocodeapp.testingsuite.utils.GexfReader;
+import net.clementlevallois.nocodeapp.testingsuite.utils.GexfVerification;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The verification of a network, which always reads the whole file.
+ *
+ * @author LEVALLOIS
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class GexfReaderBenchmark {
+
+    @Param({"2", "16000", "1000000"})
+    public int nodes;
+
+    private Path gexfFile;
+    private GexfVerification verification;
+
+    @Setup
+    public void setUp() throws IOException {
+        gexfFile = Fixtures.gexfFile(nodes);
+        verification = new GexfVerification()
+                .expectNodeCount(nodes, nodes)
+                .expectNode("term0")
+                .expectEdge("term0", "term1", null)
+                .expectAttribute(GexfVerification.NODE, "count");
+    }
+
+    @Benchmark
+    public GexfVerification.Result verify() throws IOException {
+        return GexfReader.verify(gexfFile, verification);
+    }
+
+}
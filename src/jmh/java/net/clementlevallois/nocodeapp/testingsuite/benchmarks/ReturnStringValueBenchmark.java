@@ -0,0 +1,88 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import net.clementlevallois.nocodeapp.testingsuite.utils.ExcelReader;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The conversion of a cell to text, called on every cell read, over cells
+ * already in memory so that only the conversion is measured.
+ *
+ * @author LEVALLOIS
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReturnStringValueBenchmark {
+
+    private static final int CELLS = 1024;
+
+    @Param({"int", "decimal", "string"})
+    public String cellType;
+
+    private XSSFWorkbook workbook;
+    private List<Cell> cells;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        workbook = new XSSFWorkbook();
+        Sheet sheet = workbook.createSheet();
+        cells = new ArrayList();
+        for (int i = 0; i < CELLS; i++) {
+            Row row = sheet.createRow(i);
+            Cell cell = row.createCell(0);
+            switch (cellType) {
+                case "int" ->
+                    cell.setCellValue(random.nextInt(100_000));
+                case "decimal" ->
+                    cell.setCellValue(random.nextDouble() * 1000);
+                default ->
+                    cell.setCellValue("value " + random.nextInt(100_000));
+            }
+            cells.add(cell);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        workbook.close();
+    }
+
+    /**
+     * One operation converts all the cells: divide by 1024 for a cell.
+     */
+    @Benchmark
+    public void returnStringValue(Blackhole blackhole) {
+        for (int i = 0; i < CELLS; i++) {
+            blackhole.consume(ExcelReader.returnStringValue(cells.get(i)));
+        }
+    }
+
+}
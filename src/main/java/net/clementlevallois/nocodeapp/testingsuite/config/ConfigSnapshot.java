@@ -0,0 +1,135 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.config;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.Supplier;
+import net.clementlevallois.nocodeapp.testingsuite.functions.Scenario;
+
+/**
+ * The settings and the scenarios of the suite as they were read at one
+ * time. A snapshot never changes: a new one replaces it when the files
+ * change.
+ *
+ * @author LEVALLOIS
+ */
+public final class ConfigSnapshot {
+
+    private final long version;
+    private final Instant loadedAt;
+    private final Properties settings;
+    private final List<String> functions;
+    private final Map<String, Scenario> scenarios;
+    // function -> why its scenario could not be read
+    private final Map<String, String> scenarioErrors;
+    private final List<String> problems;
+
+    ConfigSnapshot(long version, Instant loadedAt, Properties settings, List<String> functions, Map<String, Scenario> scenarios, Map<String, String> scenarioErrors, List<String> problems) {
+        this.version = version;
+        this.loadedAt = loadedAt;
+        this.settings = new Properties();
+        this.settings.putAll(settings);
+        this.functions = List.copyOf(functions);
+        this.scenarios = Map.copyOf(scenarios);
+        this.scenarioErrors = Map.copyOf(scenarioErrors);
+        this.problems = List.copyOf(problems);
+    }
+
+    /**
+     * Counts the snapshots since the start, from 1.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public Instant getLoadedAt() {
+        return loadedAt;
+    }
+
+    public String getProperty(String key) {
+        return settings.getProperty(key);
+    }
+
+    /**
+     * The typed getters below read a setting trimmed, and give the default
+     * when it is missing or blank. A value that does not parse throws, as a
+     * typo in the settings should not go unnoticed.
+     */
+    public String stringOr(String key, String defaultValue) {
+        String value = settings.getProperty(key);
+        return (value == null || value.isBlank()) ? defaultValue : value.trim();
+    }
+
+    public int intOr(String key, int defaultValue) {
+        String value = stringOr(key, null);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    public long longOr(String key, long defaultValue) {
+        String value = stringOr(key, null);
+        return value == null ? defaultValue : Long.parseLong(value);
+    }
+
+    public double doubleOr(String key, double defaultValue) {
+        String value = stringOr(key, null);
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+
+    public boolean booleanOr(String key, boolean defaultValue) {
+        String value = stringOr(key, null);
+        return value == null ? defaultValue : Boolean.parseBoolean(value);
+    }
+
+    /**
+     * @param defaultPath only called when the setting is missing, as it is
+     * often made from other settings
+     */
+    public Path pathOr(String key, Supplier<Path> defaultPath) {
+        String value = stringOr(key, null);
+        return value == null ? defaultPath.get() : Path.of(value);
+    }
+
+    /**
+     * @return a copy of the settings, which the caller can change
+     */
+    public Properties getProperties() {
+        Properties copy = new Properties();
+        copy.putAll(settings);
+        return copy;
+    }
+
+    /**
+     * The functions to test, in the order of the "functions" setting.
+     */
+    public List<String> functions() {
+        return functions;
+    }
+
+    /**
+     * @throws IOException when the scenario of the function is missing or
+     * could not be read
+     */
+    public Scenario scenario(String function) throws IOException {
+        Scenario scenario = scenarios.get(function);
+        if (scenario != null) {
+            return scenario;
+        }
+        String error = scenarioErrors.get(function);
+        throw new IOException(error != null ? error : "no scenario loaded for " + function);
+    }
+
+    /**
+     * What could not be read: scenarios, descriptors of test files. The rest
+     * of the snapshot is usable.
+     */
+    public List<String> getProblems() {
+        return problems;
+    }
+
+}
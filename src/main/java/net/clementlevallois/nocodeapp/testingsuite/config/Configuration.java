@@ -0,0 +1,363 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.config;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import net.clementlevallois.nocodeapp.testingsuite.functions.Scenario;
+
+/**
+ * Holds the current {@link ConfigSnapshot}. The settings come from
+ * /private/read.txt on the classpath, overridden by the file given with
+ * -Dtestingsuite.config=..., and the scenarios from the resources, each
+ * file overridden by the same file in the "scenarios-folder" when there is
+ * one. Both are read once; once watching, a change to the external files
+ * reads them again and swaps the new snapshot in whole. A run takes what it
+ * needs from the snapshot current when it starts.
+ *
+ * @author LEVALLOIS
+ */
+public class Configuration {
+
+    public static final String EXTERNAL_CONFIG_PROPERTY = "testingsuite.config";
+    private static final String PACKAGED_CONFIG = "/private/read.txt";
+    private static final String DEFAULT_FUNCTIONS = "umigon,topics";
+    // editors write a file in several steps: the reload waits for them to be done
+    private static final Duration QUIET_PERIOD = Duration.ofMillis(500);
+    // the settings read as numbers while monitoring, checked when the files are read
+    private static final Set<String> INTEGER_SETTINGS = Set.of("alert-queue-size", "metrics-history-runs", "circuit-failure-threshold", "circuit-max-skip-runs",
+            "driver-pool-size", "driver-max-runs", "driver-max-heap-mb", "status-port", "replay-runs", "replay-port", "worker-port", "worker-run-timeout-seconds",
+            "run-interval-minutes", "http-run-interval-minutes");
+    private static final Set<String> LONG_SETTINGS = Set.of("alert-batch-seconds", "alert-dedup-minutes", "step-budget");
+    private static final Set<String> DOUBLE_SETTINGS = Set.of("regression-z-threshold", "regression-ratio-threshold", "schedule-jitter-percent");
+    // settings that can be suffixed, as in "step-budget.upload" or "run-interval-minutes.umigon"
+    private static final Set<String> SUFFIXED_SETTINGS = Set.of("step-budget", "run-interval-minutes", "http-run-interval-minutes");
+
+    private static final List<Consumer<ConfigSnapshot>> listeners = new CopyOnWriteArrayList();
+    private static volatile ConfigSnapshot current;
+    private static long lastVersion;
+    private static WatchService watchService;
+
+    public static ConfigSnapshot current() {
+        ConfigSnapshot snapshot = current;
+        if (snapshot == null) {
+            synchronized (Configuration.class) {
+                if (current == null) {
+                    current = read(++lastVersion);
+                    for (String problem : current.getProblems()) {
+                        Logger.getLogger(Configuration.class.getName()).log(Level.SEVERE, problem);
+                    }
+                }
+                snapshot = current;
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Called on the thread of the watcher after each new snapshot.
+     */
+    public static void addListener(Consumer<ConfigSnapshot> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Reads the files again. A snapshot with problems the current one has
+     * not, such as an external config file it could not read, is rejected:
+     * the suite keeps running on the current one until the files are fixed.
+     *
+     * @return the new snapshot, or null when it was rejected
+     */
+    public static ConfigSnapshot reload() {
+        ConfigSnapshot previous = current();
+        ConfigSnapshot next;
+        synchronized (Configuration.class) {
+            next = read(lastVersion + 1);
+            List<String> newProblems = new ArrayList(next.getProblems());
+            newProblems.removeAll(previous.getProblems());
+            if (!newProblems.isEmpty()) {
+                Logger.getLogger(Configuration.class.getName()).log(Level.SEVERE, "configuration not reloaded, still on version {0}: {1}", new Object[]{previous.getVersion(), String.join("; ", newProblems)});
+                return null;
+            }
+            lastVersion = next.getVersion();
+            current = next;
+        }
+        for (Consumer<ConfigSnapshot> listener : listeners) {
+            try {
+                listener.accept(next);
+            } catch (RuntimeException ex) {
+                Logger.getLogger(Configuration.class.getName()).log(Level.SEVERE, "error applying the configuration", ex);
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Watches the external config file and the scenarios folder from a
+     * thread of its own, reloading when they change. Does nothing when there
+     * is neither.
+     */
+    public static synchronized void startWatching() throws IOException {
+        if (watchService != null) {
+            return;
+        }
+        watchService = FileSystems.getDefault().newWatchService();
+        Map<WatchKey, Path> watchedFolders = new HashMap();
+        if (!register(watchedFolders, current())) {
+            watchService.close();
+            watchService = null;
+            return;
+        }
+        Thread watcher = new Thread(() -> watch(watchedFolders), "config-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    public static synchronized void stopWatching() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException ex) {
+                Logger.getLogger(Configuration.class.getName()).log(Level.WARNING, "could not stop watching the configuration", ex);
+            }
+            watchService = null;
+        }
+    }
+
+    private static void watch(Map<WatchKey, Path> watchedFolders) {
+        WatchService service = watchService;
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                boolean changed = isRelevant(key, watchedFolders);
+                // one save can touch a file several times: the reload waits for the last one
+                while ((key = service.poll(QUIET_PERIOD.toMillis(), TimeUnit.MILLISECONDS)) != null) {
+                    changed |= isRelevant(key, watchedFolders);
+                }
+                if (changed) {
+                    ConfigSnapshot snapshot = reload();
+                    if (snapshot != null) {
+                        System.out.println("configuration reloaded, version " + snapshot.getVersion());
+                        // a new scenarios folder, or a new function in it
+                        register(watchedFolders, snapshot);
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ex) {
+            // stopped
+        } catch (IOException ex) {
+            Logger.getLogger(Configuration.class.getName()).log(Level.SEVERE, "stopped watching the configuration", ex);
+        }
+    }
+
+    private static boolean isRelevant(WatchKey key, Map<WatchKey, Path> watchedFolders) {
+        Path folder = watchedFolders.get(key);
+        boolean relevant = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                relevant = true;
+            } else if (folder != null) {
+                Path changed = folder.resolve((Path) event.context());
+                relevant |= changed.equals(externalConfigFile()) || isUnderScenariosFolder(changed);
+            }
+        }
+        key.reset();
+        return relevant;
+    }
+
+    /**
+     * @return false when there is nothing to watch
+     */
+    private static boolean register(Map<WatchKey, Path> watchedFolders, ConfigSnapshot snapshot) throws IOException {
+        Set<Path> folders = new HashSet();
+        Path externalConfig = externalConfigFile();
+        if (externalConfig != null && externalConfig.getParent() != null) {
+            folders.add(externalConfig.getParent());
+        }
+        Path scenariosFolder = scenariosFolder(snapshot.getProperties());
+        if (scenariosFolder != null && Files.isDirectory(scenariosFolder)) {
+            folders.add(scenariosFolder);
+            try (Stream<Path> functionFolders = Files.list(scenariosFolder)) {
+                functionFolders.filter(Files::isDirectory).forEach(folders::add);
+            }
+        }
+        for (Path folder : folders) {
+            if (!watchedFolders.containsValue(folder)) {
+                WatchKey key = folder.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                watchedFolders.put(key, folder);
+            }
+        }
+        return !watchedFolders.isEmpty();
+    }
+
+    private static boolean isUnderScenariosFolder(Path path) {
+        Path scenariosFolder = scenariosFolder(current().getProperties());
+        return scenariosFolder != null && path.startsWith(scenariosFolder);
+    }
+
+    private static Path externalConfigFile() {
+        String externalConfig = System.getProperty(EXTERNAL_CONFIG_PROPERTY);
+        if (externalConfig == null || externalConfig.isBlank()) {
+            return null;
+        }
+        return Path.of(externalConfig.trim()).toAbsolutePath();
+    }
+
+    private static Path scenariosFolder(Properties settings) {
+        String scenariosFolder = settings.getProperty("scenarios-folder");
+        if (scenariosFolder == null || scenariosFolder.isBlank()) {
+            return null;
+        }
+        return Path.of(scenariosFolder.trim()).toAbsolutePath();
+    }
+
+    private static ConfigSnapshot read(long version) {
+        Properties settings = new Properties();
+        List<String> problems = new ArrayList();
+        try (InputStream inputStream = Configuration.class.getResourceAsStream(PACKAGED_CONFIG)) {
+            if (inputStream == null) {
+                throw new IOException("Resource not found: " + PACKAGED_CONFIG);
+            }
+            settings.load(inputStream);
+        } catch (IOException e) {
+            Logger.getLogger(Configuration.class.getName()).log(Level.SEVERE, "could not read the packaged configuration", e);
+        }
+        // a file outside the jar overrides the packaged properties
+        Path externalConfig = externalConfigFile();
+        if (externalConfig != null) {
+            try (InputStream inputStream = Files.newInputStream(externalConfig)) {
+                settings.load(inputStream);
+            } catch (IOException | IllegalArgumentException e) {
+                // the packaged settings alone at startup, the previous snapshot on a reload
+                problems.add("could not read the configuration file " + externalConfig + ": " + e.getMessage());
+            }
+        }
+
+        problems.addAll(checkNumbers(settings));
+
+        List<String> functions = new ArrayList();
+        for (String function : settings.getProperty("functions", DEFAULT_FUNCTIONS).split(",")) {
+            if (!function.isBlank()) {
+                functions.add(function.trim());
+            }
+        }
+        Path scenariosFolder = scenariosFolder(settings);
+        Map<String, Scenario> scenarios = new HashMap();
+        Map<String, String> scenarioErrors = new HashMap();
+        for (String function : functions) {
+            try {
+                Properties descriptor = readDescriptor(scenariosFolder, function, Scenario.DESCRIPTOR_FILE_NAME);
+                if (descriptor == null) {
+                    throw new IOException("Scenario descriptor not found: /" + function + "/" + Scenario.DESCRIPTOR_FILE_NAME);
+                }
+                Map<String, Properties> testFileDescriptors = new LinkedHashMap();
+                for (String testFile : Scenario.testFilesOf(descriptor)) {
+                    Properties testFileDescriptor = readDescriptor(scenariosFolder, function, testFile);
+                    if (testFileDescriptor == null) {
+                        // only this test file fails, when it runs
+                        problems.add("Test file descriptor not found: /" + function + "/" + testFile);
+                    } else {
+                        testFileDescriptors.put(testFile, testFileDescriptor);
+                    }
+                }
+                scenarios.put(function, Scenario.fromDescriptor(function, descriptor, testFileDescriptors));
+            } catch (IOException | IllegalArgumentException ex) {
+                String error = "could not load the scenario of " + function + ": " + ex.getMessage();
+                scenarioErrors.put(function, error);
+                problems.add(error);
+            }
+        }
+        return new ConfigSnapshot(version, Instant.now(), settings, functions, scenarios, scenarioErrors, problems);
+    }
+
+    /**
+     * A number with a typo would fail every run that reads it: it is a
+     * problem of the snapshot, so that a reload keeps the previous one.
+     */
+    static List<String> checkNumbers(Properties settings) {
+        List<String> problems = new ArrayList();
+        for (String key : settings.stringPropertyNames()) {
+            String value = settings.getProperty(key).trim();
+            int dot = key.indexOf('.');
+            String setting = dot > 0 && SUFFIXED_SETTINGS.contains(key.substring(0, dot)) ? key.substring(0, dot) : key;
+            if (value.isEmpty()) {
+                continue;
+            }
+            try {
+                if (INTEGER_SETTINGS.contains(setting)) {
+                    Integer.parseInt(value);
+                } else if (LONG_SETTINGS.contains(setting)) {
+                    Long.parseLong(value);
+                } else if (DOUBLE_SETTINGS.contains(setting)) {
+                    Double.parseDouble(value);
+                }
+            } catch (NumberFormatException ex) {
+                problems.add("the setting " + key + " is not a number: " + value);
+            }
+        }
+        return problems;
+    }
+
+    /**
+     * Reads a descriptor of the function as the current snapshot would: from
+     * its scenarios folder, else from the resources.
+     *
+     * @return null when there is none
+     */
+    public static Properties readDescriptor(String function, String fileName) throws IOException {
+        return readDescriptor(scenariosFolder(current().getProperties()), function, fileName);
+    }
+
+    /**
+     * @return the file of the function in the scenarios folder, else in the
+     * resources, null when there is none
+     */
+    private static Properties readDescriptor(Path scenariosFolder, String function, String fileName) throws IOException {
+        Properties descriptor = new Properties();
+        if (scenariosFolder != null) {
+            Path file = scenariosFolder.resolve(function).resolve(fileName);
+            if (Files.isRegularFile(file)) {
+                try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                    descriptor.load(reader);
+                }
+                return descriptor;
+            }
+        }
+        try (InputStream inputStream = Configuration.class.getResourceAsStream("/" + function + "/" + fileName)) {
+            if (inputStream == null) {
+                return null;
+            }
+            descriptor.load(new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8)));
+        }
+        return descriptor;
+    }
+
+}
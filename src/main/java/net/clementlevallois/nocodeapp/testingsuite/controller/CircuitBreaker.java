@@ -0,0 +1,114 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.controller;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tests less often the functions that keep failing: after a number of failed
+ * runs in a row, the circuit of a function opens and its tests skip runs,
+ * twice as many after each failed probe, up to a maximum. The first passing
+ * probe closes the circuit. Counted in runs, so that it works the same for
+ * the hourly browser runs and the frequent http runs.
+ *
+ * @author LEVALLOIS
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /**
+     * What a run changed to the circuit of a function, worth an alert.
+     */
+    public enum Transition {
+        NONE, OPENED, STILL_OPEN, CLOSED
+    }
+
+    private static class Circuit {
+
+        State state = State.CLOSED;
+        int consecutiveFailures;
+        int runsToSkip;
+        int skippedRuns;
+        int failedProbes;
+    }
+
+    private final int failureThreshold;
+    private final int maxRunsToSkip;
+    private final Map<String, Circuit> circuits = new ConcurrentHashMap();
+
+    public CircuitBreaker(int failureThreshold, int maxRunsToSkip) {
+        this.failureThreshold = failureThreshold;
+        this.maxRunsToSkip = maxRunsToSkip;
+    }
+
+    /**
+     * Called once per run and function, before testing it.
+     *
+     * @return false when the function must skip this run
+     */
+    public synchronized boolean allowRun(String function) {
+        Circuit circuit = circuits.computeIfAbsent(function, f -> new Circuit());
+        if (circuit.state != State.OPEN) {
+            return true;
+        }
+        if (circuit.skippedRuns < circuit.runsToSkip) {
+            circuit.skippedRuns++;
+            return false;
+        }
+        circuit.state = State.HALF_OPEN;
+        return true;
+    }
+
+    /**
+     * @param passed true when every test file of the function passed in
+     * this run
+     */
+    public synchronized Transition recordRun(String function, boolean passed) {
+        Circuit circuit = circuits.computeIfAbsent(function, f -> new Circuit());
+        if (passed) {
+            boolean wasOpen = circuit.state != State.CLOSED;
+            circuit.state = State.CLOSED;
+            circuit.consecutiveFailures = 0;
+            circuit.failedProbes = 0;
+            return wasOpen ? Transition.CLOSED : Transition.NONE;
+        }
+        circuit.consecutiveFailures++;
+        if (circuit.state == State.HALF_OPEN) {
+            circuit.failedProbes++;
+            open(circuit);
+            return Transition.STILL_OPEN;
+        }
+        if (circuit.state == State.CLOSED && circuit.consecutiveFailures >= failureThreshold) {
+            open(circuit);
+            return Transition.OPENED;
+        }
+        return Transition.NONE;
+    }
+
+    private void open(Circuit circuit) {
+        circuit.state = State.OPEN;
+        circuit.skippedRuns = 0;
+        circuit.runsToSkip = Math.min(maxRunsToSkip, 1 << Math.min(circuit.failedProbes, 30));
+    }
+
+    public synchronized State getState(String function) {
+        Circuit circuit = circuits.get(function);
+        return circuit == null ? State.CLOSED : circuit.state;
+    }
+
+    public synchronized int getRunsToSkip(String function) {
+        Circuit circuit = circuits.get(function);
+        return circuit == null ? 0 : circuit.runsToSkip;
+    }
+
+    public synchronized int getConsecutiveFailures(String function) {
+        Circuit circuit = circuits.get(function);
+        return circuit == null ? 0 : circuit.consecutiveFailures;
+    }
+
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.controller;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import net.clementlevallois.nocodeapp.testingsuite.history.RunHistory;
+import net.clementlevallois.nocodeapp.testingsuite.metrics.StepMetrics;
+
+/**
+ * The "history &lt;function&gt; [days]" arguments of the main class: prints
+ * the p50, p95 and p99 of each step of a function over the last days, per
+ * mode, and its failures.
+ *
+ * @author LEVALLOIS
+ */
+class HistoryCommand {
+
+    static final int DEFAULT_HISTORY_DAYS = 7;
+
+    static void run(String function, int days) {
+        Instant to = Instant.now();
+        Instant from = to.minus(Duration.ofDays(days));
+        try (RunHistory history = new RunHistory(TestingSuite.historyFolder())) {
+            long queryStart = System.nanoTime();
+            // the steps and modes of the function, in the order of the entries
+            Map<String, List<String>> stepsByMode = new LinkedHashMap();
+            for (RunHistory.Entry entry : history.query(from, to, function, null, null, null)) {
+                List<String> steps = stepsByMode.computeIfAbsent(entry.mode(), k -> new ArrayList());
+                if (!steps.contains(entry.step())) {
+                    steps.add(entry.step());
+                }
+            }
+            System.out.println(function + ", last " + days + " days:");
+            for (Map.Entry<String, List<String>> mode : stepsByMode.entrySet()) {
+                for (String step : mode.getValue()) {
+                    long[] durations = history.durationsMicros(from, to, function, step, mode.getKey());
+                    if (durations.length == 0) {
+                        continue;
+                    }
+                    System.out.println(String.format(Locale.ROOT, "  %-8s %-16s %7d passed  p50 %8.0f ms  p95 %8.0f ms  p99 %8.0f ms",
+                            mode.getKey(), step, durations.length, StepMetrics.toMillis(durations[(int) Math.ceil(0.5 * durations.length) - 1]),
+                            StepMetrics.toMillis(durations[(int) Math.ceil(0.95 * durations.length) - 1]), StepMetrics.toMillis(durations[(int) Math.ceil(0.99 * durations.length) - 1])));
+                }
+            }
+            List<RunHistory.Entry> failures = history.failures(from, to, function, null);
+            System.out.println(failures.size() + " failures:");
+            for (RunHistory.Entry failure : failures) {
+                System.out.println("  " + failure.time() + " " + failure.testFile() + " (" + failure.mode() + "): " + failure.status().name().toLowerCase()
+                        + (failure.message() == null ? "" : ", " + failure.message()));
+            }
+            System.out.println("queried in " + (System.nanoTime() - queryStart) / 1_000_000 + " ms");
+        } catch (IOException ex) {
+            Logger.getLogger(HistoryCommand.class.getName()).log(Level.SEVERE, "could not read the run history", ex);
+        }
+    }
+
+}
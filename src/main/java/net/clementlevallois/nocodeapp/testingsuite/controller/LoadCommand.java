@@ -0,0 +1,100 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.controller;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import net.clementlevallois.nocodeapp.testingsuite.distributed.Coordinator;
+import net.clementlevallois.nocodeapp.testingsuite.drivers.WebDriverPool;
+import net.clementlevallois.nocodeapp.testingsuite.functions.TestInterface;
+import net.clementlevallois.nocodeapp.testingsuite.load.LoadProfile;
+import net.clementlevallois.nocodeapp.testingsuite.load.LoadStageReport;
+import net.clementlevallois.nocodeapp.testingsuite.load.LoadTest;
+import net.clementlevallois.nocodeapp.testingsuite.metrics.StepMetrics;
+import net.clementlevallois.nocodeapp.testingsuite.replay.ReplayServer;
+import net.clementlevallois.nocodeapp.testingsuite.sessions.BrowserSession;
+import net.clementlevallois.nocodeapp.testingsuite.sessions.HttpSession;
+import net.clementlevallois.nocodeapp.testingsuite.utils.AlertDispatcher;
+import net.clementlevallois.nocodeapp.testingsuite.utils.SlackAPI;
+
+/**
+ * The "load" argument of the main class: puts the app under the load
+ * described by the "load-..." properties, prints the report of each stage and
+ * saves them in the "load" subfolder of the metrics folder. Failures are
+ * printed, never sent to Slack.
+ *
+ * @author LEVALLOIS
+ */
+class LoadCommand {
+
+    static void run() {
+        LoadProfile profile = LoadProfile.fromProperties(TestingSuite.loadProperties());
+        ReplayServer replayServer = null;
+        if (TestingSuite.settings().booleanOr("load-replay", false)) {
+            if (!profile.getMode().equals(HttpSession.MODE)) {
+                System.out.println("the replay server only answers the http mode, not the pages and scripts a browser loads");
+                return;
+            }
+            replayServer = ReplayCommand.startReplayServer();
+            if (replayServer == null) {
+                return;
+            }
+        }
+        StepMetrics loadStepMetrics = new StepMetrics(profile.getUsersPerStage().size(), true);
+        AlertDispatcher silentAlertDispatcher = TestingSuite.newAlertDispatcher(new SlackAPI(false));
+        List<TestInterface> tests = new ArrayList(TestingSuite.scenarioTests(silentAlertDispatcher, loadStepMetrics));
+
+        WebDriverPool loadDriverPool = null;
+        Coordinator loadCoordinator = null;
+        LoadTest.JourneyRunner journeyRunner;
+        List<URI> workers = TestingSuite.workers();
+        if (!workers.isEmpty() && replayServer == null) {
+            // the virtual users of a stage share the slots of all the workers
+            Coordinator coordinator = new Coordinator(workers, Duration.ofSeconds(TestingSuite.workerRunTimeoutSeconds()), TestingSuite.workerToken());
+            loadCoordinator = coordinator;
+            journeyRunner = (test, testFile) -> coordinator.run(test.getName(), testFile, profile.getMode(), loadStepMetrics).passed();
+        } else if (profile.getMode().equals(BrowserSession.MODE)) {
+            try {
+                // one browser per virtual user of the largest stage, so that users never wait for a browser
+                loadDriverPool = new WebDriverPool(profile.getMaxUsers(), TestingSuite.downloadFolder().resolve("load"), true, true, TestingSuite.DEFAULT_DRIVER_MAX_RUNS, TestingSuite.DEFAULT_DRIVER_MAX_HEAP_MB);
+            } catch (IOException ex) {
+                Logger.getLogger(LoadCommand.class.getName()).log(Level.SEVERE, "could not create the download folders of the driver pool", ex);
+                return;
+            }
+            WebDriverPool pool = loadDriverPool;
+            journeyRunner = (test, testFile) -> TestConductor.conductTestOnPooledDriver(test, testFile, pool, loadStepMetrics).passed();
+        } else {
+            journeyRunner = (test, testFile) -> TestConductor.conductTestOverHttp(test, testFile, loadStepMetrics).passed();
+        }
+
+        try {
+            String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+            List<LoadStageReport> reports = new LoadTest(profile, tests, loadStepMetrics, journeyRunner).run();
+            LoadTest.export(reports, profile.getMode(), TestingSuite.metricsFolder().resolve("load").resolve("load-report-" + timestamp + ".json"));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (IOException ex) {
+            Logger.getLogger(LoadCommand.class.getName()).log(Level.SEVERE, "could not save the report of the load test", ex);
+        } finally {
+            if (loadDriverPool != null) {
+                loadDriverPool.shutdown();
+            }
+            if (loadCoordinator != null) {
+                loadCoordinator.shutdown();
+            }
+            if (replayServer != null) {
+                ReplayCommand.stopReplayServer(replayServer);
+            }
+            silentAlertDispatcher.close();
+        }
+    }
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.controller;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import net.clementlevallois.nocodeapp.testingsuite.functions.ScenarioTest;
+import net.clementlevallois.nocodeapp.testingsuite.functions.TestResult;
+import net.clementlevallois.nocodeapp.testingsuite.metrics.StepMetrics;
+import net.clementlevallois.nocodeapp.testingsuite.replay.Recording;
+import net.clementlevallois.nocodeapp.testingsuite.replay.TrafficRecorder;
+import net.clementlevallois.nocodeapp.testingsuite.utils.AlertDispatcher;
+import net.clementlevallois.nocodeapp.testingsuite.utils.SlackAPI;
+
+/**
+ * The "record" argument of the main class: runs every test file once over
+ * http against the app, recording the exchanges in the recordings folder, one
+ * subfolder per function and test file. The recording of a test file that
+ * fails is not kept.
+ *
+ * @author LEVALLOIS
+ */
+class RecordCommand {
+
+    static void run() {
+        AlertDispatcher silentAlertDispatcher = TestingSuite.newAlertDispatcher(new SlackAPI(false));
+        StepMetrics recordStepMetrics = new StepMetrics(1, true);
+        try {
+            for (ScenarioTest test : TestingSuite.scenarioTests(silentAlertDispatcher, recordStepMetrics)) {
+                String function = test.getName();
+                for (String testFile : test.getTestFiles()) {
+                    TrafficRecorder trafficRecorder = new TrafficRecorder(TestingSuite.domain());
+                    TestResult result = TestConductor.conductTestOverHttp(test, testFile, recordStepMetrics, trafficRecorder);
+                    System.out.println(result.describe());
+                    if (!result.passed()) {
+                        System.out.println(function + " " + testFile + ": not recorded, the run did not pass");
+                        continue;
+                    }
+                    Path folder = TestingSuite.recordingsFolder().resolve(function).resolve(testFile);
+                    Recording recording = trafficRecorder.toRecording();
+                    recording.save(folder);
+                    System.out.println(function + " " + testFile + ": " + recording.getExchanges().size() + " exchanges recorded in " + folder);
+                }
+            }
+        } catch (IOException ex) {
+            Logger.getLogger(RecordCommand.class.getName()).log(Level.SEVERE, "could not save a recording", ex);
+        } finally {
+            silentAlertDispatcher.close();
+        }
+    }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.controller;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import net.clementlevallois.nocodeapp.testingsuite.functions.ScenarioTest;
+import net.clementlevallois.nocodeapp.testingsuite.functions.TestResult;
+import net.clementlevallois.nocodeapp.testingsuite.metrics.LatencySummary;
+import net.clementlevallois.nocodeapp.testingsuite.metrics.StepKey;
+import net.clementlevallois.nocodeapp.testingsuite.metrics.StepMetrics;
+import net.clementlevallois.nocodeapp.testingsuite.replay.Recording;
+import net.clementlevallois.nocodeapp.testingsuite.replay.ReplayServer;
+import net.clementlevallois.nocodeapp.testingsuite.utils.AlertDispatcher;
+import net.clementlevallois.nocodeapp.testingsuite.utils.SlackAPI;
+
+/**
+ * The "replay" argument of the main class: runs every test file over http
+ * against the replay server, "replay-runs" times, and prints the durations of
+ * the steps. With the network and the app out of the way, they are the time
+ * the suite itself takes.
+ *
+ * @author LEVALLOIS
+ */
+class ReplayCommand {
+
+    static void run() {
+        ReplayServer replayServer = startReplayServer();
+        if (replayServer == null) {
+            return;
+        }
+        AlertDispatcher silentAlertDispatcher = TestingSuite.newAlertDispatcher(new SlackAPI(false));
+        StepMetrics replayStepMetrics = new StepMetrics(1, true);
+        try {
+            List<ScenarioTest> tests = TestingSuite.scenarioTests(silentAlertDispatcher, replayStepMetrics);
+            int runs = TestingSuite.replayRuns();
+            int passed = 0;
+            int total = 0;
+            Instant start = Instant.now();
+            for (int run = 0; run < runs; run++) {
+                for (ScenarioTest test : tests) {
+                    for (String testFile : test.getTestFiles()) {
+                        TestResult result = TestConductor.conductTestOverHttp(test, testFile, replayStepMetrics);
+                        total++;
+                        if (result.passed()) {
+                            passed++;
+                        } else {
+                            System.out.println(result.describe());
+                        }
+                    }
+                }
+            }
+            Duration elapsed = Duration.between(start, Instant.now());
+            System.out.println(passed + " of " + total + " replayed journeys passed in " + elapsed.toMillis() + " ms, "
+                    + replayServer.getServed() + " requests answered, " + replayServer.getMissed() + " not recorded");
+            for (Map.Entry<StepKey, LatencySummary> entry : replayStepMetrics.cumulativeSummaries().entrySet()) {
+                StepKey key = entry.getKey();
+                LatencySummary summary = entry.getValue();
+                System.out.println(String.format(Locale.ROOT, "  %-30s %-16s %6d  p50 %8.1f ms  p95 %8.1f ms  max %8.1f ms",
+                        key.function() + "/" + key.testFile(), key.step(), summary.count(),
+                        StepMetrics.toMillis(summary.p50Micros()), StepMetrics.toMillis(summary.p95Micros()), StepMetrics.toMillis(summary.maxMicros())));
+            }
+        } finally {
+            replayServer.close();
+            TestingSuite.setDomainOverride(null);
+            silentAlertDispatcher.close();
+        }
+    }
+
+    /**
+     * Starts a replay server with the recordings and makes it the domain of
+     * the scenarios loaded from now on.
+     *
+     * @return null when there is nothing to replay
+     */
+    static ReplayServer startReplayServer() {
+        try {
+            List<Recording> recordings = Recording.loadAll(TestingSuite.recordingsFolder());
+            if (recordings.isEmpty()) {
+                System.out.println("no recording in " + TestingSuite.recordingsFolder() + ": run the main class with the argument record first");
+                return null;
+            }
+            ReplayServer replayServer = new ReplayServer(recordings, TestingSuite.replayPort()).start();
+            // the recorded paths start after the origin: the path of the domain, if any, is in them
+            TestingSuite.setDomainOverride(replayServer.getOrigin() + URI.create(TestingSuite.appDomain()).getRawPath());
+            System.out.println("replaying " + replayServer.exchangeCount() + " exchanges of " + recordings.size() + " recordings from " + replayServer.getOrigin());
+            return replayServer;
+        } catch (IOException ex) {
+            Logger.getLogger(ReplayCommand.class.getName()).log(Level.SEVERE, "could not start the replay server", ex);
+            return null;
+        }
+    }
+
+    static void stopReplayServer(ReplayServer replayServer) {
+        System.out.println("replay server: " + replayServer.getServed() + " requests answered, " + replayServer.getMissed() + " not recorded");
+        replayServer.close();
+        TestingSuite.setDomainOverride(null);
+    }
+
+}
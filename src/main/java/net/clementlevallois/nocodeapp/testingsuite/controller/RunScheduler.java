@@ -0,0 +1,184 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.controller;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs jobs, each at its own interval. Every interval is moved by a random
+ * jitter so that jobs with the same interval do not start together, and a
+ * job still running when its next run is due skips that run instead of
+ * queueing it. A job that throws is logged and runs again at its next turn.
+ *
+ * @author LEVALLOIS
+ */
+public class RunScheduler {
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, "run-scheduler"));
+    // the timer only starts the runs: a long run never delays the start of another job
+    private final ExecutorService runner = Executors.newVirtualThreadPerTaskExecutor();
+    private final double jitterRatio;
+    private final List<Job> jobs = new ArrayList();
+    // job name -> whether a run of that name is going, kept across cancel and schedule so that a job replaced on a reload never overlaps the run of the old one
+    private final Map<String, AtomicBoolean> runningByName = new ConcurrentHashMap();
+
+    public record JobStatus(String name, Duration interval, boolean running, long runs, long skippedRuns, Instant lastStart, Instant nextStart) {
+
+    }
+
+    private class Job {
+
+        final String name;
+        volatile Duration interval;
+        final Runnable task;
+        final AtomicBoolean running;
+        final AtomicLong runs = new AtomicLong();
+        final AtomicLong skippedRuns = new AtomicLong();
+        volatile Instant lastStart;
+        volatile Instant nextStart;
+        // only touched on the thread of the timer
+        ScheduledFuture<?> nextTick;
+        boolean cancelled;
+
+        Job(String name, Duration interval, Runnable task) {
+            this.name = name;
+            this.interval = interval;
+            this.task = task;
+            this.running = runningByName.computeIfAbsent(name, n -> new AtomicBoolean());
+        }
+
+        void tick() {
+            if (cancelled) {
+                return;
+            }
+            scheduleNext(this, jitteredInterval(interval));
+            if (!running.compareAndSet(false, true)) {
+                skippedRuns.incrementAndGet();
+                Logger.getLogger(RunScheduler.class.getName()).log(Level.WARNING, "{0}: previous run still going since {1}, skipping this one", new Object[]{name, lastStart});
+                return;
+            }
+            lastStart = Instant.now();
+            runs.incrementAndGet();
+            runner.execute(() -> {
+                try {
+                    task.run();
+                } catch (RuntimeException ex) {
+                    Logger.getLogger(RunScheduler.class.getName()).log(Level.SEVERE, "the run of " + name + " failed", ex);
+                } finally {
+                    running.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * @param jitterRatio how much an interval can be shortened or lengthened,
+     * 0.1 for up to 10%
+     */
+    public RunScheduler(double jitterRatio) {
+        this.jitterRatio = jitterRatio;
+    }
+
+    /**
+     * The first run starts after a random part of the jitter, so that the
+     * jobs added at startup do not all start at once.
+     */
+    public synchronized void schedule(String name, Duration interval, Runnable task) {
+        Job job = new Job(name, interval, task);
+        jobs.add(job);
+        long firstDelayMillis = (long) (ThreadLocalRandom.current().nextDouble() * jitterRatio * interval.toMillis());
+        job.nextStart = Instant.now().plus(Duration.ofMillis(firstDelayMillis));
+        timer.execute(() -> scheduleNext(job, Duration.ofMillis(firstDelayMillis)));
+    }
+
+    private void scheduleNext(Job job, Duration delay) {
+        job.nextStart = Instant.now().plus(delay);
+        job.nextTick = timer.schedule(job::tick, delay.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Changes the interval of a job. The next run is due one new interval
+     * after the start of the last one, so that a job moved from hourly to
+     * every 5 minutes does not wait for the end of the hour.
+     */
+    public void reschedule(String name, Duration interval) {
+        // on the thread of the timer, which is the only one to schedule ticks
+        timer.execute(() -> {
+            Job job = find(name);
+            if (job == null || job.cancelled || job.interval.equals(interval)) {
+                return;
+            }
+            job.interval = interval;
+            if (job.nextTick != null) {
+                job.nextTick.cancel(false);
+            }
+            Instant due = job.lastStart == null ? Instant.now() : job.lastStart.plus(jitteredInterval(interval));
+            Duration delay = Duration.between(Instant.now(), due);
+            scheduleNext(job, delay.isNegative() ? Duration.ZERO : delay);
+        });
+    }
+
+    /**
+     * Stops starting a job. A run going on goes to its end, and a job
+     * scheduled again under the same name skips its runs until then.
+     */
+    public void cancel(String name) {
+        timer.execute(() -> {
+            Job job = find(name);
+            if (job == null) {
+                return;
+            }
+            job.cancelled = true;
+            if (job.nextTick != null) {
+                job.nextTick.cancel(false);
+            }
+            synchronized (this) {
+                jobs.remove(job);
+            }
+        });
+    }
+
+    private synchronized Job find(String name) {
+        for (Job job : jobs) {
+            if (job.name.equals(name)) {
+                return job;
+            }
+        }
+        return null;
+    }
+
+    Duration jitteredInterval(Duration interval) {
+        double factor = 1 + jitterRatio * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+        return Duration.ofMillis(Math.max(1, (long) (interval.toMillis() * factor)));
+    }
+
+    public synchronized List<JobStatus> getStatus() {
+        List<JobStatus> status = new ArrayList();
+        for (Job job : jobs) {
+            status.add(new JobStatus(job.name, job.interval, job.running.get(), job.runs.get(), job.skippedRuns.get(), job.lastStart, job.nextStart));
+        }
+        return status;
+    }
+
+    public void shutdown() {
+        timer.shutdownNow();
+        runner.shutdownNow();
+    }
+
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.controller;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import net.clementlevallois.nocodeapp.testingsuite.drivers.WebDriverPool;
+import net.clementlevallois.nocodeapp.testingsuite.functions.ScenarioTest;
+import net.clementlevallois.nocodeapp.testingsuite.metrics.StepMetrics;
+import net.clementlevallois.nocodeapp.testingsuite.scaling.ScalingBenchmark;
+import net.clementlevallois.nocodeapp.testingsuite.scaling.ScalingProfile;
+import net.clementlevallois.nocodeapp.testingsuite.scaling.ScalingReport;
+import net.clementlevallois.nocodeapp.testingsuite.sessions.BrowserSession;
+import net.clementlevallois.nocodeapp.testingsuite.utils.AlertDispatcher;
+import net.clementlevallois.nocodeapp.testingsuite.utils.SlackAPI;
+import net.clementlevallois.nocodeapp.testingsuite.utils.StepBudgets;
+
+/**
+ * The "scaling" argument of the main class: runs the scenario of each
+ * function on generated corpora of the sizes of the "scaling-..." properties,
+ * prints how its steps scale and saves the reports in the "scaling" subfolder
+ * of the metrics folder. Failures are printed, never sent to Slack.
+ *
+ * @author LEVALLOIS
+ */
+class ScalingCommand {
+
+    static void run() {
+        ScalingProfile profile = ScalingProfile.fromProperties(TestingSuite.loadProperties());
+        StepMetrics scalingStepMetrics = new StepMetrics(profile.getSizes().size(), true);
+        AlertDispatcher silentAlertDispatcher = TestingSuite.newAlertDispatcher(new SlackAPI(false));
+        List<ScenarioTest> tests = TestingSuite.scenarioTests(silentAlertDispatcher, scalingStepMetrics);
+        // a step on half a million lines takes minutes where a test file takes seconds
+        StepBudgets scalingStepBudgets = TestingSuite.stepBudgets().atLeast(profile.getStepBudget());
+
+        WebDriverPool scalingDriverPool = null;
+        ScalingBenchmark.SizedJourneyRunner journeyRunner;
+        if (profile.getMode().equals(BrowserSession.MODE)) {
+            try {
+                scalingDriverPool = new WebDriverPool(1, TestingSuite.downloadFolder().resolve("scaling"), true, true, TestingSuite.DEFAULT_DRIVER_MAX_RUNS, TestingSuite.DEFAULT_DRIVER_MAX_HEAP_MB);
+            } catch (IOException ex) {
+                Logger.getLogger(ScalingCommand.class.getName()).log(Level.SEVERE, "could not create the download folder of the driver pool", ex);
+                return;
+            }
+            WebDriverPool pool = scalingDriverPool;
+            journeyRunner = (test, testFile, testFileDescriptor) -> TestConductor.conductTestOnPooledDriver(test, testFile, pool, scalingStepMetrics, scalingStepBudgets,
+                    session -> test.conductTest(session, testFile, testFileDescriptor));
+        } else {
+            journeyRunner = (test, testFile, testFileDescriptor) -> TestConductor.conductTestOverHttp(test, testFile, scalingStepMetrics, null, scalingStepBudgets,
+                    session -> test.conductTest(session, testFile, testFileDescriptor));
+        }
+
+        try {
+            String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+            List<ScalingReport> reports = new ScalingBenchmark(profile, tests, scalingStepMetrics, TestingSuite.corpusFolder(), journeyRunner).run();
+            ScalingBenchmark.export(reports, profile, TestingSuite.metricsFolder().resolve("scaling").resolve("scaling-report-" + timestamp + ".json"));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | IllegalArgumentException ex) {
+            Logger.getLogger(ScalingCommand.class.getName()).log(Level.SEVERE, "the scaling benchmark could not run to the end", ex);
+        } finally {
+            if (scalingDriverPool != null) {
+                scalingDriverPool.shutdown();
+            }
+            silentAlertDispatcher.close();
+        }
+    }
+
+}
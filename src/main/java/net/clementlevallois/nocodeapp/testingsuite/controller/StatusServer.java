@@ -0,0 +1,341 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.controller;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import net.clementlevallois.nocodeapp.testingsuite.config.ConfigSnapshot;
+import net.clementlevallois.nocodeapp.testingsuite.config.Configuration;
+import net.clementlevallois.nocodeapp.testingsuite.distributed.Coordinator;
+import net.clementlevallois.nocodeapp.testingsuite.drivers.PooledWebDriver;
+import net.clementlevallois.nocodeapp.testingsuite.drivers.WebDriverPool;
+import net.clementlevallois.nocodeapp.testingsuite.functions.TestResult;
+import net.clementlevallois.nocodeapp.testingsuite.metrics.StepMetrics;
+import net.clementlevallois.nocodeapp.testingsuite.sessions.BrowserSession;
+import net.clementlevallois.nocodeapp.testingsuite.sessions.HttpSession;
+
+/**
+ * Shows what the monitor is doing over HTTP: /status for the state of the
+ * runs, the last results, the circuits, the driver pool and the durations of
+ * the steps in JSON, /metrics for the same in the Prometheus text format, and
+ * /health answering "ok" while the monitor is up. The pages are built from
+ * what the runs already keep, on a virtual thread per request: a scrape never
+ * takes a thread from the tests nor makes them wait.
+ *
+ * @author LEVALLOIS
+ */
+public class StatusServer implements Closeable {
+
+    private static final List<String> MODES = List.of(BrowserSession.MODE, HttpSession.MODE);
+
+    private final TestingSuite testingSuite;
+    private final RunScheduler scheduler;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Instant started = Instant.now();
+
+    public StatusServer(TestingSuite testingSuite, RunScheduler scheduler, InetSocketAddress address) throws IOException {
+        this.testingSuite = testingSuite;
+        this.scheduler = scheduler;
+        server = HttpServer.create(address, 0);
+        server.createContext("/status", exchange -> respond(exchange, "application/json", this::statusJson));
+        server.createContext("/metrics", exchange -> respond(exchange, "text/plain; version=0.0.4", this::prometheus));
+        server.createContext("/health", exchange -> respond(exchange, "text/plain", () -> "ok\n"));
+        server.setExecutor(executor);
+    }
+
+    public StatusServer start() {
+        server.start();
+        return this;
+    }
+
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    private interface Page {
+
+        String build();
+    }
+
+    private void respond(HttpExchange exchange, String contentType, Page page) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("GET") && !exchange.getRequestMethod().equals("HEAD")) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body;
+            int status = 200;
+            try {
+                body = page.build().getBytes(StandardCharsets.UTF_8);
+            } catch (RuntimeException ex) {
+                Logger.getLogger(StatusServer.class.getName()).log(Level.WARNING, "could not build " + exchange.getRequestURI(), ex);
+                body = ("error: " + ex).getBytes(StandardCharsets.UTF_8);
+                contentType = "text/plain";
+                status = 500;
+            }
+            exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=utf-8");
+            if (exchange.getRequestMethod().equals("HEAD")) {
+                exchange.sendResponseHeaders(status, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    String statusJson() {
+        StringBuilder sb = new StringBuilder();
+        Instant now = Instant.now();
+        sb.append("{\n  \"generated\": \"").append(now).append("\",\n");
+        sb.append("  \"started\": \"").append(started).append("\",\n");
+        sb.append("  \"uptime_seconds\": ").append(Duration.between(started, now).toSeconds()).append(",\n");
+        ConfigSnapshot configuration = Configuration.current();
+        sb.append("  \"configuration\": {\"version\": ").append(configuration.getVersion())
+                .append(", \"loaded\": \"").append(configuration.getLoadedAt()).append("\"}").append(",\n");
+
+        sb.append("  \"jobs\": [");
+        List<RunScheduler.JobStatus> jobs = scheduler.getStatus();
+        for (int i = 0; i < jobs.size(); i++) {
+            RunScheduler.JobStatus job = jobs.get(i);
+            sb.append(i == 0 ? "\n" : ",\n").append("    {");
+            sb.append("\"name\": \"").append(StepMetrics.escapeJson(job.name())).append("\", ");
+            sb.append("\"interval_minutes\": ").append(job.interval().toMinutes()).append(", ");
+            sb.append("\"running\": ").append(job.running()).append(", ");
+            sb.append("\"runs\": ").append(job.runs()).append(", ");
+            sb.append("\"skipped_runs\": ").append(job.skippedRuns()).append(", ");
+            sb.append("\"last_start\": ").append(jsonInstant(job.lastStart())).append(", ");
+            sb.append("\"next_start\": ").append(jsonInstant(job.nextStart())).append("}");
+        }
+        sb.append(jobs.isEmpty() ? "],\n" : "\n  ],\n");
+
+        sb.append("  \"results\": [");
+        boolean first = true;
+        for (TestResult result : lastResults()) {
+            sb.append(first ? "\n" : ",\n").append("    {");
+            sb.append("\"function\": \"").append(StepMetrics.escapeJson(result.function())).append("\", ");
+            sb.append("\"test_file\": \"").append(StepMetrics.escapeJson(result.testFile())).append("\", ");
+            sb.append("\"mode\": \"").append(result.mode()).append("\", ");
+            sb.append("\"status\": \"").append(result.status().name().toLowerCase()).append("\", ");
+            sb.append("\"failed_step\": ").append(result.failedStep() == null ? "null" : "\"" + StepMetrics.escapeJson(result.failedStep()) + "\"").append(", ");
+            sb.append("\"start\": \"").append(result.start()).append("\", ");
+            sb.append("\"duration_ms\": ").append(result.duration().toMillis()).append(", ");
+            sb.append("\"messages\": [");
+            for (int i = 0; i < result.messages().size(); i++) {
+                sb.append(i == 0 ? "\"" : ", \"").append(StepMetrics.escapeJson(result.messages().get(i))).append("\"");
+            }
+            sb.append("]}");
+            first = false;
+        }
+        sb.append(first ? "],\n" : "\n  ],\n");
+
+        sb.append("  \"circuits\": [");
+        first = true;
+        for (String mode : MODES) {
+            CircuitBreaker circuitBreaker = testingSuite.getCircuitBreaker(mode);
+            if (circuitBreaker == null) {
+                continue;
+            }
+            for (String function : TestingSuite.functions()) {
+                sb.append(first ? "\n" : ",\n").append("    {");
+                sb.append("\"function\": \"").append(StepMetrics.escapeJson(function)).append("\", ");
+                sb.append("\"mode\": \"").append(mode).append("\", ");
+                sb.append("\"state\": \"").append(circuitBreaker.getState(function).name().toLowerCase()).append("\", ");
+                sb.append("\"consecutive_failures\": ").append(circuitBreaker.getConsecutiveFailures(function)).append("}");
+                first = false;
+            }
+        }
+        sb.append(first ? "],\n" : "\n  ],\n");
+
+        WebDriverPool pool = testingSuite.getWebDriverPool();
+        sb.append("  \"driver_pool\": ");
+        if (pool == null) {
+            sb.append("null,\n");
+        } else {
+            sb.append("{\"size\": ").append(pool.size());
+            sb.append(", \"available\": ").append(pool.availableCount());
+            sb.append(", \"replacing\": ").append(pool.replacingCount());
+            sb.append(", \"replacements\": ").append(pool.replacementCount());
+            sb.append(", \"drivers\": [");
+            List<PooledWebDriver> drivers = pool.drivers();
+            for (int i = 0; i < drivers.size(); i++) {
+                PooledWebDriver driver = drivers.get(i);
+                sb.append(i == 0 ? "" : ", ").append("{\"id\": ").append(driver.getId());
+                sb.append(", \"created\": \"").append(driver.getCreatedAt()).append("\"");
+                sb.append(", \"runs\": ").append(driver.getRunCount()).append("}");
+            }
+            sb.append("]},\n");
+        }
+        Coordinator coordinator = testingSuite.getCoordinator();
+        sb.append("  \"workers\": ");
+        if (coordinator == null) {
+            sb.append("null,\n");
+        } else {
+            sb.append("[");
+            List<Coordinator.WorkerStatus> workers = coordinator.getStatus();
+            for (int i = 0; i < workers.size(); i++) {
+                Coordinator.WorkerStatus worker = workers.get(i);
+                sb.append(i == 0 ? "" : ", ").append("{\"uri\": \"").append(StepMetrics.escapeJson(worker.uri().toString())).append("\"");
+                sb.append(", \"slots\": ").append(worker.slots());
+                sb.append(", \"up\": ").append(worker.up());
+                sb.append(", \"runs\": ").append(worker.runs());
+                sb.append(", \"errors\": ").append(worker.errors()).append("}");
+            }
+            sb.append("],\n");
+        }
+        sb.append("  \"alerts_pending\": ").append(TestingSuite.getAlertDispatcher() == null ? 0 : TestingSuite.getAlertDispatcher().pendingCount()).append(",\n");
+
+        sb.append("  \"steps\": {");
+        first = true;
+        for (String mode : MODES) {
+            StepMetrics stepMetrics = testingSuite.getStepMetrics(mode);
+            if (stepMetrics == null) {
+                continue;
+            }
+            sb.append(first ? "\n" : ",\n").append("    \"").append(mode).append("\": ");
+            StepMetrics.appendJsonSteps(sb, stepMetrics.cumulativeSummaries(), "    ");
+            first = false;
+        }
+        sb.append(first ? "}\n" : "\n  }\n");
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    private List<TestResult> lastResults() {
+        List<TestResult> results = testingSuite.getLastResults();
+        results.addAll(testingSuite.getLastHttpResults());
+        return results;
+    }
+
+    private static String jsonInstant(Instant instant) {
+        return instant == null ? "null" : "\"" + instant + "\"";
+    }
+
+    String prometheus() {
+        StringBuilder sb = new StringBuilder();
+        StepMetrics.appendPrometheusHeader(sb);
+        for (String mode : MODES) {
+            StepMetrics stepMetrics = testingSuite.getStepMetrics(mode);
+            if (stepMetrics != null) {
+                stepMetrics.appendPrometheusSamples(sb, mode);
+            }
+        }
+
+        List<TestResult> results = lastResults();
+        appendHeader(sb, "nocodefunctions_test_passed", "gauge", "1 when the last run of the test file passed, 0 when it did not, skipped runs left out");
+        for (TestResult result : results) {
+            if (result.status() != TestResult.Status.SKIPPED) {
+                sb.append("nocodefunctions_test_passed{").append(testLabels(result)).append("} ").append(result.passed() ? 1 : 0).append("\n");
+            }
+        }
+        appendHeader(sb, "nocodefunctions_test_last_run_timestamp_seconds", "gauge", "Start of the last run of the test file");
+        for (TestResult result : results) {
+            sb.append("nocodefunctions_test_last_run_timestamp_seconds{").append(testLabels(result)).append("} ").append(result.start().getEpochSecond()).append("\n");
+        }
+
+        List<RunScheduler.JobStatus> jobs = scheduler.getStatus();
+        appendHeader(sb, "nocodefunctions_job_running", "gauge", "1 while a run of the job is going on");
+        for (RunScheduler.JobStatus job : jobs) {
+            sb.append("nocodefunctions_job_running{").append(jobLabel(job)).append("} ").append(job.running() ? 1 : 0).append("\n");
+        }
+        appendHeader(sb, "nocodefunctions_job_runs_total", "counter", "Runs of the job since the start of the monitor");
+        for (RunScheduler.JobStatus job : jobs) {
+            sb.append("nocodefunctions_job_runs_total{").append(jobLabel(job)).append("} ").append(job.runs()).append("\n");
+        }
+        appendHeader(sb, "nocodefunctions_job_skipped_runs_total", "counter", "Runs of the job skipped because the previous one was still going");
+        for (RunScheduler.JobStatus job : jobs) {
+            sb.append("nocodefunctions_job_skipped_runs_total{").append(jobLabel(job)).append("} ").append(job.skippedRuns()).append("\n");
+        }
+
+        appendHeader(sb, "nocodefunctions_circuit_open", "gauge", "1 while the function is tested less often after repeated failures");
+        for (String mode : MODES) {
+            CircuitBreaker circuitBreaker = testingSuite.getCircuitBreaker(mode);
+            if (circuitBreaker == null) {
+                continue;
+            }
+            for (String function : TestingSuite.functions()) {
+                sb.append("nocodefunctions_circuit_open{function=\"").append(StepMetrics.escapePrometheus(function)).append("\",mode=\"").append(mode).append("\"} ")
+                        .append(circuitBreaker.getState(function) == CircuitBreaker.State.CLOSED ? 0 : 1).append("\n");
+            }
+        }
+
+        WebDriverPool pool = testingSuite.getWebDriverPool();
+        if (pool != null) {
+            appendHeader(sb, "nocodefunctions_driver_pool_size", "gauge", "Browsers of the pool");
+            sb.append("nocodefunctions_driver_pool_size ").append(pool.size()).append("\n");
+            appendHeader(sb, "nocodefunctions_driver_pool_available", "gauge", "Browsers waiting for a test");
+            sb.append("nocodefunctions_driver_pool_available ").append(pool.availableCount()).append("\n");
+            appendHeader(sb, "nocodefunctions_driver_pool_replacing", "gauge", "Browsers being replaced");
+            sb.append("nocodefunctions_driver_pool_replacing ").append(pool.replacingCount()).append("\n");
+            appendHeader(sb, "nocodefunctions_driver_replacements_total", "counter", "Browsers replaced, recycled or found dead, since the start of the monitor");
+            sb.append("nocodefunctions_driver_replacements_total ").append(pool.replacementCount()).append("\n");
+        }
+        Coordinator coordinator = testingSuite.getCoordinator();
+        if (coordinator != null) {
+            List<Coordinator.WorkerStatus> workers = coordinator.getStatus();
+            appendHeader(sb, "nocodefunctions_worker_up", "gauge", "1 when the worker answered its last run or health check");
+            for (Coordinator.WorkerStatus worker : workers) {
+                sb.append("nocodefunctions_worker_up{").append(workerLabel(worker)).append("} ").append(worker.up() ? 1 : 0).append("\n");
+            }
+            appendHeader(sb, "nocodefunctions_worker_slots", "gauge", "Scenarios the worker runs at once");
+            for (Coordinator.WorkerStatus worker : workers) {
+                sb.append("nocodefunctions_worker_slots{").append(workerLabel(worker)).append("} ").append(worker.slots()).append("\n");
+            }
+            appendHeader(sb, "nocodefunctions_worker_runs_total", "counter", "Scenarios run by the worker, since the start of the monitor");
+            for (Coordinator.WorkerStatus worker : workers) {
+                sb.append("nocodefunctions_worker_runs_total{").append(workerLabel(worker)).append("} ").append(worker.runs()).append("\n");
+            }
+            appendHeader(sb, "nocodefunctions_worker_errors_total", "counter", "Runs the worker could not be reached for or answered with an error, since the start of the monitor");
+            for (Coordinator.WorkerStatus worker : workers) {
+                sb.append("nocodefunctions_worker_errors_total{").append(workerLabel(worker)).append("} ").append(worker.errors()).append("\n");
+            }
+        }
+        if (TestingSuite.getAlertDispatcher() != null) {
+            appendHeader(sb, "nocodefunctions_alerts_pending", "gauge", "Alerts waiting to be sent to Slack");
+            sb.append("nocodefunctions_alerts_pending ").append(TestingSuite.getAlertDispatcher().pendingCount()).append("\n");
+        }
+        if (testingSuite.getPageMetrics() != null) {
+            sb.append(testingSuite.getPageMetrics().toPrometheus());
+        }
+        return sb.toString();
+    }
+
+    private static void appendHeader(StringBuilder sb, String metric, String type, String help) {
+        sb.append("# HELP ").append(metric).append(" ").append(help).append("\n");
+        sb.append("# TYPE ").append(metric).append(" ").append(type).append("\n");
+    }
+
+    private static String testLabels(TestResult result) {
+        return "function=\"" + StepMetrics.escapePrometheus(result.function()) + "\",test_file=\"" + StepMetrics.escapePrometheus(result.testFile()) + "\",mode=\"" + result.mode() + "\"";
+    }
+
+    private static String workerLabel(Coordinator.WorkerStatus worker) {
+        return "worker=\"" + StepMetrics.escapePrometheus(worker.uri().toString()) + "\"";
+    }
+
+    private static String jobLabel(RunScheduler.JobStatus job) {
+        return "job=\"" + StepMetrics.escapePrometheus(job.name()) + "\"";
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.controller;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import net.clementlevallois.nocodeapp.testingsuite.drivers.PooledWebDriver;
+import net.clementlevallois.nocodeapp.testingsuite.drivers.WebDriverPool;
+import net.clementlevallois.nocodeapp.testingsuite.functions.TestInterface;
+import net.clementlevallois.nocodeapp.testingsuite.functions.TestResult;
+import net.clementlevallois.nocodeapp.testingsuite.metrics.StepMetrics;
+import net.clementlevallois.nocodeapp.testingsuite.replay.TrafficRecorder;
+import net.clementlevallois.nocodeapp.testingsuite.sessions.BrowserSession;
+import net.clementlevallois.nocodeapp.testingsuite.sessions.HttpSession;
+import net.clementlevallois.nocodeapp.testingsuite.sessions.ScenarioSession;
+import net.clementlevallois.nocodeapp.testingsuite.utils.StepBudgets;
+
+/**
+ * Runs one test file of a test in a session of its own, a browser of a pool
+ * or an http session, and records its total in the step metrics. Shared by
+ * the monitor and the other modes of the suite.
+ *
+ * @author LEVALLOIS
+ */
+class TestConductor {
+
+    static TestResult conductTestOnPooledDriver(TestInterface test, String testFile, WebDriverPool webDriverPool, StepMetrics stepMetrics) {
+        return conductTestOnPooledDriver(test, testFile, webDriverPool, stepMetrics, TestingSuite.stepBudgets(), session -> test.conductTest(session, testFile));
+    }
+
+    /**
+     * @param journey runs the test in the session it is given
+     */
+    static TestResult conductTestOnPooledDriver(TestInterface test, String testFile, WebDriverPool webDriverPool, StepMetrics stepMetrics, StepBudgets stepBudgets, Function<ScenarioSession, TestResult> journey) {
+        PooledWebDriver pooledWebDriver = null;
+        Instant start = Instant.now();
+        try {
+            pooledWebDriver = webDriverPool.borrow();
+            deleteFilesInDownloadFolder(pooledWebDriver.getDownloadFolder());
+            TestResult result = journey.apply(new BrowserSession(pooledWebDriver, stepBudgets));
+            stepMetrics.record(test.getName(), testFile, StepBudgets.TOTAL, result.duration(), result.failed());
+            return result;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return TestResult.error(test.getName(), testFile, BrowserSession.MODE, start, ex);
+        } catch (RuntimeException ex) {
+            // a browser that crashed or could not start: only this test file is lost
+            Logger.getLogger(TestConductor.class.getName()).log(Level.SEVERE, "could not test " + testFile + " in a browser", ex);
+            return TestResult.error(test.getName(), testFile, BrowserSession.MODE, start, ex);
+        } finally {
+            webDriverPool.release(pooledWebDriver);
+        }
+    }
+
+    static TestResult conductTestOverHttp(TestInterface test, String testFile, StepMetrics stepMetrics) {
+        return conductTestOverHttp(test, testFile, stepMetrics, null);
+    }
+
+    /**
+     * @param trafficRecorder records the exchanges of the session, or null
+     */
+    static TestResult conductTestOverHttp(TestInterface test, String testFile, StepMetrics stepMetrics, TrafficRecorder trafficRecorder) {
+        return conductTestOverHttp(test, testFile, stepMetrics, trafficRecorder, TestingSuite.stepBudgets(), session -> test.conductTest(session, testFile));
+    }
+
+    static TestResult conductTestOverHttp(TestInterface test, String testFile, StepMetrics stepMetrics, TrafficRecorder trafficRecorder, StepBudgets stepBudgets, Function<ScenarioSession, TestResult> journey) {
+        Instant start = Instant.now();
+        try {
+            Path sessionFolder = Files.createTempDirectory(TestingSuite.downloadFolder(), "http-");
+            try (HttpSession httpSession = new HttpSession(sessionFolder, stepBudgets)) {
+                httpSession.setTrafficRecorder(trafficRecorder);
+                TestResult result = journey.apply(httpSession);
+                stepMetrics.record(test.getName(), testFile, StepBudgets.TOTAL, result.duration(), result.failed());
+                return result;
+            }
+        } catch (IOException ex) {
+            Logger.getLogger(TestConductor.class.getName()).log(Level.SEVERE, "could not prepare the download folder of an http session", ex);
+            return TestResult.error(test.getName(), testFile, HttpSession.MODE, start, ex);
+        }
+    }
+
+    private static void deleteFilesInDownloadFolder(Path downloadFolder) {
+        try (Stream<Path> paths = Files.walk(downloadFolder)) {
+            paths.filter(Files::isRegularFile)
+                    .filter(path -> {
+                        String fileExtension = path.toFile().getName();
+                        // stale .crdownload files would make the next download look unfinished
+                        boolean shouldBeDeleted = fileExtension.endsWith(".gexf") || fileExtension.endsWith(".xlsx") || fileExtension.endsWith(".crdownload");
+                        return shouldBeDeleted;
+                    })
+                    .forEach(path -> {
+                        try {
+                            Files.deleteIfExists(path);
+                        } catch (IOException e) {
+                        }
+                    });
+        } catch (IOException ex) {
+            Logger.getLogger(TestConductor.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+
+}
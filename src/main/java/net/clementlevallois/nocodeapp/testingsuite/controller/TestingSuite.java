@@ -4,32 +4,45 @@
 package net.clementlevallois.nocodeapp.testingsuite.controller;
 
 import net.clementlevallois.nocodeapp.testingsuite.functions.TestInterface;
-import com.slack.api.methods.SlackApiException;
+import net.clementlevallois.nocodeapp.testingsuite.config.ConfigSnapshot;
+import net.clementlevallois.nocodeapp.testingsuite.config.Configuration;
+import net.clementlevallois.nocodeapp.testingsuite.distributed.Coordinator;
 import java.io.IOException;
-import java.io.InputStream;
-import java.nio.file.Files;
+import java.net.InetSocketAddress;
+import java.net.URI;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import net.clementlevallois.nocodeapp.testingsuite.functions.TestUmigon;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.Stream;
-import net.clementlevallois.nocodeapp.testingsuite.functions.TestTopics;
+import net.clementlevallois.nocodeapp.testingsuite.functions.Scenario;
+import net.clementlevallois.nocodeapp.testingsuite.functions.ScenarioTest;
+import net.clementlevallois.nocodeapp.testingsuite.functions.TestResult;
+import net.clementlevallois.nocodeapp.testingsuite.history.RunHistory;
+import net.clementlevallois.nocodeapp.testingsuite.drivers.WebDriverPool;
+import net.clementlevallois.nocodeapp.testingsuite.metrics.PageMetrics;
+import net.clementlevallois.nocodeapp.testingsuite.metrics.RegressionDetector;
+import net.clementlevallois.nocodeapp.testingsuite.metrics.StepMetrics;
+import net.clementlevallois.nocodeapp.testingsuite.sessions.BrowserSession;
+import net.clementlevallois.nocodeapp.testingsuite.sessions.HttpSession;
+import net.clementlevallois.nocodeapp.testingsuite.utils.AlertDispatcher;
 import net.clementlevallois.nocodeapp.testingsuite.utils.SlackAPI;
-import net.clementlevallois.utils.Clock;
-import org.openqa.selenium.WebDriver;
-import org.openqa.selenium.chrome.ChromeDriver;
-import org.openqa.selenium.chrome.ChromeOptions;
+import net.clementlevallois.nocodeapp.testingsuite.utils.StepBudgets;
 
 /**
  *
@@ -37,90 +50,493 @@ import org.openqa.selenium.chrome.ChromeOptions;
  */
 public class TestingSuite {
 
-    private static final boolean SEND_MESAGES_TO_SLACK = true;
-    private static final boolean TESTING_LOCALLY_DEPLOYED = false;
-    private static final boolean HEADLESS = true;
-    private static final boolean EXIT_AFTER_MESSAGE = true;
-    private static final boolean SILENT_LOGGING = true;
     private static SlackAPI slackAPI;
-    private List<WebDriver> webDrivers;
+    private static AlertDispatcher alertDispatcher;
+    private static final int DEFAULT_DRIVER_POOL_SIZE = 2;
+    static final int DEFAULT_DRIVER_MAX_RUNS = 50;
+    static final int DEFAULT_DRIVER_MAX_HEAP_MB = 512;
+    private static final int DEFAULT_METRICS_HISTORY_RUNS = 168;
+    private static final double DEFAULT_REGRESSION_Z_THRESHOLD = 4;
+    private static final double DEFAULT_REGRESSION_RATIO_THRESHOLD = 2;
+    private static final int DEFAULT_RUN_INTERVAL_MINUTES = 60;
+    private static final int DEFAULT_HTTP_RUN_INTERVAL_MINUTES = 5;
+    private static final double DEFAULT_SCHEDULE_JITTER_PERCENT = 10;
+    private static final int DEFAULT_ALERT_QUEUE_SIZE = 1000;
+    private static final int DEFAULT_ALERT_BATCH_SECONDS = 30;
+    private static final int DEFAULT_ALERT_DEDUP_MINUTES = 60;
+    private static final int DEFAULT_CIRCUIT_FAILURE_THRESHOLD = 3;
+    private static final int DEFAULT_CIRCUIT_MAX_SKIP_RUNS = 16;
+    private static final int DEFAULT_REPLAY_RUNS = 10;
+    private static final int DEFAULT_STATUS_PORT = 8686;
+    private static final String DEFAULT_STATUS_ADDRESS = "127.0.0.1";
+    private static final int DEFAULT_WORKER_PORT = 8687;
+    private static final int DEFAULT_WORKER_RUN_TIMEOUT_SECONDS = 1800;
+    // the address of the replay server while replaying, instead of the app
+    private static volatile String domainOverride;
+    private WebDriverPool webDriverPool;
+    // hands the runs to the workers instead of running them here, when there are workers
+    private Coordinator coordinator;
+    private ExecutorService testExecutor;
+    private ExecutorService httpTestExecutor;
+    private StepMetrics stepMetrics;
+    private RegressionDetector regressionDetector;
+    private StepMetrics httpStepMetrics;
+    private RegressionDetector httpRegressionDetector;
+    private PageMetrics pageMetrics;
+    private RunHistory runHistory;
+    private CircuitBreaker circuitBreaker;
+    private CircuitBreaker httpCircuitBreaker;
+    // function -> results of its last run
+    private final Map<String, List<TestResult>> lastResults = new ConcurrentHashMap();
+    private final Map<String, List<TestResult>> lastHttpResults = new ConcurrentHashMap();
 
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("load")) {
+            LoadCommand.run();
+            return;
+        }
+        if (args.length > 0 && args[0].equals("scaling")) {
+            ScalingCommand.run();
+            return;
+        }
+        if (args.length > 0 && args[0].equals("worker")) {
+            WorkerCommand.run();
+            return;
+        }
+        if (args.length > 0 && args[0].equals("record")) {
+            RecordCommand.run();
+            return;
+        }
+        if (args.length > 0 && args[0].equals("replay")) {
+            ReplayCommand.run();
+            return;
+        }
+        if (args.length > 1 && args[0].equals("history")) {
+            HistoryCommand.run(args[1], args.length > 2 ? Integer.parseInt(args[2]) : HistoryCommand.DEFAULT_HISTORY_DAYS);
+            return;
+        }
         TestingSuite testingSuite = new TestingSuite();
         testingSuite.initiateSlackAPI();
-        testingSuite.initiateWebDrivers();
-        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
-
-        Runnable task = new Runnable() {
-            @Override
-            public void run() {
-                testingSuite.runTests();
-                scheduler.schedule(this, 1, TimeUnit.HOURS);
+        testingSuite.initiateMetrics();
+        testingSuite.initiateCircuitBreakers();
+        List<URI> workers = workers();
+        if (workers.isEmpty()) {
+            testingSuite.initiateWebDrivers();
+        } else {
+            testingSuite.initiateCoordinator(workers);
+        }
+        RunScheduler scheduler = new RunScheduler(scheduleJitterPercent() / 100);
+        testingSuite.scheduleJobs(scheduler);
+        // test files, functions, intervals and the domain change without a restart, the browsers staying warm
+        Configuration.addListener(configuration -> {
+            testingSuite.scheduleJobs(scheduler);
+            alertDispatcher.info("configuration reloaded, version " + configuration.getVersion());
+        });
+        try {
+            Configuration.startWatching();
+        } catch (IOException ex) {
+            Logger.getLogger(TestingSuite.class.getName()).log(Level.SEVERE, "could not watch the configuration, changes will need a restart", ex);
+        }
+        int statusPort = statusPort();
+        if (statusPort > 0) {
+            try {
+                StatusServer statusServer = new StatusServer(testingSuite, scheduler, new InetSocketAddress(statusAddress(), statusPort)).start();
+                System.out.println("status of the monitor at http://" + statusAddress() + ":" + statusPort + "/status");
+                Runtime.getRuntime().addShutdownHook(new Thread(statusServer::close));
+            } catch (IOException ex) {
+                // the monitor is worth more than its status page
+                Logger.getLogger(TestingSuite.class.getName()).log(Level.SEVERE, "could not start the status server on port " + statusPort, ex);
             }
-        };
+        }
+    }
 
-        scheduler.execute(task);
+    /**
+     * Schedules the functions of the configuration in each mode at their
+     * intervals, changes the intervals that changed and cancels the jobs of
+     * the functions removed or set to 0.
+     */
+    private synchronized void scheduleJobs(RunScheduler scheduler) {
+        Map<String, Duration> scheduled = new HashMap();
+        for (RunScheduler.JobStatus job : scheduler.getStatus()) {
+            scheduled.put(job.name(), job.interval());
+        }
+        Set<String> jobs = new HashSet();
+        for (String function : functions()) {
+            // each function runs at the pace its cost allows: cheap checks often, heavy ones hourly
+            // the http mode only checks the results, which is cheap enough to do every few minutes
+            for (String mode : List.of(BrowserSession.MODE, HttpSession.MODE)) {
+                int interval = runIntervalMinutes(mode, function);
+                if (interval <= 0) {
+                    continue;
+                }
+                String name = function + " (" + mode + ")";
+                jobs.add(name);
+                Duration duration = Duration.ofMinutes(interval);
+                if (!scheduled.containsKey(name)) {
+                    Runnable task = mode.equals(HttpSession.MODE) ? () -> runHttpTests(function) : () -> runTests(function);
+                    scheduler.schedule(name, duration, task);
+                } else if (!scheduled.get(name).equals(duration)) {
+                    scheduler.reschedule(name, duration);
+                }
+            }
+        }
+        for (String name : scheduled.keySet()) {
+            if (!jobs.contains(name)) {
+                scheduler.cancel(name);
+            }
+        }
     }
 
     private void initiateSlackAPI() {
+        slackAPI = new SlackAPI(settings().booleanOr("send-messages-to-slack", true));
+        alertDispatcher = newAlertDispatcher(slackAPI);
+        // the alerts still in the queue are sent before the monitor stops
+        Runtime.getRuntime().addShutdownHook(new Thread(alertDispatcher::close));
+        alertDispatcher.info("initializing the test suite");
+    }
+
+    static AlertDispatcher newAlertDispatcher(SlackAPI slackAPI) {
+        ConfigSnapshot settings = settings();
+        return new AlertDispatcher(slackAPI,
+                settings.intOr("alert-queue-size", DEFAULT_ALERT_QUEUE_SIZE),
+                Duration.ofSeconds(settings.longOr("alert-batch-seconds", DEFAULT_ALERT_BATCH_SECONDS)),
+                Duration.ofMinutes(settings.longOr("alert-dedup-minutes", DEFAULT_ALERT_DEDUP_MINUTES)));
+    }
+
+    private void initiateMetrics() {
+        int maxRunsInHistory = settings().intOr("metrics-history-runs", DEFAULT_METRICS_HISTORY_RUNS);
+        stepMetrics = new StepMetrics(maxRunsInHistory, isSILENT_LOGGING());
+        httpStepMetrics = new StepMetrics(maxRunsInHistory, isSILENT_LOGGING());
+        pageMetrics = new PageMetrics();
+        // each mode has its own baselines: a step over http is much faster than the same step in a browser
+        regressionDetector = newRegressionDetector(metricsFolder(BrowserSession.MODE));
+        httpRegressionDetector = newRegressionDetector(metricsFolder(HttpSession.MODE));
         try {
-            slackAPI = new SlackAPI(SEND_MESAGES_TO_SLACK);
-            slackAPI.sendMessage("initializing the test suite", false);
-        } catch (IOException | SlackApiException ex) {
-            Logger.getLogger(TestingSuite.class.getName()).log(Level.SEVERE, null, ex);
-        }
-    }
-
-    private void initiateWebDrivers() {
-        webDrivers = new ArrayList();
-        ChromeOptions chromeOptions = new ChromeOptions();
-        String userAgent = "--user-agent=Mozilla/5.0 (compatible; MyRobot/1.0; +http://www.example.com/robot) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/123.0.0.0 Safari/537.36";
-        String headlessParam = "--headless";
-        String headlessParamForGoogle = "--headless=new";
-        if (HEADLESS) {
-            List<String> arguments = List.of(userAgent, headlessParamForGoogle);
-            chromeOptions.addArguments(arguments);
-        } else {
-            List<String> arguments = List.of(userAgent);
-            chromeOptions.addArguments(arguments);
-        }
-        Map<String, Object> prefs = new HashMap();
-        prefs.put("intl.accept_languages", "fr");
-        prefs.put("intl.selected_languages", "fr");
-        Properties properties = loadProperties();
-        String downloadDirectory = downloadFolder().toString();
-        prefs.put("download.default_directory", downloadDirectory);
-        chromeOptions.setExperimentalOption("prefs", prefs);
-        Clock clock = new Clock("initializing the Chrome Driver", SILENT_LOGGING);
-        WebDriver chromeDriver = new ChromeDriver(chromeOptions);
+            runHistory = new RunHistory(historyFolder());
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    runHistory.close();
+                } catch (IOException ex) {
+                    Logger.getLogger(TestingSuite.class.getName()).log(Level.WARNING, "could not close the run history", ex);
+                }
+            }));
+        } catch (IOException ex) {
+            // the monitor runs without its history rather than not at all
+            Logger.getLogger(TestingSuite.class.getName()).log(Level.SEVERE, "could not open the run history in " + historyFolder(), ex);
+        }
+    }
+
+    private static RegressionDetector newRegressionDetector(Path metricsFolder) {
+        RegressionDetector detector = new RegressionDetector(
+                settings().doubleOr("regression-z-threshold", DEFAULT_REGRESSION_Z_THRESHOLD),
+                settings().doubleOr("regression-ratio-threshold", DEFAULT_REGRESSION_RATIO_THRESHOLD));
+        try {
+            detector.load(metricsFolder);
+        } catch (IOException ex) {
+            Logger.getLogger(TestingSuite.class.getName()).log(Level.WARNING, "could not load the baselines of the steps, starting from scratch", ex);
+        }
+        return detector;
+    }
+
+    private void initiateCircuitBreakers() {
+        int threshold = settings().intOr("circuit-failure-threshold", DEFAULT_CIRCUIT_FAILURE_THRESHOLD);
+        int maxSkip = settings().intOr("circuit-max-skip-runs", DEFAULT_CIRCUIT_MAX_SKIP_RUNS);
+        circuitBreaker = new CircuitBreaker(threshold, maxSkip);
+        httpCircuitBreaker = new CircuitBreaker(threshold, maxSkip);
+    }
+
+    void initiateWebDrivers() {
+        int poolSize = driverPoolSize();
+        ConfigSnapshot settings = settings();
+        try {
+            webDriverPool = new WebDriverPool(poolSize, downloadFolder(), settings.booleanOr("headless", true), isSILENT_LOGGING(),
+                    settings.intOr("driver-max-runs", DEFAULT_DRIVER_MAX_RUNS),
+                    settings.intOr("driver-max-heap-mb", DEFAULT_DRIVER_MAX_HEAP_MB));
+        } catch (IOException ex) {
+            Logger.getLogger(TestingSuite.class.getName()).log(Level.SEVERE, "could not create the download folders of the driver pool", ex);
+            throw new IllegalStateException(ex);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(webDriverPool::shutdown));
+        // one thread per driver: more threads would only wait for a free browser
+        testExecutor = Executors.newFixedThreadPool(poolSize);
+        httpTestExecutor = Executors.newFixedThreadPool(poolSize);
         System.out.println("");
-        webDrivers.add(chromeDriver);
-        clock.closeAndPrintClock();
     }
 
-    private void runTests() {
+    private void initiateCoordinator(List<URI> workers) {
+        coordinator = new Coordinator(workers, Duration.ofSeconds(workerRunTimeoutSeconds()), workerToken());
+        Runtime.getRuntime().addShutdownHook(new Thread(coordinator::shutdown));
+        // the slots of the workers limit the runs going on at once, not the threads here
+        testExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        httpTestExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        for (Coordinator.WorkerStatus worker : coordinator.getStatus()) {
+            System.out.println("worker " + worker.uri() + ": " + worker.slots() + (worker.up() ? " slots" : " slot, not reachable yet"));
+        }
+    }
 
-        TestInterface testUmigon = new TestUmigon(slackAPI, EXIT_AFTER_MESSAGE);
-        TestInterface testTopics = new TestTopics(slackAPI, EXIT_AFTER_MESSAGE);
-        List<TestInterface> tests = List.of(testUmigon, testTopics);
-        //            List<TestInterface> tests = List.of(testTopics);
-//        List<TestInterface> tests = List.of(testUmigon);
+    /**
+     * Runs a scenario on a worker. The worker sends no alert: the failures
+     * it finds are sent from here, as a local run sends them.
+     */
+    private TestResult conductTestOnWorker(TestInterface test, String testFile, String mode, StepMetrics stepMetrics) {
+        TestResult result = coordinator.run(test.getName(), testFile, mode, stepMetrics);
+        if (result.failed()) {
+            for (String message : result.messages()) {
+                alertDispatcher.alert(test.getName(), message);
+            }
+        }
+        return result;
+    }
+
+    private void runTests(String function) {
+        lastResults.put(function, runTests(BrowserSession.MODE, List.of(function), stepMetrics, regressionDetector, circuitBreaker, testExecutor));
+    }
+
+    private void runHttpTests(String function) {
+        lastHttpResults.put(function, runTests(HttpSession.MODE, List.of(function), httpStepMetrics, httpRegressionDetector, httpCircuitBreaker, httpTestExecutor));
+    }
+
+    /**
+     * The results of the last browser run of each function, skipped tests
+     * included.
+     */
+    public List<TestResult> getLastResults() {
+        return flatten(lastResults);
+    }
+
+    public List<TestResult> getLastHttpResults() {
+        return flatten(lastHttpResults);
+    }
+
+    StepMetrics getStepMetrics(String mode) {
+        return mode.equals(HttpSession.MODE) ? httpStepMetrics : stepMetrics;
+    }
+
+    CircuitBreaker getCircuitBreaker(String mode) {
+        return mode.equals(HttpSession.MODE) ? httpCircuitBreaker : circuitBreaker;
+    }
+
+    Coordinator getCoordinator() {
+        return coordinator;
+    }
+
+    WebDriverPool getWebDriverPool() {
+        return webDriverPool;
+    }
+
+    PageMetrics getPageMetrics() {
+        return pageMetrics;
+    }
+
+    static AlertDispatcher getAlertDispatcher() {
+        return alertDispatcher;
+    }
+
+    private static List<TestResult> flatten(Map<String, List<TestResult>> resultsByFunction) {
+        List<TestResult> results = new ArrayList();
+        for (String function : functions()) {
+            results.addAll(resultsByFunction.getOrDefault(function, List.of()));
+        }
+        return results;
+    }
+
+    /**
+     * Runs every test file of the functions, whatever happens to the others.
+     * Runs of other functions can go on at the same time.
+     *
+     * @return one result per test file
+     */
+    private List<TestResult> runTests(String mode, List<String> functions, StepMetrics stepMetrics, RegressionDetector regressionDetector, CircuitBreaker circuitBreaker, ExecutorService testExecutor) {
+
+        // the whole run on the scenarios of one snapshot, even when the configuration is reloaded meanwhile
+        ConfigSnapshot configuration = Configuration.current();
+        List<TestInterface> tests = new ArrayList();
+        // function -> why its scenario could not be loaded
+        Map<String, Exception> unloadedScenarios = new LinkedHashMap();
+        for (String function : functions) {
+            try {
+                // only a browser has pages to measure
+                tests.add(new ScenarioTest(configuration.scenario(function), alertDispatcher, stepMetrics, mode.equals(BrowserSession.MODE) ? pageMetrics : null));
+            } catch (IOException | IllegalArgumentException ex) {
+                Logger.getLogger(TestingSuite.class.getName()).log(Level.SEVERE, "could not load the scenario of " + function, ex);
+                unloadedScenarios.put(function, ex);
+            }
+        }
         LocalDateTime now = LocalDateTime.now();
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
         String formattedDateTime = now.format(formatter);
-        System.out.print(formattedDateTime + ": testing ");
+        Instant runStart = stepMetrics.startRun(functions);
+
+        // every test file of every test is independent: each gets its own browser and download folder from the pool, or its own http session
+        List<TestResult> results = new ArrayList();
+        for (Map.Entry<String, Exception> unloaded : unloadedScenarios.entrySet()) {
+            results.addAll(failUnloadedScenario(unloaded.getKey(), unloaded.getValue(), mode, circuitBreaker));
+        }
+        Map<TestInterface, List<Future<TestResult>>> runningTests = new LinkedHashMap();
         for (TestInterface test : tests) {
-            System.out.print(test.getName());
-            deleteFilesInDownloadFolder();
-            test.conductTests(webDrivers);
+            System.out.println(formattedDateTime + ": testing (" + mode + ") " + test.getName() + " " + test.getTestFiles());
+            if (!circuitBreaker.allowRun(test.getName())) {
+                String reason = "skipped after " + circuitBreaker.getConsecutiveFailures(test.getName()) + " failed runs in a row";
+                for (String testFile : test.getTestFiles()) {
+                    results.add(TestResult.skipped(test.getName(), testFile, mode, reason));
+                }
+                continue;
+            }
+            List<Future<TestResult>> futures = new ArrayList();
+            for (String testFile : test.getTestFiles()) {
+                if (coordinator != null) {
+                    futures.add(testExecutor.submit(() -> conductTestOnWorker(test, testFile, mode, stepMetrics)));
+                } else if (mode.equals(HttpSession.MODE)) {
+                    futures.add(testExecutor.submit(() -> TestConductor.conductTestOverHttp(test, testFile, stepMetrics)));
+                } else {
+                    futures.add(testExecutor.submit(() -> TestConductor.conductTestOnPooledDriver(test, testFile, webDriverPool, stepMetrics)));
+                }
+            }
+            runningTests.put(test, futures);
+        }
+        Instant waitStart = Instant.now();
+        boolean interrupted = false;
+        try {
+            for (Map.Entry<TestInterface, List<Future<TestResult>>> entry : runningTests.entrySet()) {
+                TestInterface test = entry.getKey();
+                boolean allPassed = true;
+                for (int i = 0; i < entry.getValue().size(); i++) {
+                    String testFile = test.getTestFiles().get(i);
+                    TestResult result;
+                    try {
+                        result = entry.getValue().get(i).get();
+                    } catch (ExecutionException ex) {
+                        Logger.getLogger(TestingSuite.class.getName()).log(Level.SEVERE, "the test of " + testFile + " by " + test.getName() + " crashed", ex.getCause());
+                        result = TestResult.error(test.getName(), testFile, mode, waitStart, ex.getCause());
+                    }
+                    results.add(result);
+                    allPassed &= result.passed();
+                }
+                reportCircuitTransition(test.getName(), mode, circuitBreaker.recordRun(test.getName(), allPassed), circuitBreaker);
+            }
+        } catch (InterruptedException ex) {
+            // the results so far are kept like those of a whole run
+            interrupted = true;
+        } finally {
+            // with the interrupt flag set, the channels of the history and the exports would close at once: it is set again after
+            recordRun(mode, functions, results, runStart, stepMetrics, regressionDetector);
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return results;
+    }
+
+    /**
+     * A function whose scenario could not be loaded fails like the others: an
+     * error for each of its test files, an alert and a failed run of its
+     * circuit.
+     */
+    private List<TestResult> failUnloadedScenario(String function, Exception cause, String mode, CircuitBreaker circuitBreaker) {
+        List<String> testFiles = new ArrayList();
+        try {
+            Properties descriptor = Configuration.readDescriptor(function, Scenario.DESCRIPTOR_FILE_NAME);
+            if (descriptor != null) {
+                testFiles.addAll(Scenario.testFilesOf(descriptor));
+            }
+        } catch (IOException | IllegalArgumentException ex) {
+            // the error of the scenario says it already
+        }
+        if (testFiles.isEmpty()) {
+            testFiles.add(Scenario.DESCRIPTOR_FILE_NAME);
+        }
+        List<TestResult> results = new ArrayList();
+        if (!circuitBreaker.allowRun(function)) {
+            String reason = "skipped after " + circuitBreaker.getConsecutiveFailures(function) + " failed runs in a row";
+            for (String testFile : testFiles) {
+                results.add(TestResult.skipped(function, testFile, mode, reason));
+            }
+            return results;
+        }
+        Instant start = Instant.now();
+        for (String testFile : testFiles) {
+            results.add(TestResult.error(function, testFile, mode, start, cause));
+        }
+        alertDispatcher.alert(function, "could not load the scenario (" + mode + "): " + cause.getMessage());
+        reportCircuitTransition(function, mode, circuitBreaker.recordRun(function, false), circuitBreaker);
+        return results;
+    }
+
+    private void recordRun(String mode, List<String> functions, List<TestResult> results, Instant runStart, StepMetrics stepMetrics, RegressionDetector regressionDetector) {
+        printSummary(mode, functions, results);
+        StepMetrics.RunSnapshot run = stepMetrics.endRun(functions, runStart);
+        if (runHistory != null) {
+            try {
+                runHistory.append(mode, runStart, results, run.steps());
+            } catch (IOException ex) {
+                Logger.getLogger(TestingSuite.class.getName()).log(Level.SEVERE, "could not add the run to the run history", ex);
+            }
+        }
+        try {
+            stepMetrics.export(metricsFolder(mode));
+            if (mode.equals(BrowserSession.MODE) && !pageMetrics.isEmpty()) {
+                pageMetrics.export(metricsFolder(mode));
+            }
+        } catch (IOException ex) {
+            Logger.getLogger(TestingSuite.class.getName()).log(Level.SEVERE, "could not export the step metrics", ex);
+        }
+        checkForPerformanceRegressions(run, regressionDetector, metricsFolder(mode));
+    }
+
+    private void reportCircuitTransition(String function, String mode, CircuitBreaker.Transition transition, CircuitBreaker circuitBreaker) {
+        switch (transition) {
+            case OPENED ->
+                alertDispatcher.alert(function, "failed " + circuitBreaker.getConsecutiveFailures(function) + " runs in a row (" + mode + "), now tested once every " + (circuitBreaker.getRunsToSkip(function) + 1) + " runs");
+            case STILL_OPEN ->
+                alertDispatcher.alert(function, "still failing (" + mode + "), now tested once every " + (circuitBreaker.getRunsToSkip(function) + 1) + " runs");
+            case CLOSED ->
+                alertDispatcher.info(":white_check_mark: function " + function + " passes again (" + mode + "), tested at every run");
+            default -> {
+            }
+        }
+    }
+
+    private static void printSummary(String mode, List<String> functions, List<TestResult> results) {
+        Map<TestResult.Status, Integer> counts = new LinkedHashMap();
+        for (TestResult result : results) {
+            counts.merge(result.status(), 1, Integer::sum);
+        }
+        System.out.println("run of " + String.join(", ", functions) + " (" + mode + ") done: " + counts);
+        for (TestResult result : results) {
+            if (!result.passed()) {
+                System.out.println("  " + result.describe());
+            }
+        }
+    }
+
+    private void checkForPerformanceRegressions(StepMetrics.RunSnapshot run, RegressionDetector regressionDetector, Path metricsFolder) {
+        for (RegressionDetector.Regression regression : regressionDetector.evaluate(run)) {
+            alertDispatcher.performanceAlert(regression.stepKey().function(), regression.dedupKey(), regression.describe());
+        }
+        try {
+            regressionDetector.save(metricsFolder);
+        } catch (IOException ex) {
+            Logger.getLogger(TestingSuite.class.getName()).log(Level.SEVERE, "could not save the baselines of the steps", ex);
         }
-        System.out.println();
     }
 
     public static String domain() {
+        String override = domainOverride;
+        return override != null ? override : appDomain();
+    }
+
+    static void setDomainOverride(String domain) {
+        domainOverride = domain;
+    }
+
+    static String appDomain() {
+        String configuredDomain = settings().stringOr("domain", null);
+        if (configuredDomain != null) {
+            return configuredDomain;
+        }
         boolean testingFromWindows = System.getProperty("os.name").toLowerCase().contains("win");
         String domain;
-        if (testingFromWindows & TESTING_LOCALLY_DEPLOYED) {
+        if (testingFromWindows & settings().booleanOr("testing-locally-deployed", false)) {
             domain = "http://localhost:8080/nocode-app-web-front/";
         } else {
             domain = "https://nocodefunctions.com";
@@ -128,71 +544,168 @@ public class TestingSuite {
         return domain;
     }
 
-    private static Properties loadProperties() {
-        String resourcePath = "/private/read.txt";
-        Properties properties = new Properties();
-        try (InputStream inputStream = TestingSuite.class.getResourceAsStream(resourcePath)) {
-            if (inputStream == null) {
-                throw new IOException("Resource not found: " + resourcePath);
+    /**
+     * The current configuration snapshot, read once and again only when the
+     * external files change.
+     */
+    static ConfigSnapshot settings() {
+        return Configuration.current();
+    }
+
+    /**
+     * A copy of the settings, for the profiles read from properties.
+     */
+    static Properties loadProperties() {
+        return settings().getProperties();
+    }
+
+    /**
+     * The scenario of each function of the current configuration. A scenario
+     * that cannot be loaded is logged and left out.
+     */
+    static List<ScenarioTest> scenarioTests(AlertDispatcher alertDispatcher, StepMetrics stepMetrics) {
+        List<ScenarioTest> tests = new ArrayList();
+        for (String function : functions()) {
+            try {
+                tests.add(new ScenarioTest(Configuration.current().scenario(function), alertDispatcher, stepMetrics));
+            } catch (IOException | IllegalArgumentException ex) {
+                Logger.getLogger(TestingSuite.class.getName()).log(Level.SEVERE, "could not load the scenario of " + function, ex);
             }
-            properties.load(inputStream);
-        } catch (IOException e) {
-            e.printStackTrace();
         }
-        return properties;
+        return tests;
     }
 
     public static Path rootFolder() {
-        Properties properties = loadProperties();
         boolean testingFromWindows = System.getProperty("os.name").toLowerCase().contains("win");
-        Path rootFolder;
-        if (testingFromWindows) {
-            String pathLocal = properties.getProperty("local-path");
-            rootFolder = Path.of(pathLocal);
-        } else {
-            String pathServer = properties.getProperty("server-path");
-            rootFolder = Path.of(pathServer);
-        }
-        return rootFolder;
+        return Path.of(settings().getProperty(testingFromWindows ? "local-path" : "server-path"));
     }
 
     public static Path downloadFolder() {
         boolean testingFromWindows = System.getProperty("os.name").toLowerCase().contains("win");
-        Properties properties = loadProperties();
-        Path rootFolder;
-        if (testingFromWindows) {
-            String pathLocal = properties.getProperty("local-path-download");
-            rootFolder = Path.of(pathLocal);
-        } else {
-            String pathServer = properties.getProperty("server-path-download");
-            rootFolder = Path.of(pathServer);
-        }
-        return rootFolder;
-    }
-
-    private static void deleteFilesInDownloadFolder() {
-        Path downloadFolder = downloadFolder();
-        final long oneHourAgo = Instant.now().minusSeconds(3600).toEpochMilli();
-        try (Stream<Path> paths = Files.walk(downloadFolder)) {
-            paths.filter(Files::isRegularFile)
-                    .filter(path -> {
-                        String fileExtension = path.toFile().getName();
-                        boolean shouldBeDeleted = fileExtension.endsWith(".gexf") || fileExtension.endsWith(".xlsx");
-                        return shouldBeDeleted;
-                    })
-                    .forEach(path -> {
-                        try {
-                            Files.deleteIfExists(path);
-                        } catch (IOException e) {
-                        }
-                    });
-        } catch (IOException ex) {
-            Logger.getLogger(TestingSuite.class.getName()).log(Level.SEVERE, null, ex);
+        return Path.of(settings().getProperty(testingFromWindows ? "local-path-download" : "server-path-download"));
+    }
+
+    public static List<String> functions() {
+        return Configuration.current().functions();
+    }
+
+    public static int driverPoolSize() {
+        return settings().intOr("driver-pool-size", DEFAULT_DRIVER_POOL_SIZE);
+    }
+
+    /**
+     * The metrics of the browser runs stay at the root of the metrics folder,
+     * those of the other modes go in a subfolder named after the mode.
+     */
+    public static Path metricsFolder(String mode) {
+        return mode.equals(BrowserSession.MODE) ? metricsFolder() : metricsFolder().resolve(mode);
+    }
+
+    public static Path metricsFolder() {
+        return settings().pathOr("metrics-folder", () -> rootFolder().resolve("metrics"));
+    }
+
+    public static Path goldenFolder() {
+        return settings().pathOr("golden-folder", () -> rootFolder().resolve("golden"));
+    }
+
+    /**
+     * The interval of a function in a mode: "run-interval-minutes.umigon"
+     * or "http-run-interval-minutes.umigon", else the interval of all the
+     * functions in that mode. 0 when the function is not tested in that mode.
+     */
+    public static int runIntervalMinutes(String mode, String function) {
+        ConfigSnapshot settings = settings();
+        String key = mode.equals(HttpSession.MODE) ? "http-run-interval-minutes" : "run-interval-minutes";
+        int defaultInterval = mode.equals(HttpSession.MODE) ? DEFAULT_HTTP_RUN_INTERVAL_MINUTES : DEFAULT_RUN_INTERVAL_MINUTES;
+        return settings.intOr(key + "." + function, settings.intOr(key, defaultInterval));
+    }
+
+    public static double scheduleJitterPercent() {
+        return settings().doubleOr("schedule-jitter-percent", DEFAULT_SCHEDULE_JITTER_PERCENT);
+    }
+
+    /**
+     * @return true to measure the page at every step of the browser runs,
+     * not only at the steps marked capture_performance=true
+     */
+    public static boolean capturePagePerformance() {
+        return settings().booleanOr("capture-page-performance", false);
+    }
+
+    public static Path recordingsFolder() {
+        return settings().pathOr("recordings-folder", () -> rootFolder().resolve("recordings"));
+    }
+
+    public static Path corpusFolder() {
+        return settings().pathOr("scaling-corpus-folder", () -> rootFolder().resolve("synthetic"));
+    }
+
+    public static Path historyFolder() {
+        return settings().pathOr("history-folder", () -> metricsFolder().resolve("history"));
+    }
+
+    /**
+     * @return 0 when the status server is off
+     */
+    public static int statusPort() {
+        return settings().intOr("status-port", DEFAULT_STATUS_PORT);
+    }
+
+    public static String statusAddress() {
+        return settings().stringOr("status-address", DEFAULT_STATUS_ADDRESS);
+    }
+
+    public static int replayRuns() {
+        return settings().intOr("replay-runs", DEFAULT_REPLAY_RUNS);
+    }
+
+    /**
+     * @return 0 for any free port
+     */
+    public static int replayPort() {
+        return settings().intOr("replay-port", 0);
+    }
+
+    /**
+     * The base addresses of the workers, as in "http://10.0.0.5:8687". Empty
+     * when the runs are local.
+     */
+    public static List<URI> workers() {
+        List<URI> workers = new ArrayList();
+        for (String worker : settings().stringOr("workers", "").split(",")) {
+            if (!worker.isBlank()) {
+                workers.add(URI.create(worker.trim()));
+            }
         }
+        return workers;
+    }
+
+    public static int workerPort() {
+        return settings().intOr("worker-port", DEFAULT_WORKER_PORT);
+    }
+
+    public static String workerAddress() {
+        return settings().stringOr("worker-address", DEFAULT_STATUS_ADDRESS);
+    }
+
+    /**
+     * @return null when the workers take runs from any coordinator
+     */
+    public static String workerToken() {
+        return settings().stringOr("worker-token", null);
+    }
+
+    public static int workerRunTimeoutSeconds() {
+        return settings().intOr("worker-run-timeout-seconds", DEFAULT_WORKER_RUN_TIMEOUT_SECONDS);
+    }
+
+    public static StepBudgets stepBudgets() {
+        return StepBudgets.fromProperties(loadProperties());
     }
 
     public static boolean isSILENT_LOGGING() {
-        return SILENT_LOGGING;
+        return settings().booleanOr("silent-logging", true);
     }
 
 }
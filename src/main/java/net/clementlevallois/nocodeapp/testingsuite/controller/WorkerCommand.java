@@ -0,0 +1,63 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.controller;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import net.clementlevallois.nocodeapp.testingsuite.config.Configuration;
+import net.clementlevallois.nocodeapp.testingsuite.distributed.WorkerServer;
+import net.clementlevallois.nocodeapp.testingsuite.functions.ScenarioTest;
+import net.clementlevallois.nocodeapp.testingsuite.sessions.BrowserSession;
+import net.clementlevallois.nocodeapp.testingsuite.sessions.HttpSession;
+import net.clementlevallois.nocodeapp.testingsuite.utils.AlertDispatcher;
+import net.clementlevallois.nocodeapp.testingsuite.utils.SlackAPI;
+
+/**
+ * The "worker" argument of the main class: serves the runs a coordinator
+ * sends, with a driver pool of its own, until the process is stopped. The
+ * results go back to the coordinator, which sends the alerts and keeps the
+ * metrics and the history.
+ *
+ * @author LEVALLOIS
+ */
+class WorkerCommand {
+
+    static void run() {
+        TestingSuite worker = new TestingSuite();
+        worker.initiateWebDrivers();
+        AlertDispatcher silentAlertDispatcher = TestingSuite.newAlertDispatcher(new SlackAPI(false));
+        WorkerServer.ScenarioRunner runner = (request, stepMetrics) -> {
+            ScenarioTest test = new ScenarioTest(Configuration.current().scenario(request.function()), silentAlertDispatcher, stepMetrics);
+            return switch (request.mode()) {
+                case HttpSession.MODE ->
+                    TestConductor.conductTestOverHttp(test, request.testFile(), stepMetrics);
+                case BrowserSession.MODE ->
+                    TestConductor.conductTestOnPooledDriver(test, request.testFile(), worker.getWebDriverPool(), stepMetrics);
+                default ->
+                    throw new IllegalArgumentException("unknown mode " + request.mode());
+            };
+        };
+        try {
+            WorkerServer workerServer = new WorkerServer(new InetSocketAddress(TestingSuite.workerAddress(), TestingSuite.workerPort()), TestingSuite.driverPoolSize(), TestingSuite.workerToken(), runner).start();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                workerServer.close();
+                silentAlertDispatcher.close();
+            }));
+            System.out.println("worker waiting for runs at http://" + TestingSuite.workerAddress() + ":" + workerServer.getAddress().getPort() + ", " + TestingSuite.driverPoolSize() + " slots");
+        } catch (IOException ex) {
+            Logger.getLogger(WorkerCommand.class.getName()).log(Level.SEVERE, "could not start the worker on port " + TestingSuite.workerPort(), ex);
+            worker.getWebDriverPool().shutdown();
+            silentAlertDispatcher.close();
+            return;
+        }
+        try {
+            Configuration.startWatching();
+        } catch (IOException ex) {
+            Logger.getLogger(WorkerCommand.class.getName()).log(Level.SEVERE, "could not watch the configuration, changes will need a restart", ex);
+        }
+    }
+
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.distributed;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import net.clementlevallois.nocodeapp.testingsuite.functions.TestResult;
+import net.clementlevallois.nocodeapp.testingsuite.metrics.StepMetrics;
+import net.clementlevallois.nocodeapp.testingsuite.utils.StepBudgets;
+
+/**
+ * Hands the runs of the scenarios to workers, each a {@link WorkerServer}
+ * in a JVM of its own, on this machine or another. Every free slot of a
+ * worker waits in a queue: a run takes the next one, so that the runs spread
+ * over the workers and never wait on a busy one while another is free. The
+ * steps of the results go into the metrics of the coordinator, as if the run
+ * had been local. A worker that cannot be reached is left aside for a while,
+ * and the run goes to another one. A run a worker took is never sent again,
+ * even when it times out.
+ *
+ * @author LEVALLOIS
+ */
+public class Coordinator {
+
+    private static final Duration HEALTH_TIMEOUT = Duration.ofSeconds(5);
+    private static final Duration DOWN_WORKER_PAUSE = Duration.ofSeconds(30);
+    private static final Duration BUSY_WORKER_PAUSE = Duration.ofSeconds(1);
+
+    public record WorkerStatus(URI uri, int slots, boolean up, long runs, long errors) {
+
+    }
+
+    private static class Worker {
+
+        final URI uri;
+        int slots;
+        volatile boolean up;
+        final AtomicLong runs = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+
+        Worker(URI uri) {
+            this.uri = uri;
+        }
+    }
+
+    private final List<Worker> workers = new ArrayList();
+    // one entry per free slot of a worker
+    private final BlockingQueue<Worker> freeSlots = new LinkedBlockingQueue();
+    private final ScheduledExecutorService pauses = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "coordinator-pauses");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final HttpClient httpClient = HttpClient.newBuilder().connectTimeout(HEALTH_TIMEOUT).build();
+    private final Duration runTimeout;
+    private final String token;
+
+    /**
+     * Asks each worker its number of slots. A worker that does not answer
+     * gets one slot until it does.
+     *
+     * @param runTimeout how long a worker can take for one run before it is
+     * considered lost
+     * @param token the secret of the workers, null when they have none
+     */
+    public Coordinator(List<URI> workerUris, Duration runTimeout, String token) {
+        if (workerUris.isEmpty()) {
+            throw new IllegalArgumentException("a coordinator needs at least one worker");
+        }
+        this.runTimeout = runTimeout;
+        this.token = token;
+        int maxSlots = 0;
+        for (URI uri : workerUris) {
+            Worker worker = new Worker(uri);
+            worker.slots = askSlots(worker);
+            workers.add(worker);
+            maxSlots = Math.max(maxSlots, worker.slots);
+        }
+        // slots queued in turns across the workers, for the first runs to spread over all of them
+        for (int slot = 0; slot < maxSlots; slot++) {
+            for (Worker worker : workers) {
+                if (slot < worker.slots) {
+                    freeSlots.add(worker);
+                }
+            }
+        }
+    }
+
+    private int askSlots(Worker worker) {
+        try {
+            HttpResponse<byte[]> response = httpClient.send(request(worker, WorkProtocol.HEALTH_PATH).timeout(HEALTH_TIMEOUT).GET().build(), HttpResponse.BodyHandlers.ofByteArray());
+            int slots = response.statusCode() == 200 ? WorkProtocol.slots(WorkProtocol.fromBytes(response.body())) : 0;
+            if (slots > 0) {
+                worker.up = true;
+                return slots;
+            }
+            Logger.getLogger(Coordinator.class.getName()).log(Level.WARNING, "worker {0} answered {1} to its health check", new Object[]{worker.uri, response.statusCode()});
+        } catch (IOException | IllegalArgumentException ex) {
+            Logger.getLogger(Coordinator.class.getName()).log(Level.WARNING, "worker {0} is not reachable: {1}", new Object[]{worker.uri, ex.toString()});
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        return 1;
+    }
+
+    /**
+     * Runs a scenario on the next free worker and records its steps in the
+     * metrics. Never throws: whatever goes wrong ends up in the result.
+     */
+    public TestResult run(String function, String testFile, String mode, StepMetrics stepMetrics) {
+        WorkProtocol.RunRequest runRequest = new WorkProtocol.RunRequest(function, testFile, mode);
+        byte[] body = WorkProtocol.toBytes(WorkProtocol.encodeRequest(runRequest));
+        Instant start = Instant.now();
+        Exception lastError = null;
+        // every worker gets a chance, and one more for a worker back from a pause
+        for (int attempt = 0; attempt <= workers.size(); attempt++) {
+            Worker worker;
+            try {
+                worker = freeSlots.take();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return TestResult.error(function, testFile, mode, start, ex);
+            }
+            Duration pause = Duration.ZERO;
+            try {
+                HttpResponse<byte[]> response = httpClient.send(request(worker, WorkProtocol.RUN_PATH)
+                        .timeout(runTimeout)
+                        .header("Content-Type", WorkProtocol.CONTENT_TYPE)
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                        .build(), HttpResponse.BodyHandlers.ofByteArray());
+                worker.up = true;
+                switch (response.statusCode()) {
+                    case 200 -> {
+                        Properties answer = WorkProtocol.fromBytes(response.body());
+                        TestResult result = WorkProtocol.decodeResult(runRequest, answer);
+                        for (Map.Entry<String, Long> step : WorkProtocol.stepMicros(answer).entrySet()) {
+                            // flagged as the worker flags them: the step that failed, and the total of a failed run
+                            boolean failed = result.failed() && (step.getKey().equals(result.failedStep()) || step.getKey().equals(StepBudgets.TOTAL));
+                            stepMetrics.record(function, testFile, step.getKey(), Duration.ofNanos(step.getValue() * 1_000), failed);
+                        }
+                        worker.runs.incrementAndGet();
+                        addSlots(worker, WorkProtocol.slots(answer));
+                        return result;
+                    }
+                    case 503 -> {
+                        // busy with the runs of another coordinator
+                        pause = BUSY_WORKER_PAUSE;
+                        lastError = new IOException("worker " + worker.uri + " busy");
+                    }
+                    default -> {
+                        // the worker could not run it: another worker with the same scenarios would not either
+                        worker.errors.incrementAndGet();
+                        return TestResult.error(function, testFile, mode, start,
+                                new IOException("worker " + worker.uri + " answered " + response.statusCode() + ": " + new String(response.body(), StandardCharsets.UTF_8).trim()));
+                    }
+                }
+            } catch (ConnectException | HttpConnectTimeoutException ex) {
+                // the run never reached the worker: another one can take it, and this one is left aside for a while
+                worker.up = false;
+                worker.errors.incrementAndGet();
+                pause = DOWN_WORKER_PAUSE;
+                lastError = ex;
+                Logger.getLogger(Coordinator.class.getName()).log(Level.WARNING, "worker {0} not reachable for {1} {2}: {3}", new Object[]{worker.uri, function, testFile, ex.toString()});
+            } catch (HttpTimeoutException ex) {
+                // the worker may still be running it: sending it again would put the load on the app twice
+                worker.errors.incrementAndGet();
+                return new TestResult(function, testFile, mode, TestResult.Status.TIMED_OUT, null,
+                        List.of("timeout: no answer from worker " + worker.uri + " after " + runTimeout.toSeconds() + " s"), start, Duration.between(start, Instant.now()));
+            } catch (IOException | IllegalArgumentException ex) {
+                // the worker took the run, then the connection broke or the answer was garbage: not run again
+                worker.up = false;
+                worker.errors.incrementAndGet();
+                pause = DOWN_WORKER_PAUSE;
+                Logger.getLogger(Coordinator.class.getName()).log(Level.WARNING, "worker {0} failed to run {1} {2}: {3}", new Object[]{worker.uri, function, testFile, ex.toString()});
+                return TestResult.error(function, testFile, mode, start, new IOException("worker " + worker.uri + " failed: " + ex, ex));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return TestResult.error(function, testFile, mode, start, ex);
+            } finally {
+                giveBack(worker, pause);
+            }
+        }
+        return TestResult.error(function, testFile, mode, start, lastError != null ? lastError : new IOException("no worker could run it"));
+    }
+
+    private HttpRequest.Builder request(Worker worker, String path) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(worker.uri.resolve(path));
+        if (token != null) {
+            builder.header(WorkProtocol.TOKEN_HEADER, token);
+        }
+        return builder;
+    }
+
+    private void giveBack(Worker worker, Duration pause) {
+        if (pause.isZero()) {
+            freeSlots.add(worker);
+        } else {
+            pauses.schedule(() -> freeSlots.add(worker), pause.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * A worker unreachable at the start, or given more browsers since, gets
+     * the slots it announces.
+     */
+    private void addSlots(Worker worker, int slots) {
+        synchronized (worker) {
+            for (; worker.slots < slots; worker.slots++) {
+                freeSlots.add(worker);
+            }
+        }
+    }
+
+    public List<WorkerStatus> getStatus() {
+        List<WorkerStatus> status = new ArrayList();
+        for (Worker worker : workers) {
+            int slots;
+            synchronized (worker) {
+                slots = worker.slots;
+            }
+            status.add(new WorkerStatus(worker.uri, slots, worker.up, worker.runs.get(), worker.errors.get()));
+        }
+        return status;
+    }
+
+    public void shutdown() {
+        pauses.shutdownNow();
+    }
+
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.distributed;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SortedMap;
+import net.clementlevallois.nocodeapp.testingsuite.functions.TestResult;
+import net.clementlevallois.nocodeapp.testingsuite.metrics.LatencySummary;
+import net.clementlevallois.nocodeapp.testingsuite.metrics.StepKey;
+
+/**
+ * What a coordinator and its workers say to each other over HTTP, written as
+ * properties files like the rest of the configuration of the suite.
+ * <p>
+ * POST /run asks for one run of a function on one test file: function,
+ * test_file and mode. The answer has the result, status, failed_step,
+ * message.1, message.2..., start and duration_micros, the duration of each
+ * step as step.&lt;name&gt;=micros, and the slots of the worker. GET /health
+ * answers with the slots alone.
+ *
+ * @author LEVALLOIS
+ */
+public class WorkProtocol {
+
+    public static final int VERSION = 1;
+    public static final String RUN_PATH = "/run";
+    public static final String HEALTH_PATH = "/health";
+    // a secret shared by the coordinator and its workers, when the workers listen beyond the loopback
+    public static final String TOKEN_HEADER = "X-Worker-Token";
+    public static final String CONTENT_TYPE = "text/plain; charset=utf-8";
+    private static final String STEP_PREFIX = "step.";
+    private static final String MESSAGE_PREFIX = "message.";
+
+    public record RunRequest(String function, String testFile, String mode) {
+
+    }
+
+    public static Properties encodeRequest(RunRequest request) {
+        Properties properties = new Properties();
+        properties.setProperty("version", String.valueOf(VERSION));
+        properties.setProperty("function", request.function());
+        properties.setProperty("test_file", request.testFile());
+        properties.setProperty("mode", request.mode());
+        return properties;
+    }
+
+    /**
+     * @throws IllegalArgumentException when a field is missing or the
+     * version is not this one
+     */
+    public static RunRequest decodeRequest(Properties properties) {
+        checkVersion(properties);
+        return new RunRequest(required(properties, "function"), required(properties, "test_file"), required(properties, "mode"));
+    }
+
+    /**
+     * @param steps the steps of the run, only those of its function and test
+     * file are kept
+     */
+    public static Properties encodeResult(TestResult result, SortedMap<StepKey, LatencySummary> steps, int slots) {
+        Properties properties = new Properties();
+        properties.setProperty("version", String.valueOf(VERSION));
+        properties.setProperty("slots", String.valueOf(slots));
+        properties.setProperty("status", result.status().name());
+        if (result.failedStep() != null) {
+            properties.setProperty("failed_step", result.failedStep());
+        }
+        for (int i = 0; i < result.messages().size(); i++) {
+            properties.setProperty(MESSAGE_PREFIX + (i + 1), result.messages().get(i));
+        }
+        properties.setProperty("start", result.start().toString());
+        properties.setProperty("duration_micros", String.valueOf(result.duration().toNanos() / 1_000));
+        for (Map.Entry<StepKey, LatencySummary> step : steps.entrySet()) {
+            StepKey key = step.getKey();
+            if (key.function().equals(result.function()) && key.testFile().equals(result.testFile())) {
+                // one run: the total of the step is its duration
+                properties.setProperty(STEP_PREFIX + key.step(), String.valueOf(step.getValue().totalMicros()));
+            }
+        }
+        return properties;
+    }
+
+    public static TestResult decodeResult(RunRequest request, Properties properties) {
+        checkVersion(properties);
+        List<String> messages = new ArrayList();
+        for (int i = 1; properties.getProperty(MESSAGE_PREFIX + i) != null; i++) {
+            messages.add(properties.getProperty(MESSAGE_PREFIX + i));
+        }
+        try {
+            return new TestResult(request.function(), request.testFile(), request.mode(),
+                    TestResult.Status.valueOf(required(properties, "status")),
+                    properties.getProperty("failed_step"),
+                    messages,
+                    Instant.parse(required(properties, "start")),
+                    Duration.ofNanos(Long.parseLong(required(properties, "duration_micros")) * 1_000));
+        } catch (DateTimeParseException ex) {
+            throw new IllegalArgumentException("not a time: " + properties.getProperty("start"), ex);
+        }
+    }
+
+    /**
+     * @return step -> its duration in the run, in microseconds
+     */
+    public static Map<String, Long> stepMicros(Properties properties) {
+        Map<String, Long> steps = new LinkedHashMap();
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith(STEP_PREFIX)) {
+                steps.put(key.substring(STEP_PREFIX.length()), Long.valueOf(properties.getProperty(key).trim()));
+            }
+        }
+        return steps;
+    }
+
+    /**
+     * @return the slots the worker announces, 0 when it does not say
+     */
+    public static int slots(Properties properties) {
+        String slots = properties.getProperty("slots");
+        return slots == null ? 0 : Integer.parseInt(slots.trim());
+    }
+
+    public static byte[] toBytes(Properties properties) {
+        StringWriter writer = new StringWriter();
+        try {
+            properties.store(writer, null);
+        } catch (IOException ex) {
+            // a StringWriter does not fail
+            throw new IllegalStateException(ex);
+        }
+        return writer.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static Properties fromBytes(byte[] bytes) {
+        Properties properties = new Properties();
+        try {
+            properties.load(new StringReader(new String(bytes, StandardCharsets.UTF_8)));
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+        return properties;
+    }
+
+    private static void checkVersion(Properties properties) {
+        String version = properties.getProperty("version");
+        if (!String.valueOf(VERSION).equals(version == null ? null : version.trim())) {
+            throw new IllegalArgumentException("protocol version " + version + ", expected " + VERSION);
+        }
+    }
+
+    private static String required(Properties properties, String key) {
+        String value = properties.getProperty(key);
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("missing " + key);
+        }
+        return value.trim();
+    }
+
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.distributed;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import net.clementlevallois.nocodeapp.testingsuite.functions.TestResult;
+import net.clementlevallois.nocodeapp.testingsuite.metrics.StepMetrics;
+
+/**
+ * Runs the scenarios a coordinator sends, with the browsers and the
+ * scenarios of this machine, and answers with the result and the durations
+ * of the steps. A worker runs at most as many scenarios at once as it has
+ * slots; a request beyond them gets a 503, for the coordinator to try
+ * another worker.
+ *
+ * @author LEVALLOIS
+ */
+public class WorkerServer implements Closeable {
+
+    /**
+     * Runs one scenario on this machine, recording its steps in the metrics
+     * it is given.
+     */
+    @FunctionalInterface
+    public interface ScenarioRunner {
+
+        TestResult run(WorkProtocol.RunRequest request, StepMetrics stepMetrics) throws IOException;
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final int slots;
+    private final Semaphore freeSlots;
+    private final String token;
+    private final ScenarioRunner runner;
+    private final AtomicLong runs = new AtomicLong();
+
+    /**
+     * @param token the secret the coordinator has to send, null to accept
+     * any coordinator
+     */
+    public WorkerServer(InetSocketAddress address, int slots, String token, ScenarioRunner runner) throws IOException {
+        this.slots = slots;
+        this.freeSlots = new Semaphore(slots);
+        this.token = token;
+        this.runner = runner;
+        server = HttpServer.create(address, 0);
+        server.createContext(WorkProtocol.RUN_PATH, this::run);
+        server.createContext(WorkProtocol.HEALTH_PATH, this::health);
+        server.setExecutor(executor);
+    }
+
+    public WorkerServer start() {
+        server.start();
+        return this;
+    }
+
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    public long getRuns() {
+        return runs.get();
+    }
+
+    private void health(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            Properties health = new Properties();
+            health.setProperty("version", String.valueOf(WorkProtocol.VERSION));
+            health.setProperty("slots", String.valueOf(slots));
+            health.setProperty("free_slots", String.valueOf(freeSlots.availablePermits()));
+            health.setProperty("runs", String.valueOf(runs.get()));
+            respond(exchange, 200, WorkProtocol.toBytes(health));
+        }
+    }
+
+    private void run(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                respond(exchange, 405, "POST only\n".getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            if (!isAuthorized(exchange)) {
+                respond(exchange, 403, "wrong token\n".getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            WorkProtocol.RunRequest request;
+            try (InputStream in = exchange.getRequestBody()) {
+                request = WorkProtocol.decodeRequest(WorkProtocol.fromBytes(in.readAllBytes()));
+            } catch (IllegalArgumentException ex) {
+                respond(exchange, 400, (ex.getMessage() + "\n").getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            if (!freeSlots.tryAcquire()) {
+                respond(exchange, 503, "no free slot\n".getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            byte[] body;
+            try {
+                // metrics of their own: the steps of this run only, whatever runs beside it
+                StepMetrics stepMetrics = new StepMetrics(1, true);
+                stepMetrics.startRun();
+                TestResult result = runner.run(request, stepMetrics);
+                body = WorkProtocol.toBytes(WorkProtocol.encodeResult(result, stepMetrics.endRun().steps(), slots));
+                runs.incrementAndGet();
+            } catch (IOException | RuntimeException ex) {
+                Logger.getLogger(WorkerServer.class.getName()).log(Level.SEVERE, "could not run " + request, ex);
+                respond(exchange, 500, ("error: " + ex.getMessage() + "\n").getBytes(StandardCharsets.UTF_8));
+                return;
+            } finally {
+                freeSlots.release();
+            }
+            respond(exchange, 200, body);
+        }
+    }
+
+    private boolean isAuthorized(HttpExchange exchange) {
+        if (token == null) {
+            return true;
+        }
+        String sent = exchange.getRequestHeaders().getFirst(WorkProtocol.TOKEN_HEADER);
+        return sent != null && MessageDigest.isEqual(sent.getBytes(StandardCharsets.UTF_8), token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", WorkProtocol.CONTENT_TYPE);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.drivers;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import org.openqa.selenium.WebDriver;
+
+/**
+ *
+ * @author LEVALLOIS
+ */
+public class PooledWebDriver {
+
+    private final int id;
+    private final WebDriver webDriver;
+    private final Path downloadFolder;
+    private final Instant createdAt;
+    private int runCount;
+    private boolean pageProbeInstalled;
+
+    public PooledWebDriver(int id, WebDriver webDriver, Path downloadFolder) {
+        this.id = id;
+        this.webDriver = webDriver;
+        this.downloadFolder = downloadFolder;
+        this.createdAt = Instant.now();
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public WebDriver getWebDriver() {
+        return webDriver;
+    }
+
+    public Path getDownloadFolder() {
+        return downloadFolder;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public synchronized int getRunCount() {
+        return runCount;
+    }
+
+    synchronized int incrementRunCount() {
+        return ++runCount;
+    }
+
+    /**
+     * Scripts added to every new document stay with the browser: the page
+     * probe installs its own once for the life of the driver.
+     *
+     * @return true for the first call only
+     */
+    public synchronized boolean markPageProbeInstalled() {
+        if (pageProbeInstalled) {
+            return false;
+        }
+        pageProbeInstalled = true;
+        return true;
+    }
+
+}
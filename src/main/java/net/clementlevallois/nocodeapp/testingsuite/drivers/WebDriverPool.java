@@ -0,0 +1,316 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.drivers;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import net.clementlevallois.utils.Clock;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.chrome.ChromeDriver;
+import org.openqa.selenium.chrome.ChromeOptions;
+
+/**
+ * Fixed-size pool of Chrome instances. A driver is health-checked before each
+ * test, recycled after a number of tests or when its page uses too much
+ * memory, and dead or recycled drivers are replaced in the background so that
+ * starting Chrome never delays a test.
+ *
+ * @author LEVALLOIS
+ */
+public class WebDriverPool {
+
+    private static final Duration HEALTH_CHECK_TIMEOUT = Duration.ofSeconds(10);
+    private static final Duration IDLE_CHECK_INTERVAL = Duration.ofMinutes(10);
+    private static final Duration RETRY_DELAY_AFTER_FAILED_START = Duration.ofSeconds(30);
+    private static final String JS_HEAP_SIZE = "return (window.performance && performance.memory) ? performance.memory.usedJSHeapSize : 0;";
+
+    private final int size;
+    private final Path downloadRoot;
+    private final boolean headless;
+    private final boolean silentLogging;
+    private final int maxRunsPerDriver;
+    private final long maxHeapBytes;
+    private final BlockingQueue<PooledWebDriver> available;
+    private final Map<Integer, PooledWebDriver> driversById = new ConcurrentHashMap();
+    private final ExecutorService maintenance;
+    private final ScheduledExecutorService idleChecks;
+    private final AtomicInteger replacing = new AtomicInteger();
+    private final AtomicLong replacements = new AtomicLong();
+    private volatile boolean shutdown = false;
+
+    public WebDriverPool(int size, Path downloadRoot, boolean headless, boolean silentLogging, int maxRunsPerDriver, int maxHeapMegabytes) throws IOException {
+        if (size < 1) {
+            throw new IllegalArgumentException("the driver pool needs at least one driver, was: " + size);
+        }
+        this.size = size;
+        this.downloadRoot = downloadRoot;
+        this.headless = headless;
+        this.silentLogging = silentLogging;
+        this.maxRunsPerDriver = maxRunsPerDriver;
+        this.maxHeapBytes = maxHeapMegabytes * 1024L * 1024L;
+        this.available = new ArrayBlockingQueue(size);
+        this.maintenance = Executors.newCachedThreadPool(daemonThreads("driver-pool-maintenance"));
+        this.idleChecks = Executors.newSingleThreadScheduledExecutor(daemonThreads("driver-pool-idle-checks"));
+        for (int id = 1; id <= size; id++) {
+            // each driver downloads in its own folder so that parallel tests never see each other's files
+            Files.createDirectories(downloadFolderOf(id));
+            available.add(startDriver(id));
+        }
+        idleChecks.scheduleWithFixedDelay(this::checkIdleDrivers, IDLE_CHECK_INTERVAL.toMinutes(), IDLE_CHECK_INTERVAL.toMinutes(), TimeUnit.MINUTES);
+    }
+
+    private Path downloadFolderOf(int id) {
+        return downloadRoot.resolve("driver-" + id);
+    }
+
+    private PooledWebDriver startDriver(int id) {
+        Clock clock = new Clock("initializing Chrome Driver " + id + " of " + size, silentLogging);
+        PooledWebDriver pooledWebDriver = new PooledWebDriver(id, createChromeDriver(downloadFolderOf(id)), downloadFolderOf(id));
+        clock.closeAndPrintClock();
+        driversById.put(id, pooledWebDriver);
+        return pooledWebDriver;
+    }
+
+    private WebDriver createChromeDriver(Path downloadFolder) {
+        ChromeOptions chromeOptions = new ChromeOptions();
+        String userAgent = "--user-agent=Mozilla/5.0 (compatible; MyRobot/1.0; +http://www.example.com/robot) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/123.0.0.0 Safari/537.36";
+        String headlessParamForGoogle = "--headless=new";
+        if (headless) {
+            List<String> arguments = List.of(userAgent, headlessParamForGoogle);
+            chromeOptions.addArguments(arguments);
+        } else {
+            List<String> arguments = List.of(userAgent);
+            chromeOptions.addArguments(arguments);
+        }
+        Map<String, Object> prefs = new HashMap();
+        prefs.put("intl.accept_languages", "fr");
+        prefs.put("intl.selected_languages", "fr");
+        prefs.put("download.default_directory", downloadFolder.toString());
+        chromeOptions.setExperimentalOption("prefs", prefs);
+        return new ChromeDriver(chromeOptions);
+    }
+
+    /**
+     * Blocks until a healthy driver is available. Drivers failing their health
+     * check are replaced in the background and never handed out.
+     */
+    public PooledWebDriver borrow() throws InterruptedException {
+        while (true) {
+            PooledWebDriver pooledWebDriver = available.take();
+            boolean healthy;
+            try {
+                healthy = isHealthy(pooledWebDriver);
+            } catch (InterruptedException ex) {
+                // the health of the driver is unknown, not bad: it goes back to the pool
+                available.offer(pooledWebDriver);
+                throw ex;
+            }
+            if (healthy) {
+                return pooledWebDriver;
+            }
+            replaceInBackground(pooledWebDriver, "failed its health check");
+        }
+    }
+
+    public void release(PooledWebDriver pooledWebDriver) {
+        if (pooledWebDriver == null) {
+            return;
+        }
+        String recycleReason;
+        try {
+            recycleReason = recycleReason(pooledWebDriver);
+        } catch (InterruptedException ex) {
+            // the driver is kept, and the interrupt left for the caller
+            Thread.currentThread().interrupt();
+            recycleReason = null;
+        }
+        if (recycleReason == null) {
+            available.offer(pooledWebDriver);
+        } else {
+            replaceInBackground(pooledWebDriver, recycleReason);
+        }
+    }
+
+    private String recycleReason(PooledWebDriver pooledWebDriver) throws InterruptedException {
+        int runCount = pooledWebDriver.incrementRunCount();
+        if (runCount >= maxRunsPerDriver) {
+            return "served " + runCount + " tests";
+        }
+        long heapBytes = jsHeapBytes(pooledWebDriver);
+        if (heapBytes < 0) {
+            return "did not answer within " + HEALTH_CHECK_TIMEOUT.toSeconds() + " seconds";
+        }
+        if (heapBytes > maxHeapBytes) {
+            return "uses " + (heapBytes / (1024 * 1024)) + " MB of JS heap";
+        }
+        return null;
+    }
+
+    /**
+     * @return -1 when the driver did not answer in time
+     */
+    private long jsHeapBytes(PooledWebDriver pooledWebDriver) throws InterruptedException {
+        Object heapSize = withTimeout(() -> ((JavascriptExecutor) pooledWebDriver.getWebDriver()).executeScript(JS_HEAP_SIZE));
+        if (heapSize == null) {
+            return -1;
+        }
+        return heapSize instanceof Number number ? number.longValue() : 0;
+    }
+
+    private boolean isHealthy(PooledWebDriver pooledWebDriver) throws InterruptedException {
+        return withTimeout(() -> pooledWebDriver.getWebDriver().getWindowHandle()) != null;
+    }
+
+    /**
+     * Runs a WebDriver command on another thread: a hung Chrome can block one
+     * for minutes.
+     *
+     * @return null when the command failed or did not answer in time
+     * @throws InterruptedException when the caller was interrupted while
+     * waiting: that tells nothing of the driver
+     */
+    private <T> T withTimeout(Callable<T> command) throws InterruptedException {
+        Future<T> answer = maintenance.submit(command);
+        try {
+            return answer.get(HEALTH_CHECK_TIMEOUT.toSeconds(), TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            answer.cancel(true);
+            throw ex;
+        } catch (ExecutionException | TimeoutException ex) {
+            answer.cancel(true);
+            return null;
+        }
+    }
+
+    private void replaceInBackground(PooledWebDriver pooledWebDriver, String reason) {
+        Logger.getLogger(WebDriverPool.class.getName()).log(Level.INFO, "replacing Chrome Driver {0}, which {1}", new Object[]{pooledWebDriver.getId(), reason});
+        replacing.incrementAndGet();
+        replacements.incrementAndGet();
+        maintenance.execute(() -> {
+            try {
+                replace(pooledWebDriver);
+            } finally {
+                replacing.decrementAndGet();
+            }
+        });
+    }
+
+    private void replace(PooledWebDriver pooledWebDriver) {
+        quitQuietly(pooledWebDriver);
+        while (!shutdown) {
+            try {
+                available.offer(startDriver(pooledWebDriver.getId()));
+                return;
+            } catch (Exception ex) {
+                Logger.getLogger(WebDriverPool.class.getName()).log(Level.SEVERE, "could not start a replacement for Chrome Driver " + pooledWebDriver.getId(), ex);
+                try {
+                    Thread.sleep(RETRY_DELAY_AFTER_FAILED_START.toMillis());
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void checkIdleDrivers() {
+        // one driver out of the pool at a time, so that a test starting meanwhile still finds the others
+        int idleCount = available.size();
+        for (int i = 0; i < idleCount && !shutdown; i++) {
+            PooledWebDriver pooledWebDriver = available.poll();
+            if (pooledWebDriver == null) {
+                return;
+            }
+            boolean healthy;
+            try {
+                healthy = isHealthy(pooledWebDriver);
+            } catch (InterruptedException ex) {
+                available.offer(pooledWebDriver);
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (healthy) {
+                available.offer(pooledWebDriver);
+            } else {
+                replaceInBackground(pooledWebDriver, "died while idle");
+            }
+        }
+    }
+
+    private static void quitQuietly(PooledWebDriver pooledWebDriver) {
+        try {
+            pooledWebDriver.getWebDriver().quit();
+        } catch (Exception ex) {
+            Logger.getLogger(WebDriverPool.class.getName()).log(Level.WARNING, "error when closing driver " + pooledWebDriver.getId(), ex);
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int availableCount() {
+        return available.size();
+    }
+
+    /**
+     * The drivers being replaced, out of the pool until their replacement
+     * has started.
+     */
+    public int replacingCount() {
+        return replacing.get();
+    }
+
+    /**
+     * The drivers replaced since the pool started, recycled or found dead.
+     */
+    public long replacementCount() {
+        return replacements.get();
+    }
+
+    public List<PooledWebDriver> drivers() {
+        return new ArrayList(driversById.values());
+    }
+
+    public void shutdown() {
+        shutdown = true;
+        idleChecks.shutdownNow();
+        maintenance.shutdownNow();
+        for (PooledWebDriver pooledWebDriver : driversById.values()) {
+            quitQuietly(pooledWebDriver);
+        }
+    }
+
+}
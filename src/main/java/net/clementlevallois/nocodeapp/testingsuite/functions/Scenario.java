@@ -0,0 +1,94 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.functions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * The steps of the test of one function and its test files, as declared in
+ * /&lt;function&gt;/scenario.txt next to the descriptors of the test files.
+ *
+ * @author LEVALLOIS
+ */
+public class Scenario {
+
+    public static final String DESCRIPTOR_FILE_NAME = "scenario.txt";
+
+    private final String function;
+    private final List<String> testFiles;
+    private final List<ScenarioStep> steps;
+    // test file -> its descriptor, when loaded with the scenario
+    private final Map<String, Properties> testFileDescriptors;
+
+    /**
+     * @param testFileDescriptors the descriptors of the test files, read at
+     * the same time as the scenario so that a run never mixes an old
+     * scenario with new descriptors
+     */
+    public Scenario(String function, List<String> testFiles, List<ScenarioStep> steps, Map<String, Properties> testFileDescriptors) {
+        this.function = function;
+        this.testFiles = List.copyOf(testFiles);
+        this.steps = List.copyOf(steps);
+        this.testFileDescriptors = Map.copyOf(testFileDescriptors);
+    }
+
+    public static Scenario fromDescriptor(String function, Properties descriptor, Map<String, Properties> testFileDescriptors) {
+        List<String> testFiles = testFilesOf(descriptor);
+        List<ScenarioStep> steps = new ArrayList();
+        for (String stepName : splitList(descriptor.getProperty("steps"))) {
+            steps.add(ScenarioStep.fromDescriptor(stepName, descriptor));
+        }
+        if (steps.isEmpty()) {
+            throw new IllegalArgumentException("the scenario of " + function + " has no steps");
+        }
+        return new Scenario(function, testFiles, steps, testFileDescriptors);
+    }
+
+    public static List<String> testFilesOf(Properties descriptor) {
+        return splitList(descriptor.getProperty("test_files"));
+    }
+
+    private static List<String> splitList(String value) {
+        List<String> values = new ArrayList();
+        if (value == null) {
+            return values;
+        }
+        for (String element : value.split(",")) {
+            if (!element.isBlank()) {
+                values.add(element.trim());
+            }
+        }
+        return values;
+    }
+
+    public String getFunction() {
+        return function;
+    }
+
+    public List<String> getTestFiles() {
+        return testFiles;
+    }
+
+    public List<ScenarioStep> getSteps() {
+        return steps;
+    }
+
+    /**
+     * @return a copy of the descriptor of the test file, or null when it
+     * was not loaded with the scenario
+     */
+    public Properties getTestFileDescriptor(String testFile) {
+        Properties descriptor = testFileDescriptors.get(testFile);
+        if (descriptor == null) {
+            return null;
+        }
+        Properties copy = new Properties();
+        copy.putAll(descriptor);
+        return copy;
+    }
+
+}
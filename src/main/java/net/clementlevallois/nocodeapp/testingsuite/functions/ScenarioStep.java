@@ -0,0 +1,116 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.functions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import org.openqa.selenium.By;
+
+/**
+ *
+ * @author LEVALLOIS
+ */
+public class ScenarioStep {
+
+    public enum Action {
+        OPEN, CLICK, UPLOAD, COUNT_ROWS, DOWNLOAD, CHECK_EXCEL, CHECK_GOLDEN, CHECK_GEXF
+    }
+
+    private final String name;
+    private final Action action;
+    private final Properties properties;
+
+    public ScenarioStep(String name, Action action, Properties properties) {
+        this.name = name;
+        this.action = action;
+        this.properties = properties;
+    }
+
+    /**
+     * Reads the keys "<step name>.<property>" of a scenario descriptor.
+     */
+    public static ScenarioStep fromDescriptor(String name, Properties descriptor) {
+        Properties properties = new Properties();
+        String prefix = name + ".";
+        for (String key : descriptor.stringPropertyNames()) {
+            if (key.startsWith(prefix)) {
+                properties.setProperty(key.substring(prefix.length()), descriptor.getProperty(key));
+            }
+        }
+        String action = properties.getProperty("action");
+        if (action == null) {
+            throw new IllegalArgumentException("step " + name + " has no action");
+        }
+        return new ScenarioStep(name, Action.valueOf(action.trim().toUpperCase(Locale.ROOT)), properties);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Action getAction() {
+        return action;
+    }
+
+    public String getDescription() {
+        return properties.getProperty("description", name);
+    }
+
+    public String getProperty(String key) {
+        return properties.getProperty(key);
+    }
+
+    public String getProperty(String key, String defaultValue) {
+        return properties.getProperty(key, defaultValue);
+    }
+
+    public String getRequiredProperty(String key) {
+        String value = properties.getProperty(key);
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("step " + name + " misses the property " + key);
+        }
+        return value.trim();
+    }
+
+    public List<String> getList(String key) {
+        List<String> values = new ArrayList();
+        String value = properties.getProperty(key);
+        if (value == null) {
+            return values;
+        }
+        for (String element : value.split(",")) {
+            if (!element.isBlank()) {
+                values.add(element.trim());
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Locators are written "id:...", "css:...", "class:..." or "xpath:...".
+     */
+    public static By toLocator(String value) {
+        int separator = value.indexOf(':');
+        if (separator < 0) {
+            throw new IllegalArgumentException("locator without a type: " + value);
+        }
+        String type = value.substring(0, separator).trim();
+        String selector = value.substring(separator + 1).trim();
+        return switch (type) {
+            case "id" ->
+                By.id(selector);
+            case "css" ->
+                By.cssSelector(selector);
+            case "class" ->
+                By.className(selector);
+            case "xpath" ->
+                By.xpath(selector);
+            default ->
+                throw new IllegalArgumentException("unknown locator type: " + type);
+        };
+    }
+
+}
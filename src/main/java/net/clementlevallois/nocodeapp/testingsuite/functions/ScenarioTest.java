@@ -0,0 +1,512 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.functions;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import net.clementlevallois.nocodeapp.testingsuite.config.Configuration;
+import net.clementlevallois.nocodeapp.testingsuite.controller.TestingSuite;
+import net.clementlevallois.nocodeapp.testingsuite.golden.GoldenDiff;
+import net.clementlevallois.nocodeapp.testingsuite.golden.GoldenFile;
+import net.clementlevallois.nocodeapp.testingsuite.metrics.PageMetrics;
+import net.clementlevallois.nocodeapp.testingsuite.metrics.PageTimings;
+import net.clementlevallois.nocodeapp.testingsuite.metrics.StepMetrics;
+import net.clementlevallois.nocodeapp.testingsuite.metrics.StepTimer;
+import net.clementlevallois.nocodeapp.testingsuite.sessions.ScenarioSession;
+import net.clementlevallois.nocodeapp.testingsuite.sessions.TableSummary;
+import net.clementlevallois.nocodeapp.testingsuite.utils.AlertDispatcher;
+import net.clementlevallois.nocodeapp.testingsuite.utils.ExcelReader;
+import net.clementlevallois.nocodeapp.testingsuite.utils.ExcelVerification;
+import net.clementlevallois.nocodeapp.testingsuite.utils.GexfReader;
+import net.clementlevallois.nocodeapp.testingsuite.utils.GexfVerification;
+import net.clementlevallois.nocodeapp.testingsuite.utils.StepBudgets;
+import net.clementlevallois.nocodeapp.testingsuite.utils.StepFailureException;
+import net.clementlevallois.nocodeapp.testingsuite.utils.StepTimeoutException;
+
+/**
+ * Runs the steps of a {@link Scenario} on one test file: the same engine
+ * tests every function, only the scenario descriptor changes.
+ *
+ * @author LEVALLOIS
+ */
+public class ScenarioTest implements TestInterface {
+
+    private static final Pattern EXPECTED_CELL = Pattern.compile("expected_result_row_(\\d+)_col_(\\d+)");
+    private static final Pattern EXPECTED_TABLE_CELL = Pattern.compile("expected_table_row_(\\d+)_col_(\\d+)");
+    private static final Pattern EXPECTED_COLUMN_HASH = Pattern.compile("expected_table_col_(\\d+)_hash");
+
+    private final Scenario scenario;
+    private final AlertDispatcher alertDispatcher;
+    private final StepMetrics stepMetrics;
+    private final PageMetrics pageMetrics;
+    private final boolean captureEveryStep;
+    private final String domain;
+    private final Path rootFolder;
+    private final StepBudgets stepBudgets;
+    private final Path goldenFolder;
+    // runs of the scaling benchmark: no verification, and the span from upload to download is timed
+    private final boolean scalingRun;
+
+    /**
+     * What the steps of one run of the scenario share.
+     */
+    private static class RunContext {
+
+        final String testFile;
+        final Properties testFileDescriptor;
+        final ScenarioSession session;
+        Path download;
+        boolean passed = true;
+        String failedStep;
+        final List<String> messages = new ArrayList();
+
+        RunContext(String testFile, Properties testFileDescriptor, ScenarioSession session) {
+            this.testFile = testFile;
+            this.testFileDescriptor = testFileDescriptor;
+            this.session = session;
+        }
+    }
+
+    public ScenarioTest(Scenario scenario, AlertDispatcher alertDispatcher, StepMetrics stepMetrics) {
+        this(scenario, alertDispatcher, stepMetrics, null);
+    }
+
+    /**
+     * @param pageMetrics where the timings of the pages go, for the steps
+     * marked capture_performance=true, or every step when the
+     * capture-page-performance property is true. Null to measure no page.
+     */
+    public ScenarioTest(Scenario scenario, AlertDispatcher alertDispatcher, StepMetrics stepMetrics, PageMetrics pageMetrics) {
+        this(scenario, alertDispatcher, stepMetrics, pageMetrics, false);
+    }
+
+    private ScenarioTest(Scenario scenario, AlertDispatcher alertDispatcher, StepMetrics stepMetrics, PageMetrics pageMetrics, boolean scalingRun) {
+        this.scenario = scenario;
+        this.scalingRun = scalingRun;
+        this.alertDispatcher = alertDispatcher;
+        this.stepMetrics = stepMetrics;
+        this.pageMetrics = pageMetrics;
+        captureEveryStep = TestingSuite.capturePagePerformance();
+        domain = TestingSuite.domain();
+        rootFolder = TestingSuite.rootFolder();
+        stepBudgets = TestingSuite.stepBudgets();
+        goldenFolder = TestingSuite.goldenFolder();
+    }
+
+    /**
+     * The same test for the scaling benchmark: the steps checking the results
+     * are skipped, so that no golden fingerprint of a generated corpus is
+     * recorded and no verification time adds to the measure, and the time
+     * from the start of the upload to the end of the download is recorded as
+     * the step {@link StepBudgets#UPLOAD_TO_DOWNLOAD}.
+     */
+    public ScenarioTest forScaling() {
+        return new ScenarioTest(scenario, alertDispatcher, stepMetrics, pageMetrics, true);
+    }
+
+    @Override
+    public String getName() {
+        return scenario.getFunction();
+    }
+
+    public Scenario getScenario() {
+        return scenario;
+    }
+
+    @Override
+    public List<String> getTestFiles() {
+        return scenario.getTestFiles();
+    }
+
+    @Override
+    public TestResult conductTest(ScenarioSession session, String testFile) {
+        return conductTest(session, testFile, null);
+    }
+
+    /**
+     * Runs the scenario on a test file that is not among the resources, such
+     * as a generated corpus.
+     *
+     * @param testFileDescriptor the properties of the test file, or null to
+     * read them from the resources
+     */
+    public TestResult conductTest(ScenarioSession session, String testFile, Properties testFileDescriptor) {
+        String name = getName();
+        Instant start = Instant.now();
+        String currentStep = StepBudgets.READ_DESCRIPTOR;
+        RunContext context = null;
+        try {
+            StepTimer timer = stepMetrics.startStep(name, testFile, StepBudgets.READ_DESCRIPTOR, "reading properties for test file " + testFile);
+            if (testFileDescriptor == null) {
+                testFileDescriptor = loadTestFileDescriptor(testFile);
+            }
+            timer.stop();
+
+            context = new RunContext(testFile, testFileDescriptor, session);
+            long uploadStart = -1;
+            for (ScenarioStep step : scenario.getSteps()) {
+                if (scalingRun && isVerification(step.getAction())) {
+                    continue;
+                }
+                currentStep = step.getName();
+                if (step.getAction() == ScenarioStep.Action.UPLOAD && uploadStart < 0) {
+                    uploadStart = System.nanoTime();
+                }
+                boolean capture = pageMetrics != null && (captureEveryStep || Boolean.parseBoolean(step.getProperty("capture_performance", "false")));
+                if (capture) {
+                    session.startPageCapture();
+                }
+                timer = stepMetrics.startStep(name, testFile, step.getName(), step.getDescription());
+                boolean passedBefore = context.passed;
+                boolean completed = false;
+                boolean canContinue;
+                try {
+                    canContinue = runStep(step, context);
+                    completed = true;
+                } finally {
+                    // a step that fails or times out is timed too: the slow runs are often these
+                    timer.stop(!completed || (passedBefore && !context.passed));
+                    if (capture) {
+                        PageTimings timings = session.stopPageCapture();
+                        if (timings != null) {
+                            pageMetrics.record(name, testFile, step.getName(), timings);
+                        }
+                    }
+                }
+                if (scalingRun && step.getAction() == ScenarioStep.Action.DOWNLOAD && uploadStart >= 0 && context.download != null) {
+                    stepMetrics.record(name, testFile, StepBudgets.UPLOAD_TO_DOWNLOAD, Duration.ofNanos(System.nanoTime() - uploadStart));
+                }
+                if (!context.passed && context.failedStep == null) {
+                    context.failedStep = currentStep;
+                }
+                if (!canContinue) {
+                    break;
+                }
+            }
+            if (context.download != null) {
+                Files.deleteIfExists(context.download);
+            }
+            TestResult.Status status = context.passed ? TestResult.Status.PASSED : TestResult.Status.FAILED;
+            return result(session, testFile, status, context.failedStep, context.messages, start);
+
+        } catch (StepTimeoutException ex) {
+            return stopped(session, testFile, TestResult.Status.TIMED_OUT, ex.getStep(), "timeout: " + ex.getMessage(), context, start);
+        } catch (StepFailureException ex) {
+            return stopped(session, testFile, TestResult.Status.FAILED, ex.getStep(), "error: " + ex.getMessage(), context, start);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return stopped(session, testFile, TestResult.Status.ERROR, currentStep, "interrupted", context, start);
+        } catch (IOException | RuntimeException ex) {
+            return stopped(session, testFile, TestResult.Status.ERROR, currentStep, "unspecified error: " + ex.getMessage(), context, start);
+        }
+    }
+
+    private static boolean isVerification(ScenarioStep.Action action) {
+        return action == ScenarioStep.Action.CHECK_EXCEL || action == ScenarioStep.Action.CHECK_GOLDEN || action == ScenarioStep.Action.CHECK_GEXF;
+    }
+
+    private TestResult stopped(ScenarioSession session, String testFile, TestResult.Status status, String step, String message, RunContext context, Instant start) {
+        report(message);
+        List<String> messages = new ArrayList();
+        if (context != null) {
+            messages.addAll(context.messages);
+        }
+        messages.add(message);
+        return result(session, testFile, status, step, messages, start);
+    }
+
+    private TestResult result(ScenarioSession session, String testFile, TestResult.Status status, String failedStep, List<String> messages, Instant start) {
+        return new TestResult(getName(), testFile, session.getMode(), status, failedStep, messages, start, Duration.between(start, Instant.now()));
+    }
+
+    /**
+     * @return false when the next steps cannot run, e.g. when no file was
+     * downloaded
+     */
+    private boolean runStep(ScenarioStep step, RunContext context) throws StepFailureException, IOException, InterruptedException {
+        ScenarioSession session = context.session;
+        switch (step.getAction()) {
+            case OPEN -> {
+                session.open(step.getName(), domain + step.getRequiredProperty("url"));
+                waitForExpectations(step, session);
+            }
+            case CLICK -> {
+                session.click(step.getName(), step.getRequiredProperty("target"));
+                waitForExpectations(step, session);
+            }
+            case UPLOAD -> {
+                String testFileName = context.testFileDescriptor.getProperty("name");
+                Path testFilePath = rootFolder.resolve(getName()).resolve(testFileName);
+                session.upload(step.getName(), step.getRequiredProperty("input"), testFilePath, step.getProperty("upload_button"), step.getProperty("confirm"));
+            }
+            case COUNT_ROWS -> {
+                Map<TableSummary.Cell, String> expectedCells = expectedTableCells(context.testFileDescriptor);
+                String expectation = step.getRequiredProperty("expected_rows");
+                // an empty table has no row to wait for: the step's own wait_for tells when the page is done
+                boolean mayBeEmpty = rowCountBounds(expectation, context.testFileDescriptor)[0] == 0;
+                waitForExpectations(step, session);
+                TableSummary table = session.summarizeTable(step.getName(), step.getRequiredProperty("rows"), mayBeEmpty, expectedCells.keySet());
+                String errorMessage = step.getProperty("error_message", "error on step " + step.getName());
+                if (!isRowCountAsExpected(table.rowCount(), expectation, context.testFileDescriptor)) {
+                    fail(context, errorMessage + ": found " + table.rowCount() + " rows, expected " + expectation);
+                }
+                checkTable(context, table, expectedCells, errorMessage);
+            }
+            case DOWNLOAD -> {
+                String extension = step.getProperty("extension", ".xlsx");
+                Optional<Path> download = session.download(step.getName(), step.getRequiredProperty("target"), extension);
+                if (download.isEmpty()) {
+                    fail(context, "error on " + getName() + " downloaded results: no " + extension + " result file downloaded within " + stepBudgets.budgetFor(step.getName()).toSeconds() + " seconds");
+                    return false;
+                }
+                context.download = download.get();
+            }
+            case CHECK_EXCEL -> {
+                if (context.download == null) {
+                    fail(context, "error on step " + step.getName() + ": no downloaded file to check");
+                    return false;
+                }
+                checkExpectedCells(context, step);
+            }
+            case CHECK_GOLDEN -> {
+                if (context.download == null) {
+                    fail(context, "error on step " + step.getName() + ": no downloaded file to check");
+                    return false;
+                }
+                checkAgainstGoldenFile(context, step);
+            }
+            case CHECK_GEXF -> {
+                if (context.download == null) {
+                    fail(context, "error on step " + step.getName() + ": no downloaded file to check");
+                    return false;
+                }
+                checkNetwork(context, step);
+            }
+        }
+        return true;
+    }
+
+    private void waitForExpectations(ScenarioStep step, ScenarioSession session) throws StepFailureException, InterruptedException {
+        List<String> expectedUrl = step.getList("expected_url");
+        if (!expectedUrl.isEmpty()) {
+            session.expectUrl(step.getName(), expectedUrl);
+        }
+        if (step.getProperty("wait_for") != null) {
+            session.waitFor(step.getName(), step.getRequiredProperty("wait_for"));
+        }
+    }
+
+    /**
+     * @param expectation "exactly:&lt;number&gt;" or "at_least:&lt;number&gt;", where
+     * the number can refer to a property of the test file, as in
+     * "exactly:nb_entries+1"
+     */
+    static boolean isRowCountAsExpected(int rowCount, String expectation, Properties testFileDescriptor) {
+        int[] bounds = rowCountBounds(expectation, testFileDescriptor);
+        return rowCount >= bounds[0] && rowCount <= bounds[1];
+    }
+
+    /**
+     * @return the minimum and maximum number of rows of an expectation
+     */
+    static int[] rowCountBounds(String expectation, Properties testFileDescriptor) {
+        int separator = expectation.indexOf(':');
+        String comparison = separator < 0 ? "exactly" : expectation.substring(0, separator).trim();
+        int expected = resolveNumber(expectation.substring(separator + 1).trim(), testFileDescriptor);
+        return switch (comparison) {
+            case "exactly" ->
+                new int[]{expected, expected};
+            case "at_least" ->
+                new int[]{expected, Integer.MAX_VALUE};
+            default ->
+                throw new IllegalArgumentException("unknown comparison for the number of rows: " + comparison);
+        };
+    }
+
+    static int resolveNumber(String expression, Properties testFileDescriptor) {
+        int total = 0;
+        int sign = 1;
+        for (String token : expression.split("(?=[+-])|(?<=[+-])")) {
+            String term = token.trim();
+            if (term.equals("+")) {
+                sign = 1;
+            } else if (term.equals("-")) {
+                sign = -1;
+            } else if (!term.isEmpty()) {
+                String value = term.chars().allMatch(Character::isDigit) ? term : testFileDescriptor.getProperty(term);
+                if (value == null) {
+                    throw new IllegalArgumentException("the test file has no property " + term);
+                }
+                total += sign * Integer.parseInt(value.trim());
+            }
+        }
+        return total;
+    }
+
+    /**
+     * The cells of the table on the page declared in the test file as
+     * expected_table_row_R_col_C, with R and C starting at 1.
+     */
+    private static Map<TableSummary.Cell, String> expectedTableCells(Properties testFileDescriptor) {
+        Map<TableSummary.Cell, String> expectedCells = new LinkedHashMap();
+        for (String key : testFileDescriptor.stringPropertyNames()) {
+            Matcher matcher = EXPECTED_TABLE_CELL.matcher(key);
+            if (matcher.matches()) {
+                expectedCells.put(new TableSummary.Cell(Integer.parseInt(matcher.group(1)) - 1, Integer.parseInt(matcher.group(2)) - 1), testFileDescriptor.getProperty(key).trim());
+            }
+        }
+        return expectedCells;
+    }
+
+    /**
+     * Checks the cells and, declared as expected_table_col_C_hash, the hashes
+     * of the columns of the table on the page.
+     */
+    private void checkTable(RunContext context, TableSummary table, Map<TableSummary.Cell, String> expectedCells, String errorMessage) {
+        for (Map.Entry<TableSummary.Cell, String> expected : expectedCells.entrySet()) {
+            TableSummary.Cell cell = expected.getKey();
+            String found = table.cells().get(cell);
+            if (!expected.getValue().equals(found)) {
+                fail(context, errorMessage + ": row " + (cell.row() + 1) + ", column " + (cell.column() + 1) + " is "
+                        + (found == null ? "missing" : "\"" + found + "\"") + ", expected \"" + expected.getValue() + "\"");
+            }
+        }
+        for (String key : context.testFileDescriptor.stringPropertyNames()) {
+            Matcher matcher = EXPECTED_COLUMN_HASH.matcher(key);
+            if (matcher.matches()) {
+                int column = Integer.parseInt(matcher.group(1)) - 1;
+                long expectedHash = Long.parseLong(context.testFileDescriptor.getProperty(key).trim());
+                if (table.columnHash(column) != expectedHash) {
+                    fail(context, errorMessage + ": column " + (column + 1) + " has the hash " + table.columnHash(column) + ", expected " + expectedHash);
+                }
+            }
+        }
+    }
+
+    private void checkExpectedCells(RunContext context, ScenarioStep step) throws IOException {
+        Properties testFileDescriptor = context.testFileDescriptor;
+        int sheetIndex = Integer.parseInt(step.getProperty("sheet", "0"));
+        ExcelVerification verification = new ExcelVerification();
+        // expected values are declared as expected_result_row_R_col_C, with R and C starting at 1
+        for (String key : testFileDescriptor.stringPropertyNames()) {
+            Matcher matcher = EXPECTED_CELL.matcher(key);
+            if (matcher.matches()) {
+                int row = Integer.parseInt(matcher.group(1)) - 1;
+                int column = Integer.parseInt(matcher.group(2)) - 1;
+                verification.expectCell(sheetIndex, row, column, testFileDescriptor.getProperty(key));
+            }
+        }
+        // checks on the whole sheet, which then has to be read to the end
+        if (step.getProperty("expected_rows") != null) {
+            int[] bounds = rowCountBounds(step.getRequiredProperty("expected_rows"), testFileDescriptor);
+            verification.expectRowCount(sheetIndex, bounds[0], bounds[1]);
+        }
+        for (String column : step.getList("non_empty_columns")) {
+            // the header row is not checked
+            verification.expectColumnNonEmpty(sheetIndex, Integer.parseInt(column) - 1, 1);
+        }
+        if (verification.isEmpty()) {
+            return;
+        }
+
+        ExcelVerification.Result result = ExcelReader.verify(context.download, verification);
+        for (String failure : result.failures()) {
+            fail(context, "error in the results for test file " + testFileDescriptor.getProperty("name") + ": " + failure);
+        }
+    }
+
+    private void checkNetwork(RunContext context, ScenarioStep step) throws IOException {
+        Properties testFileDescriptor = context.testFileDescriptor;
+        GexfVerification verification = new GexfVerification();
+        if (step.getProperty("expected_nodes") != null) {
+            int[] bounds = rowCountBounds(step.getRequiredProperty("expected_nodes"), testFileDescriptor);
+            verification.expectNodeCount(bounds[0], bounds[1]);
+        }
+        if (step.getProperty("expected_edges") != null) {
+            int[] bounds = rowCountBounds(step.getRequiredProperty("expected_edges"), testFileDescriptor);
+            verification.expectEdgeCount(bounds[0], bounds[1]);
+        }
+        for (String title : step.getList("node_attributes")) {
+            verification.expectAttribute(GexfVerification.NODE, title);
+        }
+        for (String title : step.getList("edge_attributes")) {
+            verification.expectAttribute(GexfVerification.EDGE, title);
+        }
+        // expected_node_N=label and expected_edge_N=source|target or source|target|weight
+        for (String key : testFileDescriptor.stringPropertyNames()) {
+            if (key.startsWith("expected_node_")) {
+                verification.expectNode(testFileDescriptor.getProperty(key).trim());
+            } else if (key.startsWith("expected_edge_")) {
+                String[] ends = testFileDescriptor.getProperty(key).split("\\|");
+                if (ends.length < 2) {
+                    throw new IllegalArgumentException(key + " should be written source|target or source|target|weight");
+                }
+                Double weight = ends.length > 2 ? Double.valueOf(ends[2].trim()) : null;
+                verification.expectEdge(ends[0].trim(), ends[1].trim(), weight);
+            }
+        }
+
+        GexfVerification.Result result = GexfReader.verify(context.download, verification);
+        for (String failure : result.failures()) {
+            fail(context, "error in the network for test file " + testFileDescriptor.getProperty("name") + ": " + failure);
+        }
+    }
+
+    private void checkAgainstGoldenFile(RunContext context, ScenarioStep step) throws IOException {
+        int sheetIndex = Integer.parseInt(step.getProperty("sheet", "0"));
+        String testFileName = context.testFile.endsWith(".txt") ? context.testFile.substring(0, context.testFile.length() - ".txt".length()) : context.testFile;
+        Path goldenFile = goldenFolder.resolve(getName()).resolve(testFileName + GoldenFile.EXTENSION);
+        if (Files.notExists(goldenFile)) {
+            // the first result becomes the reference: delete the fingerprint to record a new one
+            GoldenFile.Order order = GoldenFile.Order.valueOf(step.getProperty("order", "ordered").trim().toUpperCase(Locale.ROOT));
+            int rows = GoldenFile.recordIfAbsent(context.download, sheetIndex, order, goldenFile);
+            if (rows >= 0) {
+                System.out.println(getName() + ": recorded the golden fingerprint of " + rows + " rows for test file " + context.testFile + " in " + goldenFile);
+                return;
+            }
+            // the run of the other mode recorded it first: compared to it like any later run
+        }
+        GoldenDiff diff = GoldenFile.compare(context.download, sheetIndex, goldenFile);
+        if (!diff.isIdentical()) {
+            fail(context, "the results for test file " + context.testFileDescriptor.getProperty("name") + " differ from the golden file: " + diff.describe());
+        }
+    }
+
+    private Properties loadTestFileDescriptor(String testFile) throws IOException {
+        Properties loadedWithScenario = scenario.getTestFileDescriptor(testFile);
+        if (loadedWithScenario != null) {
+            return loadedWithScenario;
+        }
+        Properties descriptorForOneTestFile = Configuration.readDescriptor(getName(), testFile);
+        if (descriptorForOneTestFile == null) {
+            throw new IOException("Test file descriptor not found: " + File.separator + getName() + File.separator + testFile);
+        }
+        return descriptorForOneTestFile;
+    }
+
+    private void fail(RunContext context, String errorMessage) {
+        context.passed = false;
+        context.messages.add(errorMessage);
+        report(errorMessage);
+    }
+
+    private void report(String errorMessage) {
+        // queued for Slack: the test goes on without waiting
+        alertDispatcher.alert(getName(), errorMessage);
+    }
+
+}
@@ -4,7 +4,7 @@
 package net.clementlevallois.nocodeapp.testingsuite.functions;
 
 import java.util.List;
-import org.openqa.selenium.WebDriver;
+import net.clementlevallois.nocodeapp.testingsuite.sessions.ScenarioSession;
 
 /**
  *
@@ -13,7 +13,11 @@ import org.openqa.selenium.WebDriver;
 public interface TestInterface {
 
     public String getName();
-    public void conductTests(List<WebDriver> webDrivers);
+    public List<String> getTestFiles();
+    /**
+     * Never throws: whatever goes wrong ends up in the result.
+     */
+    public TestResult conductTest(ScenarioSession session, String testFile);
 
     
 }
@@ -0,0 +1,78 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.functions;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * The outcome of the test of one test file.
+ *
+ * @param failedStep the step where the test stopped or failed, null when it
+ * passed
+ * @param messages what went wrong, as reported to Slack
+ *
+ * @author LEVALLOIS
+ */
+public record TestResult(String function, String testFile, String mode, Status status, String failedStep, List<String> messages, Instant start, Duration duration) {
+
+    public enum Status {
+        /**
+         * every step passed
+         */
+        PASSED,
+        /**
+         * a check on the page or on the results failed
+         */
+        FAILED,
+        /**
+         * a step went over its time budget
+         */
+        TIMED_OUT,
+        /**
+         * the test could not run to its end for another reason
+         */
+        ERROR,
+        /**
+         * the test did not run, its function being probed less often after
+         * repeated failures
+         */
+        SKIPPED
+    }
+
+    public TestResult {
+        messages = List.copyOf(messages);
+    }
+
+    public static TestResult skipped(String function, String testFile, String mode, String reason) {
+        return new TestResult(function, testFile, mode, Status.SKIPPED, null, List.of(reason), Instant.now(), Duration.ZERO);
+    }
+
+    public static TestResult error(String function, String testFile, String mode, Instant start, Throwable cause) {
+        return new TestResult(function, testFile, mode, Status.ERROR, null, List.of(cause.getMessage() == null ? cause.toString() : cause.getMessage()), start, Duration.between(start, Instant.now()));
+    }
+
+    public boolean passed() {
+        return status == Status.PASSED;
+    }
+
+    /**
+     * @return true when the test ran and did not pass
+     */
+    public boolean failed() {
+        return status != Status.PASSED && status != Status.SKIPPED;
+    }
+
+    public String describe() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(function).append(" ").append(testFile).append(" (").append(mode).append("): ").append(status.name().toLowerCase());
+        if (failedStep != null) {
+            sb.append(" at step ").append(failedStep);
+        }
+        sb.append(", ").append(duration.toMillis()).append(" ms");
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.golden;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The rows of a result file that differ from its fingerprint. Rows are
+ * counted from 1 as in Excel; only the first rows of each kind are listed.
+ *
+ * @author LEVALLOIS
+ */
+public record GoldenDiff(int goldenRows, int rows, int changedCount, int missingCount, int addedCount, List<Integer> changedRows, List<Integer> missingRows, List<Integer> addedRows) {
+
+    static final int MAX_LISTED_ROWS = 20;
+
+    public boolean isIdentical() {
+        return changedCount == 0 && missingCount == 0 && addedCount == 0;
+    }
+
+    public String describe() {
+        if (isIdentical()) {
+            return "identical to the golden file (" + rows + " rows)";
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append(rows).append(" rows, ").append(goldenRows).append(" in the golden file");
+        appendRows(sb, "changed", changedCount, changedRows);
+        appendRows(sb, "missing", missingCount, missingRows);
+        appendRows(sb, "added", addedCount, addedRows);
+        return sb.toString();
+    }
+
+    private static void appendRows(StringBuilder sb, String kind, int count, List<Integer> listedRows) {
+        if (count == 0) {
+            return;
+        }
+        sb.append("; ").append(count).append(" ").append(kind).append(": ").append(listedRows);
+        if (count > listedRows.size()) {
+            sb.append("...");
+        }
+    }
+
+    static class Builder {
+
+        private final int goldenRows;
+        private int changedCount;
+        private int missingCount;
+        private int addedCount;
+        private final List<Integer> changedRows = new ArrayList();
+        private final List<Integer> missingRows = new ArrayList();
+        private final List<Integer> addedRows = new ArrayList();
+
+        Builder(int goldenRows) {
+            this.goldenRows = goldenRows;
+        }
+
+        void changed(int rowIndex) {
+            changedCount++;
+            list(changedRows, rowIndex);
+        }
+
+        void missing(int rowIndex) {
+            missingCount++;
+            list(missingRows, rowIndex);
+        }
+
+        void added(int rowIndex) {
+            addedCount++;
+            list(addedRows, rowIndex);
+        }
+
+        private static void list(List<Integer> rows, int rowIndex) {
+            if (rows.size() < MAX_LISTED_ROWS) {
+                rows.add(rowIndex + 1);
+            }
+        }
+
+        GoldenDiff build(int rows) {
+            // in unordered mode, rows come in the order of their hashes
+            return new GoldenDiff(goldenRows, rows, changedCount, missingCount, addedCount,
+                    changedRows.stream().sorted().toList(), missingRows.stream().sorted().toList(), addedRows.stream().sorted().toList());
+        }
+    }
+
+}
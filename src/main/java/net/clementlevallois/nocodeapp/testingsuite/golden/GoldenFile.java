@@ -0,0 +1,296 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.golden;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import net.clementlevallois.nocodeapp.testingsuite.utils.ExcelReader;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+
+/**
+ * The fingerprint of an expected result file: one 64 bit hash per row of a
+ * sheet, with the number of the row. In the order of the rows when the order
+ * of the rows matters, sorted by hash when it does not. A new download is
+ * compared to it while streaming, and the fingerprint is read through a
+ * memory mapping: neither workbook is ever held in memory.
+ *
+ * <p>
+ * Layout: the magic number "NCFP", the version, the order (0 for ordered, 1
+ * for unordered), 7 bytes of padding and the number of rows, followed by a
+ * (hash, row) pair of longs per row.
+ *
+ * @author LEVALLOIS
+ */
+public class GoldenFile {
+
+    public static final String EXTENSION = ".fingerprint";
+
+    public enum Order {
+        ORDERED, UNORDERED
+    }
+
+    private static final int MAGIC = 0x4E434650;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 24;
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * Fingerprints a sheet of an Excel file and saves it, replacing the
+     * previous fingerprint.
+     *
+     * @return the number of rows fingerprinted
+     */
+    public static int record(Path excelFile, int sheetIndex, Order order, Path goldenFile) throws IOException {
+        Path temporary = Files.createTempFile(directoryOf(goldenFile), goldenFile.getFileName().toString(), ".tmp");
+        try {
+            int rows = write(excelFile, sheetIndex, order, temporary);
+            Files.move(temporary, goldenFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return rows;
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Fingerprints a sheet of an Excel file and saves it, unless a fingerprint
+     * is already there. The browser and the http runs of a test file can
+     * record at the same time: each writes a temporary file of its own, and
+     * only the first one to link it in place wins.
+     *
+     * @return the number of rows fingerprinted, -1 when a fingerprint was
+     * already there
+     */
+    public static int recordIfAbsent(Path excelFile, int sheetIndex, Order order, Path goldenFile) throws IOException {
+        Path temporary = Files.createTempFile(directoryOf(goldenFile), goldenFile.getFileName().toString(), ".tmp");
+        try {
+            int rows = write(excelFile, sheetIndex, order, temporary);
+            try {
+                // a link is created whole or not at all, and never replaces a file
+                Files.createLink(goldenFile, temporary);
+            } catch (UnsupportedOperationException ex) {
+                // no hard links on this file system: no atomic move either without replacing
+                Files.move(temporary, goldenFile);
+            }
+            return rows;
+        } catch (FileAlreadyExistsException ex) {
+            return -1;
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private static Path directoryOf(Path goldenFile) throws IOException {
+        Path directory = goldenFile.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        return directory;
+    }
+
+    private static int write(Path excelFile, int sheetIndex, Order order, Path target) throws IOException {
+        RowHashes rowHashes = new RowHashes();
+        try (Workbook workbook = ExcelReader.openStreaming(excelFile)) {
+            for (Row row : sheet(workbook, sheetIndex)) {
+                rowHashes.add(hashRow(row), row.getRowNum());
+            }
+        }
+        if (order == Order.UNORDERED) {
+            rowHashes.sortByHash();
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(target)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeByte(order.ordinal());
+            out.write(new byte[7]);
+            out.writeLong(rowHashes.size);
+            for (int i = 0; i < rowHashes.size; i++) {
+                out.writeLong(rowHashes.hashes[i]);
+                out.writeLong(rowHashes.rows[i]);
+            }
+        }
+        return rowHashes.size;
+    }
+
+    /**
+     * Compares a sheet of an Excel file to a recorded fingerprint, in the
+     * order of the fingerprint.
+     */
+    public static GoldenDiff compare(Path excelFile, int sheetIndex, Path goldenFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(goldenFile, StandardOpenOption.READ)) {
+            ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION) {
+                throw new IOException("not a fingerprint file: " + goldenFile);
+            }
+            Order order = Order.values()[mapped.get(8)];
+            long goldenRows = mapped.getLong(16);
+            LongBuffer golden = mapped.position(HEADER_BYTES).slice().asLongBuffer();
+            try (Workbook workbook = ExcelReader.openStreaming(excelFile)) {
+                Sheet sheet = sheet(workbook, sheetIndex);
+                return order == Order.ORDERED
+                        ? compareOrdered(sheet, golden, (int) goldenRows)
+                        : compareUnordered(sheet, golden, (int) goldenRows);
+            }
+        }
+    }
+
+    private static GoldenDiff compareOrdered(Sheet sheet, LongBuffer golden, int goldenRows) {
+        GoldenDiff.Builder diff = new GoldenDiff.Builder(goldenRows);
+        int position = 0;
+        for (Row row : sheet) {
+            long hash = hashRow(row);
+            if (position < goldenRows) {
+                if (golden.get(2 * position) != hash) {
+                    diff.changed(row.getRowNum());
+                }
+            } else {
+                diff.added(row.getRowNum());
+            }
+            position++;
+        }
+        for (int missing = position; missing < goldenRows; missing++) {
+            diff.missing((int) golden.get(2 * missing + 1));
+        }
+        return diff.build(position);
+    }
+
+    private static GoldenDiff compareUnordered(Sheet sheet, LongBuffer golden, int goldenRows) {
+        // only the hashes of the new file are kept, 12 bytes per row, to be sorted and merged with the fingerprint
+        RowHashes rowHashes = new RowHashes();
+        for (Row row : sheet) {
+            rowHashes.add(hashRow(row), row.getRowNum());
+        }
+        rowHashes.sortByHash();
+        GoldenDiff.Builder diff = new GoldenDiff.Builder(goldenRows);
+        int g = 0;
+        int n = 0;
+        while (g < goldenRows || n < rowHashes.size) {
+            long goldenHash = g < goldenRows ? golden.get(2 * g) : 0;
+            long newHash = n < rowHashes.size ? rowHashes.hashes[n] : 0;
+            if (n >= rowHashes.size || (g < goldenRows && goldenHash < newHash)) {
+                diff.missing((int) golden.get(2 * g + 1));
+                g++;
+            } else if (g >= goldenRows || newHash < goldenHash) {
+                diff.added(rowHashes.rows[n]);
+                n++;
+            } else {
+                g++;
+                n++;
+            }
+        }
+        return diff.build(rowHashes.size);
+    }
+
+    private static Sheet sheet(Workbook workbook, int sheetIndex) throws IOException {
+        int index = 0;
+        for (Sheet sheet : workbook) {
+            if (index++ == sheetIndex) {
+                return sheet;
+            }
+        }
+        throw new IOException("sheet " + (sheetIndex + 1) + " not found, the file has " + index + " sheets");
+    }
+
+    /**
+     * FNV-1a over the columns and the values of the cells that are not blank,
+     * finished by the mixer of MurmurHash3 to spread the bits.
+     */
+    static long hashRow(Row row) {
+        long hash = FNV_OFFSET_BASIS;
+        for (Cell cell : row) {
+            if (cell == null) {
+                continue;
+            }
+            String value = ExcelReader.returnStringValue(cell).trim();
+            if (value.isEmpty()) {
+                continue;
+            }
+            hash = (hash ^ cell.getColumnIndex()) * FNV_PRIME;
+            for (int i = 0; i < value.length(); i++) {
+                hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+            }
+            // separates the cells, so that "ab","c" and "a","bc" differ
+            hash = (hash ^ 0x1F) * FNV_PRIME;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * Growable parallel arrays of hashes and row numbers.
+     */
+    private static class RowHashes {
+
+        long[] hashes = new long[1024];
+        int[] rows = new int[1024];
+        int size;
+
+        void add(long hash, int row) {
+            if (size == hashes.length) {
+                hashes = Arrays.copyOf(hashes, size * 2);
+                rows = Arrays.copyOf(rows, size * 2);
+            }
+            hashes[size] = hash;
+            rows[size] = row;
+            size++;
+        }
+
+        /**
+         * Heapsort of the pairs by hash, then by row: in place, so that
+         * sorting needs no memory on top of the arrays.
+         */
+        void sortByHash() {
+            for (int i = size / 2 - 1; i >= 0; i--) {
+                siftDown(i, size);
+            }
+            for (int end = size - 1; end > 0; end--) {
+                swap(0, end);
+                siftDown(0, end);
+            }
+        }
+
+        private void siftDown(int root, int end) {
+            while (2 * root + 1 < end) {
+                int child = 2 * root + 1;
+                if (child + 1 < end && greater(child + 1, child)) {
+                    child++;
+                }
+                if (!greater(child, root)) {
+                    return;
+                }
+                swap(root, child);
+                root = child;
+            }
+        }
+
+        private boolean greater(int a, int b) {
+            return hashes[a] != hashes[b] ? hashes[a] > hashes[b] : rows[a] > rows[b];
+        }
+
+        private void swap(int a, int b) {
+            long hash = hashes[a];
+            hashes[a] = hashes[b];
+            hashes[b] = hash;
+            int row = rows[a];
+            rows[a] = rows[b];
+            rows[b] = row;
+        }
+    }
+
+}
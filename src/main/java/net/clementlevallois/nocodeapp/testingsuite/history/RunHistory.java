@@ -0,0 +1,480 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.history;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import net.clementlevallois.nocodeapp.testingsuite.functions.TestResult;
+import net.clementlevallois.nocodeapp.testingsuite.metrics.LatencySummary;
+import net.clementlevallois.nocodeapp.testingsuite.metrics.StepKey;
+import net.clementlevallois.nocodeapp.testingsuite.utils.StepBudgets;
+
+/**
+ * Every step of every run, kept on disk for good: when it was stored, the
+ * run, the function, test file and step, the mode, the duration, the outcome
+ * and a fingerprint of it. Entries are only ever appended, in fixed size
+ * records, to one file per month; their times never go back, so that a time
+ * range is found by binary search in the files of its months, read through
+ * memory mappings. The names and messages are stored once, in a dictionary
+ * file, and the records hold their codes: filtering on a function or a step
+ * compares ints, and a string is only built for the entries returned.
+ * Several processes can append: each holds a lock on a file of its own while
+ * it adds its strings and records. Not on the dictionary: closing any other
+ * channel to a locked file would release the lock.
+ *
+ * <p>
+ * Layout of a month file: the magic number "NCRH", the version, the size of
+ * a record and 4 bytes of padding, followed by the records: the time, the
+ * start of the run, the duration in microseconds and the fingerprint (longs),
+ * the codes of the function, test file, step, mode and message (ints, -1 for
+ * no message), the status and 3 bytes of padding. A record cut short by a
+ * crash is ignored.
+ *
+ * @author LEVALLOIS
+ */
+public class RunHistory implements Closeable {
+
+    public static final String DICTIONARY_FILE_NAME = "strings.txt";
+    public static final String LOCK_FILE_NAME = "append.lock";
+    public static final String SEGMENT_PREFIX = "runs-";
+    public static final String SEGMENT_EXTENSION = ".nch";
+
+    private static final int MAGIC = 0x4E435248;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    static final int RECORD_BYTES = 56;
+    private static final int NO_CODE = -1;
+    private static final int MAX_MESSAGE_LENGTH = 1000;
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final Path folder;
+    // the strings by code and the codes by string, guarded by this instance
+    private final List<String> strings = new ArrayList();
+    private final Map<String, Integer> codes = new HashMap();
+    private final Path dictionary;
+    private final FileChannel dictionaryChannel;
+    private final FileChannel lockChannel;
+    // strings given a code during an append, written to the dictionary before its records
+    private final StringBuilder newStrings = new StringBuilder();
+    // bytes of the dictionary file read or written by this instance
+    private long dictionaryBytes;
+    // segments already mapped, remapped when they have grown
+    private final Map<Path, MappedByteBuffer> mappings = new HashMap();
+    private FileChannel appendChannel;
+    private YearMonth appendMonth;
+    private long lastTimeMillis;
+
+    /**
+     * One step of a run.
+     *
+     * @param time when the entry was stored
+     * @param message the first message of a test file that did not pass, on
+     * its failed step and on its total, else null
+     * @param fingerprint identifies the outcome of the test file: the same
+     * failure, whatever the numbers in its messages, has the same
+     * fingerprint. 0 when the test file passed
+     */
+    public record Entry(Instant time, Instant runStart, String function, String testFile, String step, String mode, TestResult.Status status, Duration duration, String message, long fingerprint) {
+
+    }
+
+    public RunHistory(Path folder) throws IOException {
+        this.folder = folder;
+        Files.createDirectories(folder);
+        this.dictionary = folder.resolve(DICTIONARY_FILE_NAME);
+        readNewStrings();
+        dictionaryChannel = FileChannel.open(dictionary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        lockChannel = FileChannel.open(folder.resolve(LOCK_FILE_NAME), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Stores the steps of the test files of a run: for each test file, its
+     * total from the result, and the duration of each of its steps in the
+     * run.
+     *
+     * @param steps the summaries of the steps of the run, as in
+     * {@link net.clementlevallois.nocodeapp.testingsuite.metrics.StepMetrics.RunSnapshot#steps()}
+     */
+    public synchronized void append(String mode, Instant runStart, List<TestResult> results, SortedMap<StepKey, LatencySummary> steps) throws IOException {
+        // another process may append too: the codes it gave and the time of its last record are read under the lock
+        FileLock lock = lockChannel.lock();
+        try {
+            readNewStrings();
+            if (Files.size(dictionary) > dictionaryBytes) {
+                // a line cut short by a crash: it is ended so that the next string starts on a line of its own
+                dictionaryChannel.write(ByteBuffer.wrap(new byte[]{'\n'}));
+                readNewStrings();
+            }
+            int knownStrings = strings.size();
+            try {
+                appendLocked(mode, runStart, results, steps);
+            } catch (IOException | RuntimeException ex) {
+                if (newStrings.length() > 0) {
+                    // codes that never reached the dictionary: another process may give them to other strings
+                    codes.values().removeIf(code -> code >= knownStrings);
+                    strings.subList(knownStrings, strings.size()).clear();
+                    newStrings.setLength(0);
+                }
+                throw ex;
+            }
+        } finally {
+            lock.release();
+        }
+    }
+
+    private void appendLocked(String mode, Instant runStart, List<TestResult> results, SortedMap<StepKey, LatencySummary> steps) throws IOException {
+        long now = Math.max(lastTimeMillis, System.currentTimeMillis());
+        YearMonth month = YearMonth.from(Instant.ofEpochMilli(now).atZone(ZoneOffset.UTC));
+        FileChannel channel = appendChannel(month);
+        now = Math.max(now, lastRecordTime(segment(month)));
+        ByteBuffer records = ByteBuffer.allocate(RECORD_BYTES * (results.size() + steps.size()));
+        for (TestResult result : results) {
+            long fingerprint = fingerprint(result);
+            int message = result.passed() || result.messages().isEmpty() ? NO_CODE : code(truncate(result.messages().get(0)));
+            putRecord(records, now, runStart, result.function(), result.testFile(), StepBudgets.TOTAL, mode, result.status(), result.duration().toNanos() / 1000, message, fingerprint);
+            for (Map.Entry<StepKey, LatencySummary> step : steps.entrySet()) {
+                StepKey key = step.getKey();
+                if (key.step().equals(StepBudgets.TOTAL) || !key.function().equals(result.function()) || !key.testFile().equals(result.testFile())) {
+                    continue;
+                }
+                boolean failedStep = key.step().equals(result.failedStep());
+                LatencySummary summary = step.getValue();
+                putRecord(records, now, runStart, key.function(), key.testFile(), key.step(), mode,
+                        failedStep ? result.status() : TestResult.Status.PASSED,
+                        summary.count() == 0 ? 0 : summary.totalMicros() / summary.count(),
+                        failedStep ? message : NO_CODE, fingerprint);
+            }
+        }
+        // the strings are on disk before the records using their codes
+        ByteBuffer stringBytes = StandardCharsets.UTF_8.encode(newStrings.toString());
+        dictionaryBytes += stringBytes.remaining();
+        newStrings.setLength(0);
+        while (stringBytes.hasRemaining()) {
+            dictionaryChannel.write(stringBytes);
+        }
+        records.flip();
+        while (records.hasRemaining()) {
+            channel.write(records);
+        }
+        lastTimeMillis = now;
+    }
+
+    private void putRecord(ByteBuffer records, long time, Instant runStart, String function, String testFile, String step, String mode, TestResult.Status status, long durationMicros, int message, long fingerprint) throws IOException {
+        records.putLong(time);
+        records.putLong(runStart.toEpochMilli());
+        records.putLong(durationMicros);
+        records.putLong(fingerprint);
+        records.putInt(code(function));
+        records.putInt(code(testFile));
+        records.putInt(code(step));
+        records.putInt(code(mode));
+        records.putInt(message);
+        records.put((byte) status.ordinal());
+        records.put(new byte[3]);
+    }
+
+    private FileChannel appendChannel(YearMonth month) throws IOException {
+        if (appendChannel != null && month.equals(appendMonth)) {
+            return appendChannel;
+        }
+        if (appendChannel != null) {
+            appendChannel.close();
+        }
+        Path segment = segment(month);
+        appendChannel = FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        if (appendChannel.size() == 0) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putInt(RECORD_BYTES).putInt(0).flip();
+            appendChannel.write(header);
+        } else if (appendChannel.size() > HEADER_BYTES && (appendChannel.size() - HEADER_BYTES) % RECORD_BYTES != 0) {
+            // a record cut short by a crash: the next ones would all be shifted
+            appendChannel.truncate(HEADER_BYTES + (appendChannel.size() - HEADER_BYTES) / RECORD_BYTES * RECORD_BYTES);
+        }
+        appendMonth = month;
+        return appendChannel;
+    }
+
+    private static long lastRecordTime(Path segment) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES + RECORD_BYTES) {
+                return 0;
+            }
+            ByteBuffer time = ByteBuffer.allocate(Long.BYTES);
+            channel.read(time, channel.size() - RECORD_BYTES);
+            return time.flip().remaining() == Long.BYTES ? time.getLong() : 0;
+        }
+    }
+
+    private Path segment(YearMonth month) {
+        return folder.resolve(SEGMENT_PREFIX + month + SEGMENT_EXTENSION);
+    }
+
+    private int code(String string) {
+        Integer code = codes.get(string);
+        if (code != null) {
+            return code;
+        }
+        // one string per line of the dictionary
+        String line = string.replace('\n', ' ').replace('\r', ' ');
+        code = codes.get(line);
+        if (code == null) {
+            code = strings.size();
+            newStrings.append(line).append('\n');
+            strings.add(line);
+            codes.put(line, code);
+        }
+        codes.putIfAbsent(string, code);
+        return code;
+    }
+
+    /**
+     * Reads the strings added to the dictionary by another process, like
+     * the monitor writing while a query runs.
+     */
+    private synchronized void readNewStrings() throws IOException {
+        if (Files.notExists(dictionary) || Files.size(dictionary) <= dictionaryBytes) {
+            return;
+        }
+        byte[] bytes;
+        try (InputStream in = Files.newInputStream(dictionary)) {
+            in.skipNBytes(dictionaryBytes);
+            bytes = in.readAllBytes();
+        }
+        // a line being written has no end yet: it is read next time
+        int start = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] == '\n') {
+                String string = new String(bytes, start, i - start, StandardCharsets.UTF_8);
+                codes.putIfAbsent(string, strings.size());
+                strings.add(string);
+                start = i + 1;
+            }
+        }
+        dictionaryBytes += start;
+    }
+
+    private static String truncate(String message) {
+        return message.length() <= MAX_MESSAGE_LENGTH ? message : message.substring(0, MAX_MESSAGE_LENGTH) + "...";
+    }
+
+    /**
+     * A hash of the status, the failed step and the messages of a result,
+     * the digits left out: "found 12 rows" and "found 13 rows" are the same
+     * failure.
+     */
+    static long fingerprint(TestResult result) {
+        if (result.passed()) {
+            return 0;
+        }
+        long hash = FNV_OFFSET_BASIS;
+        hash = hash(hash, result.status().name());
+        hash = hash(hash, result.failedStep() == null ? "" : result.failedStep());
+        for (String message : result.messages()) {
+            hash = hash(hash, message);
+        }
+        return hash == 0 ? 1 : hash;
+    }
+
+    private static long hash(long hash, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= '0' && c <= '9') {
+                continue;
+            }
+            hash ^= c;
+            hash *= FNV_PRIME;
+        }
+        hash ^= 0xff;
+        return hash * FNV_PRIME;
+    }
+
+    /**
+     * The entries stored between two times, oldest first.
+     *
+     * @param function null for all the functions
+     * @param step null for all the steps
+     * @param mode null for all the modes
+     * @param statuses null for all the statuses
+     */
+    public List<Entry> query(Instant from, Instant to, String function, String step, String mode, Set<TestResult.Status> statuses) throws IOException {
+        List<Entry> entries = new ArrayList();
+        scan(from, to, function, step, mode, statuses, (buffer, position) -> entries.add(entry(buffer, position)));
+        return entries;
+    }
+
+    /**
+     * The durations of a step between two times, sorted, without building an
+     * entry for each of them.
+     */
+    public long[] durationsMicros(Instant from, Instant to, String function, String step, String mode) throws IOException {
+        long[][] durations = {new long[1024]};
+        int[] count = {0};
+        scan(from, to, function, step, mode, EnumSet.of(TestResult.Status.PASSED), (buffer, position) -> {
+            if (count[0] == durations[0].length) {
+                durations[0] = Arrays.copyOf(durations[0], count[0] * 2);
+            }
+            durations[0][count[0]++] = buffer.getLong(position + 16);
+        });
+        long[] sorted = Arrays.copyOf(durations[0], count[0]);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * The duration of a step under which this share of its passed runs
+     * between two times went, as in 0.95 for the p95.
+     *
+     * @return null when the step did not pass in that time
+     */
+    public Duration percentile(Instant from, Instant to, String function, String step, String mode, double percentile) throws IOException {
+        long[] durations = durationsMicros(from, to, function, step, mode);
+        if (durations.length == 0) {
+            return null;
+        }
+        int rank = (int) Math.ceil(percentile * durations.length);
+        return Duration.ofNanos(durations[Math.max(0, Math.min(durations.length - 1, rank - 1))] * 1000);
+    }
+
+    /**
+     * The test files that did not pass between two times, one entry per test
+     * file and run.
+     */
+    public List<Entry> failures(Instant from, Instant to, String function, String mode) throws IOException {
+        return query(from, to, function, StepBudgets.TOTAL, mode, EnumSet.of(TestResult.Status.FAILED, TestResult.Status.TIMED_OUT, TestResult.Status.ERROR));
+    }
+
+    private interface RecordVisitor {
+
+        void visit(ByteBuffer buffer, int position);
+    }
+
+    private void scan(Instant from, Instant to, String function, String step, String mode, Set<TestResult.Status> statuses, RecordVisitor visitor) throws IOException {
+        readNewStrings();
+        // a name never stored matches nothing
+        int functionCode;
+        int stepCode;
+        int modeCode;
+        synchronized (this) {
+            functionCode = function == null ? NO_CODE : codes.getOrDefault(function, -2);
+            stepCode = step == null ? NO_CODE : codes.getOrDefault(step, -2);
+            modeCode = mode == null ? NO_CODE : codes.getOrDefault(mode, -2);
+        }
+        if (functionCode == -2 || stepCode == -2 || modeCode == -2) {
+            return;
+        }
+        boolean[] acceptedStatuses = new boolean[TestResult.Status.values().length];
+        for (TestResult.Status status : TestResult.Status.values()) {
+            acceptedStatuses[status.ordinal()] = statuses == null || statuses.contains(status);
+        }
+        long fromMillis = from.toEpochMilli();
+        long toMillis = to.toEpochMilli();
+        YearMonth last = YearMonth.from(to.atZone(ZoneOffset.UTC));
+        for (YearMonth month = YearMonth.from(from.atZone(ZoneOffset.UTC)); !month.isAfter(last); month = month.plusMonths(1)) {
+            ByteBuffer buffer = map(segment(month));
+            if (buffer == null) {
+                continue;
+            }
+            // the strings of the mapped records were written before them
+            readNewStrings();
+            int records = (buffer.limit() - HEADER_BYTES) / RECORD_BYTES;
+            for (int i = firstRecordAtOrAfter(buffer, records, fromMillis); i < records; i++) {
+                int position = HEADER_BYTES + i * RECORD_BYTES;
+                if (buffer.getLong(position) > toMillis) {
+                    break;
+                }
+                if ((functionCode == NO_CODE || buffer.getInt(position + 32) == functionCode)
+                        && (stepCode == NO_CODE || buffer.getInt(position + 40) == stepCode)
+                        && (modeCode == NO_CODE || buffer.getInt(position + 44) == modeCode)
+                        && acceptedStatuses[buffer.get(position + 52)]) {
+                    visitor.visit(buffer, position);
+                }
+            }
+        }
+    }
+
+    private static int firstRecordAtOrAfter(ByteBuffer buffer, int records, long millis) {
+        int low = 0;
+        int high = records;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (buffer.getLong(HEADER_BYTES + middle * RECORD_BYTES) < millis) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return a read only view of the whole records of the segment, or null
+     * when there is no such segment
+     */
+    private ByteBuffer map(Path segment) throws IOException {
+        synchronized (mappings) {
+            if (Files.notExists(segment)) {
+                return null;
+            }
+            MappedByteBuffer mapped = mappings.get(segment);
+            long size = Files.size(segment);
+            if (mapped == null || mapped.capacity() != size) {
+                try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+                    mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                }
+                if (size >= HEADER_BYTES && (mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION || mapped.getInt(8) != RECORD_BYTES)) {
+                    throw new IOException("not a run history file: " + segment);
+                }
+                mappings.put(segment, mapped);
+            }
+            if (size < HEADER_BYTES) {
+                return null;
+            }
+            // the same mapping serves queries in parallel: each gets its own positions
+            ByteBuffer view = mapped.duplicate();
+            view.limit((int) (HEADER_BYTES + (size - HEADER_BYTES) / RECORD_BYTES * RECORD_BYTES));
+            return view;
+        }
+    }
+
+    private synchronized Entry entry(ByteBuffer buffer, int position) {
+        int message = buffer.getInt(position + 48);
+        return new Entry(Instant.ofEpochMilli(buffer.getLong(position)), Instant.ofEpochMilli(buffer.getLong(position + 8)),
+                strings.get(buffer.getInt(position + 32)), strings.get(buffer.getInt(position + 36)),
+                strings.get(buffer.getInt(position + 40)), strings.get(buffer.getInt(position + 44)),
+                TestResult.Status.values()[buffer.get(position + 52)], Duration.ofNanos(buffer.getLong(position + 16) * 1000),
+                message == NO_CODE ? null : strings.get(message), buffer.getLong(position + 24));
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        dictionaryChannel.close();
+        lockChannel.close();
+        if (appendChannel != null) {
+            appendChannel.close();
+        }
+    }
+
+}
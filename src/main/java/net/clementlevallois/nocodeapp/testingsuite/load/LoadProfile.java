@@ -0,0 +1,101 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.load;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * How a load test runs: the mode of the virtual users, the number of users
+ * of each stage, how long it takes to start them all and how long a stage
+ * lasts once they are all running.
+ *
+ * @author LEVALLOIS
+ */
+public class LoadProfile {
+
+    private static final String DEFAULT_MODE = "http";
+    private static final String DEFAULT_USERS = "1,2,4,8";
+    private static final int DEFAULT_RAMP_UP_SECONDS = 30;
+    private static final int DEFAULT_STAGE_SECONDS = 300;
+
+    private final String mode;
+    private final List<Integer> usersPerStage;
+    private final Duration rampUp;
+    private final Duration stageDuration;
+    private final List<String> testFiles;
+
+    public LoadProfile(String mode, List<Integer> usersPerStage, Duration rampUp, Duration stageDuration, List<String> testFiles) {
+        if (usersPerStage.isEmpty()) {
+            throw new IllegalArgumentException("a load test needs at least one stage");
+        }
+        this.mode = mode;
+        this.usersPerStage = List.copyOf(usersPerStage);
+        this.rampUp = rampUp;
+        this.stageDuration = stageDuration;
+        this.testFiles = List.copyOf(testFiles);
+    }
+
+    /**
+     * Reads "load-mode", "load-users" (one number of users per stage, as in
+     * "1,2,4,8"), "load-ramp-up-seconds", "load-stage-seconds" and
+     * "load-test-files" (as in "topics/file_1.txt", empty for all the test
+     * files of the scenarios).
+     */
+    public static LoadProfile fromProperties(Properties properties) {
+        List<Integer> usersPerStage = new ArrayList();
+        for (String users : splitList(properties.getProperty("load-users", DEFAULT_USERS))) {
+            usersPerStage.add(Integer.valueOf(users));
+        }
+        return new LoadProfile(
+                properties.getProperty("load-mode", DEFAULT_MODE).trim(),
+                usersPerStage,
+                Duration.ofSeconds(Long.parseLong(properties.getProperty("load-ramp-up-seconds", String.valueOf(DEFAULT_RAMP_UP_SECONDS)).trim())),
+                Duration.ofSeconds(Long.parseLong(properties.getProperty("load-stage-seconds", String.valueOf(DEFAULT_STAGE_SECONDS)).trim())),
+                splitList(properties.getProperty("load-test-files")));
+    }
+
+    private static List<String> splitList(String value) {
+        List<String> values = new ArrayList();
+        if (value == null) {
+            return values;
+        }
+        for (String element : value.split(",")) {
+            if (!element.isBlank()) {
+                values.add(element.trim());
+            }
+        }
+        return values;
+    }
+
+    public String getMode() {
+        return mode;
+    }
+
+    public List<Integer> getUsersPerStage() {
+        return usersPerStage;
+    }
+
+    public int getMaxUsers() {
+        return usersPerStage.stream().mapToInt(Integer::intValue).max().getAsInt();
+    }
+
+    public Duration getRampUp() {
+        return rampUp;
+    }
+
+    public Duration getStageDuration() {
+        return stageDuration;
+    }
+
+    /**
+     * @return true when the test file of this function is part of the load
+     */
+    public boolean includes(String function, String testFile) {
+        return testFiles.isEmpty() || testFiles.contains(function + "/" + testFile);
+    }
+
+}
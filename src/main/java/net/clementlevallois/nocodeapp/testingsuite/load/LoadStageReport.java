@@ -0,0 +1,103 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.load;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import net.clementlevallois.nocodeapp.testingsuite.metrics.LatencySummary;
+import net.clementlevallois.nocodeapp.testingsuite.metrics.StepKey;
+import net.clementlevallois.nocodeapp.testingsuite.metrics.StepMetrics;
+
+/**
+ * What one stage of a load test measured: the journeys through the scenarios
+ * per test file, and the latencies of their steps. The steps that failed or
+ * timed out count in the percentiles, and their number is given next to them.
+ *
+ * @author LEVALLOIS
+ */
+public record LoadStageReport(int users, Instant start, Instant end, SortedMap<String, Journeys> journeys, SortedMap<StepKey, LatencySummary> steps) {
+
+    /**
+     * Journeys through the scenario of one test file, from the first step to
+     * the last.
+     */
+    public record Journeys(long passed, long failed) {
+
+        public long total() {
+            return passed + failed;
+        }
+
+        public double errorRate() {
+            return total() == 0 ? 0 : (double) failed / total();
+        }
+    }
+
+    public double seconds() {
+        return Math.max(1, Duration.between(start, end).toMillis()) / 1_000d;
+    }
+
+    public double throughput(long count) {
+        return count / seconds();
+    }
+
+    public String toText() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "stage with %d users, %.0f seconds%n", users, seconds()));
+        for (Map.Entry<String, Journeys> entry : journeys.entrySet()) {
+            Journeys journeysOfTestFile = entry.getValue();
+            sb.append(String.format(Locale.ROOT, "  %-30s %6d journeys  %7.3f/s  errors %5.1f%%%n",
+                    entry.getKey(), journeysOfTestFile.total(), throughput(journeysOfTestFile.total()), journeysOfTestFile.errorRate() * 100));
+        }
+        for (Map.Entry<StepKey, LatencySummary> entry : steps.entrySet()) {
+            StepKey key = entry.getKey();
+            LatencySummary summary = entry.getValue();
+            sb.append(String.format(Locale.ROOT, "  %-30s %-16s %6d  %7.3f/s  p50 %8.0f ms  p95 %8.0f ms  p99 %8.0f ms  failed %d%n",
+                    key.function() + "/" + key.testFile(), key.step(), summary.count(), throughput(summary.count()),
+                    StepMetrics.toMillis(summary.p50Micros()), StepMetrics.toMillis(summary.p95Micros()), StepMetrics.toMillis(summary.p99Micros()),
+                    summary.failures()));
+        }
+        return sb.toString();
+    }
+
+    void appendJson(StringBuilder sb, String indent) {
+        sb.append(indent).append("{\"users\": ").append(users)
+                .append(", \"start\": \"").append(start).append("\", \"end\": \"").append(end).append("\",\n");
+        sb.append(indent).append(" \"journeys\": [");
+        boolean first = true;
+        for (Map.Entry<String, Journeys> entry : journeys.entrySet()) {
+            Journeys journeysOfTestFile = entry.getValue();
+            sb.append(first ? "\n" : ",\n").append(indent).append("   {");
+            sb.append("\"test_file\": \"").append(StepMetrics.escapeJson(entry.getKey())).append("\", ");
+            sb.append("\"passed\": ").append(journeysOfTestFile.passed()).append(", ");
+            sb.append("\"failed\": ").append(journeysOfTestFile.failed()).append(", ");
+            sb.append("\"per_second\": ").append(throughput(journeysOfTestFile.total())).append(", ");
+            sb.append("\"error_rate\": ").append(journeysOfTestFile.errorRate()).append("}");
+            first = false;
+        }
+        sb.append(first ? "],\n" : "\n" + indent + " ],\n");
+        sb.append(indent).append(" \"steps\": [");
+        first = true;
+        for (Map.Entry<StepKey, LatencySummary> entry : steps.entrySet()) {
+            StepKey key = entry.getKey();
+            LatencySummary summary = entry.getValue();
+            sb.append(first ? "\n" : ",\n").append(indent).append("   {");
+            sb.append("\"function\": \"").append(StepMetrics.escapeJson(key.function())).append("\", ");
+            sb.append("\"test_file\": \"").append(StepMetrics.escapeJson(key.testFile())).append("\", ");
+            sb.append("\"step\": \"").append(StepMetrics.escapeJson(key.step())).append("\", ");
+            sb.append("\"count\": ").append(summary.count()).append(", ");
+            sb.append("\"per_second\": ").append(throughput(summary.count())).append(", ");
+            sb.append("\"p50_ms\": ").append(StepMetrics.toMillis(summary.p50Micros())).append(", ");
+            sb.append("\"p95_ms\": ").append(StepMetrics.toMillis(summary.p95Micros())).append(", ");
+            sb.append("\"p99_ms\": ").append(StepMetrics.toMillis(summary.p99Micros())).append(", ");
+            sb.append("\"max_ms\": ").append(StepMetrics.toMillis(summary.maxMicros())).append(", ");
+            sb.append("\"failed\": ").append(summary.failures()).append("}");
+            first = false;
+        }
+        sb.append(first ? "]}" : "\n" + indent + " ]}");
+    }
+
+}
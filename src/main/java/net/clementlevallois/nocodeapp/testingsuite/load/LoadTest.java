@@ -0,0 +1,160 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.load;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import net.clementlevallois.nocodeapp.testingsuite.functions.TestInterface;
+import net.clementlevallois.nocodeapp.testingsuite.metrics.StepMetrics;
+
+/**
+ * Replays the scenarios of the tests from many virtual users at once, in
+ * stages of increasing concurrency. Each virtual user is a virtual thread
+ * going through the test files one after the other until the end of the
+ * stage; the users of a stage start one by one during the ramp-up. The
+ * journeys and the steps of the ramp-up are left out of the report of the
+ * stage.
+ *
+ * @author LEVALLOIS
+ */
+public class LoadTest {
+
+    /**
+     * Runs one journey through the scenario of a test file, in a browser or
+     * over http.
+     */
+    @FunctionalInterface
+    public interface JourneyRunner {
+
+        /**
+         * @return true when every step of the journey passed
+         */
+        boolean run(TestInterface test, String testFile) throws InterruptedException;
+    }
+
+    private record Journey(TestInterface test, String testFile) {
+
+        String name() {
+            return test.getName() + "/" + testFile;
+        }
+    }
+
+    private final LoadProfile profile;
+    private final StepMetrics stepMetrics;
+    private final JourneyRunner journeyRunner;
+    private final List<Journey> journeys = new ArrayList();
+
+    /**
+     * @param stepMetrics the metrics the tests record their steps in
+     */
+    public LoadTest(LoadProfile profile, List<TestInterface> tests, StepMetrics stepMetrics, JourneyRunner journeyRunner) {
+        this.profile = profile;
+        this.stepMetrics = stepMetrics;
+        this.journeyRunner = journeyRunner;
+        for (TestInterface test : tests) {
+            for (String testFile : test.getTestFiles()) {
+                if (profile.includes(test.getName(), testFile)) {
+                    journeys.add(new Journey(test, testFile));
+                }
+            }
+        }
+        if (journeys.isEmpty()) {
+            throw new IllegalArgumentException("no test file to put under load");
+        }
+    }
+
+    public List<LoadStageReport> run() throws InterruptedException {
+        List<LoadStageReport> reports = new ArrayList();
+        for (int users : profile.getUsersPerStage()) {
+            LoadStageReport report = runStage(users);
+            System.out.print(report.toText());
+            reports.add(report);
+        }
+        return reports;
+    }
+
+    private LoadStageReport runStage(int users) throws InterruptedException {
+        ConcurrentMap<String, LongAdder> passed = new ConcurrentHashMap();
+        ConcurrentMap<String, LongAdder> failed = new ConcurrentHashMap();
+        long rampUpNanos = profile.getRampUp().toNanos();
+        long stageStart = System.nanoTime();
+        // only what happens once every user is running counts
+        long measureFrom = stageStart + rampUpNanos;
+        long stageEnd = measureFrom + profile.getStageDuration().toNanos();
+        Instant start;
+
+        try (ExecutorService virtualUsers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int user = 0; user < users; user++) {
+                int userIndex = user;
+                long startDelay = rampUpNanos * user / users;
+                virtualUsers.submit(() -> {
+                    Thread.sleep(Duration.ofNanos(startDelay));
+                    // users start on different test files, so that all of them are under load from the start
+                    int next = userIndex;
+                    while (System.nanoTime() < stageEnd && !Thread.currentThread().isInterrupted()) {
+                        Journey journey = journeys.get(next++ % journeys.size());
+                        boolean journeyPassed;
+                        try {
+                            journeyPassed = journeyRunner.run(journey.test(), journey.testFile());
+                        } catch (RuntimeException ex) {
+                            journeyPassed = false;
+                        }
+                        if (System.nanoTime() >= measureFrom) {
+                            (journeyPassed ? passed : failed).computeIfAbsent(journey.name(), k -> new LongAdder()).increment();
+                        }
+                    }
+                    return null;
+                });
+            }
+            Thread.sleep(Duration.ofNanos(measureFrom - System.nanoTime()));
+            // the steps recorded during the ramp-up are dropped
+            stepMetrics.startRun();
+            start = Instant.now();
+            // closing the executor waits for the users to finish their last journey
+        }
+
+        StepMetrics.RunSnapshot run = stepMetrics.endRun();
+        SortedMap<String, LoadStageReport.Journeys> journeysPerTestFile = new TreeMap();
+        for (Journey journey : journeys) {
+            LongAdder passedJourneys = passed.get(journey.name());
+            LongAdder failedJourneys = failed.get(journey.name());
+            journeysPerTestFile.put(journey.name(), new LoadStageReport.Journeys(
+                    passedJourneys == null ? 0 : passedJourneys.sum(),
+                    failedJourneys == null ? 0 : failedJourneys.sum()));
+        }
+        return new LoadStageReport(users, start, Instant.now(), journeysPerTestFile, run.steps());
+    }
+
+    public static void export(List<LoadStageReport> reports, String mode, Path reportFile) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\n  \"generated\": \"").append(Instant.now()).append("\",\n");
+        sb.append("  \"mode\": \"").append(StepMetrics.escapeJson(mode)).append("\",\n");
+        sb.append("  \"stages\": [");
+        for (int i = 0; i < reports.size(); i++) {
+            sb.append(i == 0 ? "\n" : ",\n");
+            reports.get(i).appendJson(sb, "    ");
+        }
+        sb.append(reports.isEmpty() ? "]\n" : "\n  ]\n");
+        sb.append("}\n");
+        Files.createDirectories(reportFile.getParent());
+        try (Writer writer = Files.newBufferedWriter(reportFile, StandardCharsets.UTF_8)) {
+            writer.write(sb.toString());
+        }
+    }
+
+}
@@ -0,0 +1,12 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.metrics;
+
+/**
+ *
+ * @author LEVALLOIS
+ */
+public record LatencySummary(long count, long p50Micros, long p95Micros, long p99Micros, long maxMicros, long totalMicros, long failures) {
+
+}
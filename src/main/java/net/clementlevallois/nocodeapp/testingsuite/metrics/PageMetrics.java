@@ -0,0 +1,127 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.metrics;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The last {@link PageTimings} of each step measured in the browser, exported
+ * next to the durations of the steps as page-metrics.json and
+ * page-metrics.prom, whose gauges a scraper turns into history. Only the last
+ * capture of a step is kept: each one replaces the one before, and only
+ * their number adds up. The history of the captures is the scraper's.
+ *
+ * @author LEVALLOIS
+ */
+public class PageMetrics {
+
+    public static final String JSON_FILE_NAME = "page-metrics.json";
+    public static final String PROMETHEUS_FILE_NAME = "page-metrics.prom";
+
+    private record Capture(Instant at, PageTimings timings) {
+
+    }
+
+    private final ConcurrentMap<StepKey, Capture> lastCaptures = new ConcurrentHashMap();
+    private final ConcurrentMap<StepKey, Long> captureCounts = new ConcurrentHashMap();
+
+    public void record(String function, String testFile, String step, PageTimings timings) {
+        StepKey stepKey = new StepKey(function, testFile, step);
+        lastCaptures.put(stepKey, new Capture(Instant.now(), timings));
+        captureCounts.merge(stepKey, 1L, Long::sum);
+    }
+
+    public SortedMap<StepKey, PageTimings> lastTimings() {
+        SortedMap<StepKey, PageTimings> timings = new TreeMap();
+        for (Map.Entry<StepKey, Capture> entry : lastCaptures.entrySet()) {
+            timings.put(entry.getKey(), entry.getValue().timings());
+        }
+        return timings;
+    }
+
+    public boolean isEmpty() {
+        return lastCaptures.isEmpty();
+    }
+
+    public synchronized void export(Path metricsFolder) throws IOException {
+        Files.createDirectories(metricsFolder);
+        StepMetrics.writeAtomically(metricsFolder.resolve(JSON_FILE_NAME), toJson());
+        StepMetrics.writeAtomically(metricsFolder.resolve(PROMETHEUS_FILE_NAME), toPrometheus());
+    }
+
+    public String toJson() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\n  \"generated\": \"").append(Instant.now()).append("\",\n  \"steps\": [");
+        boolean first = true;
+        SortedMap<StepKey, Capture> captures = new TreeMap(lastCaptures);
+        for (Map.Entry<StepKey, Capture> entry : captures.entrySet()) {
+            StepKey key = entry.getKey();
+            PageTimings t = entry.getValue().timings();
+            sb.append(first ? "\n" : ",\n").append("    {");
+            sb.append("\"function\": \"").append(StepMetrics.escapeJson(key.function())).append("\", ");
+            sb.append("\"test_file\": \"").append(StepMetrics.escapeJson(key.testFile())).append("\", ");
+            sb.append("\"step\": \"").append(StepMetrics.escapeJson(key.step())).append("\", ");
+            sb.append("\"captured\": \"").append(entry.getValue().at()).append("\", ");
+            sb.append("\"captures\": ").append(captureCounts.getOrDefault(key, 0L)).append(", ");
+            sb.append("\"navigated\": ").append(t.navigated()).append(", ");
+            sb.append("\"ttfb_ms\": ").append(t.ttfbMillis()).append(", ");
+            sb.append("\"dom_content_loaded_ms\": ").append(t.domContentLoadedMillis()).append(", ");
+            sb.append("\"load_ms\": ").append(t.loadMillis()).append(", ");
+            sb.append("\"resources\": ").append(t.resources()).append(", ");
+            sb.append("\"transfer_bytes\": ").append(t.transferBytes()).append(", ");
+            sb.append("\"ajax_requests\": ").append(t.ajaxRequests()).append(", ");
+            sb.append("\"ajax_server_ms\": ").append(t.ajaxServerMillis()).append(", ");
+            sb.append("\"ajax_max_server_ms\": ").append(t.ajaxMaxServerMillis()).append(", ");
+            sb.append("\"long_tasks\": ").append(t.longTasks()).append(", ");
+            sb.append("\"long_tasks_ms\": ").append(t.longTasksMillis()).append(", ");
+            sb.append("\"script_ms\": ").append(t.scriptMillis()).append(", ");
+            sb.append("\"layout_ms\": ").append(t.layoutMillis()).append("}");
+            first = false;
+        }
+        sb.append(first ? "]\n" : "\n  ]\n");
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    public String toPrometheus() {
+        SortedMap<StepKey, PageTimings> timings = lastTimings();
+        StringBuilder sb = new StringBuilder();
+        appendGauge(sb, timings, "ttfb_seconds", "Time to the first byte of the page loaded by the step", t -> t.navigated() ? t.ttfbMillis() / 1000 : Double.NaN);
+        appendGauge(sb, timings, "load_seconds", "Time to the load event of the page loaded by the step", t -> t.navigated() ? t.loadMillis() / 1000 : Double.NaN);
+        appendGauge(sb, timings, "transfer_bytes", "Bytes received during the step", t -> t.transferBytes());
+        appendGauge(sb, timings, "ajax_requests", "AJAX requests sent during the step", t -> t.ajaxRequests());
+        appendGauge(sb, timings, "ajax_server_seconds", "Time to the first byte of the answers to the AJAX requests of the step", t -> t.ajaxServerMillis() / 1000);
+        appendGauge(sb, timings, "long_tasks_seconds", "Time the main thread of the page was blocked by long tasks during the step", t -> t.longTasksMillis() / 1000);
+        appendGauge(sb, timings, "script_seconds", "Time spent running JavaScript during the step", t -> t.scriptMillis() / 1000);
+        appendGauge(sb, timings, "layout_seconds", "Time spent laying out the page during the step", t -> t.layoutMillis() / 1000);
+        return sb.toString();
+    }
+
+    private interface Field {
+
+        double of(PageTimings timings);
+    }
+
+    private static void appendGauge(StringBuilder sb, SortedMap<StepKey, PageTimings> timings, String name, String help, Field field) {
+        String metric = "nocodefunctions_page_" + name;
+        sb.append("# HELP ").append(metric).append(" ").append(help).append("\n");
+        sb.append("# TYPE ").append(metric).append(" gauge\n");
+        for (Map.Entry<StepKey, PageTimings> entry : timings.entrySet()) {
+            double value = field.of(entry.getValue());
+            if (Double.isNaN(value) || value < 0) {
+                continue;
+            }
+            sb.append(metric).append("{").append(StepMetrics.prometheusLabels(entry.getKey())).append("} ").append(value).append("\n");
+        }
+    }
+
+}
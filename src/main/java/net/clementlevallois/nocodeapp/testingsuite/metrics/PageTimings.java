@@ -0,0 +1,29 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.metrics;
+
+/**
+ * What the browser did during a step, to tell the time of the server from the
+ * time of the network and the time of the page. Durations in milliseconds,
+ * -1 when unknown. The navigation timings are only known for the steps that
+ * loaded a new page.
+ *
+ * @param ttfbMillis from the request of the page to the first byte of the
+ * answer
+ * @param transferBytes bytes received over the network for the page and its
+ * resources, headers included, 0 for what came from the cache
+ * @param ajaxServerMillis sum over the AJAX requests, like the posts of the
+ * JSF forms, of the time from the request to the first byte of the answer
+ * @param longTasksMillis time spent by the page in tasks of more than 50 ms,
+ * blocking its main thread
+ * @param scriptMillis time spent running JavaScript, as counted by Chrome
+ * @param layoutMillis time spent laying out the page, as counted by Chrome
+ *
+ * @author LEVALLOIS
+ */
+public record PageTimings(boolean navigated, double ttfbMillis, double domContentLoadedMillis, double loadMillis,
+        long resources, long transferBytes, long ajaxRequests, double ajaxServerMillis, double ajaxMaxServerMillis,
+        long longTasks, double longTasksMillis, double scriptMillis, double layoutMillis) {
+
+}
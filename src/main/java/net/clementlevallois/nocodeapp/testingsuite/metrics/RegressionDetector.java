@@ -0,0 +1,194 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.metrics;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps an exponentially weighted mean and variance of the duration of each
+ * step, and flags the runs where a step is both several standard deviations
+ * above its baseline and several times slower than it.
+ *
+ * @author LEVALLOIS
+ */
+public class RegressionDetector {
+
+    public static final String BASELINES_FILE_NAME = "step-baselines.properties";
+
+    private static final double ALPHA = 0.2;
+    private static final int WARMUP_RUNS = 5;
+    // a slowdown seen this many runs in a row is the new normal: it is alerted, then becomes the baseline
+    private static final int RUNS_BEFORE_ACCEPTING_NEW_LEVEL = 3;
+    // floor of the standard deviation, so that a very stable step does not alert on noise
+    private static final double MIN_STDDEV_RATIO = 0.1;
+    private static final double MIN_STDDEV_MILLIS = 50;
+
+    private final double zThreshold;
+    private final double ratioThreshold;
+    private final Map<StepKey, Baseline> baselines = new ConcurrentHashMap();
+
+    public record Regression(StepKey stepKey, double observedMillis, double baselineMillis, double stddevMillis) {
+
+        /**
+         * What the regression is about, whatever the durations: a slowdown of
+         * the same step alerted again is recognised as a repeat.
+         */
+        public String dedupKey() {
+            return stepKey.function() + "|" + stepKey.testFile() + "|" + stepKey.step();
+        }
+
+        public double ratio() {
+            return observedMillis / baselineMillis;
+        }
+
+        public String describe() {
+            return String.format(Locale.ROOT, "step %s on test file %s took %.0f ms, %.1fx its baseline of %.0f ms (stddev %.0f ms)",
+                    stepKey.step(), stepKey.testFile(), observedMillis, ratio(), baselineMillis, stddevMillis);
+        }
+    }
+
+    private static class Baseline {
+
+        long samples;
+        double mean;
+        double variance;
+        int consecutiveRegressions;
+        double sumOfRegressions;
+
+        double stddev() {
+            return Math.max(Math.sqrt(variance), Math.max(mean * MIN_STDDEV_RATIO, MIN_STDDEV_MILLIS));
+        }
+
+        void update(double value) {
+            samples++;
+            if (samples == 1) {
+                mean = value;
+                variance = 0;
+                return;
+            }
+            double diff = value - mean;
+            double increment = ALPHA * diff;
+            mean += increment;
+            variance = (1 - ALPHA) * (variance + diff * increment);
+        }
+
+        /**
+         * Starts again from the level of the last regressions, the spread
+         * starting at its floor.
+         */
+        void resetTo(double value) {
+            mean = value;
+            variance = 0;
+            consecutiveRegressions = 0;
+            sumOfRegressions = 0;
+        }
+    }
+
+    public RegressionDetector(double zThreshold, double ratioThreshold) {
+        this.zThreshold = zThreshold;
+        this.ratioThreshold = ratioThreshold;
+    }
+
+    /**
+     * Compares the median duration of each step of a run to its baseline, then
+     * folds it into the baseline. A step that failed or timed out in the run
+     * is left out: its duration is that of the failure, not of the step.
+     */
+    public List<Regression> evaluate(StepMetrics.RunSnapshot run) {
+        List<Regression> regressions = new ArrayList();
+        for (Map.Entry<StepKey, LatencySummary> entry : run.steps().entrySet()) {
+            if (entry.getValue().failures() > 0) {
+                continue;
+            }
+            double observedMillis = StepMetrics.toMillis(entry.getValue().p50Micros());
+            Regression regression = evaluate(entry.getKey(), observedMillis);
+            if (regression != null) {
+                regressions.add(regression);
+            }
+        }
+        return regressions;
+    }
+
+    public Regression evaluate(StepKey stepKey, double observedMillis) {
+        Baseline baseline = baselines.computeIfAbsent(stepKey, k -> new Baseline());
+        synchronized (baseline) {
+            Regression regression = null;
+            if (baseline.samples >= WARMUP_RUNS) {
+                double stddev = baseline.stddev();
+                double z = (observedMillis - baseline.mean) / stddev;
+                if (z > zThreshold && observedMillis > baseline.mean * ratioThreshold) {
+                    regression = new Regression(stepKey, observedMillis, baseline.mean, stddev);
+                }
+            }
+            if (regression == null) {
+                baseline.consecutiveRegressions = 0;
+                baseline.sumOfRegressions = 0;
+                baseline.update(observedMillis);
+            } else {
+                baseline.sumOfRegressions += observedMillis;
+                if (++baseline.consecutiveRegressions >= RUNS_BEFORE_ACCEPTING_NEW_LEVEL) {
+                    // the regression was alerted each of these runs: from now on it is the normal
+                    baseline.resetTo(baseline.sumOfRegressions / baseline.consecutiveRegressions);
+                }
+            }
+            return regression;
+        }
+    }
+
+    public void load(Path metricsFolder) throws IOException {
+        Path baselinesFile = metricsFolder.resolve(BASELINES_FILE_NAME);
+        if (Files.notExists(baselinesFile)) {
+            return;
+        }
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(baselinesFile, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        for (String key : properties.stringPropertyNames()) {
+            // key: function|test file|step, value: samples;mean;variance
+            String[] keyParts = key.split("\\|", 3);
+            String[] valueParts = properties.getProperty(key).split(";");
+            if (keyParts.length != 3 || valueParts.length != 3) {
+                continue;
+            }
+            Baseline baseline = new Baseline();
+            baseline.samples = Long.parseLong(valueParts[0]);
+            baseline.mean = Double.parseDouble(valueParts[1]);
+            baseline.variance = Double.parseDouble(valueParts[2]);
+            baselines.put(new StepKey(keyParts[0], keyParts[1], keyParts[2]), baseline);
+        }
+    }
+
+    public synchronized void save(Path metricsFolder) throws IOException {
+        Files.createDirectories(metricsFolder);
+        Properties properties = new Properties();
+        for (Map.Entry<StepKey, Baseline> entry : baselines.entrySet()) {
+            StepKey stepKey = entry.getKey();
+            Baseline baseline = entry.getValue();
+            synchronized (baseline) {
+                properties.setProperty(stepKey.function() + "|" + stepKey.testFile() + "|" + stepKey.step(),
+                        baseline.samples + ";" + baseline.mean + ";" + baseline.variance);
+            }
+        }
+        Path baselinesFile = metricsFolder.resolve(BASELINES_FILE_NAME);
+        Path temporary = baselinesFile.resolveSibling(BASELINES_FILE_NAME + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            properties.store(writer, "baselines of the durations of the steps, in milliseconds");
+        }
+        Files.move(temporary, baselinesFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+}
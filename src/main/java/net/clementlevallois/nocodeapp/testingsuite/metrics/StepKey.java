@@ -0,0 +1,24 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.metrics;
+
+/**
+ *
+ * @author LEVALLOIS
+ */
+public record StepKey(String function, String testFile, String step) implements Comparable<StepKey> {
+
+    @Override
+    public int compareTo(StepKey other) {
+        int comparison = function.compareTo(other.function);
+        if (comparison == 0) {
+            comparison = testFile.compareTo(other.testFile);
+        }
+        if (comparison == 0) {
+            comparison = step.compareTo(other.step);
+        }
+        return comparison;
+    }
+
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Durations of the steps of the tests, per function, test file and step: one
+ * histogram for the current run, one for all runs since startup, and a rolling
+ * history of the summaries of the last runs.
+ *
+ * @author LEVALLOIS
+ */
+public class StepMetrics {
+
+    public static final String JSON_FILE_NAME = "step-metrics.json";
+    public static final String PROMETHEUS_FILE_NAME = "step-metrics.prom";
+    private static final String STEP_DURATION_METRIC = "nocodefunctions_step_duration_seconds";
+
+    private final ConcurrentMap<StepKey, LatencyHistogram> cumulative = new ConcurrentHashMap();
+    private volatile ConcurrentMap<StepKey, LatencyHistogram> currentRun = new ConcurrentHashMap();
+    private volatile Instant currentRunStart = Instant.now();
+    private final Deque<RunSnapshot> history = new ArrayDeque();
+    private final int maxRunsInHistory;
+    private final boolean silentLogging;
+
+    public record RunSnapshot(Instant start, Instant end, SortedMap<StepKey, LatencySummary> steps) {
+
+    }
+
+    public StepMetrics(int maxRunsInHistory, boolean silentLogging) {
+        this.maxRunsInHistory = maxRunsInHistory;
+        this.silentLogging = silentLogging;
+    }
+
+    public StepTimer startStep(String function, String testFile, String step, String description) {
+        return new StepTimer(this, new StepKey(function, testFile, step), description, silentLogging);
+    }
+
+    public void record(String function, String testFile, String step, Duration duration) {
+        record(new StepKey(function, testFile, step), duration, false);
+    }
+
+    /**
+     * @param failed true when the step failed or timed out
+     */
+    public void record(String function, String testFile, String step, Duration duration, boolean failed) {
+        record(new StepKey(function, testFile, step), duration, failed);
+    }
+
+    void record(StepKey stepKey, Duration duration, boolean failed) {
+        cumulative.computeIfAbsent(stepKey, k -> new LatencyHistogram()).record(duration, failed);
+        currentRun.computeIfAbsent(stepKey, k -> new LatencyHistogram()).record(duration, failed);
+    }
+
+    public void startRun() {
+        currentRun = new ConcurrentHashMap();
+        currentRunStart = Instant.now();
+    }
+
+    public RunSnapshot endRun() {
+        return addToHistory(new RunSnapshot(currentRunStart, Instant.now(), summarize(currentRun)));
+    }
+
+    /**
+     * Starts a run of some functions only, which can overlap with the runs of
+     * other functions.
+     *
+     * @return the start of the run, to pass to {@link #endRun(Collection, Instant)}
+     */
+    public Instant startRun(Collection<String> functions) {
+        currentRun.keySet().removeIf(stepKey -> functions.contains(stepKey.function()));
+        return Instant.now();
+    }
+
+    public RunSnapshot endRun(Collection<String> functions, Instant start) {
+        Map<StepKey, LatencyHistogram> histogramsOfRun = new HashMap();
+        for (Map.Entry<StepKey, LatencyHistogram> entry : currentRun.entrySet()) {
+            if (functions.contains(entry.getKey().function())) {
+                histogramsOfRun.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return addToHistory(new RunSnapshot(start, Instant.now(), summarize(histogramsOfRun)));
+    }
+
+    private RunSnapshot addToHistory(RunSnapshot snapshot) {
+        synchronized (history) {
+            history.addLast(snapshot);
+            while (history.size() > maxRunsInHistory) {
+                history.removeFirst();
+            }
+        }
+        return snapshot;
+    }
+
+    public SortedMap<StepKey, LatencySummary> cumulativeSummaries() {
+        return summarize(cumulative);
+    }
+
+    public List<RunSnapshot> history() {
+        synchronized (history) {
+            return new ArrayList(history);
+        }
+    }
+
+    private static SortedMap<StepKey, LatencySummary> summarize(Map<StepKey, LatencyHistogram> histograms) {
+        SortedMap<StepKey, LatencySummary> summaries = new TreeMap();
+        for (Map.Entry<StepKey, LatencyHistogram> entry : histograms.entrySet()) {
+            summaries.put(entry.getKey(), entry.getValue().summarize());
+        }
+        return summaries;
+    }
+
+    public synchronized void export(Path metricsFolder) throws IOException {
+        Files.createDirectories(metricsFolder);
+        writeAtomically(metricsFolder.resolve(JSON_FILE_NAME), toJson());
+        writeAtomically(metricsFolder.resolve(PROMETHEUS_FILE_NAME), toPrometheus());
+    }
+
+    static void writeAtomically(Path target, String content) throws IOException {
+        // a scraper reading the file never sees it half written
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            writer.write(content);
+        }
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public String toJson() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\n  \"generated\": \"").append(Instant.now()).append("\",\n");
+        sb.append("  \"cumulative\": ");
+        appendJsonSteps(sb, cumulativeSummaries(), "  ");
+        sb.append(",\n  \"runs\": [");
+        List<RunSnapshot> runs = history();
+        for (int i = 0; i < runs.size(); i++) {
+            RunSnapshot run = runs.get(i);
+            sb.append(i == 0 ? "\n" : ",\n");
+            sb.append("    {\"start\": \"").append(run.start()).append("\", \"end\": \"").append(run.end()).append("\", \"steps\": ");
+            appendJsonSteps(sb, run.steps(), "      ");
+            sb.append("}");
+        }
+        sb.append(runs.isEmpty() ? "]\n" : "\n  ]\n");
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    public static void appendJsonSteps(StringBuilder sb, SortedMap<StepKey, LatencySummary> steps, String indent) {
+        sb.append("[");
+        boolean first = true;
+        for (Map.Entry<StepKey, LatencySummary> entry : steps.entrySet()) {
+            StepKey key = entry.getKey();
+            LatencySummary summary = entry.getValue();
+            sb.append(first ? "\n" : ",\n").append(indent).append("  {");
+            sb.append("\"function\": \"").append(escapeJson(key.function())).append("\", ");
+            sb.append("\"test_file\": \"").append(escapeJson(key.testFile())).append("\", ");
+            sb.append("\"step\": \"").append(escapeJson(key.step())).append("\", ");
+            sb.append("\"count\": ").append(summary.count()).append(", ");
+            sb.append("\"p50_ms\": ").append(toMillis(summary.p50Micros())).append(", ");
+            sb.append("\"p95_ms\": ").append(toMillis(summary.p95Micros())).append(", ");
+            sb.append("\"p99_ms\": ").append(toMillis(summary.p99Micros())).append(", ");
+            sb.append("\"max_ms\": ").append(toMillis(summary.maxMicros())).append(", ");
+            sb.append("\"failures\": ").append(summary.failures()).append("}");
+            first = false;
+        }
+        sb.append(first ? "]" : "\n" + indent + "]");
+    }
+
+    public String toPrometheus() {
+        StringBuilder sb = new StringBuilder();
+        appendPrometheusHeader(sb);
+        appendPrometheusSamples(sb, null);
+        return sb.toString();
+    }
+
+    public static void appendPrometheusHeader(StringBuilder sb) {
+        sb.append("# HELP ").append(STEP_DURATION_METRIC).append(" Duration of the steps of the tests since the start of the monitor\n");
+        sb.append("# TYPE ").append(STEP_DURATION_METRIC).append(" summary\n");
+    }
+
+    /**
+     * The samples of the steps, without the header: the samples of the
+     * metrics of several modes go under one header.
+     *
+     * @param mode added as a label, or null
+     */
+    public void appendPrometheusSamples(StringBuilder sb, String mode) {
+        String metric = STEP_DURATION_METRIC;
+        for (Map.Entry<StepKey, LatencySummary> entry : cumulativeSummaries().entrySet()) {
+            String labels = prometheusLabels(entry.getKey()) + (mode == null ? "" : ",mode=\"" + escapePrometheus(mode) + "\"");
+            LatencySummary summary = entry.getValue();
+            appendQuantile(sb, metric, labels, "0.5", summary.p50Micros());
+            appendQuantile(sb, metric, labels, "0.95", summary.p95Micros());
+            appendQuantile(sb, metric, labels, "0.99", summary.p99Micros());
+            sb.append(metric).append("_sum{").append(labels).append("} ").append(toSeconds(summary.totalMicros())).append("\n");
+            sb.append(metric).append("_count{").append(labels).append("} ").append(summary.count()).append("\n");
+        }
+    }
+
+    private static void appendQuantile(StringBuilder sb, String metric, String labels, String quantile, long micros) {
+        sb.append(metric).append("{").append(labels).append(",quantile=\"").append(quantile).append("\"} ").append(toSeconds(micros)).append("\n");
+    }
+
+    static String prometheusLabels(StepKey key) {
+        return "function=\"" + escapePrometheus(key.function()) + "\",test_file=\"" + escapePrometheus(key.testFile()) + "\",step=\"" + escapePrometheus(key.step()) + "\"";
+    }
+
+    public static String escapeJson(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n").replace("\r", "\\r").replace("\t", "\\t");
+    }
+
+    public static String escapePrometheus(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    public static double toMillis(long micros) {
+        return micros / 1_000d;
+    }
+
+    static double toSeconds(long micros) {
+        return micros / 1_000_000d;
+    }
+
+}
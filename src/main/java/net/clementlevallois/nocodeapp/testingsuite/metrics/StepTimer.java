@@ -0,0 +1,45 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.metrics;
+
+import java.time.Duration;
+import net.clementlevallois.utils.Clock;
+
+/**
+ *
+ * @author LEVALLOIS
+ */
+public class StepTimer {
+
+    private final StepMetrics stepMetrics;
+    private final StepKey stepKey;
+    private final Clock clock;
+    private final long start;
+
+    StepTimer(StepMetrics stepMetrics, StepKey stepKey, String description, boolean silentLogging) {
+        this.stepMetrics = stepMetrics;
+        this.stepKey = stepKey;
+        this.clock = new Clock(description, silentLogging);
+        this.start = System.nanoTime();
+    }
+
+    public void printIntermediaryText(String text) {
+        clock.printIntermediaryText(text);
+    }
+
+    public Duration stop() {
+        return stop(false);
+    }
+
+    /**
+     * @param failed true when the step failed or timed out
+     */
+    public Duration stop(boolean failed) {
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+        clock.closeAndPrintClock();
+        stepMetrics.record(stepKey, elapsed, failed);
+        return elapsed;
+    }
+
+}
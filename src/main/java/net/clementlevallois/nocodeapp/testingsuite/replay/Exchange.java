@@ -0,0 +1,110 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.replay;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A request to the app and its response, as recorded. A replayed request is
+ * matched to a recorded one by its method, its path and the names of the
+ * fields it posts, never by their values: the ViewState or the boundary of a
+ * multipart upload change from one run to the next, the shape of the
+ * requests does not. Matching needs no state, so that many sessions can
+ * replay at once.
+ *
+ * @param path the path and the query, without the origin
+ * @param contentType the type of the body of the request, without its
+ * parameters, empty for a GET
+ * @param body the body of the response, where the origin of the app is
+ * replaced by {@link #ORIGIN_PLACEHOLDER} in text content
+ *
+ * @author LEVALLOIS
+ */
+public record Exchange(String method, String path, String contentType, List<String> fieldNames, int status, Map<String, String> headers, byte[] body) {
+
+    public static final String ORIGIN_PLACEHOLDER = "{{origin}}";
+
+    // the headers of a response that matter to the client
+    static final List<String> REPLAYED_HEADERS = List.of("Content-Type", "Content-Disposition", "Location");
+
+    private static final Pattern JSESSIONID = Pattern.compile(";jsessionid=[^?#]*", Pattern.CASE_INSENSITIVE);
+    private static final Pattern CLIENT_WINDOW = Pattern.compile("([?&])jfwid=[^&#]*&?");
+    private static final Pattern MULTIPART_FIELD_NAME = Pattern.compile("Content-Disposition: form-data; name=\"([^\"]*)\"");
+
+    public Exchange {
+        fieldNames = List.copyOf(fieldNames);
+        headers = Map.copyOf(headers);
+    }
+
+    public String key() {
+        return key(method, path, contentType, fieldNames);
+    }
+
+    public static String key(String method, String path, String contentType, List<String> fieldNames) {
+        return method + " " + path + " " + contentType + " " + String.join(",", fieldNames);
+    }
+
+    /**
+     * Removes what identifies a session in a path: the session id of the
+     * servlet container and the client window of JSF.
+     */
+    public static String normalizePath(String pathAndQuery) {
+        String path = JSESSIONID.matcher(pathAndQuery).replaceAll("");
+        Matcher clientWindow = CLIENT_WINDOW.matcher(path);
+        path = clientWindow.replaceAll("$1");
+        if (path.endsWith("?") || path.endsWith("&")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        return path;
+    }
+
+    /**
+     * @param contentType the Content-Type header of the request, null for a
+     * GET
+     */
+    public static String baseContentType(String contentType) {
+        if (contentType == null) {
+            return "";
+        }
+        int semicolon = contentType.indexOf(';');
+        return (semicolon < 0 ? contentType : contentType.substring(0, semicolon)).trim().toLowerCase();
+    }
+
+    /**
+     * The sorted names of the fields of a posted form, urlencoded or
+     * multipart.
+     */
+    public static List<String> fieldNames(String contentType, byte[] body) {
+        TreeSet<String> names = new TreeSet();
+        if (body == null || body.length == 0) {
+            return List.of();
+        }
+        String base = baseContentType(contentType);
+        if (base.equals("multipart/form-data")) {
+            // the headers of the parts are ASCII: reading the file parts as Latin-1 cannot fail
+            Matcher matcher = MULTIPART_FIELD_NAME.matcher(new String(body, StandardCharsets.ISO_8859_1));
+            while (matcher.find()) {
+                names.add(matcher.group(1));
+            }
+        } else if (base.equals("application/x-www-form-urlencoded")) {
+            for (String field : new String(body, StandardCharsets.UTF_8).split("&")) {
+                int equals = field.indexOf('=');
+                names.add(URLDecoder.decode(equals < 0 ? field : field.substring(0, equals), StandardCharsets.UTF_8));
+            }
+        }
+        return List.copyOf(names);
+    }
+
+    static boolean isText(String contentType) {
+        String base = baseContentType(contentType);
+        return base.startsWith("text/") || base.contains("xml") || base.contains("json") || base.contains("javascript");
+    }
+
+}
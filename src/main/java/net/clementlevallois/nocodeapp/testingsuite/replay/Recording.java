@@ -0,0 +1,116 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.replay;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+/**
+ * The exchanges of one run of a test file, saved in a folder: an
+ * index.properties describing the exchanges, and the body of each response in
+ * a file of its own.
+ *
+ * @author LEVALLOIS
+ */
+public class Recording {
+
+    public static final String INDEX_FILE_NAME = "index.properties";
+
+    private final List<Exchange> exchanges;
+
+    public Recording(List<Exchange> exchanges) {
+        this.exchanges = List.copyOf(exchanges);
+    }
+
+    public List<Exchange> getExchanges() {
+        return exchanges;
+    }
+
+    public void save(Path folder) throws IOException {
+        Files.createDirectories(folder);
+        // the bodies of a previous recording would be mixed with these ones
+        try (Stream<Path> files = Files.list(folder)) {
+            for (Path file : files.filter(f -> f.getFileName().toString().endsWith(".body")).toList()) {
+                Files.delete(file);
+            }
+        }
+        Properties index = new Properties();
+        index.setProperty("exchanges", String.valueOf(exchanges.size()));
+        for (int i = 0; i < exchanges.size(); i++) {
+            Exchange exchange = exchanges.get(i);
+            String prefix = i + ".";
+            index.setProperty(prefix + "method", exchange.method());
+            index.setProperty(prefix + "path", exchange.path());
+            index.setProperty(prefix + "content_type", exchange.contentType());
+            index.setProperty(prefix + "fields", String.join("\t", exchange.fieldNames()));
+            index.setProperty(prefix + "status", String.valueOf(exchange.status()));
+            for (Map.Entry<String, String> header : exchange.headers().entrySet()) {
+                index.setProperty(prefix + "header." + header.getKey(), header.getValue());
+            }
+            if (exchange.body().length > 0) {
+                String bodyFile = i + ".body";
+                index.setProperty(prefix + "body", bodyFile);
+                Files.write(folder.resolve(bodyFile), exchange.body());
+            }
+        }
+        try (Writer writer = Files.newBufferedWriter(folder.resolve(INDEX_FILE_NAME), StandardCharsets.UTF_8)) {
+            index.store(writer, "recorded exchanges with the app, replayed by the replay mode");
+        }
+    }
+
+    public static Recording load(Path folder) throws IOException {
+        Properties index = new Properties();
+        try (Reader reader = Files.newBufferedReader(folder.resolve(INDEX_FILE_NAME), StandardCharsets.UTF_8)) {
+            index.load(reader);
+        }
+        int count = Integer.parseInt(index.getProperty("exchanges", "0"));
+        List<Exchange> exchanges = new ArrayList();
+        for (int i = 0; i < count; i++) {
+            String prefix = i + ".";
+            Map<String, String> headers = new LinkedHashMap();
+            for (String header : Exchange.REPLAYED_HEADERS) {
+                String value = index.getProperty(prefix + "header." + header);
+                if (value != null) {
+                    headers.put(header, value);
+                }
+            }
+            String fields = index.getProperty(prefix + "fields", "");
+            String bodyFile = index.getProperty(prefix + "body");
+            exchanges.add(new Exchange(index.getProperty(prefix + "method"), index.getProperty(prefix + "path"),
+                    index.getProperty(prefix + "content_type", ""),
+                    fields.isEmpty() ? List.of() : Arrays.asList(fields.split("\t")),
+                    Integer.parseInt(index.getProperty(prefix + "status")), headers,
+                    bodyFile == null ? new byte[0] : Files.readAllBytes(folder.resolve(bodyFile))));
+        }
+        return new Recording(exchanges);
+    }
+
+    /**
+     * The recordings in the folders below this one.
+     */
+    public static List<Recording> loadAll(Path root) throws IOException {
+        List<Recording> recordings = new ArrayList();
+        if (Files.notExists(root)) {
+            return recordings;
+        }
+        try (Stream<Path> files = Files.walk(root)) {
+            for (Path index : files.filter(f -> f.getFileName().toString().equals(INDEX_FILE_NAME)).sorted().toList()) {
+                recordings.add(load(index.getParent()));
+            }
+        }
+        return recordings;
+    }
+
+}
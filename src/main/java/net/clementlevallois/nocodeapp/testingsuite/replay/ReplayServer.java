@@ -0,0 +1,123 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.replay;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Stands in for the app on the loopback interface, answering with recorded
+ * exchanges: the suite can then run without network nor server, at the pace
+ * of its own engine. A request nobody recorded gets a 404 naming its key.
+ *
+ * @author LEVALLOIS
+ */
+public class ReplayServer implements Closeable {
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    // key -> the first exchange recorded with it: identical requests got identical answers
+    private final Map<String, Exchange> exchanges = new HashMap();
+    private final AtomicLong served = new AtomicLong();
+    private final AtomicLong missed = new AtomicLong();
+    private final String origin;
+
+    /**
+     * @param port 0 for any free port
+     */
+    public ReplayServer(List<Recording> recordings, int port) throws IOException {
+        for (Recording recording : recordings) {
+            for (Exchange exchange : recording.getExchanges()) {
+                exchanges.putIfAbsent(exchange.key(), exchange);
+            }
+        }
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        origin = "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    public ReplayServer start() {
+        server.start();
+        return this;
+    }
+
+    /**
+     * The address to use as the domain of the app while replaying.
+     */
+    public String getOrigin() {
+        return origin;
+    }
+
+    public int exchangeCount() {
+        return exchanges.size();
+    }
+
+    public long getServed() {
+        return served.get();
+    }
+
+    public long getMissed() {
+        return missed.get();
+    }
+
+    private void handle(HttpExchange httpExchange) throws IOException {
+        try (httpExchange) {
+            byte[] requestBody;
+            try (InputStream in = httpExchange.getRequestBody()) {
+                requestBody = in.readAllBytes();
+            }
+            String contentType = httpExchange.getRequestHeaders().getFirst("Content-Type");
+            String key = Exchange.key(httpExchange.getRequestMethod(),
+                    Exchange.normalizePath(TrafficRecorder.pathAndQuery(httpExchange.getRequestURI())),
+                    Exchange.baseContentType(contentType), Exchange.fieldNames(contentType, requestBody));
+            Exchange exchange = exchanges.get(key);
+            if (exchange == null) {
+                missed.incrementAndGet();
+                Logger.getLogger(ReplayServer.class.getName()).log(Level.WARNING, "no recorded exchange for {0}", key);
+                byte[] notFound = ("not recorded: " + key).getBytes(StandardCharsets.UTF_8);
+                httpExchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+                httpExchange.sendResponseHeaders(404, notFound.length);
+                httpExchange.getResponseBody().write(notFound);
+                return;
+            }
+            served.incrementAndGet();
+            for (Map.Entry<String, String> header : exchange.headers().entrySet()) {
+                httpExchange.getResponseHeaders().set(header.getKey(), header.getValue().replace(Exchange.ORIGIN_PLACEHOLDER, origin));
+            }
+            byte[] body = exchange.body();
+            if (Exchange.isText(exchange.headers().get("Content-Type"))) {
+                body = new String(body, StandardCharsets.UTF_8).replace(Exchange.ORIGIN_PLACEHOLDER, origin).getBytes(StandardCharsets.UTF_8);
+            }
+            httpExchange.sendResponseHeaders(exchange.status(), body.length == 0 ? -1 : body.length);
+            if (body.length > 0) {
+                try (OutputStream out = httpExchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.replay;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Records the exchanges of an {@link net.clementlevallois.nocodeapp.testingsuite.sessions.HttpSession}
+ * with the app, redirects included, for a {@link ReplayServer} to serve them
+ * later.
+ *
+ * @author LEVALLOIS
+ */
+public class TrafficRecorder {
+
+    private final String origin;
+    private final List<Exchange> exchanges = new ArrayList();
+
+    /**
+     * @param domain the address of the app: everything of it but its path is
+     * replaced by a placeholder in the recording
+     */
+    public TrafficRecorder(String domain) {
+        URI uri = URI.create(domain);
+        this.origin = uri.getScheme() + "://" + uri.getRawAuthority();
+    }
+
+    /**
+     * @param requestBody the body of the request, null for a GET
+     */
+    public synchronized void record(HttpRequest request, byte[] requestBody, HttpResponse<byte[]> response) {
+        // the client follows the redirects: the chain of responses holds them, from the last one
+        Deque<HttpResponse<byte[]>> chain = new ArrayDeque();
+        for (Optional<HttpResponse<byte[]>> r = Optional.of(response); r.isPresent(); r = r.get().previousResponse()) {
+            chain.addFirst(r.get());
+        }
+        boolean first = true;
+        for (HttpResponse<byte[]> link : chain) {
+            HttpRequest linkRequest = first ? request : link.request();
+            byte[] linkBody = first ? requestBody : null;
+            String contentType = linkRequest.headers().firstValue("Content-Type").orElse(null);
+            Map<String, String> headers = new LinkedHashMap();
+            for (String header : Exchange.REPLAYED_HEADERS) {
+                link.headers().firstValue(header).ifPresent(value -> headers.put(header, withoutOrigin(value)));
+            }
+            byte[] body = link.body() == null ? new byte[0] : link.body();
+            if (Exchange.isText(headers.get("Content-Type"))) {
+                body = withoutOrigin(new String(body, StandardCharsets.UTF_8)).getBytes(StandardCharsets.UTF_8);
+            }
+            exchanges.add(new Exchange(linkRequest.method(), Exchange.normalizePath(pathAndQuery(linkRequest.uri())),
+                    Exchange.baseContentType(contentType), Exchange.fieldNames(contentType, linkBody),
+                    link.statusCode(), headers, body));
+            first = false;
+        }
+    }
+
+    private String withoutOrigin(String text) {
+        return text.replace(origin, Exchange.ORIGIN_PLACEHOLDER);
+    }
+
+    static String pathAndQuery(URI uri) {
+        String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+        return uri.getRawQuery() == null ? path : path + "?" + uri.getRawQuery();
+    }
+
+    public synchronized Recording toRecording() {
+        return new Recording(exchanges);
+    }
+
+}
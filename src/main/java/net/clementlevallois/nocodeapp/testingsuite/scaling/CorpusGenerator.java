@@ -0,0 +1,102 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.scaling;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Random;
+
+/**
+ * Text corpora of any number of lines, one short text per line like the test
+ * files of the app, written line by line so that a corpus of a million lines
+ * never sits in memory. Each line is about one theme, with words drawn more
+ * or less often as in real texts, and some sentiment, hashtags and mentions:
+ * enough for topics to find clusters and for umigon to find sentiment. The
+ * same seed gives the same lines, and a smaller corpus is the beginning of a
+ * larger one.
+ *
+ * @author LEVALLOIS
+ */
+public class CorpusGenerator {
+
+    private static final String[][] THEMES = {
+        {"rain", "weather", "sun", "cloud", "storm", "cold", "warm", "wind", "forecast", "snow", "umbrella", "heat"},
+        {"coffee", "chocolate", "pizza", "bread", "cheese", "dinner", "restaurant", "recipe", "salad", "soup", "breakfast", "cake"},
+        {"train", "bus", "traffic", "delay", "station", "bike", "car", "airport", "flight", "ticket", "road", "metro"},
+        {"meeting", "office", "boss", "deadline", "project", "email", "salary", "colleague", "report", "interview", "team", "job"},
+        {"football", "match", "goal", "score", "coach", "season", "player", "stadium", "league", "referee", "fans", "final"},
+        {"phone", "app", "update", "battery", "screen", "laptop", "wifi", "bug", "download", "internet", "password", "charger"},
+        {"movie", "music", "concert", "album", "series", "episode", "song", "band", "cinema", "actor", "festival", "playlist"},
+        {"doctor", "hospital", "sleep", "gym", "run", "diet", "health", "vaccine", "pharmacy", "yoga", "walk", "flu"}
+    };
+    private static final String[] POSITIVE = {"love", "great", "happy", "amazing", "enjoy", "wonderful", "best", "nice"};
+    private static final String[] NEGATIVE = {"hate", "awful", "terrible", "sad", "angry", "worst", "boring", "annoying"};
+    private static final String[] FUNCTION_WORDS = {"the", "a", "my", "this", "is", "was", "so", "really", "today", "again", "with", "and", "not", "very", "for", "at", "in", "of"};
+    private static final int MIN_WORDS = 6;
+    private static final int MAX_WORDS = 20;
+
+    /**
+     * The corpus of this number of lines and seed in the folder, generated
+     * the first time it is asked for.
+     */
+    public static synchronized Path corpus(Path folder, int lines, long seed) throws IOException {
+        Path file = folder.resolve(fileName(lines, seed));
+        if (Files.exists(file)) {
+            return file;
+        }
+        Files.createDirectories(folder);
+        Random random = new Random(seed);
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            StringBuilder line = new StringBuilder();
+            for (int i = 0; i < lines; i++) {
+                line.setLength(0);
+                appendLine(line, random);
+                writer.append(line).append('\n');
+            }
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+        return file;
+    }
+
+    public static String fileName(int lines, long seed) {
+        return "synthetic_" + seed + "_" + lines + ".txt";
+    }
+
+    static void appendLine(StringBuilder line, Random random) {
+        String[] theme = THEMES[random.nextInt(THEMES.length)];
+        int words = MIN_WORDS + random.nextInt(MAX_WORDS - MIN_WORDS + 1);
+        for (int w = 0; w < words; w++) {
+            if (w > 0) {
+                line.append(' ');
+            }
+            int draw = random.nextInt(100);
+            if (draw < 45) {
+                line.append(FUNCTION_WORDS[random.nextInt(FUNCTION_WORDS.length)]);
+            } else if (draw < 85) {
+                line.append(theme[skewedIndex(random, theme.length)]);
+            } else if (draw < 95) {
+                String[] sentiment = random.nextBoolean() ? POSITIVE : NEGATIVE;
+                line.append(sentiment[random.nextInt(sentiment.length)]);
+            } else if (draw < 98) {
+                line.append('#').append(theme[skewedIndex(random, theme.length)]);
+            } else {
+                line.append("@user").append(random.nextInt(1000));
+            }
+        }
+    }
+
+    /**
+     * An index where the first ones come much more often than the last ones,
+     * as the frequencies of words do.
+     */
+    private static int skewedIndex(Random random, int size) {
+        return random.nextInt(random.nextInt(size) + 1);
+    }
+
+}
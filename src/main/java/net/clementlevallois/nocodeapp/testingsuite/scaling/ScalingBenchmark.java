@@ -0,0 +1,175 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.scaling;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import net.clementlevallois.nocodeapp.testingsuite.functions.ScenarioStep;
+import net.clementlevallois.nocodeapp.testingsuite.functions.ScenarioTest;
+import net.clementlevallois.nocodeapp.testingsuite.functions.TestResult;
+import net.clementlevallois.nocodeapp.testingsuite.metrics.LatencySummary;
+import net.clementlevallois.nocodeapp.testingsuite.metrics.StepKey;
+import net.clementlevallois.nocodeapp.testingsuite.metrics.StepMetrics;
+import net.clementlevallois.nocodeapp.testingsuite.utils.StepBudgets;
+
+/**
+ * Runs the scenario of each function on generated corpora of growing sizes,
+ * without its verification steps, and reports how the steps from upload to
+ * download scale, and the time between the two. The sizes run
+ * from the smallest: once a size fails or times out, the larger ones of the
+ * function are not tried.
+ *
+ * @author LEVALLOIS
+ */
+public class ScalingBenchmark {
+
+    /**
+     * Runs the scenario of a function once on a test file described by its
+     * properties, in a browser or over http.
+     */
+    @FunctionalInterface
+    public interface SizedJourneyRunner {
+
+        TestResult run(ScenarioTest test, String testFile, Properties testFileDescriptor) throws InterruptedException;
+    }
+
+    private final ScalingProfile profile;
+    private final List<ScenarioTest> tests;
+    private final StepMetrics stepMetrics;
+    private final Path corpusFolder;
+    private final SizedJourneyRunner journeyRunner;
+
+    /**
+     * @param stepMetrics the metrics the tests record their steps in
+     * @param corpusFolder where the corpora are generated, and kept for the
+     * next benchmarks
+     */
+    public ScalingBenchmark(ScalingProfile profile, List<ScenarioTest> tests, StepMetrics stepMetrics, Path corpusFolder, SizedJourneyRunner journeyRunner) {
+        if (tests.isEmpty()) {
+            throw new IllegalArgumentException("no function to benchmark");
+        }
+        this.profile = profile;
+        List<ScenarioTest> scalingTests = new ArrayList();
+        for (ScenarioTest test : tests) {
+            scalingTests.add(test.forScaling());
+        }
+        this.tests = scalingTests;
+        this.stepMetrics = stepMetrics;
+        this.corpusFolder = corpusFolder;
+        this.journeyRunner = journeyRunner;
+    }
+
+    public List<ScalingReport> run() throws IOException, InterruptedException {
+        List<ScalingReport> reports = new ArrayList();
+        for (ScenarioTest test : tests) {
+            ScalingReport report = run(test);
+            System.out.print(report.toText());
+            reports.add(report);
+        }
+        return reports;
+    }
+
+    private ScalingReport run(ScenarioTest test) throws IOException, InterruptedException {
+        List<ScalingReport.Point> points = new ArrayList();
+        String stoppedBecause = null;
+        for (int lines : profile.getSizes()) {
+            Path corpus = CorpusGenerator.corpus(corpusFolder, lines, profile.getSeed());
+            String testFile = corpus.getFileName().toString();
+            Properties testFileDescriptor = new Properties();
+            // an absolute name resolves to itself, wherever the test files of the function are
+            testFileDescriptor.setProperty("name", corpus.toAbsolutePath().toString());
+            testFileDescriptor.setProperty("nb_entries", String.valueOf(lines));
+
+            stepMetrics.startRun();
+            int passed = 0;
+            int runs = 0;
+            TestResult failure = null;
+            while (runs < profile.getRepetitions() && failure == null) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                TestResult result = journeyRunner.run(test, testFile, testFileDescriptor);
+                runs++;
+                if (result.passed()) {
+                    passed++;
+                } else {
+                    failure = result;
+                }
+            }
+            StepMetrics.RunSnapshot run = stepMetrics.endRun();
+            SortedMap<String, LatencySummary> steps = new TreeMap();
+            Set<String> measured = stepsFromUploadToDownload(test);
+            for (Map.Entry<StepKey, LatencySummary> step : run.steps().entrySet()) {
+                if (step.getKey().function().equals(test.getName()) && step.getKey().testFile().equals(testFile) && measured.contains(step.getKey().step())) {
+                    steps.put(step.getKey().step(), step.getValue());
+                }
+            }
+            points.add(new ScalingReport.Point(lines, runs, passed, steps));
+            System.out.println(test.getName() + ": " + lines + " lines, " + passed + " of " + runs + " runs passed");
+            if (failure != null) {
+                // a larger input would fail the same way, only later
+                stoppedBecause = failure.describe();
+                break;
+            }
+        }
+        return new ScalingReport(test.getName(), profile.getMode(), points, stoppedBecause);
+    }
+
+    /**
+     * The steps from the first upload to the last download, and the span
+     * between them: opening the pages before is the same at every size.
+     */
+    private static Set<String> stepsFromUploadToDownload(ScenarioTest test) {
+        List<ScenarioStep> scenarioSteps = test.getScenario().getSteps();
+        int first = -1;
+        int last = -1;
+        for (int i = 0; i < scenarioSteps.size(); i++) {
+            ScenarioStep.Action action = scenarioSteps.get(i).getAction();
+            if (action == ScenarioStep.Action.UPLOAD && first < 0) {
+                first = i;
+            }
+            if (action == ScenarioStep.Action.DOWNLOAD) {
+                last = i;
+            }
+        }
+        Set<String> steps = new HashSet();
+        steps.add(StepBudgets.UPLOAD_TO_DOWNLOAD);
+        for (int i = Math.max(first, 0); i <= last; i++) {
+            steps.add(scenarioSteps.get(i).getName());
+        }
+        return steps;
+    }
+
+    public static void export(List<ScalingReport> reports, ScalingProfile profile, Path reportFile) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\n  \"generated\": \"").append(Instant.now()).append("\",\n");
+        sb.append("  \"mode\": \"").append(StepMetrics.escapeJson(profile.getMode())).append("\",\n");
+        sb.append("  \"seed\": ").append(profile.getSeed()).append(",\n");
+        sb.append("  \"repetitions\": ").append(profile.getRepetitions()).append(",\n");
+        sb.append("  \"functions\": [");
+        for (int i = 0; i < reports.size(); i++) {
+            sb.append(i == 0 ? "\n" : ",\n");
+            reports.get(i).appendJson(sb, "    ");
+        }
+        sb.append(reports.isEmpty() ? "]\n" : "\n  ]\n");
+        sb.append("}\n");
+        Files.createDirectories(reportFile.getParent());
+        try (Writer writer = Files.newBufferedWriter(reportFile, StandardCharsets.UTF_8)) {
+            writer.write(sb.toString());
+        }
+    }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.scaling;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * How a scaling benchmark runs: the mode of the runs, the sizes of the
+ * corpora, how many times each size runs, the seed of the corpora and the
+ * budget of a step on a large corpus.
+ *
+ * @author LEVALLOIS
+ */
+public class ScalingProfile {
+
+    private static final String DEFAULT_MODE = "http";
+    private static final String DEFAULT_SIZES = "10,100,1000,10000,100000,500000";
+    private static final int DEFAULT_REPETITIONS = 3;
+    private static final long DEFAULT_SEED = 20231101L;
+    private static final int DEFAULT_STEP_BUDGET_SECONDS = 1800;
+
+    private final String mode;
+    private final List<Integer> sizes;
+    private final int repetitions;
+    private final long seed;
+    private final Duration stepBudget;
+
+    public ScalingProfile(String mode, List<Integer> sizes, int repetitions, long seed, Duration stepBudget) {
+        if (sizes.isEmpty()) {
+            throw new IllegalArgumentException("a scaling benchmark needs at least one size");
+        }
+        if (repetitions < 1) {
+            throw new IllegalArgumentException("each size has to run at least once");
+        }
+        List<Integer> sortedSizes = new ArrayList(sizes);
+        sortedSizes.sort(null);
+        this.mode = mode;
+        this.sizes = List.copyOf(sortedSizes);
+        this.repetitions = repetitions;
+        this.seed = seed;
+        this.stepBudget = stepBudget;
+    }
+
+    /**
+     * Reads "scaling-mode", "scaling-sizes" (numbers of lines, as in
+     * "10,1000,100000"), "scaling-repetitions", "scaling-seed" and
+     * "scaling-step-budget" (in seconds, the least time any step gets).
+     */
+    public static ScalingProfile fromProperties(Properties properties) {
+        List<Integer> sizes = new ArrayList();
+        for (String size : properties.getProperty("scaling-sizes", DEFAULT_SIZES).split(",")) {
+            if (!size.isBlank()) {
+                sizes.add(Integer.valueOf(size.trim()));
+            }
+        }
+        return new ScalingProfile(
+                properties.getProperty("scaling-mode", DEFAULT_MODE).trim(),
+                sizes,
+                Integer.parseInt(properties.getProperty("scaling-repetitions", String.valueOf(DEFAULT_REPETITIONS)).trim()),
+                Long.parseLong(properties.getProperty("scaling-seed", String.valueOf(DEFAULT_SEED)).trim()),
+                Duration.ofSeconds(Long.parseLong(properties.getProperty("scaling-step-budget", String.valueOf(DEFAULT_STEP_BUDGET_SECONDS)).trim())));
+    }
+
+    public String getMode() {
+        return mode;
+    }
+
+    /**
+     * @return the sizes from the smallest to the largest
+     */
+    public List<Integer> getSizes() {
+        return sizes;
+    }
+
+    public int getRepetitions() {
+        return repetitions;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public Duration getStepBudget() {
+        return stepBudget;
+    }
+
+}
@@ -0,0 +1,298 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.scaling;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import net.clementlevallois.nocodeapp.testingsuite.metrics.LatencySummary;
+import net.clementlevallois.nocodeapp.testingsuite.metrics.StepMetrics;
+import net.clementlevallois.nocodeapp.testingsuite.utils.StepBudgets;
+
+/**
+ * How the steps of a function from upload to download scale with the size of
+ * the input: their median duration at each size of corpus, and the curve t = fixed + a·n^b
+ * fitted through them, where b is 1 when the time grows linearly with the
+ * number of lines n.
+ *
+ * @author LEVALLOIS
+ */
+public record ScalingReport(String function, String mode, List<Point> points, String stoppedBecause) {
+
+    /**
+     * A step scales worse than linearly from the size where each line costs
+     * this many times more than it did between smaller sizes.
+     */
+    public static final double SUPERLINEAR_RATIO = 2;
+    // below this growth of the time between two sizes, the difference is noise
+    private static final double MIN_GROWTH = 0.1;
+    private static final double MIN_EXPONENT = 0.5;
+    private static final double MAX_EXPONENT = 3;
+    private static final double EXPONENT_STEP = 0.01;
+    private static final Comparator<String> SPAN_FIRST = Comparator.comparing((String step) -> !step.equals(StepBudgets.UPLOAD_TO_DOWNLOAD)).thenComparing(Comparator.naturalOrder());
+
+    /**
+     * The runs on the corpus of one size.
+     *
+     * @param steps step -> durations of the step over the runs
+     */
+    public record Point(int lines, int runs, int passed, SortedMap<String, LatencySummary> steps) {
+
+        public boolean isPassed() {
+            return runs > 0 && passed == runs;
+        }
+
+        /**
+         * @return the median duration of the step, NaN when it did not run
+         */
+        public double seconds(String step) {
+            LatencySummary summary = steps.get(step);
+            return summary == null ? Double.NaN : summary.p50Micros() / 1_000_000d;
+        }
+
+        public double linesPerSecond() {
+            return lines / seconds(StepBudgets.UPLOAD_TO_DOWNLOAD);
+        }
+    }
+
+    /**
+     * t = fixedSeconds + coefficient·n^exponent, fitted by least squares.
+     */
+    public record Fit(double fixedSeconds, double coefficient, double exponent, double rSquared) {
+
+        public double predictSeconds(double lines) {
+            return fixedSeconds + coefficient * Math.pow(lines, exponent);
+        }
+
+        /**
+         * Tries the exponents between 0.5 and 3: for each, the fixed time and
+         * the coefficient are a linear regression, and the exponent leaving
+         * the smallest error wins.
+         *
+         * @return null with fewer than 3 sizes, too few to tell a curve from
+         * a line
+         */
+        static Fit of(double[] lines, double[] seconds) {
+            int n = lines.length;
+            if (n < 3) {
+                return null;
+            }
+            double meanSeconds = 0;
+            for (double s : seconds) {
+                meanSeconds += s / n;
+            }
+            double totalSquares = 0;
+            for (double s : seconds) {
+                totalSquares += (s - meanSeconds) * (s - meanSeconds);
+            }
+            // when the time does not grow at all, the best curve is flat
+            Fit best = new Fit(meanSeconds, 0, 0, totalSquares == 0 ? 1 : 0);
+            double bestError = totalSquares;
+            double[] x = new double[n];
+            for (double exponent = MIN_EXPONENT; exponent <= MAX_EXPONENT + 1e-9; exponent += EXPONENT_STEP) {
+                double meanX = 0;
+                for (int i = 0; i < n; i++) {
+                    x[i] = Math.pow(lines[i], exponent);
+                    meanX += x[i] / n;
+                }
+                double covariance = 0;
+                double variance = 0;
+                for (int i = 0; i < n; i++) {
+                    covariance += (x[i] - meanX) * (seconds[i] - meanSeconds);
+                    variance += (x[i] - meanX) * (x[i] - meanX);
+                }
+                if (variance == 0) {
+                    continue;
+                }
+                double coefficient = covariance / variance;
+                double fixed = meanSeconds - coefficient * meanX;
+                if (fixed < 0) {
+                    // no step takes less than no time: the curve goes through the origin
+                    fixed = 0;
+                    double xy = 0;
+                    double xx = 0;
+                    for (int i = 0; i < n; i++) {
+                        xy += x[i] * seconds[i];
+                        xx += x[i] * x[i];
+                    }
+                    coefficient = xy / xx;
+                }
+                if (coefficient <= 0) {
+                    continue;
+                }
+                double error = 0;
+                for (int i = 0; i < n; i++) {
+                    double residual = seconds[i] - fixed - coefficient * x[i];
+                    error += residual * residual;
+                }
+                if (error < bestError) {
+                    bestError = error;
+                    best = new Fit(fixed, coefficient, exponent, totalSquares == 0 ? 1 : 1 - error / totalSquares);
+                }
+            }
+            return best;
+        }
+    }
+
+    /**
+     * The steps that ran on every passed size, the span from upload to
+     * download first.
+     */
+    public SortedSet<String> steps() {
+        SortedSet<String> steps = new TreeSet(SPAN_FIRST);
+        for (Point point : passedPoints()) {
+            steps.addAll(point.steps().keySet());
+        }
+        return steps;
+    }
+
+    public List<Point> passedPoints() {
+        List<Point> passedPoints = new ArrayList();
+        for (Point point : points) {
+            if (point.isPassed()) {
+                passedPoints.add(point);
+            }
+        }
+        return passedPoints;
+    }
+
+    /**
+     * @return the curve of the step over the passed sizes, null when it ran
+     * on fewer than 3 of them
+     */
+    public Fit fit(String step) {
+        List<double[]> measures = new ArrayList();
+        for (Point point : passedPoints()) {
+            double seconds = point.seconds(step);
+            if (!Double.isNaN(seconds)) {
+                measures.add(new double[]{point.lines(), seconds});
+            }
+        }
+        double[] lines = new double[measures.size()];
+        double[] seconds = new double[measures.size()];
+        for (int i = 0; i < measures.size(); i++) {
+            lines[i] = measures.get(i)[0];
+            seconds[i] = measures.get(i)[1];
+        }
+        return Fit.of(lines, seconds);
+    }
+
+    /**
+     * The time each line adds between one size and the next, compared to
+     * the cheapest line so far: the time of the app to start and answer is
+     * left out, which a curve fitted through small sizes hides.
+     *
+     * @return the first size where a line costs {@link #SUPERLINEAR_RATIO}
+     * times more than it did at smaller sizes, -1 when the step scales
+     * linearly up to the largest size that passed
+     */
+    public int superlinearFrom(String step) {
+        List<Point> passedPoints = passedPoints();
+        double cheapest = Double.NaN;
+        for (int i = 1; i < passedPoints.size(); i++) {
+            Point previous = passedPoints.get(i - 1);
+            Point point = passedPoints.get(i);
+            double growth = point.seconds(step) - previous.seconds(step);
+            if (Double.isNaN(growth) || growth <= MIN_GROWTH * previous.seconds(step)) {
+                continue;
+            }
+            double secondsPerLine = growth / (point.lines() - previous.lines());
+            if (!Double.isNaN(cheapest) && secondsPerLine > SUPERLINEAR_RATIO * cheapest) {
+                return point.lines();
+            }
+            if (Double.isNaN(cheapest) || secondsPerLine < cheapest) {
+                cheapest = secondsPerLine;
+            }
+        }
+        return -1;
+    }
+
+    public String toText() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "%s (%s)%n", function, mode));
+        sb.append(String.format(Locale.ROOT, "  %10s  %5s  %22s  %12s  %18s%n", "lines", "runs", "upload to download p50", "lines/s", "ms per 1000 lines"));
+        Point previous = null;
+        for (Point point : points) {
+            if (!point.isPassed()) {
+                sb.append(String.format(Locale.ROOT, "  %10d  %2d/%-2d  failed%n", point.lines(), point.passed(), point.runs()));
+                continue;
+            }
+            String marginal = previous == null ? ""
+                    : String.format(Locale.ROOT, "%18.3f", (point.seconds(StepBudgets.UPLOAD_TO_DOWNLOAD) - previous.seconds(StepBudgets.UPLOAD_TO_DOWNLOAD)) * 1_000_000 / (point.lines() - previous.lines()));
+            sb.append(String.format(Locale.ROOT, "  %10d  %5d  %20.2f s  %12.1f  %s%n",
+                    point.lines(), point.runs(), point.seconds(StepBudgets.UPLOAD_TO_DOWNLOAD), point.linesPerSecond(), marginal));
+            previous = point;
+        }
+        for (String step : steps()) {
+            Fit fit = fit(step);
+            if (fit == null) {
+                continue;
+            }
+            int superlinearFrom = superlinearFrom(step);
+            sb.append(String.format(Locale.ROOT, "  %-16s t = %.2f s + %.3g s * n^%.2f  (R2 %.3f)%s%n",
+                    step, fit.fixedSeconds(), fit.coefficient(), fit.exponent(), fit.rSquared(),
+                    superlinearFrom < 0 ? "" : ", worse than linear from " + superlinearFrom + " lines"));
+        }
+        if (stoppedBecause != null) {
+            sb.append("  larger sizes not run: ").append(stoppedBecause).append(System.lineSeparator());
+        }
+        return sb.toString();
+    }
+
+    void appendJson(StringBuilder sb, String indent) {
+        sb.append(indent).append("{\"function\": \"").append(StepMetrics.escapeJson(function))
+                .append("\", \"mode\": \"").append(StepMetrics.escapeJson(mode)).append("\",\n");
+        if (stoppedBecause != null) {
+            sb.append(indent).append(" \"stopped_because\": \"").append(StepMetrics.escapeJson(stoppedBecause)).append("\",\n");
+        }
+        sb.append(indent).append(" \"points\": [");
+        boolean first = true;
+        for (Point point : points) {
+            sb.append(first ? "\n" : ",\n").append(indent).append("   {");
+            sb.append("\"lines\": ").append(point.lines()).append(", ");
+            sb.append("\"runs\": ").append(point.runs()).append(", ");
+            sb.append("\"passed\": ").append(point.passed());
+            if (point.isPassed()) {
+                sb.append(", \"lines_per_second\": ").append(point.linesPerSecond());
+            }
+            sb.append(", \"steps\": {");
+            boolean firstStep = true;
+            for (Map.Entry<String, LatencySummary> step : point.steps().entrySet()) {
+                LatencySummary summary = step.getValue();
+                sb.append(firstStep ? "" : ", ");
+                sb.append("\"").append(StepMetrics.escapeJson(step.getKey())).append("\": {");
+                sb.append("\"count\": ").append(summary.count()).append(", ");
+                sb.append("\"p50_ms\": ").append(StepMetrics.toMillis(summary.p50Micros())).append(", ");
+                sb.append("\"max_ms\": ").append(StepMetrics.toMillis(summary.maxMicros())).append("}");
+                firstStep = false;
+            }
+            sb.append("}}");
+            first = false;
+        }
+        sb.append(first ? "],\n" : "\n" + indent + " ],\n");
+        sb.append(indent).append(" \"fits\": [");
+        first = true;
+        for (String step : steps()) {
+            Fit fit = fit(step);
+            if (fit == null) {
+                continue;
+            }
+            sb.append(first ? "\n" : ",\n").append(indent).append("   {");
+            sb.append("\"step\": \"").append(StepMetrics.escapeJson(step)).append("\", ");
+            sb.append("\"fixed_seconds\": ").append(fit.fixedSeconds()).append(", ");
+            sb.append("\"coefficient\": ").append(fit.coefficient()).append(", ");
+            sb.append("\"exponent\": ").append(fit.exponent()).append(", ");
+            sb.append("\"r_squared\": ").append(fit.rSquared()).append(", ");
+            sb.append("\"superlinear_from\": ").append(superlinearFrom(step)).append("}");
+            first = false;
+        }
+        sb.append(first ? "]}" : "\n" + indent + " ]}");
+    }
+
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.sessions;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import net.clementlevallois.nocodeapp.testingsuite.drivers.PooledWebDriver;
+import net.clementlevallois.nocodeapp.testingsuite.functions.ScenarioStep;
+import net.clementlevallois.nocodeapp.testingsuite.metrics.PageTimings;
+import net.clementlevallois.nocodeapp.testingsuite.utils.DownloadWatcher;
+import net.clementlevallois.nocodeapp.testingsuite.utils.StepBudgets;
+import net.clementlevallois.nocodeapp.testingsuite.utils.StepFailureException;
+import net.clementlevallois.nocodeapp.testingsuite.utils.StepWaiter;
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+
+/**
+ *
+ * @author LEVALLOIS
+ */
+public class BrowserSession implements ScenarioSession {
+
+    public static final String MODE = "browser";
+
+    private final PooledWebDriver pooledWebDriver;
+    private final WebDriver webDriver;
+    private final StepBudgets stepBudgets;
+    private final StepWaiter stepWaiter;
+    private final PagePerformanceProbe pagePerformanceProbe;
+
+    // arguments: the type and the selector of the rows locator, the row and column of each cell asked for;
+    // white space is the set of TableSummary, so that the hashes match those computed over http
+    private static final String SUMMARIZE_TABLE = """
+            var type = arguments[0], selector = arguments[1], wanted = arguments[2];
+            var rows = [];
+            if (type === 'xpath') {
+                var snapshot = document.evaluate(selector, document, null, XPathResult.ORDERED_NODE_SNAPSHOT_TYPE, null);
+                for (var s = 0; s < snapshot.snapshotLength; s++) rows.push(snapshot.snapshotItem(s));
+            } else if (type === 'id') {
+                var element = document.getElementById(selector);
+                if (element) rows.push(element);
+            } else if (type === 'class') {
+                rows = document.getElementsByClassName(selector);
+            } else {
+                rows = document.querySelectorAll(selector);
+            }
+            function text(cell) {
+                return cell.textContent.replace(/[%s]+/g, ' ').trim();
+            }
+            function cellsOf(row) {
+                return row.cells || row.children;
+            }
+            var hashes = [];
+            for (var r = 0; r < rows.length; r++) {
+                var cells = cellsOf(rows[r]);
+                for (var c = 0; c < cells.length; c++) {
+                    var value = text(cells[c]);
+                    var h = c < hashes.length && hashes[c] !== undefined ? hashes[c] : 0x811c9dc5;
+                    for (var k = 0; k < value.length; k++) {
+                        h = Math.imul(h ^ value.charCodeAt(k), 0x01000193);
+                    }
+                    hashes[c] = Math.imul(h ^ 0x1f, 0x01000193);
+                }
+            }
+            var values = [];
+            for (var w = 0; w < wanted.length; w += 2) {
+                var row = rows[wanted[w]];
+                var cell = row ? cellsOf(row)[wanted[w + 1]] : null;
+                values.push(cell ? text(cell) : null);
+            }
+            return [rows.length, hashes.map(function (h) { return h === undefined ? 0x811c9dc5 : h >>> 0; }), values];
+            """.formatted(TableSummary.WHITE_SPACE_CHARACTERS);
+
+    public BrowserSession(PooledWebDriver pooledWebDriver, StepBudgets stepBudgets) {
+        this.pooledWebDriver = pooledWebDriver;
+        this.webDriver = pooledWebDriver.getWebDriver();
+        this.stepBudgets = stepBudgets;
+        this.stepWaiter = new StepWaiter(webDriver, stepBudgets);
+        this.pagePerformanceProbe = new PagePerformanceProbe(pooledWebDriver);
+    }
+
+    public PooledWebDriver getPooledWebDriver() {
+        return pooledWebDriver;
+    }
+
+    @Override
+    public String getMode() {
+        return MODE;
+    }
+
+    @Override
+    public void startPageCapture() {
+        pagePerformanceProbe.start();
+    }
+
+    @Override
+    public PageTimings stopPageCapture() {
+        return pagePerformanceProbe.stop();
+    }
+
+    @Override
+    public void open(String step, String url) {
+        webDriver.get(url);
+    }
+
+    @Override
+    public void click(String step, String target) throws StepFailureException {
+        stepWaiter.untilClickable(step, ScenarioStep.toLocator(target)).click();
+    }
+
+    @Override
+    public void upload(String step, String input, Path file, String uploadButton, String confirm) throws StepFailureException {
+        WebElement fileInput = stepWaiter.untilPresent(step, ScenarioStep.toLocator(input));
+        fileInput.sendKeys(file.toString());
+        if (uploadButton != null) {
+            WebElement button = webDriver.findElement(ScenarioStep.toLocator(uploadButton));
+            if (!button.getAttribute("class").contains("ui-state-disabled")) {
+                button.click();
+            }
+        }
+        if (confirm != null) {
+            stepWaiter.untilClickable(step, ScenarioStep.toLocator(confirm)).click();
+        }
+    }
+
+    @Override
+    public void expectUrl(String step, List<String> fragments) throws StepFailureException {
+        stepWaiter.untilUrlContains(step, fragments.toArray(String[]::new));
+    }
+
+    @Override
+    public void waitFor(String step, String locator) throws StepFailureException {
+        stepWaiter.untilPresent(step, ScenarioStep.toLocator(locator));
+    }
+
+    @Override
+    public TableSummary summarizeTable(String step, String rows, boolean mayBeEmpty, Collection<TableSummary.Cell> cells) throws StepFailureException {
+        if (!mayBeEmpty) {
+            stepWaiter.untilPresent(step, ScenarioStep.toLocator(rows));
+        }
+        // one script for the whole table: a WebElement per row would be a round trip each, thousands for large files
+        int separator = rows.indexOf(':');
+        List<Long> wanted = new ArrayList();
+        for (TableSummary.Cell cell : cells) {
+            wanted.add((long) cell.row());
+            wanted.add((long) cell.column());
+        }
+        List<Object> summary = (List<Object>) ((JavascriptExecutor) webDriver).executeScript(SUMMARIZE_TABLE,
+                rows.substring(0, separator).trim(), rows.substring(separator + 1).trim(), wanted);
+        Map<TableSummary.Cell, String> values = new LinkedHashMap();
+        List<Object> cellValues = (List<Object>) summary.get(2);
+        int i = 0;
+        for (TableSummary.Cell cell : cells) {
+            values.put(cell, (String) cellValues.get(i++));
+        }
+        List<Long> columnHashes = new ArrayList();
+        for (Object hash : (List<Object>) summary.get(1)) {
+            columnHashes.add(((Number) hash).longValue());
+        }
+        return new TableSummary(((Number) summary.get(0)).intValue(), columnHashes, values);
+    }
+
+    @Override
+    public Optional<Path> download(String step, String target, String extension) throws StepFailureException, IOException, InterruptedException {
+        Duration downloadBudget = stepBudgets.budgetFor(step);
+        try (DownloadWatcher downloadWatcher = new DownloadWatcher(pooledWebDriver.getDownloadFolder())) {
+            stepWaiter.untilClickable(step, ScenarioStep.toLocator(target)).click();
+            return downloadWatcher.awaitCompletedDownload(downloadBudget, extension);
+        }
+    }
+
+    @Override
+    public String getCurrentUrl() {
+        return webDriver.getCurrentUrl();
+    }
+
+    @Override
+    public void close() {
+        // the driver goes back to the pool, it is not closed
+    }
+
+}
@@ -0,0 +1,394 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.sessions;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Just enough of an HTML reader to drive the JSF pages of the app without a
+ * browser: finding elements by id, class or simple css selectors, and reading
+ * the fields of their form. It does not build a DOM.
+ *
+ * @author LEVALLOIS
+ */
+public class HtmlDocument {
+
+    private static final Pattern START_TAG = Pattern.compile("<([a-zA-Z][a-zA-Z0-9]*)(\\s[^>]*)?>");
+    private static final Pattern ATTRIBUTE = Pattern.compile("([a-zA-Z_:][-a-zA-Z0-9_:.]*)\\s*=\\s*(?:\"([^\"]*)\"|'([^']*)')");
+    private static final Pattern COMPOUND_PART = Pattern.compile("#([-\\w:]+)|\\.([-\\w]+)|\\[([-\\w]+)(?:\\s*=\\s*(?:'([^']*)'|\"([^\"]*)\"|([^\\]]*)))?\\]");
+    private static final Pattern TAG = Pattern.compile("<[^>]*>");
+    private static final Pattern NUMERIC_ENTITY = Pattern.compile("&#(?:(\\d+)|[xX]([0-9a-fA-F]+));");
+    private static final Pattern TAG_NAME = Pattern.compile("^[a-zA-Z][a-zA-Z0-9]*");
+    // the same ids, tags and attributes are looked up on every page of every run: each pattern is compiled once
+    private static final Set<String> VOID_TAGS = Set.of("area", "base", "br", "col", "embed", "hr", "img", "input", "link", "meta", "source", "track", "wbr");
+
+    private final String html;
+    // the patterns of the ids and tags looked up in this page, which are few; a document is read by one session at a time
+    private final Map<String, Pattern> byIdPatterns = new HashMap();
+    private final Map<String, Pattern> sameTagPatterns = new HashMap();
+
+    public record Element(String tag, int start, int startTagEnd, String startTag, Map<String, String> attributes) {
+
+        public String attribute(String name) {
+            return attributes.get(name);
+        }
+
+        public boolean hasBooleanAttribute(String name) {
+            return attributes.containsKey(name)
+                    || Pattern.compile("\\s" + Pattern.quote(name) + "(\\s|/?>|$)", Pattern.CASE_INSENSITIVE).matcher(startTag).find();
+        }
+
+        public List<String> classes() {
+            String classes = attributes.get("class");
+            if (classes == null || classes.isBlank()) {
+                return Collections.emptyList();
+            }
+            return List.of(classes.trim().split("\\s+"));
+        }
+    }
+
+    public record Form(String id, String action, Map<String, String> fields) {
+
+    }
+
+    private record Compound(String tag, String id, List<String> classes, Map<String, String> attributes) {
+
+    }
+
+    public HtmlDocument(String html) {
+        this.html = html;
+    }
+
+    public String getHtml() {
+        return html;
+    }
+
+    public Optional<Element> findById(String id) {
+        Pattern byId = byIdPatterns.computeIfAbsent(id,
+                i -> Pattern.compile("<([a-zA-Z][a-zA-Z0-9]*)(\\s(?:[^>]*?\\s)?id\\s*=\\s*[\"']" + Pattern.quote(i) + "[\"'][^>]*)>"));
+        Matcher matcher = byId.matcher(html);
+        if (matcher.find()) {
+            return Optional.of(toElement(matcher));
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * @param locator "id:...", "class:..." or "css:..." with descendant
+     * selectors made of tags, #ids, .classes and [attribute='value']
+     */
+    public List<Element> findAll(String locator) {
+        int separator = locator.indexOf(':');
+        String type = locator.substring(0, separator).trim();
+        String selector = locator.substring(separator + 1).trim();
+        return switch (type) {
+            case "id" ->
+                findById(selector).map(List::of).orElse(Collections.emptyList());
+            case "class" ->
+                findAllByCss("." + selector);
+            case "css" ->
+                findAllByCss(selector);
+            default ->
+                throw new IllegalArgumentException("locators of type " + type + " are not supported without a browser: " + locator);
+        };
+    }
+
+    private List<Element> findAllByCss(String selector) {
+        List<Compound> compounds = parseSelector(selector);
+        List<Element> candidates = new ArrayList();
+        for (Element element : elementsBetween(0, html.length())) {
+            if (matches(element, compounds.get(0))) {
+                candidates.add(element);
+            }
+        }
+        for (int i = 1; i < compounds.size(); i++) {
+            Map<Integer, Element> descendants = new LinkedHashMap();
+            for (Element ancestor : candidates) {
+                for (Element element : elementsBetween(ancestor.startTagEnd(), endOf(ancestor))) {
+                    if (matches(element, compounds.get(i))) {
+                        descendants.putIfAbsent(element.start(), element);
+                    }
+                }
+            }
+            candidates = new ArrayList(descendants.values());
+        }
+        return candidates;
+    }
+
+    private static List<Compound> parseSelector(String selector) {
+        List<Compound> compounds = new ArrayList();
+        for (String part : splitOutsideBrackets(selector)) {
+            Matcher tagMatcher = TAG_NAME.matcher(part);
+            String tag = tagMatcher.find() ? tagMatcher.group().toLowerCase(Locale.ROOT) : null;
+            String id = null;
+            List<String> classes = new ArrayList();
+            Map<String, String> attributes = new HashMap();
+            Matcher matcher = COMPOUND_PART.matcher(part);
+            int expectedPosition = tag == null ? 0 : tag.length();
+            while (matcher.find()) {
+                if (matcher.start() != expectedPosition) {
+                    throw new IllegalArgumentException("css selector not supported without a browser: " + selector);
+                }
+                expectedPosition = matcher.end();
+                if (matcher.group(1) != null) {
+                    id = matcher.group(1);
+                } else if (matcher.group(2) != null) {
+                    classes.add(matcher.group(2));
+                } else {
+                    String value = matcher.group(4) != null ? matcher.group(4) : matcher.group(5) != null ? matcher.group(5) : matcher.group(6);
+                    attributes.put(matcher.group(3), value);
+                }
+            }
+            if (expectedPosition != part.length()) {
+                throw new IllegalArgumentException("css selector not supported without a browser: " + selector);
+            }
+            compounds.add(new Compound(tag, id, classes, attributes));
+        }
+        return compounds;
+    }
+
+    private static List<String> splitOutsideBrackets(String selector) {
+        List<String> parts = new ArrayList();
+        StringBuilder current = new StringBuilder();
+        int depth = 0;
+        for (char c : selector.toCharArray()) {
+            if (c == '[') {
+                depth++;
+            } else if (c == ']') {
+                depth--;
+            }
+            if (Character.isWhitespace(c) && depth == 0) {
+                if (current.length() > 0) {
+                    parts.add(current.toString());
+                    current.setLength(0);
+                }
+            } else {
+                current.append(c);
+            }
+        }
+        if (current.length() > 0) {
+            parts.add(current.toString());
+        }
+        return parts;
+    }
+
+    private static boolean matches(Element element, Compound compound) {
+        if (compound.tag() != null && !compound.tag().equals(element.tag())) {
+            return false;
+        }
+        if (compound.id() != null && !compound.id().equals(element.attribute("id"))) {
+            return false;
+        }
+        if (!element.classes().containsAll(compound.classes())) {
+            return false;
+        }
+        for (Map.Entry<String, String> attribute : compound.attributes().entrySet()) {
+            String value = element.attribute(attribute.getKey());
+            if (value == null || (attribute.getValue() != null && !attribute.getValue().equals(value))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private List<Element> elementsBetween(int from, int to) {
+        List<Element> elements = new ArrayList();
+        Matcher matcher = START_TAG.matcher(html);
+        matcher.region(from, to);
+        while (matcher.find()) {
+            elements.add(toElement(matcher));
+        }
+        return elements;
+    }
+
+    private static Element toElement(Matcher matcher) {
+        String attributesText = matcher.group(2) == null ? "" : matcher.group(2);
+        Map<String, String> attributes = new HashMap();
+        Matcher attributeMatcher = ATTRIBUTE.matcher(attributesText);
+        while (attributeMatcher.find()) {
+            String value = attributeMatcher.group(2) != null ? attributeMatcher.group(2) : attributeMatcher.group(3);
+            attributes.put(attributeMatcher.group(1).toLowerCase(Locale.ROOT), unescape(value));
+        }
+        return new Element(matcher.group(1).toLowerCase(Locale.ROOT), matcher.start(), matcher.end(), matcher.group(), attributes);
+    }
+
+    /**
+     * @return the index right after the closing tag of the element
+     */
+    public int endOf(Element element) {
+        if (VOID_TAGS.contains(element.tag()) || element.startTag().endsWith("/>")) {
+            return element.startTagEnd();
+        }
+        Pattern sameTag = sameTagPatterns.computeIfAbsent(element.tag(),
+                tag -> Pattern.compile("<(/?)" + tag + "(\\s[^>]*)?>", Pattern.CASE_INSENSITIVE));
+        Matcher matcher = sameTag.matcher(html);
+        matcher.region(element.startTagEnd(), html.length());
+        int depth = 1;
+        while (matcher.find()) {
+            if (matcher.group(1).isEmpty()) {
+                if (!matcher.group().endsWith("/>")) {
+                    depth++;
+                }
+            } else if (--depth == 0) {
+                return matcher.end();
+            }
+        }
+        return html.length();
+    }
+
+    public Optional<Form> enclosingForm(Element element) {
+        Element form = null;
+        for (Element candidate : findAllByCss("form")) {
+            if (candidate.start() < element.start() && endOf(candidate) > element.start()) {
+                form = candidate;
+            }
+        }
+        if (form == null) {
+            return Optional.empty();
+        }
+        Map<String, String> fields = new LinkedHashMap();
+        int formEnd = endOf(form);
+        for (Element field : elementsBetween(form.startTagEnd(), formEnd)) {
+            String name = field.attribute("name");
+            if (name == null || field.hasBooleanAttribute("disabled")) {
+                continue;
+            }
+            switch (field.tag()) {
+                case "input" -> {
+                    String type = field.attributes().getOrDefault("type", "text").toLowerCase(Locale.ROOT);
+                    switch (type) {
+                        case "submit", "button", "image", "file", "reset" -> {
+                        }
+                        case "checkbox", "radio" -> {
+                            if (field.hasBooleanAttribute("checked")) {
+                                fields.put(name, field.attributes().getOrDefault("value", "on"));
+                            }
+                        }
+                        default ->
+                            fields.put(name, field.attributes().getOrDefault("value", ""));
+                    }
+                }
+                case "select" -> {
+                    String selected = null;
+                    for (Element option : elementsBetween(field.startTagEnd(), endOf(field))) {
+                        if (!option.tag().equals("option")) {
+                            continue;
+                        }
+                        String value = option.attributes().getOrDefault("value", textOf(option));
+                        if (selected == null || option.hasBooleanAttribute("selected")) {
+                            selected = value;
+                        }
+                        if (option.hasBooleanAttribute("selected")) {
+                            break;
+                        }
+                    }
+                    if (selected != null) {
+                        fields.put(name, selected);
+                    }
+                }
+                case "textarea" ->
+                    fields.put(name, textOf(field));
+                default -> {
+                }
+            }
+        }
+        return Optional.of(new Form(form.attribute("id"), form.attribute("action"), fields));
+    }
+
+    private String textOf(Element element) {
+        return unescape(innerHtmlOf(element));
+    }
+
+    private String innerHtmlOf(Element element) {
+        int end = endOf(element);
+        int closingTag = html.lastIndexOf("</", end);
+        return html.substring(element.startTagEnd(), Math.max(element.startTagEnd(), closingTag));
+    }
+
+    /**
+     * The text of an element and of its descendants, as the textContent of
+     * the DOM gives it.
+     */
+    public String textContentOf(Element element) {
+        String text = TAG.matcher(innerHtmlOf(element)).replaceAll("");
+        text = text.replace("&nbsp;", "\u00a0");
+        if (text.indexOf("&#") >= 0) {
+            Matcher numeric = NUMERIC_ENTITY.matcher(text);
+            StringBuilder sb = new StringBuilder();
+            while (numeric.find()) {
+                int codePoint = numeric.group(1) != null ? Integer.parseInt(numeric.group(1)) : Integer.parseInt(numeric.group(2), 16);
+                numeric.appendReplacement(sb, Matcher.quoteReplacement(new String(Character.toChars(codePoint))));
+            }
+            numeric.appendTail(sb);
+            text = sb.toString();
+        }
+        return unescape(text);
+    }
+
+    /**
+     * The cells of a row: its td and th, or its children when it is not a tr.
+     * The cells of a table nested in a cell are not cells of the row.
+     */
+    public List<Element> cellsOf(Element row) {
+        List<Element> cells = new ArrayList();
+        int end = endOf(row);
+        int position = row.startTagEnd();
+        while (position < end) {
+            Matcher matcher = START_TAG.matcher(html);
+            matcher.region(position, end);
+            if (!matcher.find()) {
+                break;
+            }
+            Element child = toElement(matcher);
+            if (!row.tag().equals("tr") || child.tag().equals("td") || child.tag().equals("th")) {
+                cells.add(child);
+            }
+            // the next child starts after this one and its descendants
+            position = endOf(child);
+        }
+        return cells;
+    }
+
+    /**
+     * Applies the update of a JSF partial response to the element with this id.
+     */
+    public HtmlDocument replaceElement(String id, String newHtml) {
+        Optional<Element> element = findById(id);
+        if (element.isEmpty()) {
+            return this;
+        }
+        return new HtmlDocument(html.substring(0, element.get().start()) + newHtml + html.substring(endOf(element.get())));
+    }
+
+    /**
+     * @return "javax.faces" or "jakarta.faces", depending on the version of
+     * JSF serving the page
+     */
+    public String facesPrefix() {
+        return html.contains("jakarta.faces.ViewState") ? "jakarta.faces" : "javax.faces";
+    }
+
+    static String unescape(String value) {
+        if (value == null || value.indexOf('&') < 0) {
+            return value;
+        }
+        return value.replace("&lt;", "<")
+                .replace("&gt;", ">")
+                .replace("&quot;", "\"")
+                .replace("&#39;", "'")
+                .replace("&#x27;", "'")
+                .replace("&amp;", "&");
+    }
+
+}
@@ -0,0 +1,436 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.sessions;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.CookieManager;
+import java.net.CookiePolicy;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import net.clementlevallois.nocodeapp.testingsuite.replay.TrafficRecorder;
+import net.clementlevallois.nocodeapp.testingsuite.utils.StepBudgets;
+import net.clementlevallois.nocodeapp.testingsuite.utils.StepFailureException;
+import net.clementlevallois.nocodeapp.testingsuite.utils.StepTimeoutException;
+
+/**
+ * Drives the JSF flow of the app with plain HTTP requests: the session cookie
+ * is kept by the client, the ViewState and the fields of the forms are read
+ * from the pages, and the AJAX requests of PrimeFaces are replayed as partial
+ * requests. Much cheaper than a browser, but blind to javascript and
+ * rendering issues.
+ *
+ * @author LEVALLOIS
+ */
+public class HttpSession implements ScenarioSession {
+
+    public static final String MODE = "http";
+
+    private static final String USER_AGENT = "Mozilla/5.0 (compatible; MyRobot/1.0; +http://www.example.com/robot) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/123.0.0.0 Safari/537.36";
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(20);
+    private static final Pattern PRIMEFACES_AJAX_OPTION = Pattern.compile("\\b([spuf])\\s*:\\s*[\"']([^\"']*)[\"']");
+    private static final Pattern PARTIAL_UPDATE = Pattern.compile("<update id=\"([^\"]*)\">(.*?)</update>", Pattern.DOTALL);
+    private static final Pattern PARTIAL_REDIRECT = Pattern.compile("<redirect url=\"([^\"]*)\"");
+    private static final Pattern PARTIAL_ERROR = Pattern.compile("<error-message>(.*?)</error-message>", Pattern.DOTALL);
+    private static final String FORM_CONTENT_TYPE = "application/x-www-form-urlencoded; charset=UTF-8";
+    private static final Pattern CONTENT_DISPOSITION_FILENAME = Pattern.compile("filename\\*?=(?:UTF-8'')?\"?([^\";]+)\"?", Pattern.CASE_INSENSITIVE);
+
+    private final HttpClient httpClient;
+    // a client built by the session, with its own threads and connections, is closed with it
+    private final boolean ownsHttpClient;
+    private final Path downloadFolder;
+    private final StepBudgets stepBudgets;
+    private URI currentUri;
+    private HtmlDocument currentPage = new HtmlDocument("");
+    // the ViewState sent back by the last partial response, which replaces the one of the page
+    private String viewState;
+    private TrafficRecorder trafficRecorder;
+
+    public HttpSession(Path downloadFolder, StepBudgets stepBudgets) {
+        this(HttpClient.newBuilder()
+                .cookieHandler(new CookieManager(null, CookiePolicy.ACCEPT_ALL))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(CONNECT_TIMEOUT)
+                .build(), true, downloadFolder, stepBudgets);
+    }
+
+    /**
+     * @param httpClient a client of the caller, left open when the session
+     * closes
+     */
+    public HttpSession(HttpClient httpClient, Path downloadFolder, StepBudgets stepBudgets) {
+        this(httpClient, false, downloadFolder, stepBudgets);
+    }
+
+    private HttpSession(HttpClient httpClient, boolean ownsHttpClient, Path downloadFolder, StepBudgets stepBudgets) {
+        this.httpClient = httpClient;
+        this.ownsHttpClient = ownsHttpClient;
+        this.downloadFolder = downloadFolder;
+        this.stepBudgets = stepBudgets;
+    }
+
+    @Override
+    public String getMode() {
+        return MODE;
+    }
+
+    /**
+     * Every exchange with the server from now on goes to the recorder.
+     */
+    public void setTrafficRecorder(TrafficRecorder trafficRecorder) {
+        this.trafficRecorder = trafficRecorder;
+    }
+
+    @Override
+    public void open(String step, String url) throws StepFailureException, IOException, InterruptedException {
+        URI uri = URI.create(url);
+        HttpResponse<byte[]> response = send(step, HttpRequest.newBuilder(uri).GET());
+        loadPage(step, response);
+    }
+
+    @Override
+    public void click(String step, String target) throws StepFailureException, IOException, InterruptedException {
+        HtmlDocument.Element element = findElement(step, target);
+        String href = element.attribute("href");
+        if (element.tag().equals("a") && href != null && !href.startsWith("#") && !href.startsWith("javascript:")) {
+            open(step, currentUri.resolve(href).toString());
+            return;
+        }
+        String onclick = element.attributes().getOrDefault("onclick", "");
+        if (onclick.contains("PrimeFaces.ab(") || onclick.contains(".ajax.request(")) {
+            ajaxPostback(step, element, onclick);
+        } else {
+            HttpResponse<byte[]> response = fullPostback(step, element);
+            loadPage(step, response);
+        }
+    }
+
+    @Override
+    public void upload(String step, String input, Path file, String uploadButton, String confirm) throws StepFailureException, IOException, InterruptedException {
+        // choosing the file is the upload: the upload button only exists for the browser
+        HtmlDocument.Element fileInput = findElement(step, input);
+        HtmlDocument.Form form = enclosingForm(step, fileInput);
+        String inputName = fileInput.attributes().getOrDefault("name", fileInput.attribute("id"));
+        String componentId = inputName.endsWith("_input") ? inputName.substring(0, inputName.length() - "_input".length()) : inputName;
+        String prefix = currentPage.facesPrefix();
+
+        Map<String, String> fields = formFields(form);
+        fields.put(prefix + ".partial.ajax", "true");
+        fields.put(prefix + ".source", componentId);
+        fields.put(prefix + ".partial.execute", componentId);
+        fields.put(prefix + ".partial.render", "@all");
+
+        String boundary = "----nocodefunctions" + UUID.randomUUID().toString().replace("-", "");
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        for (Map.Entry<String, String> field : fields.entrySet()) {
+            body.write(("--" + boundary + "\r\nContent-Disposition: form-data; name=\"" + field.getKey() + "\"\r\n\r\n" + field.getValue() + "\r\n").getBytes(StandardCharsets.UTF_8));
+        }
+        body.write(("--" + boundary + "\r\nContent-Disposition: form-data; name=\"" + inputName + "\"; filename=\"" + file.getFileName() + "\"\r\nContent-Type: text/plain\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        body.write(Files.readAllBytes(file));
+        body.write(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+
+        HttpRequest.Builder request = HttpRequest.newBuilder(formAction(form))
+                .header("Faces-Request", "partial/ajax")
+                .header("X-Requested-With", "XMLHttpRequest");
+        applyPartialResponse(step, post(step, request, "multipart/form-data; boundary=" + boundary, body.toByteArray()));
+
+        if (confirm != null) {
+            click(step, confirm);
+        }
+    }
+
+    @Override
+    public void expectUrl(String step, List<String> fragments) throws StepFailureException {
+        String url = getCurrentUrl();
+        for (String fragment : fragments) {
+            if (!url.contains(fragment)) {
+                throw new StepFailureException(step, "step " + step + " expected an url containing " + fragments + " (current url: " + url + ")");
+            }
+        }
+    }
+
+    @Override
+    public void waitFor(String step, String locator) throws StepFailureException {
+        // the page is complete once received: there is nothing to wait for, only to check
+        if (currentPage.findAll(locator).isEmpty()) {
+            throw new StepFailureException(step, "step " + step + " expected " + locator + " on the page (current url: " + getCurrentUrl() + ")");
+        }
+    }
+
+    @Override
+    public TableSummary summarizeTable(String step, String rows, boolean mayBeEmpty, Collection<TableSummary.Cell> cells) {
+        List<HtmlDocument.Element> rowElements = currentPage.findAll(rows);
+        List<Integer> columnHashes = new ArrayList();
+        Map<Integer, List<HtmlDocument.Element>> cellsOfWantedRows = new HashMap();
+        for (TableSummary.Cell cell : cells) {
+            cellsOfWantedRows.put(cell.row(), null);
+        }
+        for (int r = 0; r < rowElements.size(); r++) {
+            List<HtmlDocument.Element> cellElements = currentPage.cellsOf(rowElements.get(r));
+            for (int c = 0; c < cellElements.size(); c++) {
+                String text = TableSummary.normalize(currentPage.textContentOf(cellElements.get(c)));
+                if (c == columnHashes.size()) {
+                    columnHashes.add(TableSummary.FNV_OFFSET_BASIS);
+                }
+                columnHashes.set(c, TableSummary.hash(columnHashes.get(c), text));
+            }
+            if (cellsOfWantedRows.containsKey(r)) {
+                cellsOfWantedRows.put(r, cellElements);
+            }
+        }
+        Map<TableSummary.Cell, String> values = new LinkedHashMap();
+        for (TableSummary.Cell cell : cells) {
+            List<HtmlDocument.Element> cellElements = cellsOfWantedRows.get(cell.row());
+            values.put(cell, cellElements == null || cell.column() < 0 || cell.column() >= cellElements.size() ? null
+                    : TableSummary.normalize(currentPage.textContentOf(cellElements.get(cell.column()))));
+        }
+        List<Long> unsignedHashes = new ArrayList();
+        for (int hash : columnHashes) {
+            unsignedHashes.add(Integer.toUnsignedLong(hash));
+        }
+        return new TableSummary(rowElements.size(), unsignedHashes, values);
+    }
+
+    @Override
+    public Optional<Path> download(String step, String target, String extension) throws StepFailureException, IOException, InterruptedException {
+        // downloads are always plain form submissions, even for buttons of PrimeFaces
+        HttpResponse<byte[]> response = fullPostback(step, findElement(step, target));
+        String contentType = response.headers().firstValue("Content-Type").orElse("");
+        if (response.statusCode() != 200 || contentType.contains("html")) {
+            return Optional.empty();
+        }
+        String fileName = response.headers().firstValue("Content-Disposition")
+                .map(CONTENT_DISPOSITION_FILENAME::matcher)
+                .filter(Matcher::find)
+                .map(matcher -> Path.of(matcher.group(1)).getFileName().toString())
+                .orElse("download" + extension);
+        if (!fileName.endsWith(extension)) {
+            return Optional.empty();
+        }
+        Files.createDirectories(downloadFolder);
+        Path download = downloadFolder.resolve(fileName);
+        Files.write(download, response.body());
+        return Optional.of(download);
+    }
+
+    @Override
+    public String getCurrentUrl() {
+        return currentUri == null ? "" : currentUri.toString();
+    }
+
+    public HtmlDocument getCurrentPage() {
+        return currentPage;
+    }
+
+    private HtmlDocument.Element findElement(String step, String locator) throws StepFailureException {
+        List<HtmlDocument.Element> elements = currentPage.findAll(locator);
+        if (elements.isEmpty()) {
+            throw new StepFailureException(step, "step " + step + " found no " + locator + " on the page (current url: " + getCurrentUrl() + ")");
+        }
+        return elements.get(0);
+    }
+
+    private HtmlDocument.Form enclosingForm(String step, HtmlDocument.Element element) throws StepFailureException {
+        Optional<HtmlDocument.Form> form = currentPage.enclosingForm(element);
+        if (form.isEmpty()) {
+            throw new StepFailureException(step, "step " + step + ": " + element.attribute("id") + " is not in a form (current url: " + getCurrentUrl() + ")");
+        }
+        return form.get();
+    }
+
+    private Map<String, String> formFields(HtmlDocument.Form form) {
+        Map<String, String> fields = new LinkedHashMap(form.fields());
+        if (viewState != null) {
+            for (String name : fields.keySet()) {
+                if (name.endsWith(".faces.ViewState")) {
+                    fields.put(name, viewState);
+                }
+            }
+        }
+        if (form.id() != null) {
+            fields.putIfAbsent(form.id(), form.id());
+        }
+        return fields;
+    }
+
+    private URI formAction(HtmlDocument.Form form) {
+        String action = form.action();
+        return (action == null || action.isBlank()) ? currentUri : currentUri.resolve(action);
+    }
+
+    private HttpResponse<byte[]> fullPostback(String step, HtmlDocument.Element button) throws StepFailureException, IOException, InterruptedException {
+        HtmlDocument.Form form = enclosingForm(step, button);
+        Map<String, String> fields = formFields(form);
+        String name = button.attributes().getOrDefault("name", button.attribute("id"));
+        fields.put(name, button.attributes().getOrDefault("value", name));
+        return post(step, HttpRequest.newBuilder(formAction(form)), FORM_CONTENT_TYPE, urlEncode(fields).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void ajaxPostback(String step, HtmlDocument.Element button, String onclick) throws StepFailureException, IOException, InterruptedException {
+        HtmlDocument.Form form = enclosingForm(step, button);
+        Map<String, String> options = new LinkedHashMap();
+        Matcher matcher = PRIMEFACES_AJAX_OPTION.matcher(onclick);
+        while (matcher.find()) {
+            options.putIfAbsent(matcher.group(1), matcher.group(2));
+        }
+        String source = options.getOrDefault("s", button.attribute("id"));
+        String prefix = currentPage.facesPrefix();
+        Map<String, String> fields = formFields(form);
+        fields.put(prefix + ".partial.ajax", "true");
+        fields.put(prefix + ".source", source);
+        fields.put(prefix + ".partial.execute", options.getOrDefault("p", "@all"));
+        // rendering everything gives back the whole page, which keeps the copy of the page in sync
+        fields.put(prefix + ".partial.render", "@all");
+        fields.put(source, source);
+        HttpRequest.Builder request = HttpRequest.newBuilder(formAction(form))
+                .header("Faces-Request", "partial/ajax")
+                .header("X-Requested-With", "XMLHttpRequest");
+        applyPartialResponse(step, post(step, request, FORM_CONTENT_TYPE, urlEncode(fields).getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private void applyPartialResponse(String step, HttpResponse<byte[]> response) throws StepFailureException, IOException, InterruptedException {
+        String body = decode(response);
+        if (!body.contains("<partial-response")) {
+            // the server answered with a whole page
+            loadPage(step, response);
+            return;
+        }
+        Matcher error = PARTIAL_ERROR.matcher(body);
+        if (error.find()) {
+            throw new StepFailureException(step, "step " + step + ": the server answered with an error: " + stripCData(error.group(1)));
+        }
+        Matcher redirect = PARTIAL_REDIRECT.matcher(body);
+        if (redirect.find()) {
+            open(step, currentUri.resolve(HtmlDocument.unescape(redirect.group(1))).toString());
+            return;
+        }
+        Matcher update = PARTIAL_UPDATE.matcher(body);
+        while (update.find()) {
+            String id = update.group(1);
+            String content = stripCData(update.group(2));
+            if (id.contains("ViewState")) {
+                viewState = content;
+            } else if (id.endsWith(".faces.ViewRoot")) {
+                currentPage = new HtmlDocument(content);
+            } else {
+                currentPage = currentPage.replaceElement(id, content);
+            }
+        }
+    }
+
+    private void loadPage(String step, HttpResponse<byte[]> response) throws StepFailureException {
+        if (response.statusCode() >= 400) {
+            throw new StepFailureException(step, "step " + step + ": the server answered " + response.statusCode() + " for " + response.uri());
+        }
+        currentUri = response.uri();
+        currentPage = new HtmlDocument(decode(response));
+        viewState = null;
+    }
+
+    private HttpResponse<byte[]> post(String step, HttpRequest.Builder request, String contentType, byte[] body) throws StepTimeoutException, IOException, InterruptedException {
+        return send(step, request
+                .header("Content-Type", contentType)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body)), body);
+    }
+
+    private HttpResponse<byte[]> send(String step, HttpRequest.Builder request) throws StepTimeoutException, IOException, InterruptedException {
+        return send(step, request, null);
+    }
+
+    /**
+     * @param body the body of a POST, null for a GET
+     */
+    private HttpResponse<byte[]> send(String step, HttpRequest.Builder request, byte[] body) throws StepTimeoutException, IOException, InterruptedException {
+        Duration budget = stepBudgets.budgetFor(step);
+        HttpRequest httpRequest = request
+                .timeout(budget)
+                .header("User-Agent", USER_AGENT)
+                .header("Accept-Language", "fr")
+                .build();
+        try {
+            HttpResponse<byte[]> response = httpClient.send(httpRequest, HttpResponse.BodyHandlers.ofByteArray());
+            if (trafficRecorder != null) {
+                trafficRecorder.record(httpRequest, body, response);
+            }
+            return response;
+        } catch (HttpTimeoutException ex) {
+            throw new StepTimeoutException(step, budget, "a response to " + httpRequest.method() + " " + httpRequest.uri(), ex);
+        }
+    }
+
+    private static String decode(HttpResponse<byte[]> response) {
+        Charset charset = StandardCharsets.UTF_8;
+        String contentType = response.headers().firstValue("Content-Type").orElse("");
+        int charsetIndex = contentType.toLowerCase().indexOf("charset=");
+        if (charsetIndex >= 0) {
+            try {
+                charset = Charset.forName(contentType.substring(charsetIndex + "charset=".length()).replace("\"", "").trim());
+            } catch (IllegalArgumentException ex) {
+                // keeping UTF-8
+            }
+        }
+        return new String(response.body(), charset);
+    }
+
+    private static String stripCData(String content) {
+        // JSF splits a CDATA section containing "]]>" in several sections
+        String joined = content.replace("]]><![CDATA[", "").trim();
+        if (joined.startsWith("<![CDATA[") && joined.endsWith("]]>")) {
+            return joined.substring("<![CDATA[".length(), joined.length() - "]]>".length());
+        }
+        return joined;
+    }
+
+    private static String urlEncode(Map<String, String> fields) {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, String> field : fields.entrySet()) {
+            if (sb.length() > 0) {
+                sb.append('&');
+            }
+            sb.append(URLEncoder.encode(field.getKey(), StandardCharsets.UTF_8)).append('=').append(URLEncoder.encode(field.getValue(), StandardCharsets.UTF_8));
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (Files.notExists(downloadFolder)) {
+                return;
+            }
+            try (DirectoryStream<Path> downloads = Files.newDirectoryStream(downloadFolder)) {
+                for (Path download : downloads) {
+                    Files.deleteIfExists(download);
+                }
+            }
+            Files.deleteIfExists(downloadFolder);
+        } finally {
+            if (ownsHttpClient) {
+                // stops the selector thread and the connections; an exchange left running by a step out of budget is aborted, not waited for
+                httpClient.shutdownNow();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.sessions;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import net.clementlevallois.nocodeapp.testingsuite.drivers.PooledWebDriver;
+import net.clementlevallois.nocodeapp.testingsuite.metrics.PageTimings;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.chromium.HasCdp;
+
+/**
+ * Measures what the page does during a step, with the Performance API of the
+ * page and the Chrome DevTools Protocol. The CDP commands go through
+ * {@link HasCdp#executeCdpCommand}, which does not depend on the version of
+ * Chrome the way the generated devtools classes do. The observer of long
+ * tasks is added to the new documents of a browser once, by the first probe
+ * of its driver. A measure that fails gives no timings, never a failed step.
+ *
+ * @author LEVALLOIS
+ */
+class PagePerformanceProbe {
+
+    // long tasks are only reported to an observer: it is installed in the current page, and in every page loaded after
+    private static final String LONG_TASK_OBSERVER = """
+            if (!window.__ncfLongTasks) {
+                window.__ncfLongTasks = [];
+                performance.setResourceTimingBufferSize(10000);
+                try {
+                    new PerformanceObserver(list => window.__ncfLongTasks.push(...list.getEntries().map(e => e.duration)))
+                        .observe({type: 'longtask', buffered: true});
+                } catch (e) {
+                }
+            }
+            """;
+
+    private static final String START = LONG_TASK_OBSERVER + """
+            performance.clearResourceTimings();
+            window.__ncfLongTasks.length = 0;
+            return performance.timeOrigin;
+            """;
+
+    private static final String STOP = """
+            const navigated = performance.timeOrigin !== arguments[0];
+            const navigation = performance.getEntriesByType('navigation')[0];
+            const resources = performance.getEntriesByType('resource');
+            let bytes = navigated && navigation ? navigation.transferSize || 0 : 0;
+            let ajax = 0, ajaxServer = 0, ajaxMaxServer = 0;
+            for (const r of resources) {
+                bytes += r.transferSize || 0;
+                if (r.initiatorType === 'xmlhttprequest' || r.initiatorType === 'fetch') {
+                    const server = r.requestStart > 0 && r.responseStart > 0 ? r.responseStart - r.requestStart : 0;
+                    ajax++;
+                    ajaxServer += server;
+                    ajaxMaxServer = Math.max(ajaxMaxServer, server);
+                }
+            }
+            const longTasks = window.__ncfLongTasks || [];
+            return {
+                navigated: navigated,
+                ttfb: navigated && navigation ? navigation.responseStart - navigation.requestStart : -1,
+                domContentLoaded: navigated && navigation && navigation.domContentLoadedEventEnd > 0 ? navigation.domContentLoadedEventEnd : -1,
+                load: navigated && navigation && navigation.loadEventEnd > 0 ? navigation.loadEventEnd : -1,
+                resources: resources.length,
+                bytes: bytes,
+                ajax: ajax,
+                ajaxServer: ajaxServer,
+                ajaxMaxServer: ajaxMaxServer,
+                longTasks: longTasks.length,
+                longTasksDuration: longTasks.reduce((sum, duration) => sum + duration, 0)
+            };
+            """;
+
+    private final PooledWebDriver pooledWebDriver;
+    private final WebDriver webDriver;
+    private boolean cdpEnabled;
+    private Object timeOrigin;
+    private double scriptSecondsAtStart;
+    private double layoutSecondsAtStart;
+
+    PagePerformanceProbe(PooledWebDriver pooledWebDriver) {
+        this.pooledWebDriver = pooledWebDriver;
+        this.webDriver = pooledWebDriver.getWebDriver();
+    }
+
+    void start() {
+        timeOrigin = null;
+        try {
+            if (!cdpEnabled && webDriver instanceof HasCdp cdp) {
+                // enabling again is harmless, the page of a reused driver may have been replaced
+                cdp.executeCdpCommand("Performance.enable", Map.of());
+                if (pooledWebDriver.markPageProbeInstalled()) {
+                    cdp.executeCdpCommand("Page.addScriptToEvaluateOnNewDocument", Map.of("source", LONG_TASK_OBSERVER));
+                }
+                cdpEnabled = true;
+            }
+            timeOrigin = ((JavascriptExecutor) webDriver).executeScript(START);
+            Map<String, Double> counters = chromeCounters();
+            scriptSecondsAtStart = counters.getOrDefault("ScriptDuration", 0d);
+            layoutSecondsAtStart = counters.getOrDefault("LayoutDuration", 0d);
+        } catch (WebDriverException | ClassCastException ex) {
+            Logger.getLogger(PagePerformanceProbe.class.getName()).log(Level.FINE, "could not start measuring the page", ex);
+        }
+    }
+
+    /**
+     * @return null when the measure could not start or finish
+     */
+    PageTimings stop() {
+        if (timeOrigin == null) {
+            return null;
+        }
+        try {
+            Map<String, Object> page = (Map<String, Object>) ((JavascriptExecutor) webDriver).executeScript(STOP, timeOrigin);
+            Map<String, Double> counters = chromeCounters();
+            double scriptMillis = counters.containsKey("ScriptDuration") ? (counters.get("ScriptDuration") - scriptSecondsAtStart) * 1000 : -1;
+            double layoutMillis = counters.containsKey("LayoutDuration") ? (counters.get("LayoutDuration") - layoutSecondsAtStart) * 1000 : -1;
+            return new PageTimings(Boolean.TRUE.equals(page.get("navigated")),
+                    number(page, "ttfb"), number(page, "domContentLoaded"), number(page, "load"),
+                    (long) number(page, "resources"), (long) number(page, "bytes"),
+                    (long) number(page, "ajax"), number(page, "ajaxServer"), number(page, "ajaxMaxServer"),
+                    (long) number(page, "longTasks"), number(page, "longTasksDuration"),
+                    scriptMillis, layoutMillis);
+        } catch (WebDriverException | ClassCastException ex) {
+            Logger.getLogger(PagePerformanceProbe.class.getName()).log(Level.FINE, "could not measure the page", ex);
+            return null;
+        }
+    }
+
+    /**
+     * The counters of Chrome for the page, in seconds since it was opened.
+     * Empty when the driver does not speak CDP.
+     */
+    private Map<String, Double> chromeCounters() {
+        Map<String, Double> counters = new HashMap();
+        if (!cdpEnabled) {
+            return counters;
+        }
+        Map<String, Object> answer = ((HasCdp) webDriver).executeCdpCommand("Performance.getMetrics", Map.of());
+        for (Object metric : (List<Object>) answer.getOrDefault("metrics", List.of())) {
+            Map<String, Object> nameAndValue = (Map<String, Object>) metric;
+            if (nameAndValue.get("value") instanceof Number value) {
+                counters.put(String.valueOf(nameAndValue.get("name")), value.doubleValue());
+            }
+        }
+        return counters;
+    }
+
+    private static double number(Map<String, Object> values, String key) {
+        return values.get(key) instanceof Number value ? value.doubleValue() : -1;
+    }
+
+}
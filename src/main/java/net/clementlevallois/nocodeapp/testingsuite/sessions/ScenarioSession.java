@@ -0,0 +1,70 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.sessions;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import net.clementlevallois.nocodeapp.testingsuite.metrics.PageTimings;
+import net.clementlevallois.nocodeapp.testingsuite.utils.StepFailureException;
+
+/**
+ * What the steps of a scenario can do on the web app, whatever drives it: a
+ * browser or plain HTTP requests. Locators are written "id:...", "css:...",
+ * "class:..." or "xpath:...".
+ *
+ * @author LEVALLOIS
+ */
+public interface ScenarioSession extends Closeable {
+
+    public String getMode();
+
+    public void open(String step, String url) throws StepFailureException, IOException, InterruptedException;
+
+    public void click(String step, String target) throws StepFailureException, IOException, InterruptedException;
+
+    /**
+     * @param uploadButton can be null, when choosing the file starts the upload
+     * @param confirm can be null, when nothing needs to be clicked after the
+     * upload
+     */
+    public void upload(String step, String input, Path file, String uploadButton, String confirm) throws StepFailureException, IOException, InterruptedException;
+
+    public void expectUrl(String step, List<String> fragments) throws StepFailureException, InterruptedException;
+
+    public void waitFor(String step, String locator) throws StepFailureException, InterruptedException;
+
+    /**
+     * Reads the table made of the elements found by the rows locator, each
+     * row being a tr or an element whose children are the cells.
+     *
+     * @param mayBeEmpty false to wait for a first row, true to read the table
+     * as it is when no row can be waited for
+     * @param cells the cells whose values are needed
+     */
+    public TableSummary summarizeTable(String step, String rows, boolean mayBeEmpty, Collection<TableSummary.Cell> cells) throws StepFailureException, InterruptedException;
+
+    public Optional<Path> download(String step, String target, String extension) throws StepFailureException, IOException, InterruptedException;
+
+    public String getCurrentUrl();
+
+    /**
+     * Starts measuring what the page does during a step. Only a browser has
+     * a page to measure: the other sessions do nothing.
+     */
+    public default void startPageCapture() {
+    }
+
+    /**
+     * @return the timings since {@link #startPageCapture()}, null when the
+     * session cannot measure them
+     */
+    public default PageTimings stopPageCapture() {
+        return null;
+    }
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.sessions;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * What a check needs to know of a table of results, gathered in one go
+ * rather than cell by cell: its number of rows, a hash of each column and the
+ * values of the cells asked for. The text of a cell is its text content with
+ * white space collapsed, white space being the characters of \s in
+ * JavaScript; a column hash is a 32 bit FNV-1a of the texts of its cells in
+ * the order of the rows, the same in the browser and over http.
+ * Rows and columns are counted from 0.
+ *
+ * @param columnHashes unsigned, one per column of the widest row
+ * @param cells the value of each cell asked for, null for a cell the table
+ * does not have
+ *
+ * @author LEVALLOIS
+ */
+public record TableSummary(int rowCount, List<Long> columnHashes, Map<Cell, String> cells) {
+
+    public record Cell(int row, int column) {
+
+    }
+
+    static final int FNV_OFFSET_BASIS = 0x811c9dc5;
+    static final int FNV_PRIME = 0x01000193;
+    // separates the cells of a column in its hash: "ab","c" and "a","bc" differ
+    static final char CELL_SEPARATOR = 0x1f;
+
+    // the \s of JavaScript, written out: the \s of Java leaves out the no-break and the other Unicode spaces
+    static final String WHITE_SPACE_CHARACTERS = "\\t\\n\\u000b\\f\\r \\u00a0\\u1680\\u2000-\\u200a\\u2028\\u2029\\u202f\\u205f\\u3000\\ufeff";
+
+    private static final Pattern WHITE_SPACE = Pattern.compile("[" + WHITE_SPACE_CHARACTERS + "]+");
+
+    public TableSummary {
+        columnHashes = List.copyOf(columnHashes);
+        // a map of its own, which can hold the nulls of the missing cells
+        cells = Collections.unmodifiableMap(new LinkedHashMap(cells));
+    }
+
+    /**
+     * @return the hash of the column, or -1 when no row has that column
+     */
+    public long columnHash(int column) {
+        return column < columnHashes.size() ? columnHashes.get(column) : -1;
+    }
+
+    static String normalize(String text) {
+        return WHITE_SPACE.matcher(text).replaceAll(" ").trim();
+    }
+
+    static int hash(int hash, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            hash ^= text.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        hash ^= CELL_SEPARATOR;
+        return hash * FNV_PRIME;
+    }
+
+}
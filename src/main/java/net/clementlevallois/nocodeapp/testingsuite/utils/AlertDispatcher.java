@@ -0,0 +1,271 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.utils;
+
+import com.slack.api.methods.SlackApiException;
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Sends the alerts to Slack from a thread of its own, so that the tests never
+ * wait for Slack. Alerts wait in a bounded queue and are sent as one digest
+ * per batch window; an alert identical to one sent within the deduplication
+ * window is only counted. Alerts given a key are identical when their keys
+ * are, whatever their text. Posts are spaced by at least a second, the rate
+ * limit of Slack for a channel, and retried with backoff when Slack answers
+ * 429 or fails. Closing the dispatcher sends what is left in the queue.
+ *
+ * @author LEVALLOIS
+ */
+public class AlertDispatcher implements Closeable {
+
+    public enum Kind {
+        INFO, FAILURE, PERFORMANCE
+    }
+
+    /**
+     * @param key what the alert is about, for alerts whose text changes from
+     * one repeat to the next, or null to compare texts
+     */
+    private record Alert(Kind kind, String function, String key, String message) {
+
+        String dedupKey() {
+            return key == null ? text() : kind + "|" + key;
+        }
+
+        String text() {
+            return switch (kind) {
+                case INFO ->
+                    message;
+                case FAILURE ->
+                    "function: " + function + ", message: " + message;
+                case PERFORMANCE ->
+                    ":snail: performance alert, function: " + function + ", message: " + message;
+            };
+        }
+    }
+
+    private static final long MIN_NANOS_BETWEEN_POSTS = TimeUnit.SECONDS.toNanos(1);
+    private static final int MAX_ATTEMPTS = 5;
+    private static final Duration MAX_BACKOFF = Duration.ofSeconds(60);
+    private static final Duration FLUSH_TIMEOUT = Duration.ofSeconds(15);
+
+    private final SlackAPI slackAPI;
+    private final BlockingQueue<Alert> queue;
+    private final Duration batchWindow;
+    private final Duration dedupWindow;
+    // dedup key of an alert -> when it was last sent
+    private final Map<String, Long> lastSent = new ConcurrentHashMap();
+    private final Map<String, Integer> suppressedSinceLastDigest = new LinkedHashMap();
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread worker;
+    private volatile boolean closing;
+    private long lastPostNanos = System.nanoTime() - MIN_NANOS_BETWEEN_POSTS;
+
+    public AlertDispatcher(SlackAPI slackAPI, int queueCapacity, Duration batchWindow, Duration dedupWindow) {
+        this.slackAPI = slackAPI;
+        this.queue = new ArrayBlockingQueue(queueCapacity);
+        this.batchWindow = batchWindow;
+        this.dedupWindow = dedupWindow;
+        this.worker = new Thread(this::dispatch, "slack-alerts");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * A test failed. Never blocks: when the queue is full, the alert is
+     * dropped and counted in the next digest.
+     *
+     * @return false when the alert was dropped
+     */
+    public boolean alert(String function, String message) {
+        System.out.println(function + ": " + message);
+        return offer(new Alert(Kind.FAILURE, function, null, message));
+    }
+
+    public boolean performanceAlert(String function, String message) {
+        return performanceAlert(function, null, message);
+    }
+
+    /**
+     * @param key what is slow, as in "function|test file|step": repeats of the
+     * alert are deduplicated on it, their durations being never the same
+     */
+    public boolean performanceAlert(String function, String key, String message) {
+        System.out.println(function + ": performance alert: " + message);
+        return offer(new Alert(Kind.PERFORMANCE, function, key, message));
+    }
+
+    public boolean info(String message) {
+        System.out.println(message);
+        return offer(new Alert(Kind.INFO, null, null, message));
+    }
+
+    private boolean offer(Alert alert) {
+        if (closing || !queue.offer(alert)) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    public int pendingCount() {
+        return queue.size();
+    }
+
+    private void dispatch() {
+        List<Alert> batch = new ArrayList();
+        while (!(closing && queue.isEmpty())) {
+            try {
+                Alert first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                // an alert rarely comes alone: waiting a bit gathers the failures of a run in one message
+                long batchEnd = System.nanoTime() + batchWindow.toNanos();
+                while (!closing) {
+                    long remaining = batchEnd - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    Alert next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next != null) {
+                        batch.add(next);
+                    }
+                }
+                queue.drainTo(batch);
+                String digest = digest(batch);
+                batch.clear();
+                if (digest != null) {
+                    post(digest);
+                }
+            } catch (InterruptedException ex) {
+                // interrupted when closing takes too long: what is left is lost
+                return;
+            } catch (RuntimeException ex) {
+                Logger.getLogger(AlertDispatcher.class.getName()).log(Level.SEVERE, "error sending alerts to Slack", ex);
+            }
+        }
+    }
+
+    /**
+     * @return the message summing up the alerts, or null when they were all
+     * sent recently
+     */
+    private String digest(List<Alert> batch) {
+        long now = System.nanoTime();
+        lastSent.values().removeIf(sentAt -> now - sentAt > dedupWindow.toNanos());
+        // identical alerts of the batch are sent once, with their number and the text of the first
+        Map<String, Integer> newAlerts = new LinkedHashMap();
+        Map<String, String> texts = new LinkedHashMap();
+        for (Alert alert : batch) {
+            String key = alert.dedupKey();
+            if (lastSent.containsKey(key)) {
+                suppressedSinceLastDigest.merge(key, 1, Integer::sum);
+            } else {
+                newAlerts.merge(key, 1, Integer::sum);
+                texts.putIfAbsent(key, alert.text());
+            }
+        }
+        long droppedAlerts = dropped.getAndSet(0);
+        if (newAlerts.isEmpty() && droppedAlerts == 0) {
+            return null;
+        }
+        for (String text : newAlerts.keySet()) {
+            lastSent.put(text, now);
+        }
+        if (newAlerts.size() == 1 && newAlerts.values().iterator().next() == 1 && suppressedSinceLastDigest.isEmpty() && droppedAlerts == 0) {
+            return texts.values().iterator().next();
+        }
+        int total = newAlerts.values().stream().mapToInt(Integer::intValue).sum();
+        StringBuilder sb = new StringBuilder();
+        sb.append(":rotating_light: ").append(total).append(total == 1 ? " alert" : " alerts");
+        for (Map.Entry<String, Integer> alert : newAlerts.entrySet()) {
+            sb.append("\n• ").append(texts.get(alert.getKey()));
+            if (alert.getValue() > 1) {
+                sb.append(" (x").append(alert.getValue()).append(")");
+            }
+        }
+        if (!suppressedSinceLastDigest.isEmpty()) {
+            int suppressed = suppressedSinceLastDigest.values().stream().mapToInt(Integer::intValue).sum();
+            sb.append("\n").append(suppressed).append(" repeated alerts not sent again, already sent within the last ")
+                    .append(dedupWindow.toMinutes()).append(" minutes");
+            suppressedSinceLastDigest.clear();
+        }
+        if (droppedAlerts > 0) {
+            sb.append("\n").append(droppedAlerts).append(" alerts dropped, too many at once");
+        }
+        return sb.toString();
+    }
+
+    private void post(String text) throws InterruptedException {
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            long wait = lastPostNanos + MIN_NANOS_BETWEEN_POSTS - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+            Duration backoff = Duration.ofSeconds(1L << (attempt - 1));
+            try {
+                lastPostNanos = System.nanoTime();
+                slackAPI.postMessage(text);
+                return;
+            } catch (SlackApiException ex) {
+                int code = ex.getResponse() == null ? 0 : ex.getResponse().code();
+                if (code == 429) {
+                    String retryAfter = ex.getResponse().header("Retry-After");
+                    if (retryAfter != null && retryAfter.trim().chars().allMatch(Character::isDigit)) {
+                        backoff = Duration.ofSeconds(Long.parseLong(retryAfter.trim()));
+                    }
+                } else if (code != 0 && code < 500) {
+                    // a bad request or a bad token: trying again would give the same answer
+                    // no answer at all (code 0) is a network problem, tried again like a 5xx
+                    Logger.getLogger(AlertDispatcher.class.getName()).log(Level.SEVERE, "Slack refused the alert: " + ex.getMessage());
+                    return;
+                }
+            } catch (IOException ex) {
+                Logger.getLogger(AlertDispatcher.class.getName()).log(Level.WARNING, "could not reach Slack, attempt " + attempt, ex);
+            }
+            if (backoff.compareTo(MAX_BACKOFF) > 0) {
+                backoff = MAX_BACKOFF;
+            }
+            if (closing && attempt > 1) {
+                // not worth holding the shutdown any longer
+                break;
+            }
+            Thread.sleep(backoff);
+        }
+        System.out.println("error sending message to Slack, alert lost: " + text);
+    }
+
+    /**
+     * Stops accepting alerts and sends the ones still in the queue, waiting
+     * for them at most a few seconds.
+     */
+    @Override
+    public void close() {
+        closing = true;
+        try {
+            worker.join(FLUSH_TIMEOUT.toMillis());
+            if (worker.isAlive()) {
+                worker.interrupt();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
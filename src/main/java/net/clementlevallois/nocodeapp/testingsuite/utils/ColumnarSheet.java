@@ -0,0 +1,197 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A sheet held column by column in primitive arrays, for the result files too
+ * large for one object per cell. Each cell takes a type byte and a long: the
+ * bits of the double of a number, or the code of a string in the dictionary
+ * of the sheet, where a value repeated on thousands of rows, like a sentiment
+ * label, is stored once. Rows and columns are counted from 0.
+ *
+ * @author LEVALLOIS
+ */
+public class ColumnarSheet {
+
+    public static final byte BLANK = 0;
+    public static final byte NUMBER = 1;
+    public static final byte STRING = 2;
+    public static final byte BOOLEAN = 3;
+
+    private static final int INITIAL_ROWS = 1024;
+
+    private final String name;
+    private final List<String> dictionary = new ArrayList();
+    private final Map<String, Integer> codes = new HashMap();
+    private final List<Column> columns = new ArrayList();
+    private int rowCount;
+    private int nonEmptyRowCount;
+
+    private static class Column {
+
+        byte[] types;
+        long[] values;
+
+        Column(int capacity) {
+            types = new byte[capacity];
+            values = new long[capacity];
+        }
+
+        void ensureCapacity(int row) {
+            if (row >= types.length) {
+                int capacity = Math.max(row + 1, types.length * 2);
+                types = Arrays.copyOf(types, capacity);
+                values = Arrays.copyOf(values, capacity);
+            }
+        }
+    }
+
+    public ColumnarSheet(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * The number of rows up to the last one read, empty rows included.
+     */
+    public int rowCount() {
+        return rowCount;
+    }
+
+    /**
+     * The number of rows with at least one cell that is not blank, as counted
+     * by {@link ExcelVerification#expectRowCount}.
+     */
+    public int nonEmptyRowCount() {
+        return nonEmptyRowCount;
+    }
+
+    public int columnCount() {
+        return columns.size();
+    }
+
+    /**
+     * The number of distinct strings of the sheet.
+     */
+    public int dictionarySize() {
+        return dictionary.size();
+    }
+
+    public byte getType(int row, int column) {
+        if (row < 0 || row >= rowCount || column < 0 || column >= columns.size()) {
+            return BLANK;
+        }
+        Column c = columns.get(column);
+        return c == null || row >= c.types.length ? BLANK : c.types[row];
+    }
+
+    /**
+     * @return NaN when the cell is not a number
+     */
+    public double getNumber(int row, int column) {
+        return getType(row, column) == NUMBER ? Double.longBitsToDouble(columns.get(column).values[row]) : Double.NaN;
+    }
+
+    /**
+     * The value of the cell as {@link ExcelReader#returnStringValue} gives it,
+     * "" for a blank cell. Only numbers, apart from small whole ones,
+     * allocate a new string.
+     */
+    public String getString(int row, int column) {
+        return switch (getType(row, column)) {
+            case NUMBER ->
+                ExcelReader.formatNumber(getNumber(row, column));
+            case STRING ->
+                dictionary.get((int) columns.get(column).values[row]);
+            case BOOLEAN ->
+                columns.get(column).values[row] == 1 ? "true" : "false";
+            default ->
+                "";
+        };
+    }
+
+    /**
+     * Blank, or a string of white space only.
+     */
+    public boolean isBlank(int row, int column) {
+        byte type = getType(row, column);
+        return type == BLANK || (type == STRING && dictionary.get((int) columns.get(column).values[row]).isBlank());
+    }
+
+    /**
+     * Counts the rows where the column has this string, comparing codes
+     * rather than strings.
+     */
+    public int count(int column, String value) {
+        Integer code = codes.get(value);
+        if (code == null || column < 0 || column >= columns.size() || columns.get(column) == null) {
+            return 0;
+        }
+        Column c = columns.get(column);
+        int count = 0;
+        int rows = Math.min(rowCount, c.types.length);
+        for (int row = 0; row < rows; row++) {
+            if (c.types[row] == STRING && c.values[row] == code) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    void setNumber(int row, int column, double value) {
+        set(row, column, NUMBER, Double.doubleToRawLongBits(value));
+    }
+
+    void setString(int row, int column, String value) {
+        Integer code = codes.get(value);
+        if (code == null) {
+            code = dictionary.size();
+            dictionary.add(value);
+            codes.put(value, code);
+        }
+        set(row, column, STRING, code);
+    }
+
+    void setBoolean(int row, int column, boolean value) {
+        set(row, column, BOOLEAN, value ? 1 : 0);
+    }
+
+    private void set(int row, int column, byte type, long value) {
+        while (columns.size() <= column) {
+            columns.add(null);
+        }
+        Column c = columns.get(column);
+        if (c == null) {
+            c = new Column(Math.max(INITIAL_ROWS, rowCount));
+            columns.set(column, c);
+        }
+        c.ensureCapacity(row);
+        c.types[row] = type;
+        c.values[row] = value;
+        rowCount = Math.max(rowCount, row + 1);
+    }
+
+    /**
+     * Called once the cells of a row are set, rows coming in order.
+     */
+    void endRow(int row) {
+        rowCount = Math.max(rowCount, row + 1);
+        for (int column = 0; column < columns.size(); column++) {
+            if (!isBlank(row, column)) {
+                nonEmptyRowCount++;
+                return;
+            }
+        }
+    }
+
+}
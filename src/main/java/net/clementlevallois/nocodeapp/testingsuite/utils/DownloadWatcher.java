@@ -0,0 +1,125 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ * @author LEVALLOIS
+ */
+public class DownloadWatcher implements Closeable {
+
+    private static final String CHROME_PARTIAL_DOWNLOAD = ".crdownload";
+
+    private final Path downloadFolder;
+    private final WatchService watchService;
+    private final Set<String> filesPresentBeforeDownload;
+    private final Set<String> candidates = new LinkedHashSet();
+
+    /**
+     * Must be created before the click on the download button, so that no
+     * event of the download is missed.
+     */
+    public DownloadWatcher(Path downloadFolder) throws IOException {
+        this.downloadFolder = downloadFolder;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        downloadFolder.register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE);
+        this.filesPresentBeforeDownload = listFileNames();
+    }
+
+    /**
+     * Returns the path of the first file with one of the extensions that
+     * appeared in the folder after this watcher was created, as soon as Chrome
+     * has finished writing it (no .crdownload file left in the folder).
+     */
+    public Optional<Path> awaitCompletedDownload(Duration timeout, String... extensions) throws IOException, InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (true) {
+            Optional<Path> completedDownload = findCompletedDownload(extensions);
+            if (completedDownload.isPresent()) {
+                return completedDownload;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return Optional.empty();
+            }
+            WatchKey key = watchService.poll(remaining, TimeUnit.NANOSECONDS);
+            if (key == null) {
+                return findCompletedDownload(extensions);
+            }
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    // events were lost: fall back on a listing of the folder
+                    candidates.addAll(listFileNames());
+                } else {
+                    candidates.add(((Path) event.context()).getFileName().toString());
+                }
+            }
+            key.reset();
+        }
+    }
+
+    private Optional<Path> findCompletedDownload(String... extensions) throws IOException {
+        for (String candidate : candidates) {
+            if (filesPresentBeforeDownload.contains(candidate) || !hasOneOfExtensions(candidate, extensions)) {
+                continue;
+            }
+            Path path = downloadFolder.resolve(candidate);
+            if (Files.isRegularFile(path) && Files.size(path) > 0 && !isDownloadInProgress()) {
+                return Optional.of(path);
+            }
+        }
+        return Optional.empty();
+    }
+
+    private boolean isDownloadInProgress() throws IOException {
+        try (DirectoryStream<Path> partialDownloads = Files.newDirectoryStream(downloadFolder, "*" + CHROME_PARTIAL_DOWNLOAD)) {
+            return partialDownloads.iterator().hasNext();
+        }
+    }
+
+    private static boolean hasOneOfExtensions(String fileName, String... extensions) {
+        for (String extension : extensions) {
+            if (fileName.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Set<String> listFileNames() throws IOException {
+        Set<String> fileNames = new HashSet();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(downloadFolder)) {
+            for (Path file : files) {
+                fileNames.add(file.getFileName().toString());
+            }
+        }
+        return fileNames;
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+
+}
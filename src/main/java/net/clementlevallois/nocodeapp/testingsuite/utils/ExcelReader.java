@@ -6,11 +6,11 @@ package net.clementlevallois.nocodeapp.testingsuite.utils;
 import com.monitorjbl.xlsx.StreamingReader;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import net.clementlevallois.importers.model.CellRecord;
 import net.clementlevallois.importers.model.ColumnModel;
 import net.clementlevallois.importers.model.SheetModel;
@@ -32,16 +32,19 @@ import org.apache.poi.ss.usermodel.Workbook;
  */
 public class ExcelReader {
 
+    private static final String[] SMALL_NUMBERS = new String[1024];
+
+    static {
+        for (int i = 0; i < SMALL_NUMBERS.length; i++) {
+            SMALL_NUMBERS[i] = Integer.toString(i);
+        }
+    }
+
     public static List<SheetModel> readExcelFile(Path pathToExcelFile) throws FileNotFoundException, IOException {
 
         List<SheetModel> sheets = new ArrayList();
 
-        InputStream is = Files.newInputStream(pathToExcelFile);
-
-        try (Workbook wb = StreamingReader.builder()
-                .rowCacheSize(100) // number of rows to keep in memory (defaults to 10)
-                .bufferSize(4096) // buffer size to use when reading InputStream to file (defaults to 1024)
-                .open(is)) {
+        try (Workbook wb = openStreaming(pathToExcelFile)) {
             int sheetNumber = 0;
             for (Sheet sheet : wb) {
                 sheetNumber++;
@@ -68,12 +71,9 @@ public class ExcelReader {
 
                             String cellStringValue = ExcelReader.returnStringValue(cell);
 
-                            // adding the first line as a header
+                            // adding the first line as a header. Its cells are added to the sheet with the other rows below
                             ColumnModel cmHeader = new ColumnModel(String.valueOf(columnIndex), cellStringValue);
                             headerNames.add(cmHeader);
-
-                            CellRecord cellRecord = new CellRecord(rowIndex, columnIndex, cellStringValue);
-                            sheetModel.addCellRecord(cellRecord);
                         }
                         sheetModel.setTableHeaderNames(headerNames);
                     }
@@ -99,23 +99,195 @@ public class ExcelReader {
         return sheets;
     }
 
+    /**
+     * Reads every sheet into a {@link ColumnarSheet}: a few bytes per cell
+     * instead of the objects of a {@link SheetModel}, for the large result
+     * files.
+     */
+    public static List<ColumnarSheet> readColumnar(Path pathToExcelFile) throws IOException {
+        List<ColumnarSheet> sheets = new ArrayList();
+        try (Workbook wb = openStreaming(pathToExcelFile)) {
+            for (Sheet sheet : wb) {
+                ColumnarSheet columnarSheet = new ColumnarSheet(sheet.getSheetName());
+                for (Row row : sheet) {
+                    for (Cell cell : row) {
+                        if (cell != null) {
+                            setCell(columnarSheet, cell);
+                        }
+                    }
+                    columnarSheet.endRow(row.getRowNum());
+                }
+                sheets.add(columnarSheet);
+            }
+        }
+        return sheets;
+    }
+
+    private static void setCell(ColumnarSheet sheet, Cell cell) {
+        int row = cell.getRowIndex();
+        int column = cell.getColumnIndex();
+        switch (cell.getCellType()) {
+            case NUMERIC -> {
+                try {
+                    sheet.setNumber(row, column, cell.getNumericCellValue());
+                } catch (NumberFormatException e) {
+                    sheet.setNumber(row, column, 0);
+                }
+            }
+            case BOOLEAN ->
+                sheet.setBoolean(row, column, cell.getBooleanCellValue());
+            case BLANK -> {
+            }
+            default ->
+                sheet.setString(row, column, returnStringValue(cell));
+        }
+    }
+
+    /**
+     * Checks the assertions on sheets already read, with the messages of
+     * {@link #verify(Path, ExcelVerification)}.
+     */
+    public static ExcelVerification.Result verify(List<ColumnarSheet> sheets, ExcelVerification verification) {
+        ExcelVerification.ResultBuilder result = new ExcelVerification.ResultBuilder();
+        for (Map.Entry<Integer, ExcelVerification.SheetAssertions> entry : verification.getSheets().entrySet()) {
+            int sheetIndex = entry.getKey();
+            if (sheetIndex >= sheets.size()) {
+                result.fail("sheet " + (sheetIndex + 1) + " not found, the file has " + sheets.size() + " sheets");
+                continue;
+            }
+            verifySheet(sheets.get(sheetIndex), sheetIndex, entry.getValue(), result);
+        }
+        return result.build();
+    }
+
+    private static void verifySheet(ColumnarSheet sheet, int sheetIndex, ExcelVerification.SheetAssertions assertions, ExcelVerification.ResultBuilder result) {
+        String sheetName = "sheet " + (sheetIndex + 1);
+        result.rowsRead += sheet.rowCount();
+        for (Map.Entry<Integer, Integer> nonEmptyColumn : assertions.nonEmptyColumnsFromRow.entrySet()) {
+            for (int row = nonEmptyColumn.getValue(); row < sheet.rowCount(); row++) {
+                if (sheet.isBlank(row, nonEmptyColumn.getKey())) {
+                    result.emptyCell(sheetName, row, nonEmptyColumn.getKey());
+                }
+            }
+        }
+        for (Map.Entry<Integer, Map<Integer, String>> expectedRow : assertions.expectedCells.entrySet()) {
+            int row = expectedRow.getKey();
+            if (row >= sheet.rowCount()) {
+                result.fail(sheetName + ", row " + (row + 1) + ": row not found, the last row is " + sheet.rowCount());
+                continue;
+            }
+            for (Map.Entry<Integer, String> expectedCell : expectedRow.getValue().entrySet()) {
+                String value = sheet.getString(row, expectedCell.getKey());
+                if (!value.equals(expectedCell.getValue())) {
+                    result.fail(sheetName + ", row " + (row + 1) + ", column " + (expectedCell.getKey() + 1) + ": expected \"" + expectedCell.getValue() + "\", found \"" + value + "\"");
+                }
+            }
+        }
+        checkRowCount(sheetName, sheet.nonEmptyRowCount(), assertions, result);
+    }
+
+    public static Workbook openStreaming(Path pathToExcelFile) {
+        // opening the file itself rather than a stream spares a copy of the whole file to a temporary file
+        return StreamingReader.builder()
+                .rowCacheSize(100) // number of rows to keep in memory (defaults to 10)
+                .open(pathToExcelFile.toFile());
+    }
+
+    /**
+     * Checks the assertions while streaming through the file, without building
+     * a model of the sheets: reading stops at the last row an assertion needs.
+     */
+    public static ExcelVerification.Result verify(Path pathToExcelFile, ExcelVerification verification) throws IOException {
+        ExcelVerification.ResultBuilder result = new ExcelVerification.ResultBuilder();
+        int lastSheet = verification.lastSheet();
+        try (Workbook wb = openStreaming(pathToExcelFile)) {
+            int sheetIndex = -1;
+            for (Sheet sheet : wb) {
+                sheetIndex++;
+                if (sheetIndex > lastSheet) {
+                    break;
+                }
+                ExcelVerification.SheetAssertions assertions = verification.getSheets().get(sheetIndex);
+                if (assertions != null) {
+                    verifySheet(sheet, sheetIndex, assertions, result);
+                }
+            }
+            for (int missingSheet : verification.getSheets().keySet()) {
+                if (missingSheet > sheetIndex) {
+                    result.fail("sheet " + (missingSheet + 1) + " not found, the file has " + (sheetIndex + 1) + " sheets");
+                }
+            }
+        }
+        return result.build();
+    }
+
+    private static void verifySheet(Sheet sheet, int sheetIndex, ExcelVerification.SheetAssertions assertions, ExcelVerification.ResultBuilder result) {
+        String sheetName = "sheet " + (sheetIndex + 1);
+        Map<Integer, Map<Integer, String>> unresolvedCells = new TreeMap(assertions.expectedCells);
+        int lastRowNeeded = assertions.needsWholeSheet() ? Integer.MAX_VALUE : assertions.lastRowWithExpectedCells();
+        int nonEmptyRows = 0;
+        int lastRowIndex = -1;
+        for (Row row : sheet) {
+            int rowIndex = row.getRowNum();
+            if (rowIndex > lastRowNeeded) {
+                break;
+            }
+            result.rowsRead++;
+            lastRowIndex = rowIndex;
+            Map<Integer, String> expectedCells = unresolvedCells.remove(rowIndex);
+            boolean rowHasValue = false;
+            for (Map.Entry<Integer, Integer> nonEmptyColumn : assertions.nonEmptyColumnsFromRow.entrySet()) {
+                if (rowIndex >= nonEmptyColumn.getValue() && isBlank(row.getCell(nonEmptyColumn.getKey()))) {
+                    result.emptyCell(sheetName, rowIndex, nonEmptyColumn.getKey());
+                }
+            }
+            for (Cell cell : row) {
+                if (cell == null) {
+                    continue;
+                }
+                rowHasValue = rowHasValue || !isBlank(cell);
+            }
+            if (rowHasValue) {
+                nonEmptyRows++;
+            }
+            if (expectedCells != null) {
+                for (Map.Entry<Integer, String> expectedCell : expectedCells.entrySet()) {
+                    Cell cell = row.getCell(expectedCell.getKey());
+                    String value = cell == null ? "" : returnStringValue(cell);
+                    if (!value.equals(expectedCell.getValue())) {
+                        result.fail(sheetName + ", row " + (rowIndex + 1) + ", column " + (expectedCell.getKey() + 1) + ": expected \"" + expectedCell.getValue() + "\", found \"" + value + "\"");
+                    }
+                }
+            }
+        }
+        for (Map.Entry<Integer, Map<Integer, String>> missingRow : unresolvedCells.entrySet()) {
+            result.fail(sheetName + ", row " + (missingRow.getKey() + 1) + ": row not found, the last row is " + (lastRowIndex + 1));
+        }
+        checkRowCount(sheetName, nonEmptyRows, assertions, result);
+    }
+
+    private static void checkRowCount(String sheetName, int nonEmptyRows, ExcelVerification.SheetAssertions assertions, ExcelVerification.ResultBuilder result) {
+        if (assertions.minRows >= 0 && (nonEmptyRows < assertions.minRows || nonEmptyRows > assertions.maxRows)) {
+            String expected = assertions.minRows == assertions.maxRows ? String.valueOf(assertions.minRows)
+                    : assertions.maxRows == Integer.MAX_VALUE ? "at least " + assertions.minRows
+                    : "between " + assertions.minRows + " and " + assertions.maxRows;
+            result.fail(sheetName + ": found " + nonEmptyRows + " rows, expected " + expected);
+        }
+    }
+
+    private static boolean isBlank(Cell cell) {
+        return cell == null || cell.getCellType() == BLANK || (cell.getCellType() == STRING && cell.getStringCellValue().isBlank());
+    }
+
     public static String returnStringValue(Cell cell) {
         CellType cellType = cell.getCellType();
 
         switch (cellType) {
             case NUMERIC -> {
                 try {
-                    double doubleVal = cell.getNumericCellValue();
-                    if (doubleVal == (int) doubleVal) {
-                        int value = Double.valueOf(doubleVal).intValue();
-                        return String.valueOf(value);
-                    } else {
-                        return String.valueOf(doubleVal);
-                    }
+                    return formatNumber(cell.getNumericCellValue());
                 } catch (java.lang.NumberFormatException e) {
-                    System.out.println("error reading double value in cell");
-                    System.out.println("error: " + e.getMessage());
-                    System.out.println("returning 0");
+                    // an expected value then fails its check with "found 0", which names the cell
                     return "0";
                 }
             }
@@ -138,4 +310,19 @@ public class ExcelReader {
         return "error decoding string value of the cell";
     }
 
+    /**
+     * Whole numbers without decimals. The small ones, most numbers of the
+     * result files, come from a cache and allocate nothing.
+     */
+    static String formatNumber(double value) {
+        int intValue = (int) value;
+        if (value != intValue) {
+            return String.valueOf(value);
+        }
+        if (intValue >= 0 && intValue < SMALL_NUMBERS.length) {
+            return SMALL_NUMBERS[intValue];
+        }
+        return Integer.toString(intValue);
+    }
+
 }
@@ -0,0 +1,126 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.utils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Assertions on the content of an Excel file, checked by
+ * {@link ExcelReader#verify} while the file streams by: reading stops as soon
+ * as every assertion is resolved. Sheets, rows and columns are counted from 0.
+ *
+ * @author LEVALLOIS
+ */
+public class ExcelVerification {
+
+    private final TreeMap<Integer, SheetAssertions> sheets = new TreeMap();
+
+    static class SheetAssertions {
+
+        // row -> column -> expected value
+        final TreeMap<Integer, Map<Integer, String>> expectedCells = new TreeMap();
+        int minRows = -1;
+        int maxRows = Integer.MAX_VALUE;
+        final Map<Integer, Integer> nonEmptyColumnsFromRow = new TreeMap();
+
+        int lastRowWithExpectedCells() {
+            return expectedCells.isEmpty() ? -1 : expectedCells.lastKey();
+        }
+
+        /**
+         * @return true when the assertions need every row of the sheet
+         */
+        boolean needsWholeSheet() {
+            return minRows >= 0 || !nonEmptyColumnsFromRow.isEmpty();
+        }
+    }
+
+    public ExcelVerification expectCell(int sheet, int row, int column, String expectedValue) {
+        sheetAssertions(sheet).expectedCells.computeIfAbsent(row, r -> new TreeMap()).put(column, expectedValue);
+        return this;
+    }
+
+    /**
+     * Counts the rows having at least one cell, headers included.
+     */
+    public ExcelVerification expectRowCount(int sheet, int minRows, int maxRows) {
+        SheetAssertions assertions = sheetAssertions(sheet);
+        assertions.minRows = minRows;
+        assertions.maxRows = maxRows;
+        return this;
+    }
+
+    /**
+     * Every row of the sheet from this row on must have a value in this
+     * column.
+     */
+    public ExcelVerification expectColumnNonEmpty(int sheet, int column, int fromRow) {
+        sheetAssertions(sheet).nonEmptyColumnsFromRow.put(column, fromRow);
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return sheets.isEmpty();
+    }
+
+    private SheetAssertions sheetAssertions(int sheet) {
+        return sheets.computeIfAbsent(sheet, s -> new SheetAssertions());
+    }
+
+    Map<Integer, SheetAssertions> getSheets() {
+        return sheets;
+    }
+
+    int lastSheet() {
+        return sheets.isEmpty() ? -1 : sheets.lastKey();
+    }
+
+    /**
+     * The outcome of a verification: one message per failed assertion, with
+     * rows and columns counted from 1 as in Excel. The empty cells of a column
+     * are listed up to {@link ResultBuilder#EMPTY_CELLS_LISTED}, then counted.
+     */
+    public record Result(List<String> failures, int rowsRead) {
+
+        public boolean passed() {
+            return failures.isEmpty();
+        }
+    }
+
+    static class ResultBuilder {
+
+        static final int EMPTY_CELLS_LISTED = 10;
+
+        final List<String> failures = new ArrayList();
+        // "sheet S, column C" -> number of empty cells found in it
+        private final Map<String, Integer> emptyCells = new LinkedHashMap();
+        int rowsRead;
+
+        void fail(String failure) {
+            failures.add(failure);
+        }
+
+        void emptyCell(String sheetName, int row, int column) {
+            int count = emptyCells.merge(sheetName + ", column " + (column + 1), 1, Integer::sum);
+            if (count <= EMPTY_CELLS_LISTED) {
+                fail(sheetName + ", row " + (row + 1) + ": column " + (column + 1) + " is empty");
+            }
+        }
+
+        Result build() {
+            List<String> allFailures = new ArrayList(failures);
+            for (Map.Entry<String, Integer> emptyColumn : emptyCells.entrySet()) {
+                if (emptyColumn.getValue() > EMPTY_CELLS_LISTED) {
+                    allFailures.add(emptyColumn.getKey() + ": empty in " + emptyColumn.getValue() + " rows, the first " + EMPTY_CELLS_LISTED + " are listed");
+                }
+            }
+            return new Result(List.copyOf(allFailures), rowsRead);
+        }
+    }
+
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.utils;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Checks networks in the GEXF format produced by the app with a StAX reader:
+ * one pass over the file, without building the graph. Only the nodes named
+ * by the assertions are remembered.
+ *
+ * @author LEVALLOIS
+ */
+public class GexfReader {
+
+    private static final double WEIGHT_TOLERANCE = 1e-6;
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = createInputFactory();
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        // the files come from the network: no DTD, no external entities
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        return factory;
+    }
+
+    /**
+     * Counts of the nodes or edges missing a value for an attribute, with the
+     * first of them.
+     */
+    private static class MissingValues {
+
+        int count;
+        String first;
+    }
+
+    public static GexfVerification.Result verify(Path pathToGexfFile, GexfVerification verification) throws IOException {
+        Set<String> labelsToResolve = verification.labelsToResolve();
+        Map<String, String> labelsOfResolvedIds = new HashMap();
+        Set<String> foundNodes = new HashSet();
+
+        // "source \u0000 target" -> indices of the expected edges
+        Map<String, List<Integer>> expectedEdgesByEnds = new HashMap();
+        for (int i = 0; i < verification.expectedEdges.size(); i++) {
+            GexfVerification.ExpectedEdge expected = verification.expectedEdges.get(i);
+            expectedEdgesByEnds.computeIfAbsent(expected.source() + '\u0000' + expected.target(), k -> new ArrayList()).add(i);
+        }
+        Double[] foundWeights = new Double[verification.expectedEdges.size()];
+
+        // attribute id -> title, per class, for the attributes that must have values
+        Map<String, String> nodeAttributeTitles = new HashMap();
+        Map<String, String> edgeAttributeTitles = new HashMap();
+        Map<String, MissingValues> missingNodeValues = new HashMap();
+        Map<String, MissingValues> missingEdgeValues = new HashMap();
+
+        Set<String> attributesWithDefault = new HashSet();
+        List<String> failures = new ArrayList();
+        boolean directed = false;
+        String attributesClass = null;
+        String currentAttributeId = null;
+        int nodes = 0;
+        int edges = 0;
+        String currentElementName = null;
+        Set<String> valuesOfCurrentElement = new HashSet();
+
+        try (InputStream is = new BufferedInputStream(Files.newInputStream(pathToGexfFile), 64 * 1024)) {
+            XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(is);
+            try {
+                while (reader.hasNext()) {
+                    int event = reader.next();
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        switch (reader.getLocalName()) {
+                            case "graph" ->
+                                directed = "directed".equals(reader.getAttributeValue(null, "defaultedgetype"));
+                            case "attributes" ->
+                                attributesClass = reader.getAttributeValue(null, "class");
+                            case "attribute" -> {
+                                String title = reader.getAttributeValue(null, "title");
+                                String id = reader.getAttributeValue(null, "id");
+                                currentAttributeId = id;
+                                if (GexfVerification.EDGE.equals(attributesClass) && verification.edgeAttributes.contains(title)) {
+                                    edgeAttributeTitles.put(id, title);
+                                } else if (!GexfVerification.EDGE.equals(attributesClass) && verification.nodeAttributes.contains(title)) {
+                                    nodeAttributeTitles.put(id, title);
+                                }
+                            }
+                            case "default" -> {
+                                // elements without a value take the default value: they cannot miss it
+                                Map<String, String> titles = GexfVerification.EDGE.equals(attributesClass) ? edgeAttributeTitles : nodeAttributeTitles;
+                                String title = titles.remove(currentAttributeId);
+                                if (title != null) {
+                                    attributesWithDefault.add(attributesClass + '\u0000' + title);
+                                }
+                            }
+                            case "node" -> {
+                                nodes++;
+                                String label = reader.getAttributeValue(null, "label");
+                                String id = reader.getAttributeValue(null, "id");
+                                if (label == null) {
+                                    label = id;
+                                }
+                                if (labelsToResolve.contains(label)) {
+                                    labelsOfResolvedIds.put(id, label);
+                                    foundNodes.add(label);
+                                }
+                                currentElementName = label;
+                                valuesOfCurrentElement.clear();
+                            }
+                            case "edge" -> {
+                                edges++;
+                                String source = labelsOfResolvedIds.get(reader.getAttributeValue(null, "source"));
+                                String target = labelsOfResolvedIds.get(reader.getAttributeValue(null, "target"));
+                                if (source != null && target != null) {
+                                    String weight = reader.getAttributeValue(null, "weight");
+                                    double edgeWeight = weight == null ? 1 : Double.parseDouble(weight);
+                                    String edgeType = reader.getAttributeValue(null, "type");
+                                    boolean edgeDirected = edgeType == null ? directed : edgeType.equals("directed");
+                                    matchExpectedEdges(expectedEdgesByEnds.get(source + '\u0000' + target), edgeWeight, foundWeights);
+                                    if (!edgeDirected) {
+                                        matchExpectedEdges(expectedEdgesByEnds.get(target + '\u0000' + source), edgeWeight, foundWeights);
+                                    }
+                                }
+                                currentElementName = reader.getAttributeValue(null, "source") + " -> " + reader.getAttributeValue(null, "target");
+                                valuesOfCurrentElement.clear();
+                            }
+                            case "attvalue" -> {
+                                String attributeId = reader.getAttributeValue(null, "for");
+                                valuesOfCurrentElement.add(attributeId != null ? attributeId : reader.getAttributeValue(null, "id"));
+                            }
+                            default -> {
+                            }
+                        }
+                    } else if (event == XMLStreamConstants.END_ELEMENT) {
+                        switch (reader.getLocalName()) {
+                            case "attributes" ->
+                                attributesClass = null;
+                            case "node" ->
+                                recordMissingValues(nodeAttributeTitles, valuesOfCurrentElement, currentElementName, missingNodeValues);
+                            case "edge" ->
+                                recordMissingValues(edgeAttributeTitles, valuesOfCurrentElement, currentElementName, missingEdgeValues);
+                            default -> {
+                            }
+                        }
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException | NumberFormatException ex) {
+            failures.add("the file is not a valid GEXF file: " + ex.getMessage());
+            return new GexfVerification.Result(failures, nodes, edges);
+        }
+
+        checkCount(failures, "nodes", nodes, verification.minNodes, verification.maxNodes);
+        checkCount(failures, "edges", edges, verification.minEdges, verification.maxEdges);
+        for (String label : verification.expectedNodes) {
+            if (!foundNodes.contains(label)) {
+                failures.add("node \"" + label + "\" not found");
+            }
+        }
+        for (int i = 0; i < foundWeights.length; i++) {
+            GexfVerification.ExpectedEdge expected = verification.expectedEdges.get(i);
+            String edge = "edge \"" + expected.source() + "\" -> \"" + expected.target() + "\"";
+            if (foundWeights[i] == null) {
+                failures.add(edge + " not found");
+            } else if (expected.weight() != null && !sameWeight(foundWeights[i], expected.weight())) {
+                failures.add(edge + ": weight " + foundWeights[i] + ", expected " + expected.weight());
+            }
+        }
+        checkAttributes(failures, GexfVerification.NODE, verification.nodeAttributes, nodeAttributeTitles, attributesWithDefault, missingNodeValues);
+        checkAttributes(failures, GexfVerification.EDGE, verification.edgeAttributes, edgeAttributeTitles, attributesWithDefault, missingEdgeValues);
+        return new GexfVerification.Result(failures, nodes, edges);
+    }
+
+    private static void matchExpectedEdges(List<Integer> expectedEdges, double weight, Double[] foundWeights) {
+        if (expectedEdges == null) {
+            return;
+        }
+        for (int i : expectedEdges) {
+            // parallel edges: the one with the right weight wins
+            if (foundWeights[i] == null || !sameWeight(foundWeights[i], weight)) {
+                foundWeights[i] = weight;
+            }
+        }
+    }
+
+    private static boolean sameWeight(double found, double expected) {
+        return Math.abs(found - expected) <= WEIGHT_TOLERANCE * Math.max(1, Math.abs(expected));
+    }
+
+    private static void recordMissingValues(Map<String, String> requiredAttributeTitles, Set<String> values, String elementName, Map<String, MissingValues> missingValues) {
+        for (Map.Entry<String, String> attribute : requiredAttributeTitles.entrySet()) {
+            if (!values.contains(attribute.getKey())) {
+                MissingValues missing = missingValues.computeIfAbsent(attribute.getValue(), k -> new MissingValues());
+                if (missing.count++ == 0) {
+                    missing.first = elementName;
+                }
+            }
+        }
+    }
+
+    private static void checkCount(List<String> failures, String what, int count, int min, int max) {
+        if (min >= 0 && (count < min || count > max)) {
+            String expected = min == max ? String.valueOf(min)
+                    : max == Integer.MAX_VALUE ? "at least " + min
+                    : "between " + min + " and " + max;
+            failures.add("found " + count + " " + what + ", expected " + expected);
+        }
+    }
+
+    private static void checkAttributes(List<String> failures, String attributeClass, Set<String> requiredTitles, Map<String, String> declaredTitles, Set<String> attributesWithDefault, Map<String, MissingValues> missingValues) {
+        for (String title : requiredTitles) {
+            if (attributesWithDefault.contains(attributeClass + '\u0000' + title)) {
+                continue;
+            }
+            if (!declaredTitles.containsValue(title)) {
+                failures.add(attributeClass + " attribute \"" + title + "\" not declared");
+            } else if (missingValues.containsKey(title)) {
+                MissingValues missing = missingValues.get(title);
+                failures.add(missing.count + " " + attributeClass + "s without a value for \"" + title + "\", the first one being " + missing.first);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.utils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Assertions on a network in the GEXF format, checked by
+ * {@link GexfReader#verify} in a single pass over the file. Nodes are
+ * designated by their labels.
+ *
+ * @author LEVALLOIS
+ */
+public class GexfVerification {
+
+    public static final String NODE = "node";
+    public static final String EDGE = "edge";
+
+    int minNodes = -1;
+    int maxNodes = Integer.MAX_VALUE;
+    int minEdges = -1;
+    int maxEdges = Integer.MAX_VALUE;
+    final Set<String> expectedNodes = new LinkedHashSet();
+    final List<ExpectedEdge> expectedEdges = new ArrayList();
+    final Set<String> nodeAttributes = new LinkedHashSet();
+    final Set<String> edgeAttributes = new LinkedHashSet();
+
+    /**
+     * @param weight null when any weight will do
+     */
+    record ExpectedEdge(String source, String target, Double weight) {
+
+    }
+
+    public GexfVerification expectNodeCount(int minNodes, int maxNodes) {
+        this.minNodes = minNodes;
+        this.maxNodes = maxNodes;
+        return this;
+    }
+
+    public GexfVerification expectEdgeCount(int minEdges, int maxEdges) {
+        this.minEdges = minEdges;
+        this.maxEdges = maxEdges;
+        return this;
+    }
+
+    public GexfVerification expectNode(String label) {
+        expectedNodes.add(label);
+        return this;
+    }
+
+    /**
+     * In undirected networks, the edge can go either way.
+     */
+    public GexfVerification expectEdge(String sourceLabel, String targetLabel, Double weight) {
+        expectedEdges.add(new ExpectedEdge(sourceLabel, targetLabel, weight));
+        return this;
+    }
+
+    /**
+     * The attribute must be declared, and every node, or every edge, must
+     * have a value for it.
+     *
+     * @param attributeClass {@link #NODE} or {@link #EDGE}
+     */
+    public GexfVerification expectAttribute(String attributeClass, String title) {
+        (attributeClass.equals(EDGE) ? edgeAttributes : nodeAttributes).add(title);
+        return this;
+    }
+
+    /**
+     * The labels of the nodes the reader has to remember to check the edges.
+     */
+    Set<String> labelsToResolve() {
+        Set<String> labels = new LinkedHashSet(expectedNodes);
+        for (ExpectedEdge edge : expectedEdges) {
+            labels.add(edge.source());
+            labels.add(edge.target());
+        }
+        return labels;
+    }
+
+    /**
+     * The outcome of a verification: one message per failed assertion.
+     */
+    public record Result(List<String> failures, int nodes, int edges) {
+
+        public boolean passed() {
+            return failures.isEmpty();
+        }
+    }
+
+}
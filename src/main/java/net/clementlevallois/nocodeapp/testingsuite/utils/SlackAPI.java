@@ -9,8 +9,10 @@ import com.slack.api.methods.SlackApiException;
 import com.slack.api.methods.request.chat.ChatPostMessageRequest;
 import com.slack.api.methods.response.chat.ChatPostMessageResponse;
 import java.io.IOException;
-import java.io.InputStream;
-import java.util.Properties;
+import java.time.Duration;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import net.clementlevallois.nocodeapp.testingsuite.config.Configuration;
 
 /**
  *
@@ -23,10 +25,12 @@ public class SlackAPI {
     private MethodsClient methods = null;
     private boolean sendMessages = false;
 
-    public static void main(String args[]) throws IOException, SlackApiException {
+    public static void main(String args[]) {
         SlackAPI slackAPI = new SlackAPI(false);
         String message = ":wave: Hi from a bot written in Java!";
-        slackAPI.sendMessage(message, true);
+        try (AlertDispatcher alertDispatcher = new AlertDispatcher(slackAPI, 1, Duration.ZERO, Duration.ZERO)) {
+            alertDispatcher.info(message);
+        }
     }
 
     public SlackAPI(boolean sendessages) {
@@ -34,62 +38,41 @@ public class SlackAPI {
         this.slack = Slack.getInstance();
         this.methods = slack.methods(apiKey);
         this.sendMessages = sendessages;
+        if (sendMessages && apiKey.isEmpty()) {
+            Logger.getLogger(SlackAPI.class.getName()).log(Level.SEVERE, "no slack-key in the configuration, alerts cannot be sent to Slack");
+        }
     }
 
+    /**
+     * The "slack-key" setting, from /private/read.txt or the file given with
+     * -Dtestingsuite.config=..., like the other settings. Read once: a new key
+     * needs a restart.
+     */
     private static String getApiKey() {
-        String resourcePath = "/private/read.txt";
-        String apiKey = "";
-        Properties properties = new Properties();
-        try (InputStream inputStream = SlackAPI.class.getResourceAsStream(resourcePath)) {
-            if (inputStream == null) {
-                throw new IOException("Resource not found: " + resourcePath);
-            }
-            properties.load(inputStream);
-            apiKey = properties.getProperty("slack-key");
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        return apiKey;
+        return Configuration.current().stringOr("slack-key", "");
     }
 
-    public void sendMessage(String message, boolean exitAfterMessage) throws IOException, SlackApiException {
-        System.out.println(message);
+    /**
+     * Posts to the channel of the alerts, synchronously. Slack answering with
+     * an HTTP error, like 429 when messages come too fast, throws a
+     * SlackApiException. Alerts go through an {@link AlertDispatcher}, which
+     * queues, batches and retries them.
+     */
+    public void postMessage(String text) throws IOException, SlackApiException {
         if (!sendMessages) {
             return;
         }
         ChatPostMessageRequest request = ChatPostMessageRequest.builder()
                 .channel("#robot-alerts") // Use a channel ID `C1234567` is preferable
-                .text(message)
+                .text(text)
                 .build();
         ChatPostMessageResponse response = methods.chatPostMessage(request);
         if (!response.isOk()) {
             System.out.println("error: " + response.getError());
         }
-
-        if (exitAfterMessage) {
-            // EXITING TO AVOID AN ACCUMULATION OF MSG
-            System.exit(-1);
-        }
     }
 
-    public void sendMessage(String function, String message, boolean exitAfterMessage) throws IOException, SlackApiException {
-        System.out.println(function + ": " + message);
-        if (!sendMessages) {
-            return;
-        }
-        ChatPostMessageRequest request = ChatPostMessageRequest.builder()
-                .channel("#robot-alerts") // Use a channel ID `C1234567` is preferable
-                .text("function: " + function + ", message: " + message)
-                .build();
-
-        ChatPostMessageResponse response = methods.chatPostMessage(request);
-        if (!response.isOk()) {
-            System.out.println("error: " + response.getError());
-        }
-
-        if (exitAfterMessage) {
-            // EXITING TO AVOID AN ACCUMULATION OF MSG
-            System.exit(-1);
-        }
+    public boolean isSendingMessages() {
+        return sendMessages;
     }
 }
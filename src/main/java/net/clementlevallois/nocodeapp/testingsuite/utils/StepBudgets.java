@@ -0,0 +1,82 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.utils;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ *
+ * @author LEVALLOIS
+ */
+public class StepBudgets {
+
+    // the other steps are named in the scenarios: these two have longer budgets by default
+    public static final String RESULTS_PAGE = "results_page";
+    public static final String DOWNLOAD = "download";
+    // reading the descriptor of a test file, only timed
+    public static final String READ_DESCRIPTOR = "read_descriptor";
+    // from the start of the upload to the end of the download, in the scaling benchmark
+    public static final String UPLOAD_TO_DOWNLOAD = "upload_to_download";
+    public static final String TOTAL = "total";
+
+    private static final String PROPERTY_PREFIX = "step-budget";
+    private static final Duration DEFAULT_BUDGET = Duration.ofSeconds(20);
+
+    private final Duration defaultBudget;
+    private final Map<String, Duration> budgets;
+
+    private StepBudgets(Duration defaultBudget, Map<String, Duration> budgets) {
+        this.defaultBudget = defaultBudget;
+        this.budgets = budgets;
+    }
+
+    /**
+     * Budgets are given in seconds: "step-budget" for the default, and
+     * "step-budget.results_page", "step-budget.download"... for each step.
+     */
+    public static StepBudgets fromProperties(Properties properties) {
+        Map<String, Duration> budgets = new HashMap();
+        // computing results and downloading them take longer than a page transition
+        budgets.put(RESULTS_PAGE, Duration.ofSeconds(60));
+        budgets.put(DOWNLOAD, Duration.ofSeconds(60));
+        Duration defaultBudget = DEFAULT_BUDGET;
+        for (String key : properties.stringPropertyNames()) {
+            if (properties.getProperty(key).isBlank()) {
+                // as for the other settings, a blank budget is the default one
+                continue;
+            }
+            if (key.equals(PROPERTY_PREFIX)) {
+                defaultBudget = Duration.ofSeconds(Long.parseLong(properties.getProperty(key).trim()));
+            } else if (key.startsWith(PROPERTY_PREFIX + ".")) {
+                String step = key.substring(PROPERTY_PREFIX.length() + 1);
+                budgets.put(step, Duration.ofSeconds(Long.parseLong(properties.getProperty(key).trim())));
+            }
+        }
+        return new StepBudgets(defaultBudget, budgets);
+    }
+
+    public Duration budgetFor(String step) {
+        return budgets.getOrDefault(step, defaultBudget);
+    }
+
+    /**
+     * The same budgets, raised to the minimum when they are shorter: large
+     * inputs take longer at every step.
+     */
+    public StepBudgets atLeast(Duration minimum) {
+        Map<String, Duration> raised = new HashMap();
+        for (Map.Entry<String, Duration> budget : budgets.entrySet()) {
+            raised.put(budget.getKey(), max(budget.getValue(), minimum));
+        }
+        return new StepBudgets(max(defaultBudget, minimum), raised);
+    }
+
+    private static Duration max(Duration a, Duration b) {
+        return a.compareTo(b) >= 0 ? a : b;
+    }
+
+}
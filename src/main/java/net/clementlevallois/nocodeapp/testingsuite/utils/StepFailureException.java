@@ -0,0 +1,30 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.utils;
+
+/**
+ *
+ * @author LEVALLOIS
+ */
+public class StepFailureException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String step;
+
+    public StepFailureException(String step, String message) {
+        super(message);
+        this.step = step;
+    }
+
+    public StepFailureException(String step, String message, Throwable cause) {
+        super(message, cause);
+        this.step = step;
+    }
+
+    public String getStep() {
+        return step;
+    }
+
+}
@@ -0,0 +1,27 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.utils;
+
+import java.time.Duration;
+
+/**
+ *
+ * @author LEVALLOIS
+ */
+public class StepTimeoutException extends StepFailureException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Duration budget;
+
+    public StepTimeoutException(String step, Duration budget, String waitingFor, Throwable cause) {
+        super(step, "step " + step + " went over its budget of " + budget.toSeconds() + " seconds while waiting for " + waitingFor, cause);
+        this.budget = budget;
+    }
+
+    public Duration getBudget() {
+        return budget;
+    }
+
+}
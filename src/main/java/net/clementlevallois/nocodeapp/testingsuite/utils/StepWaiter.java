@@ -0,0 +1,62 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.utils;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.function.Function;
+import org.openqa.selenium.By;
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.support.ui.ExpectedConditions;
+import org.openqa.selenium.support.ui.WebDriverWait;
+
+/**
+ *
+ * @author LEVALLOIS
+ */
+public class StepWaiter {
+
+    private static final Duration POLLING_INTERVAL = Duration.ofMillis(100);
+
+    private final WebDriver webDriver;
+    private final StepBudgets stepBudgets;
+
+    public StepWaiter(WebDriver webDriver, StepBudgets stepBudgets) {
+        this.webDriver = webDriver;
+        this.stepBudgets = stepBudgets;
+    }
+
+    public void untilUrlContains(String step, String... fragments) throws StepTimeoutException {
+        until(step, "an url containing " + Arrays.toString(fragments), driver -> {
+            String url = driver.getCurrentUrl();
+            for (String fragment : fragments) {
+                if (!url.contains(fragment)) {
+                    return false;
+                }
+            }
+            return true;
+        });
+    }
+
+    public WebElement untilClickable(String step, By locator) throws StepTimeoutException {
+        return until(step, locator + " to be clickable", ExpectedConditions.elementToBeClickable(locator));
+    }
+
+    public WebElement untilPresent(String step, By locator) throws StepTimeoutException {
+        return until(step, locator + " to be present", ExpectedConditions.presenceOfElementLocated(locator));
+    }
+
+    private <V> V until(String step, String waitingFor, Function<? super WebDriver, V> condition) throws StepTimeoutException {
+        Duration budget = stepBudgets.budgetFor(step);
+        WebDriverWait wait = new WebDriverWait(webDriver, budget, POLLING_INTERVAL);
+        try {
+            return wait.until(condition);
+        } catch (TimeoutException ex) {
+            throw new StepTimeoutException(step, budget, waitingFor + " (current url: " + webDriver.getCurrentUrl() + ")", ex);
+        }
+    }
+
+}
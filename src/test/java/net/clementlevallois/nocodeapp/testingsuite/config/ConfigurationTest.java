@@ -0,0 +1,94 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.config;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Properties;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ *
+ * @author LEVALLOIS
+ */
+class ConfigurationTest {
+
+    @TempDir
+    Path folder;
+
+    private Path configFile;
+
+    @AfterEach
+    void forgetTheConfigFile() {
+        System.clearProperty(Configuration.EXTERNAL_CONFIG_PROPERTY);
+    }
+
+    private void writeConfig(String settings) throws IOException {
+        Files.writeString(configFile, "functions=demo\nscenarios-folder=" + folder.toString().replace("\\", "/") + "\n" + settings);
+    }
+
+    private void useConfig(String settings) throws IOException {
+        Path function = Files.createDirectories(folder.resolve("demo"));
+        Files.writeString(function.resolve("scenario.txt"), "test_files=file_1.txt\nsteps=first_page\nfirst_page.action=open\nfirst_page.url=/\n");
+        Files.writeString(function.resolve("file_1.txt"), "name=demo.txt\n");
+        configFile = folder.resolve("settings.properties");
+        writeConfig(settings);
+        System.setProperty(Configuration.EXTERNAL_CONFIG_PROPERTY, configFile.toString());
+        assertNotNull(Configuration.reload());
+    }
+
+    @Test
+    void checkNumbersFindsTheTypos() {
+        Properties settings = new Properties();
+        settings.setProperty("driver-pool-size", "2");
+        settings.setProperty("alert-dedup-minutes", "6O");
+        settings.setProperty("step-budget.upload", "3O");
+        settings.setProperty("run-interval-minutes.umigon", "1.5");
+        settings.setProperty("schedule-jitter-percent", "10.5");
+        settings.setProperty("step-budget", " ");
+        settings.setProperty("domain", "https://nocodefunctions.com");
+        List<String> problems = Configuration.checkNumbers(settings);
+        assertEquals(3, problems.size(), problems.toString());
+        assertTrue(problems.contains("the setting step-budget.upload is not a number: 3O"), problems.toString());
+    }
+
+    @Test
+    void reloadTakesTheNewSettings() throws IOException {
+        useConfig("step-budget.upload=30\n");
+        long version = Configuration.current().getVersion();
+        writeConfig("step-budget.upload=45\n");
+        ConfigSnapshot snapshot = Configuration.reload();
+        assertNotNull(snapshot);
+        assertEquals(version + 1, snapshot.getVersion());
+        assertEquals(45, Configuration.current().longOr("step-budget.upload", 0));
+    }
+
+    @Test
+    void reloadKeepsThePreviousSnapshotOnANumberWithATypo() throws IOException {
+        useConfig("step-budget.upload=30\n");
+        ConfigSnapshot previous = Configuration.current();
+        writeConfig("step-budget.upload=3O\n");
+        assertNull(Configuration.reload());
+        assertEquals(previous, Configuration.current());
+        assertEquals(30, Configuration.current().longOr("step-budget.upload", 0));
+    }
+
+    @Test
+    void reloadKeepsThePreviousSnapshotWhenADescriptorIsMissing() throws IOException {
+        useConfig("");
+        ConfigSnapshot previous = Configuration.current();
+        Files.writeString(folder.resolve("demo").resolve("scenario.txt"), "test_files=file_1.txt,file_2.txt\nsteps=first_page\nfirst_page.action=open\n");
+        assertNull(Configuration.reload());
+        assertEquals(previous, Configuration.current());
+    }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author LEVALLOIS
+ */
+class CircuitBreakerTest {
+
+    private static final String FUNCTION = "cowo";
+
+    @Test
+    void opensAfterTheThreshold() {
+        CircuitBreaker breaker = new CircuitBreaker(3, 8);
+        assertEquals(CircuitBreaker.Transition.NONE, breaker.recordRun(FUNCTION, false));
+        assertEquals(CircuitBreaker.Transition.NONE, breaker.recordRun(FUNCTION, false));
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(FUNCTION));
+        assertEquals(CircuitBreaker.Transition.OPENED, breaker.recordRun(FUNCTION, false));
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState(FUNCTION));
+        assertEquals(3, breaker.getConsecutiveFailures(FUNCTION));
+        assertEquals(1, breaker.getRunsToSkip(FUNCTION));
+    }
+
+    @Test
+    void aPassResetsTheFailures() {
+        CircuitBreaker breaker = new CircuitBreaker(2, 8);
+        breaker.recordRun(FUNCTION, false);
+        assertEquals(CircuitBreaker.Transition.NONE, breaker.recordRun(FUNCTION, true));
+        assertEquals(0, breaker.getConsecutiveFailures(FUNCTION));
+        assertEquals(CircuitBreaker.Transition.NONE, breaker.recordRun(FUNCTION, false));
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(FUNCTION));
+    }
+
+    @Test
+    void failedProbesDoubleTheSkippedRunsUpToTheMaximum() {
+        CircuitBreaker breaker = new CircuitBreaker(1, 4);
+        assertEquals(CircuitBreaker.Transition.OPENED, breaker.recordRun(FUNCTION, false));
+        int[] expectedRunsToSkip = {2, 4, 4};
+        for (int expected : expectedRunsToSkip) {
+            skipAndProbe(breaker, breaker.getRunsToSkip(FUNCTION));
+            assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState(FUNCTION));
+            assertEquals(CircuitBreaker.Transition.STILL_OPEN, breaker.recordRun(FUNCTION, false));
+            assertEquals(expected, breaker.getRunsToSkip(FUNCTION));
+        }
+    }
+
+    @Test
+    void aPassedProbeClosesTheCircuit() {
+        CircuitBreaker breaker = new CircuitBreaker(1, 4);
+        breaker.recordRun(FUNCTION, false);
+        skipAndProbe(breaker, 1);
+        assertEquals(CircuitBreaker.Transition.CLOSED, breaker.recordRun(FUNCTION, true));
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(FUNCTION));
+        assertTrue(breaker.allowRun(FUNCTION));
+    }
+
+    @Test
+    void functionsHaveCircuitsOfTheirOwn() {
+        CircuitBreaker breaker = new CircuitBreaker(1, 4);
+        breaker.recordRun(FUNCTION, false);
+        assertFalse(breaker.allowRun(FUNCTION));
+        assertTrue(breaker.allowRun("topics"));
+    }
+
+    private static void skipAndProbe(CircuitBreaker breaker, int runsToSkip) {
+        for (int i = 0; i < runsToSkip; i++) {
+            assertFalse(breaker.allowRun(FUNCTION));
+        }
+        assertTrue(breaker.allowRun(FUNCTION));
+    }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.controller;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author LEVALLOIS
+ */
+class RunSchedulerTest {
+
+    private static final Duration INTERVAL = Duration.ofMillis(20);
+
+    private final RunScheduler scheduler = new RunScheduler(0);
+
+    @AfterEach
+    void shutdown() {
+        scheduler.shutdown();
+    }
+
+    private RunScheduler.JobStatus status(String name) {
+        return scheduler.getStatus().stream().filter(job -> job.name().equals(name)).findFirst().orElseThrow();
+    }
+
+    @Test
+    void aRunStillGoingSkipsTheNextOnes() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger runs = new AtomicInteger();
+        scheduler.schedule("umigon (http)", INTERVAL, () -> {
+            runs.incrementAndGet();
+            started.countDown();
+            await(release);
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Thread.sleep(10 * INTERVAL.toMillis());
+        assertEquals(1, runs.get());
+        RunScheduler.JobStatus status = status("umigon (http)");
+        assertTrue(status.running());
+        assertTrue(status.skippedRuns() > 0);
+        release.countDown();
+        waitFor(() -> runs.get() > 1);
+    }
+
+    @Test
+    void aJobScheduledAgainWaitsForTheRunOfTheCancelledOne() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        scheduler.schedule("topics (browser)", INTERVAL, () -> {
+            started.countDown();
+            await(release);
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        scheduler.cancel("topics (browser)");
+        waitFor(() -> scheduler.getStatus().isEmpty());
+        AtomicInteger newRuns = new AtomicInteger();
+        scheduler.schedule("topics (browser)", INTERVAL, newRuns::incrementAndGet);
+        Thread.sleep(10 * INTERVAL.toMillis());
+        assertEquals(0, newRuns.get());
+        assertTrue(status("topics (browser)").running());
+        release.countDown();
+        waitFor(() -> newRuns.get() > 0);
+    }
+
+    @Test
+    void aFailingRunDoesNotStopTheJob() throws InterruptedException {
+        AtomicInteger runs = new AtomicInteger();
+        scheduler.schedule("umigon (browser)", INTERVAL, () -> {
+            runs.incrementAndGet();
+            throw new IllegalStateException("expected by the test");
+        });
+        waitFor(() -> runs.get() >= 3);
+    }
+
+    @Test
+    void jitterStaysWithinItsRatio() {
+        RunScheduler jittered = new RunScheduler(0.1);
+        try {
+            for (int i = 0; i < 1000; i++) {
+                long millis = jittered.jitteredInterval(Duration.ofMinutes(10)).toMillis();
+                assertTrue(millis >= 540_000 && millis <= 660_000, String.valueOf(millis));
+            }
+        } finally {
+            jittered.shutdown();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out");
+            Thread.sleep(10);
+        }
+    }
+
+}
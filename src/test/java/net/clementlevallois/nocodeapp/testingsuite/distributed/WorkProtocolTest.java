@@ -0,0 +1,66 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.distributed;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import net.clementlevallois.nocodeapp.testingsuite.functions.TestResult;
+import net.clementlevallois.nocodeapp.testingsuite.metrics.LatencySummary;
+import net.clementlevallois.nocodeapp.testingsuite.metrics.StepKey;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author LEVALLOIS
+ */
+class WorkProtocolTest {
+
+    private static final WorkProtocol.RunRequest REQUEST = new WorkProtocol.RunRequest("cowo", "cowo-1.txt", "http");
+
+    @Test
+    void requestRoundTrip() {
+        Properties received = WorkProtocol.fromBytes(WorkProtocol.toBytes(WorkProtocol.encodeRequest(REQUEST)));
+        assertEquals(REQUEST, WorkProtocol.decodeRequest(received));
+    }
+
+    @Test
+    void resultRoundTrip() {
+        TestResult result = new TestResult("cowo", "cowo-1.txt", "http", TestResult.Status.FAILED, "upload",
+                List.of("found 12 rows", "expected: 13 rows = ok"), Instant.parse("2023-05-01T10:15:30.123Z"), Duration.ofMillis(1234));
+        SortedMap<StepKey, LatencySummary> steps = new TreeMap();
+        steps.put(new StepKey("cowo", "cowo-1.txt", "upload"), new LatencySummary(1, 700, 700, 700, 700, 700, 1));
+        steps.put(new StepKey("cowo", "cowo-2.txt", "upload"), new LatencySummary(1, 900, 900, 900, 900, 900, 0));
+        Properties received = WorkProtocol.fromBytes(WorkProtocol.toBytes(WorkProtocol.encodeResult(result, steps, 4)));
+        assertEquals(result, WorkProtocol.decodeResult(REQUEST, received));
+        assertEquals(Map.of("upload", 700L), WorkProtocol.stepMicros(received));
+        assertEquals(4, WorkProtocol.slots(received));
+    }
+
+    @Test
+    void rejectsAnotherVersion() {
+        Properties properties = WorkProtocol.encodeRequest(REQUEST);
+        properties.setProperty("version", String.valueOf(WorkProtocol.VERSION + 1));
+        assertThrows(IllegalArgumentException.class, () -> WorkProtocol.decodeRequest(properties));
+    }
+
+    @Test
+    void rejectsAMissingField() {
+        Properties properties = WorkProtocol.encodeRequest(REQUEST);
+        properties.remove("test_file");
+        assertThrows(IllegalArgumentException.class, () -> WorkProtocol.decodeRequest(properties));
+    }
+
+    @Test
+    void slotsAreZeroWhenNotAnnounced() {
+        assertEquals(0, WorkProtocol.slots(new Properties()));
+    }
+
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.golden;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ *
+ * @author LEVALLOIS
+ */
+class GoldenFileTest {
+
+    private static final String[][] ROWS = {{"term", "count"}, {"apple", "3"}, {"pear", "2"}, {"plum", "1"}};
+
+    @TempDir
+    Path folder;
+
+    private Path excel(String name, String[]... rows) throws IOException {
+        Path file = folder.resolve(name);
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); OutputStream out = Files.newOutputStream(file)) {
+            Sheet sheet = workbook.createSheet();
+            for (int r = 0; r < rows.length; r++) {
+                Row row = sheet.createRow(r);
+                for (int c = 0; c < rows[r].length; c++) {
+                    row.createCell(c).setCellValue(rows[r][c]);
+                }
+            }
+            workbook.write(out);
+        }
+        return file;
+    }
+
+    @Test
+    void sameFileIsIdentical() throws IOException {
+        Path excel = excel("results.xlsx", ROWS);
+        Path golden = folder.resolve("results" + GoldenFile.EXTENSION);
+        assertEquals(4, GoldenFile.record(excel, 0, GoldenFile.Order.ORDERED, golden));
+        GoldenDiff diff = GoldenFile.compare(excel, 0, golden);
+        assertTrue(diff.isIdentical(), diff.describe());
+        assertEquals(4, diff.rows());
+    }
+
+    @Test
+    void orderedCompareListsChangedAndAddedRowsByPosition() throws IOException {
+        Path golden = folder.resolve("results" + GoldenFile.EXTENSION);
+        GoldenFile.record(excel("golden.xlsx", ROWS), 0, GoldenFile.Order.ORDERED, golden);
+        Path excel = excel("results.xlsx", new String[]{"term", "count"}, new String[]{"apple", "3"}, new String[]{"pear", "5"}, new String[]{"plum", "1"}, new String[]{"fig", "1"});
+        GoldenDiff diff = GoldenFile.compare(excel, 0, golden);
+        assertEquals(1, diff.changedCount());
+        // rows are counted from 1, as in Excel
+        assertEquals(List.of(3), diff.changedRows());
+        assertEquals(1, diff.addedCount());
+        assertEquals(List.of(5), diff.addedRows());
+        assertEquals(0, diff.missingCount());
+    }
+
+    @Test
+    void orderedCompareSeesAReorderingAsChanges() throws IOException {
+        Path golden = folder.resolve("results" + GoldenFile.EXTENSION);
+        GoldenFile.record(excel("golden.xlsx", ROWS), 0, GoldenFile.Order.ORDERED, golden);
+        Path excel = excel("results.xlsx", ROWS[0], ROWS[2], ROWS[1], ROWS[3]);
+        assertEquals(2, GoldenFile.compare(excel, 0, golden).changedCount());
+    }
+
+    @Test
+    void unorderedCompareIgnoresTheOrderAndListsMissingAndAddedRows() throws IOException {
+        Path golden = folder.resolve("results" + GoldenFile.EXTENSION);
+        GoldenFile.record(excel("golden.xlsx", ROWS), 0, GoldenFile.Order.UNORDERED, golden);
+        assertTrue(GoldenFile.compare(excel("shuffled.xlsx", ROWS[0], ROWS[3], ROWS[1], ROWS[2]), 0, golden).isIdentical());
+        Path excel = excel("results.xlsx", ROWS[0], ROWS[3], new String[]{"fig", "1"}, ROWS[1]);
+        GoldenDiff diff = GoldenFile.compare(excel, 0, golden);
+        assertEquals(0, diff.changedCount());
+        assertEquals(List.of(3), diff.missingRows());
+        assertEquals(List.of(3), diff.addedRows());
+    }
+
+    @Test
+    void cellsAreSeparatedInTheHash() throws IOException {
+        Path golden = folder.resolve("results" + GoldenFile.EXTENSION);
+        GoldenFile.record(excel("golden.xlsx", new String[]{"ab", "c"}), 0, GoldenFile.Order.ORDERED, golden);
+        assertFalse(GoldenFile.compare(excel("results.xlsx", new String[]{"a", "bc"}), 0, golden).isIdentical());
+    }
+
+    @Test
+    void recordIfAbsentKeepsTheFirstFingerprint() throws IOException {
+        Path golden = folder.resolve("results" + GoldenFile.EXTENSION);
+        assertEquals(4, GoldenFile.recordIfAbsent(excel("golden.xlsx", ROWS), 0, GoldenFile.Order.ORDERED, golden));
+        assertEquals(-1, GoldenFile.recordIfAbsent(excel("other.xlsx", ROWS[0]), 0, GoldenFile.Order.ORDERED, golden));
+        assertEquals(4, GoldenFile.compare(excel("results.xlsx", ROWS), 0, golden).goldenRows());
+    }
+
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.history;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import net.clementlevallois.nocodeapp.testingsuite.functions.TestResult;
+import net.clementlevallois.nocodeapp.testingsuite.metrics.LatencySummary;
+import net.clementlevallois.nocodeapp.testingsuite.metrics.StepKey;
+import net.clementlevallois.nocodeapp.testingsuite.utils.StepBudgets;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ *
+ * @author LEVALLOIS
+ */
+class RunHistoryTest {
+
+    private static final Instant FROM = Instant.now().minus(1, ChronoUnit.DAYS);
+    private static final Instant TO = Instant.now().plus(1, ChronoUnit.DAYS);
+
+    @TempDir
+    Path folder;
+
+    private static TestResult result(String testFile, TestResult.Status status, String failedStep, String message, long millis) {
+        List<String> messages = message == null ? List.of() : List.of(message);
+        return new TestResult("cowo", testFile, "browser", status, failedStep, messages, Instant.now(), Duration.ofMillis(millis));
+    }
+
+    private static SortedMap<StepKey, LatencySummary> steps(String testFile, long uploadMicros) {
+        SortedMap<StepKey, LatencySummary> steps = new TreeMap();
+        steps.put(new StepKey("cowo", testFile, "upload"), new LatencySummary(1, uploadMicros, uploadMicros, uploadMicros, uploadMicros, uploadMicros, 0));
+        return steps;
+    }
+
+    @Test
+    void recordsTheTotalAndTheStepsOfEachTestFile() throws IOException {
+        try (RunHistory history = new RunHistory(folder)) {
+            history.append("browser", Instant.now(), List.of(result("cowo-1.txt", TestResult.Status.PASSED, null, null, 1500)), steps("cowo-1.txt", 700_000));
+            List<RunHistory.Entry> entries = history.query(FROM, TO, "cowo", null, null, null);
+            assertEquals(2, entries.size());
+            RunHistory.Entry total = history.query(FROM, TO, "cowo", StepBudgets.TOTAL, "browser", null).get(0);
+            assertEquals("cowo-1.txt", total.testFile());
+            assertEquals(Duration.ofMillis(1500), total.duration());
+            assertEquals(TestResult.Status.PASSED, total.status());
+            assertNull(total.message());
+            assertEquals(0, total.fingerprint());
+            RunHistory.Entry upload = history.query(FROM, TO, "cowo", "upload", null, null).get(0);
+            assertEquals(Duration.ofMillis(700), upload.duration());
+            assertTrue(history.query(FROM, TO, "topics", null, null, null).isEmpty());
+        }
+    }
+
+    @Test
+    void failuresKeepTheFirstMessageOnTheTotalAndTheFailedStep() throws IOException {
+        try (RunHistory history = new RunHistory(folder)) {
+            TestResult failed = result("cowo-1.txt", TestResult.Status.FAILED, "upload", "found 12 rows", 1500);
+            history.append("browser", Instant.now(), List.of(failed), steps("cowo-1.txt", 700_000));
+            List<RunHistory.Entry> entries = history.query(FROM, TO, "cowo", null, null, null);
+            assertEquals(2, entries.size());
+            for (RunHistory.Entry entry : entries) {
+                assertEquals(TestResult.Status.FAILED, entry.status());
+                assertEquals("found 12 rows", entry.message());
+            }
+            assertEquals(1, history.failures(FROM, TO, "cowo", null).size());
+        }
+    }
+
+    @Test
+    void fingerprintLeavesOutTheDigits() {
+        long twelve = RunHistory.fingerprint(result("cowo-1.txt", TestResult.Status.FAILED, "upload", "found 12 rows", 1));
+        long thirteen = RunHistory.fingerprint(result("cowo-1.txt", TestResult.Status.FAILED, "upload", "found 13 rows", 1));
+        long other = RunHistory.fingerprint(result("cowo-1.txt", TestResult.Status.FAILED, "upload", "found no rows", 1));
+        assertEquals(twelve, thirteen);
+        assertNotEquals(twelve, other);
+    }
+
+    @Test
+    void truncatesLongMessages() throws IOException {
+        try (RunHistory history = new RunHistory(folder)) {
+            history.append("http", Instant.now(), List.of(result("cowo-1.txt", TestResult.Status.ERROR, null, "x".repeat(1500), 10)), new TreeMap());
+            String message = history.failures(FROM, TO, null, null).get(0).message();
+            assertEquals("x".repeat(1000) + "...", message);
+        }
+    }
+
+    @Test
+    void aRecordCutShortIsDroppedAndTheNextOnesStayAligned() throws IOException {
+        try (RunHistory history = new RunHistory(folder)) {
+            history.append("browser", Instant.now(), List.of(result("cowo-1.txt", TestResult.Status.PASSED, null, null, 100)), new TreeMap());
+        }
+        Path segment;
+        try (Stream<Path> files = Files.list(folder)) {
+            segment = files.filter(file -> file.getFileName().toString().endsWith(RunHistory.SEGMENT_EXTENSION)).findFirst().orElseThrow();
+        }
+        long size = Files.size(segment);
+        // a crash in the middle of a record
+        Files.write(segment, new byte[RunHistory.RECORD_BYTES / 2], StandardOpenOption.APPEND);
+        try (RunHistory history = new RunHistory(folder)) {
+            assertEquals(1, history.query(FROM, TO, null, null, null, null).size());
+            history.append("browser", Instant.now(), List.of(result("cowo-2.txt", TestResult.Status.PASSED, null, null, 200)), new TreeMap());
+            List<RunHistory.Entry> entries = history.query(FROM, TO, null, null, null, null);
+            assertEquals(2, entries.size());
+            assertEquals("cowo-2.txt", entries.get(1).testFile());
+            assertEquals(Duration.ofMillis(200), entries.get(1).duration());
+        }
+        assertEquals(size + RunHistory.RECORD_BYTES, Files.size(segment));
+    }
+
+    @Test
+    void percentileOfThePassedRuns() throws IOException {
+        try (RunHistory history = new RunHistory(folder)) {
+            for (int millis = 1; millis <= 20; millis++) {
+                history.append("browser", Instant.now(), List.of(result("cowo-1.txt", TestResult.Status.PASSED, null, null, millis)), new TreeMap());
+            }
+            history.append("browser", Instant.now(), List.of(result("cowo-1.txt", TestResult.Status.FAILED, null, "slow", 10_000)), new TreeMap());
+            assertEquals(Duration.ofMillis(19), history.percentile(FROM, TO, "cowo", StepBudgets.TOTAL, "browser", 0.95));
+            assertNull(history.percentile(FROM, TO, "topics", StepBudgets.TOTAL, "browser", 0.95));
+        }
+    }
+
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.metrics;
+
+import java.time.Duration;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author LEVALLOIS
+ */
+class LatencyHistogramTest {
+
+    @Test
+    void emptyHistogramReportsZeros() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(new LatencySummary(0, 0, 0, 0, 0, 0, 0), histogram.summarize());
+    }
+
+    @Test
+    void smallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 100; micros++) {
+            histogram.recordMicros(micros);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(5050, histogram.getTotalMicros());
+        assertEquals(100, histogram.getMaxMicros());
+        assertEquals(50, histogram.percentileMicros(50));
+        assertEquals(95, histogram.percentileMicros(95));
+        assertEquals(99, histogram.percentileMicros(99));
+    }
+
+    @Test
+    void largeValuesAreWithinTwoPercent() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int millis = 1; millis <= 1000; millis++) {
+            histogram.record(Duration.ofMillis(millis));
+        }
+        LatencySummary summary = histogram.summarize();
+        assertEquals(500_000, summary.p50Micros(), 500_000 * 0.02);
+        assertEquals(950_000, summary.p95Micros(), 950_000 * 0.02);
+        assertEquals(990_000, summary.p99Micros(), 990_000 * 0.02);
+        assertEquals(1_000_000, summary.maxMicros());
+        assertEquals(500_500_000L, summary.totalMicros());
+    }
+
+    @Test
+    void percentilesNeverExceedTheMaximum() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordMicros(123_457);
+        assertEquals(123_457, histogram.percentileMicros(50));
+        assertEquals(123_457, histogram.percentileMicros(100));
+    }
+
+    @Test
+    void countsFailures() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordMicros(10, true);
+        histogram.recordMicros(20, false);
+        histogram.record(Duration.ofMillis(3), true);
+        assertEquals(3, histogram.getCount());
+        assertEquals(2, histogram.getFailureCount());
+    }
+
+}
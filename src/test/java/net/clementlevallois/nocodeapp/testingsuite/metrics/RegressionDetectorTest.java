@@ -0,0 +1,92 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.metrics;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ *
+ * @author LEVALLOIS
+ */
+class RegressionDetectorTest {
+
+    private static final StepKey STEP = new StepKey("cowo", "cowo-1.txt", "upload");
+
+    private static RegressionDetector warmedUp(double millis) {
+        RegressionDetector detector = new RegressionDetector(3, 2);
+        for (int i = 0; i < 5; i++) {
+            assertNull(detector.evaluate(STEP, millis));
+        }
+        return detector;
+    }
+
+    @Test
+    void noRegressionDuringTheWarmup() {
+        RegressionDetector detector = new RegressionDetector(3, 2);
+        assertNull(detector.evaluate(STEP, 1000));
+        assertNull(detector.evaluate(STEP, 10_000));
+    }
+
+    @Test
+    void flagsAStepSlowerOnBothThresholds() {
+        RegressionDetector detector = warmedUp(1000);
+        RegressionDetector.Regression regression = detector.evaluate(STEP, 2500);
+        assertNotNull(regression);
+        assertEquals(1000, regression.baselineMillis(), 1e-9);
+        assertEquals(2.5, regression.ratio(), 1e-9);
+        assertEquals("cowo|cowo-1.txt|upload", regression.dedupKey());
+        assertTrue(regression.describe().contains("2.5x"), regression.describe());
+    }
+
+    @Test
+    void ignoresASlowdownUnderTheRatio() {
+        RegressionDetector detector = warmedUp(1000);
+        // many standard deviations above the floor of 100 ms, but not twice the baseline
+        assertNull(detector.evaluate(STEP, 1900));
+    }
+
+    @Test
+    void acceptsASlowdownSeveralRunsInARow() {
+        RegressionDetector detector = warmedUp(1000);
+        assertNotNull(detector.evaluate(STEP, 2500));
+        assertNotNull(detector.evaluate(STEP, 2500));
+        assertNotNull(detector.evaluate(STEP, 2500));
+        assertNull(detector.evaluate(STEP, 2500));
+    }
+
+    @Test
+    void failedStepsAreLeftOutOfTheBaseline() {
+        RegressionDetector detector = warmedUp(1000);
+        SortedMap<StepKey, LatencySummary> steps = new TreeMap();
+        // a step timing out after its budget of 20 seconds
+        steps.put(STEP, new LatencySummary(1, 20_000_000, 20_000_000, 20_000_000, 20_000_000, 20_000_000, 1));
+        for (int i = 0; i < 3; i++) {
+            assertTrue(detector.evaluate(new StepMetrics.RunSnapshot(Instant.now(), Instant.now(), steps)).isEmpty());
+        }
+        RegressionDetector.Regression regression = detector.evaluate(STEP, 2500);
+        assertNotNull(regression);
+        assertEquals(1000, regression.baselineMillis(), 1e-9);
+    }
+
+    @Test
+    void baselinesSurviveASaveAndALoad(@TempDir Path folder) throws IOException {
+        warmedUp(1000).save(folder);
+        assertTrue(Files.exists(folder.resolve(RegressionDetector.BASELINES_FILE_NAME)));
+        RegressionDetector reloaded = new RegressionDetector(3, 2);
+        reloaded.load(folder);
+        assertNotNull(reloaded.evaluate(STEP, 2500));
+    }
+
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.scaling;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author LEVALLOIS
+ */
+class ScalingReportTest {
+
+    private static final double[] LINES = {1_000, 2_000, 4_000, 8_000, 16_000};
+
+    private static double[] seconds(double fixed, double coefficient, double exponent) {
+        double[] seconds = new double[LINES.length];
+        for (int i = 0; i < LINES.length; i++) {
+            seconds[i] = fixed + coefficient * Math.pow(LINES[i], exponent);
+        }
+        return seconds;
+    }
+
+    @Test
+    void fitsALinearCurve() {
+        ScalingReport.Fit fit = ScalingReport.Fit.of(LINES, seconds(2, 0.001, 1));
+        assertEquals(1, fit.exponent(), 0.02);
+        assertEquals(2, fit.fixedSeconds(), 0.1);
+        assertEquals(1, fit.rSquared(), 1e-6);
+        assertEquals(34, fit.predictSeconds(32_000), 0.5);
+    }
+
+    @Test
+    void fitsAQuadraticCurve() {
+        ScalingReport.Fit fit = ScalingReport.Fit.of(LINES, seconds(1, 1e-7, 2));
+        assertEquals(2, fit.exponent(), 0.02);
+        assertEquals(1, fit.rSquared(), 1e-6);
+    }
+
+    @Test
+    void fixedTimeIsNeverNegative() {
+        ScalingReport.Fit fit = ScalingReport.Fit.of(LINES, seconds(-5, 0.01, 1));
+        assertEquals(0, fit.fixedSeconds());
+    }
+
+    @Test
+    void flatTimesGiveAFlatCurve() {
+        ScalingReport.Fit fit = ScalingReport.Fit.of(LINES, new double[]{3, 3, 3, 3, 3});
+        assertEquals(0, fit.exponent());
+        assertEquals(3, fit.predictSeconds(1_000_000), 1e-9);
+        assertEquals(1, fit.rSquared());
+    }
+
+    @Test
+    void noFitUnderThreeSizes() {
+        assertNull(ScalingReport.Fit.of(new double[]{1_000, 2_000}, new double[]{1, 2}));
+    }
+
+}
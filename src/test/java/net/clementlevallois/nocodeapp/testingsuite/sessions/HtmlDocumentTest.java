@@ -0,0 +1,88 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.sessions;
+
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author LEVALLOIS
+ */
+class HtmlDocumentTest {
+
+    private static final String PAGE = """
+            <html><body>
+            <div id="notid" data-id="results"></div>
+            <form id="form" action="/cowo.html">
+            <input type="hidden" name="token" value="a&amp;b"/>
+            <table id="results" class="table results">
+            <tr><th>term</th><th>count</th></tr>
+            <tr class="row"><td>apple&nbsp;pie</td><td>3</td></tr>
+            <tr class="row"><td><b>pear</b></td><td><table><tr><td>nested</td></tr></table></td></tr>
+            </table>
+            </form>
+            </body></html>
+            """;
+
+    @Test
+    void findsAnElementByItsIdOnly() {
+        HtmlDocument document = new HtmlDocument(PAGE);
+        HtmlDocument.Element table = document.findById("results").orElseThrow();
+        assertEquals("table", table.tag());
+        assertEquals(List.of("table", "results"), table.classes());
+        assertTrue(document.findById("missing").isEmpty());
+    }
+
+    @Test
+    void findsElementsByCssClassAndId() {
+        HtmlDocument document = new HtmlDocument(PAGE);
+        assertEquals(2, document.findAll("css:#results tr.row").size());
+        assertEquals(2, document.findAll("class:row").size());
+        assertEquals(1, document.findAll("id:results").size());
+        assertEquals(1, document.findAll("css:input[name='token']").size());
+        assertEquals(0, document.findAll("css:input[name='other']").size());
+    }
+
+    @Test
+    void rejectsLocatorsThatNeedABrowser() {
+        HtmlDocument document = new HtmlDocument(PAGE);
+        assertThrows(IllegalArgumentException.class, () -> document.findAll("xpath://table"));
+    }
+
+    @Test
+    void cellsOfARowLeaveOutNestedTables() {
+        HtmlDocument document = new HtmlDocument(PAGE);
+        List<HtmlDocument.Element> rows = document.findAll("css:#results tr.row");
+        List<HtmlDocument.Element> cells = document.cellsOf(rows.get(1));
+        assertEquals(2, cells.size());
+        assertEquals("pear", document.textContentOf(cells.get(0)));
+        assertEquals("nested", document.textContentOf(cells.get(1)));
+    }
+
+    @Test
+    void textContentDecodesEntities() {
+        HtmlDocument document = new HtmlDocument("<p id=\"p\">a&nbsp;&lt;b&gt; &#233;&#x41;</p>");
+        assertEquals("a <b> éA", document.textContentOf(document.findById("p").orElseThrow()));
+    }
+
+    @Test
+    void endOfSkipsNestedElementsOfTheSameTag() {
+        String html = "<div id=\"outer\"><div>inner</div></div><div>after</div>";
+        HtmlDocument document = new HtmlDocument(html);
+        assertEquals(html.indexOf("<div>after"), document.endOf(document.findById("outer").orElseThrow()));
+    }
+
+    @Test
+    void voidElementsEndWithTheirStartTag() {
+        HtmlDocument document = new HtmlDocument(PAGE);
+        HtmlDocument.Element input = document.findAll("css:input").get(0);
+        assertEquals(input.startTagEnd(), document.endOf(input));
+        assertEquals("a&b", input.attribute("value"));
+    }
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.sessions;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author LEVALLOIS
+ */
+class TableSummaryTest {
+
+    @Test
+    void hashIsFnv1aFollowedByTheSeparator() {
+        // FNV-1a 32 of "a" is 0xe40c292c
+        assertEquals((0xe40c292c ^ TableSummary.CELL_SEPARATOR) * TableSummary.FNV_PRIME, TableSummary.hash(TableSummary.FNV_OFFSET_BASIS, "a"));
+    }
+
+    @Test
+    void hashSeparatesTheCells() {
+        int ab = TableSummary.hash(TableSummary.hash(TableSummary.FNV_OFFSET_BASIS, "ab"), "c");
+        int a = TableSummary.hash(TableSummary.hash(TableSummary.FNV_OFFSET_BASIS, "a"), "bc");
+        assertNotEquals(ab, a);
+    }
+
+    @Test
+    void normalizeCollapsesTheWhiteSpaceOfJavaScript() {
+        assertEquals("apple pie", TableSummary.normalize("\n apple\u00a0  pie\t\ufeff"));
+        assertEquals("", TableSummary.normalize(" \u3000\u2028"));
+    }
+
+    @Test
+    void columnHashOfAMissingColumn() {
+        TableSummary summary = new TableSummary(1, List.of(42L), Map.of());
+        assertEquals(42, summary.columnHash(0));
+        assertEquals(-1, summary.columnHash(1));
+    }
+
+    @Test
+    void keepsTheMissingCells() {
+        Map<TableSummary.Cell, String> cells = new HashMap();
+        cells.put(new TableSummary.Cell(5, 0), null);
+        TableSummary summary = new TableSummary(1, List.of(), cells);
+        assertEquals(1, summary.cells().size());
+        assertNull(summary.cells().get(new TableSummary.Cell(5, 0)));
+    }
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.utils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author LEVALLOIS
+ */
+class AlertDispatcherTest {
+
+    private static final Duration BATCH_WINDOW = Duration.ofMillis(300);
+    private static final Duration DEDUP_WINDOW = Duration.ofMinutes(10);
+
+    /**
+     * Keeps the messages instead of posting them.
+     */
+    private static class RecordingSlackAPI extends SlackAPI {
+
+        final List<String> posts = new CopyOnWriteArrayList();
+
+        RecordingSlackAPI() {
+            super(false);
+        }
+
+        @Override
+        public void postMessage(String text) {
+            posts.add(text);
+        }
+    }
+
+    @Test
+    void aLoneAlertIsSentAsItIs() {
+        RecordingSlackAPI slackAPI = new RecordingSlackAPI();
+        try (AlertDispatcher dispatcher = new AlertDispatcher(slackAPI, 10, BATCH_WINDOW, DEDUP_WINDOW)) {
+            dispatcher.alert("umigon", "no result");
+        }
+        assertEquals(List.of("function: umigon, message: no result"), slackAPI.posts);
+    }
+
+    @Test
+    void alertsOfABatchMakeOneDigest() {
+        RecordingSlackAPI slackAPI = new RecordingSlackAPI();
+        try (AlertDispatcher dispatcher = new AlertDispatcher(slackAPI, 10, BATCH_WINDOW, DEDUP_WINDOW)) {
+            dispatcher.alert("umigon", "timeout");
+            dispatcher.alert("umigon", "timeout");
+            dispatcher.alert("topics", "no result");
+            dispatcher.alert("umigon", "timeout");
+        }
+        assertEquals(List.of("""
+                :rotating_light: 4 alerts
+                • function: umigon, message: timeout (x3)
+                • function: topics, message: no result"""), slackAPI.posts);
+    }
+
+    @Test
+    void alertsSentRecentlyAreOnlyCounted() throws InterruptedException {
+        RecordingSlackAPI slackAPI = new RecordingSlackAPI();
+        try (AlertDispatcher dispatcher = new AlertDispatcher(slackAPI, 10, BATCH_WINDOW, DEDUP_WINDOW)) {
+            dispatcher.alert("umigon", "timeout");
+            waitForPosts(slackAPI, 1);
+            dispatcher.alert("umigon", "timeout");
+            waitForEmptyQueue(dispatcher);
+            dispatcher.alert("topics", "no result");
+        }
+        assertEquals(List.of("function: umigon, message: timeout", """
+                :rotating_light: 1 alert
+                • function: topics, message: no result
+                1 repeated alerts not sent again, already sent within the last 10 minutes"""), slackAPI.posts);
+    }
+
+    @Test
+    void performanceAlertsAreDeduplicatedOnTheirKey() {
+        RecordingSlackAPI slackAPI = new RecordingSlackAPI();
+        try (AlertDispatcher dispatcher = new AlertDispatcher(slackAPI, 10, BATCH_WINDOW, DEDUP_WINDOW)) {
+            dispatcher.performanceAlert("umigon", "umigon|scenario.txt|upload", "upload took 12 s");
+            dispatcher.performanceAlert("umigon", "umigon|scenario.txt|upload", "upload took 14 s");
+        }
+        assertEquals(List.of("""
+                :rotating_light: 2 alerts
+                • :snail: performance alert, function: umigon, message: upload took 12 s (x2)"""), slackAPI.posts);
+    }
+
+    @Test
+    void noAlertIsTakenOnceClosed() {
+        RecordingSlackAPI slackAPI = new RecordingSlackAPI();
+        AlertDispatcher dispatcher = new AlertDispatcher(slackAPI, 10, BATCH_WINDOW, DEDUP_WINDOW);
+        assertTrue(dispatcher.info("starting"));
+        dispatcher.close();
+        assertFalse(dispatcher.info("too late"));
+        assertEquals(List.of("starting"), slackAPI.posts);
+    }
+
+    private static void waitForPosts(RecordingSlackAPI slackAPI, int posts) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (slackAPI.posts.size() < posts && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(posts, slackAPI.posts.size());
+    }
+
+    /**
+     * The alert taken from the queue, the batch it opened still has to be
+     * digested: waiting for the batch window lets it go out alone.
+     */
+    private static void waitForEmptyQueue(AlertDispatcher dispatcher) throws InterruptedException {
+        while (dispatcher.pendingCount() > 0) {
+            Thread.sleep(20);
+        }
+        Thread.sleep(BATCH_WINDOW.toMillis() * 2);
+    }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ *
+ * @author LEVALLOIS
+ */
+class ColumnarSheetTest {
+
+    @Test
+    void cellsKeepTheirTypeAndValue() {
+        ColumnarSheet sheet = new ColumnarSheet("results");
+        sheet.setString(0, 0, "term");
+        sheet.setNumber(0, 1, 3);
+        sheet.setNumber(0, 2, 2.5);
+        sheet.setBoolean(0, 3, true);
+        sheet.endRow(0);
+        assertEquals(ColumnarSheet.STRING, sheet.getType(0, 0));
+        assertEquals("term", sheet.getString(0, 0));
+        assertEquals("3", sheet.getString(0, 1));
+        assertEquals(2.5, sheet.getNumber(0, 2));
+        assertEquals("2.5", sheet.getString(0, 2));
+        assertEquals("true", sheet.getString(0, 3));
+        assertTrue(Double.isNaN(sheet.getNumber(0, 0)));
+    }
+
+    @Test
+    void cellsOutsideTheSheetAreBlank() {
+        ColumnarSheet sheet = new ColumnarSheet("results");
+        sheet.setString(0, 0, "term");
+        sheet.endRow(0);
+        assertEquals(ColumnarSheet.BLANK, sheet.getType(5, 0));
+        assertEquals(ColumnarSheet.BLANK, sheet.getType(0, 7));
+        assertEquals(ColumnarSheet.BLANK, sheet.getType(-1, 0));
+        assertEquals("", sheet.getString(0, 7));
+    }
+
+    @Test
+    void repeatedStringsAreStoredOnce() {
+        ColumnarSheet sheet = new ColumnarSheet("results");
+        for (int row = 0; row < 3000; row++) {
+            sheet.setString(row, 0, "text " + row);
+            sheet.setString(row, 1, row % 3 == 0 ? "positive" : row % 3 == 1 ? "negative" : "neutral");
+            sheet.endRow(row);
+        }
+        assertEquals(3000 + 3, sheet.dictionarySize());
+        assertEquals(1000, sheet.count(1, "positive"));
+        assertEquals(0, sheet.count(0, "positive"));
+        assertEquals(0, sheet.count(1, "unknown"));
+    }
+
+    @Test
+    void nonEmptyRowsLeaveOutBlankRows() {
+        ColumnarSheet sheet = new ColumnarSheet("results");
+        sheet.setString(0, 0, "term");
+        sheet.endRow(0);
+        sheet.setString(1, 0, "   ");
+        sheet.endRow(1);
+        sheet.endRow(2);
+        sheet.setNumber(3, 1, 0);
+        sheet.endRow(3);
+        assertEquals(4, sheet.rowCount());
+        assertEquals(2, sheet.nonEmptyRowCount());
+        assertTrue(sheet.isBlank(1, 0));
+        assertFalse(sheet.isBlank(3, 1));
+    }
+
+    @Test
+    void verifiesLikeTheStreamingReader(@TempDir Path folder) throws IOException {
+        Path file = folder.resolve("results.xlsx");
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); OutputStream out = Files.newOutputStream(file)) {
+            Sheet sheet = workbook.createSheet();
+            for (int r = 0; r < 20; r++) {
+                Row row = sheet.createRow(r);
+                if (r % 5 != 4) {
+                    row.createCell(0).setCellValue("term " + r);
+                }
+                row.createCell(1).setCellValue(r);
+            }
+            workbook.write(out);
+        }
+        ExcelVerification verification = new ExcelVerification()
+                .expectCell(0, 2, 0, "term 2")
+                .expectCell(0, 3, 1, "4")
+                .expectRowCount(0, 20, 20)
+                .expectColumnNonEmpty(0, 0, 0);
+        List<ColumnarSheet> sheets = ExcelReader.readColumnar(file);
+        assertEquals(1, sheets.size());
+        ExcelVerification.Result columnar = ExcelReader.verify(sheets, verification);
+        ExcelVerification.Result streamed = ExcelReader.verify(file, verification);
+        assertEquals(new HashSet(streamed.failures()), new HashSet(columnar.failures()));
+        assertEquals(5, columnar.failures().size(), columnar.failures().toString());
+    }
+
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.utils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ *
+ * @author LEVALLOIS
+ */
+class DownloadWatcherTest {
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void findsTheFileWrittenAfterTheWatcherStarted() throws Exception {
+        Files.writeString(folder.resolve("previous.xlsx"), "previous run");
+        try (DownloadWatcher watcher = new DownloadWatcher(folder)) {
+            Thread.ofVirtual().start(() -> {
+                try {
+                    Thread.sleep(200);
+                    Files.writeString(folder.resolve("results.xlsx"), "results");
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            Optional<Path> download = watcher.awaitCompletedDownload(Duration.ofSeconds(10), ".xlsx");
+            assertEquals(Optional.of(folder.resolve("results.xlsx")), download);
+        }
+    }
+
+    @Test
+    void waitsForChromeToFinishTheDownload() throws Exception {
+        try (DownloadWatcher watcher = new DownloadWatcher(folder)) {
+            Files.writeString(folder.resolve("results.gexf"), "<gexf/>");
+            Files.writeString(folder.resolve("other.gexf.crdownload"), "partial");
+            assertTrue(watcher.awaitCompletedDownload(Duration.ofMillis(300), ".gexf").isEmpty());
+            Files.delete(folder.resolve("other.gexf.crdownload"));
+            assertEquals(Optional.of(folder.resolve("results.gexf")), watcher.awaitCompletedDownload(Duration.ofSeconds(10), ".gexf"));
+        }
+    }
+
+    @Test
+    void leavesOutOtherExtensionsAndEmptyFiles() throws Exception {
+        try (DownloadWatcher watcher = new DownloadWatcher(folder)) {
+            Files.writeString(folder.resolve("results.csv"), "term,count");
+            Files.createFile(folder.resolve("results.xlsx"));
+            assertTrue(watcher.awaitCompletedDownload(Duration.ofMillis(300), ".xlsx").isEmpty());
+        }
+    }
+
+    @Test
+    void aFilePresentBeforehandIsNotADownload() throws Exception {
+        Files.writeString(folder.resolve("results.xlsx"), "previous run");
+        try (DownloadWatcher watcher = new DownloadWatcher(folder)) {
+            Files.writeString(folder.resolve("results.xlsx"), "rewritten");
+            assertTrue(watcher.awaitCompletedDownload(Duration.ofMillis(300), ".xlsx").isEmpty());
+        }
+    }
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ *
+ * @author LEVALLOIS
+ */
+class ExcelVerificationTest {
+
+    @TempDir
+    Path folder;
+
+    /**
+     * A sheet of a header and the rows "term i" | i, the term left empty on
+     * the rows given.
+     */
+    private Path excel(int rows, int... rowsWithoutTerm) throws IOException {
+        Path file = folder.resolve("results.xlsx");
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); OutputStream out = Files.newOutputStream(file)) {
+            Sheet sheet = workbook.createSheet();
+            Row header = sheet.createRow(0);
+            header.createCell(0).setCellValue("term");
+            header.createCell(1).setCellValue("count");
+            for (int r = 1; r <= rows; r++) {
+                Row row = sheet.createRow(r);
+                boolean withoutTerm = false;
+                for (int empty : rowsWithoutTerm) {
+                    withoutTerm |= empty == r;
+                }
+                if (!withoutTerm) {
+                    row.createCell(0).setCellValue("term " + r);
+                }
+                row.createCell(1).setCellValue(r);
+            }
+            workbook.write(out);
+        }
+        return file;
+    }
+
+    @Test
+    void expectedCellsPass() throws IOException {
+        ExcelVerification verification = new ExcelVerification()
+                .expectCell(0, 0, 0, "term")
+                .expectCell(0, 2, 0, "term 2")
+                .expectCell(0, 2, 1, "2");
+        ExcelVerification.Result result = ExcelReader.verify(excel(100), verification);
+        assertTrue(result.passed(), result.failures().toString());
+    }
+
+    @Test
+    void readingStopsAtTheLastExpectedRow() throws IOException {
+        ExcelVerification verification = new ExcelVerification().expectCell(0, 3, 0, "term 3");
+        ExcelVerification.Result result = ExcelReader.verify(excel(1000), verification);
+        assertTrue(result.passed());
+        assertEquals(4, result.rowsRead());
+    }
+
+    @Test
+    void failuresNameTheCellInExcelTerms() throws IOException {
+        ExcelVerification verification = new ExcelVerification()
+                .expectCell(0, 2, 1, "3")
+                .expectCell(0, 50, 0, "term 50");
+        ExcelVerification.Result result = ExcelReader.verify(excel(10), verification);
+        assertEquals(List.of("sheet 1, row 3, column 2: expected \"3\", found \"2\"",
+                "sheet 1, row 51: row not found, the last row is 11"), result.failures());
+    }
+
+    @Test
+    void rowCountIncludesTheHeader() throws IOException {
+        Path excel = excel(10);
+        assertTrue(ExcelReader.verify(excel, new ExcelVerification().expectRowCount(0, 11, 11)).passed());
+        assertEquals(List.of("sheet 1: found 11 rows, expected at least 12"),
+                ExcelReader.verify(excel, new ExcelVerification().expectRowCount(0, 12, Integer.MAX_VALUE)).failures());
+    }
+
+    @Test
+    void emptyCellsOfAColumnAreListedThenCounted() throws IOException {
+        int[] rowsWithoutTerm = new int[25];
+        for (int i = 0; i < rowsWithoutTerm.length; i++) {
+            rowsWithoutTerm[i] = i + 1;
+        }
+        ExcelVerification.Result result = ExcelReader.verify(excel(30, rowsWithoutTerm), new ExcelVerification().expectColumnNonEmpty(0, 0, 1));
+        assertEquals(ExcelVerification.ResultBuilder.EMPTY_CELLS_LISTED + 1, result.failures().size());
+        assertEquals("sheet 1, row 2: column 1 is empty", result.failures().get(0));
+        assertEquals("sheet 1, column 1: empty in 25 rows, the first 10 are listed", result.failures().get(result.failures().size() - 1));
+    }
+
+    @Test
+    void aMissingSheetFails() throws IOException {
+        ExcelVerification.Result result = ExcelReader.verify(excel(1), new ExcelVerification().expectCell(1, 0, 0, "term"));
+        assertFalse(result.passed());
+        assertEquals(List.of("sheet 2 not found, the file has 1 sheets"), result.failures());
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright Clement Levallois 2021-2023. License Attribution 4.0 Intertnational (CC BY 4.0)
+ */
+package net.clementlevallois.nocodeapp.testingsuite.utils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ *
+ * @author LEVALLOIS
+ */
+class GexfReaderTest {
+
+    private static final String NETWORK = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <gexf xmlns="http://gexf.net/1.3" version="1.3">
+              <graph defaultedgetype="undirected">
+                <attributes class="node">
+                  <attribute id="0" title="community" type="integer"/>
+                  <attribute id="1" title="country" type="string">
+                    <default>unknown</default>
+                  </attribute>
+                </attributes>
+                <attributes class="edge">
+                  <attribute id="0" title="year" type="integer"/>
+                </attributes>
+                <nodes>
+                  <node id="n0" label="alice">
+                    <attvalues><attvalue for="0" value="1"/></attvalues>
+                  </node>
+                  <node id="n1" label="bob">
+                    <attvalues><attvalue for="0" value="1"/></attvalues>
+                  </node>
+                  <node id="n2" label="carol"/>
+                </nodes>
+                <edges>
+                  <edge id="e0" source="n0" target="n1" weight="2.0">
+                    <attvalues><attvalue for="0" value="2021"/></attvalues>
+                  </edge>
+                  <edge id="e1" source="n1" target="n2" type="directed"/>
+                </edges>
+              </graph>
+            </gexf>
+            """;
+
+    @TempDir
+    Path folder;
+
+    private Path gexf(String content) throws IOException {
+        Path file = folder.resolve("network.gexf");
+        Files.writeString(file, content);
+        return file;
+    }
+
+    @Test
+    void countsNodesAndEdges() throws IOException {
+        GexfVerification verification = new GexfVerification()
+                .expectNodeCount(3, 3)
+                .expectEdgeCount(1, Integer.MAX_VALUE);
+        GexfVerification.Result result = GexfReader.verify(gexf(NETWORK), verification);
+        assertTrue(result.passed(), result.failures().toString());
+        assertEquals(3, result.nodes());
+        assertEquals(2, result.edges());
+        assertEquals(List.of("found 3 nodes, expected between 4 and 10", "found 2 edges, expected 1"),
+                GexfReader.verify(gexf(NETWORK), new GexfVerification().expectNodeCount(4, 10).expectEdgeCount(1, 1)).failures());
+    }
+
+    @Test
+    void undirectedEdgesGoEitherWay() throws IOException {
+        GexfVerification verification = new GexfVerification()
+                .expectNode("carol")
+                .expectEdge("bob", "alice", 2.0)
+                .expectEdge("bob", "carol", null);
+        assertTrue(GexfReader.verify(gexf(NETWORK), verification).passed());
+    }
+
+    @Test
+    void directedEdgesDoNot() throws IOException {
+        GexfVerification verification = new GexfVerification()
+                .expectNode("dave")
+                .expectEdge("carol", "bob", null)
+                .expectEdge("alice", "bob", 3.0);
+        assertEquals(List.of("node \"dave\" not found",
+                "edge \"carol\" -> \"bob\" not found",
+                "edge \"alice\" -> \"bob\": weight 2.0, expected 3.0"),
+                GexfReader.verify(gexf(NETWORK), verification).failures());
+    }
+
+    @Test
+    void attributesNeedAValueOrADefault() throws IOException {
+        GexfVerification verification = new GexfVerification()
+                .expectAttribute(GexfVerification.NODE, "community")
+                .expectAttribute(GexfVerification.NODE, "country")
+                .expectAttribute(GexfVerification.NODE, "age")
+                .expectAttribute(GexfVerification.EDGE, "year");
+        assertEquals(List.of("1 nodes without a value for \"community\", the first one being carol",
+                "node attribute \"age\" not declared",
+                "1 edges without a value for \"year\", the first one being n1 -> n2"),
+                GexfReader.verify(gexf(NETWORK), verification).failures());
+    }
+
+    @Test
+    void aTruncatedFileFails() throws IOException {
+        GexfVerification.Result result = GexfReader.verify(gexf(NETWORK.substring(0, NETWORK.indexOf("<edges>"))), new GexfVerification());
+        assertEquals(1, result.failures().size());
+        assertTrue(result.failures().get(0).startsWith("the file is not a valid GEXF file"), result.failures().get(0));
+    }
+
+}